@@ -0,0 +1,85 @@
+package com.os.tid.forgerock.openam.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+import com.os.tid.forgerock.openam.models.AdaptiveRequest;
+import com.os.tid.forgerock.openam.utils.CDDCUtils;
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+
+/**
+ * Compares building the body of an adaptive user login with CDDC data from format strings, as the login node used
+ * to, and with {@link AdaptiveRequest} written by {@link JsonWriter} from the CDDC data as the CDDC node stores it.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks test-compile exec:exec}; add {@code -prof gc} to the arguments of
+ * {@code org.openjdk.jmh.Main} to compare the allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdaptiveRequestBenchmark {
+    private static final String USER_LOGIN = "{%8$s%7$s%2$s%3$s%4$s%5$s%6$s\"objectType\":\"%1$s\"}";
+    private static final String REQUESTID = "\"requestID\":\"%1$s\",";
+    private static final String ORCHESTRATIONDELIVERY = "\"orchestrationDelivery\":[%1$s],";
+    private static final String TIMEOUT = "\"timeout\":%1$s,";
+    private static final String CREDENTIALS_PASSKEY = "\"credentials\":{\"passKey\":\"%1$s\"},";
+    private static final String USER_LOGIN_IAA = "\"clientIP\":\"%1$s\",\"cddc\":{\"browserCDDC\":{\"fingerprintHash\":\"%2$s\",\"fingerprintRaw\":\"%3$s\"}},\"relationshipRef\":\"%4$s\",\"sessionID\":\"%5$s\",\"applicationRef\":\"%6$s\",";
+
+    private final String cddcJson = "{\"navigator\":{\"userAgent\":\"Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 "
+            + "(KHTML, like Gecko) Chrome/120.0 Safari/537.36\",\"language\":\"en-US\",\"platform\":\"Win32\","
+            + "\"plugins\":[\"PDF Viewer\",\"Chrome PDF Viewer\"]},\"screen\":{\"width\":1920,\"height\":1080,\"colorDepth\":24},"
+            + "\"timezone\":\"Europe/Brussels\",\"canvas\":\"4c7a1b0e9f2d3a6b8c5d7e0f1a2b3c4d\"}";
+    private final String cddcHash = "4c7a1b0e9f2d3a6b8c5d7e0f1a2b3c4d5e6f7a8b9c0d1e2f3a4b5c6d7e8f9a0b";
+    private final String clientIP = "192.168.10.25";
+    private final String username = "john.doe";
+    private final String sessionID = "3539633330613537";
+    private final String requestID = "a1b2c3d4-e5f6-7890-abcd-ef1234567890";
+    private final String applicationRef = "forgerock";
+    private final String passKey = "secret";
+    private final String storedCddc = CDDCUtils.pack(cddcJson);
+
+    @Benchmark
+    public byte[] formatStrings() {
+        String iaa = String.format(USER_LOGIN_IAA, clientIP, cddcHash, StringEscapeUtils.escapeJava(cddcJson), username, sessionID, applicationRef);
+        String json = String.format(USER_LOGIN,
+                "AdaptiveLoginInput",
+                String.format(CREDENTIALS_PASSKEY, passKey),
+                String.format(REQUESTID, requestID),
+                String.format(ORCHESTRATIONDELIVERY, "\"pushNotification\""),
+                String.format(TIMEOUT, 0),
+                iaa,
+                "",
+                "");
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] jsonWriter() {
+        AdaptiveRequest request = new AdaptiveRequest();
+        request.setObjectType("AdaptiveLoginInput");
+        request.setPassKey(passKey);
+        request.setRequestID(requestID);
+        request.setOrchestrationDelivery(ImmutableList.of("pushNotification"));
+        request.setTimeout(0);
+        request.setCddc(clientIP, cddcHash, CDDCUtils.getEscapedJson(storedCddc));
+        request.setRelationshipRef(username);
+        request.setSessionID(sessionID);
+        request.setApplicationRef(applicationRef);
+        return JsonWriter.toJSONBytes(request);
+    }
+}
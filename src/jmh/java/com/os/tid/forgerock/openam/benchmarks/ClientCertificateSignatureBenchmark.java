@@ -0,0 +1,77 @@
+package com.os.tid.forgerock.openam.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the client side cost of a mutual TLS 1.3 handshake with the OneSpan tenant endpoint per type of ASP client
+ * key. Key exchange and server certificate validation cost the same whatever the client key, so the difference is
+ * the CertificateVerify signature the client computes over the handshake transcript.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks test-compile exec:exec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientCertificateSignatureBenchmark {
+
+    @Param({ "RSA-2048", "RSA-4096", "EC-P256" })
+    public String keyType;
+
+    private final byte[] transcriptHash = "handshake transcript hash of 32b".getBytes(StandardCharsets.US_ASCII);
+    private KeyPair keyPair;
+    private Signature signer;
+    private byte[] signature;
+
+    @Setup
+    public void setUp() throws Exception {
+        if (keyType.startsWith("RSA")) {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(Integer.parseInt(keyType.substring("RSA-".length())));
+            keyPair = generator.generateKeyPair();
+            signer = Signature.getInstance("RSASSA-PSS");
+            signer.setParameter(new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, 32, 1));
+        } else {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            keyPair = generator.generateKeyPair();
+            signer = Signature.getInstance("SHA256withECDSA");
+        }
+        signature = sign();
+    }
+
+    @Benchmark
+    public byte[] sign() throws Exception {
+        signer.initSign(keyPair.getPrivate());
+        signer.update(transcriptHash);
+        return signer.sign();
+    }
+
+    @Benchmark
+    public boolean verify() throws Exception {
+        signer.initVerify(keyPair.getPublic());
+        signer.update(transcriptHash);
+        return signer.verify(signature);
+    }
+}
@@ -0,0 +1,91 @@
+package com.os.tid.forgerock.openam.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.os.tid.forgerock.openam.models.AddDeviceOutput;
+import com.os.tid.forgerock.openam.models.GeneralResponseOutput;
+import com.os.tid.forgerock.openam.utils.FastjsonCodec;
+import com.os.tid.forgerock.openam.utils.JacksonCodec;
+import com.os.tid.forgerock.openam.utils.JsonCodec;
+
+/**
+ * Compares the JSON codecs decoding OneSpan responses into their models and serializing the shared state of a
+ * journey, as the nodes log it. The payloads follow the shape of the responses of the user login and add device
+ * calls, including members the models do not read.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks test-compile exec:exec}; add {@code -prof gc} to the arguments of
+ * {@code org.openjdk.jmh.Main} to compare the allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+    private static final String USER_LOGIN_RESPONSE = "{\"requestID\":\"a1b2c3d4-e5f6-7890-abcd-ef1234567890\","
+            + "\"riskResponseCode\":3,\"sessionStatus\":\"pending\",\"requestMessage\":\"Please validate the login on your device\","
+            + "\"challenge\":\"2B6A4C3F1E0D9C8B7A6F5E4D3C2B1A09\",\"eventId\":102345,"
+            + "\"riskResponseDetails\":{\"riskScore\":57,\"rules\":[{\"ruleID\":\"R-1042\",\"description\":\"New device for user\"},"
+            + "{\"ruleID\":\"R-2210\",\"description\":\"Unusual location\"}]},"
+            + "\"orchestrationDelivery\":[\"pushNotification\",\"requestMessage\"],\"timeout\":60}";
+    private static final String ADD_DEVICE_RESPONSE = "{\"activationMessage2\":\"0100000a1b2c3d4e5f60718293a4b5c6d7e8f9031415926535897932384626433832795028841971693993751058209749445923078164062862089986280348253421170679\","
+            + "\"activationType\":\"online\",\"deviceStatus\":\"activated\",\"deviceType\":\"DP4Mobile\",\"domain\":\"master\","
+            + "\"registrationID\":\"REG-00042\",\"serialNumber\":\"VDP1234567-1\",\"userID\":\"john.doe\","
+            + "\"deviceInfo\":{\"osName\":\"Android\",\"osVersion\":\"14\",\"model\":\"Pixel 8\"}}";
+
+    @Param({FastjsonCodec.NAME, JacksonCodec.NAME})
+    public String codecName;
+
+    private JsonCodec codec;
+    private byte[] userLoginResponse;
+    private byte[] addDeviceResponse;
+    private Map<String, Object> sharedState;
+
+    @Setup
+    public void setUp() {
+        codec = JacksonCodec.NAME.equals(codecName) ? new JacksonCodec() : new FastjsonCodec();
+        userLoginResponse = USER_LOGIN_RESPONSE.getBytes(StandardCharsets.UTF_8);
+        addDeviceResponse = ADD_DEVICE_RESPONSE.getBytes(StandardCharsets.UTF_8);
+        sharedState = new LinkedHashMap<>();
+        sharedState.put("realm", "/alpha");
+        sharedState.put("authLevel", 0);
+        sharedState.put("username", "john.doe");
+        sharedState.put("ostid_request_id", "a1b2c3d4-e5f6-7890-abcd-ef1234567890");
+        sharedState.put("ostid_event_expiry_date", "1760790000000");
+        sharedState.put("ostid_irm_response", 3);
+        sharedState.put("ostid_cddc_hash", "4c7a1b0e9f2d3a6b8c5d7e0f1a2b3c4d5e6f7a8b9c0d1e2f3a4b5c6d7e8f9a0b");
+        sharedState.put("ostid_cddc_ip", "192.168.10.25");
+    }
+
+    @Benchmark
+    public GeneralResponseOutput decodeUserLoginResponse() throws IOException {
+        return codec.decode(userLoginResponse, GeneralResponseOutput.class);
+    }
+
+    @Benchmark
+    public AddDeviceOutput decodeAddDeviceResponse() throws IOException {
+        return codec.decode(addDeviceResponse, AddDeviceOutput.class);
+    }
+
+    @Benchmark
+    public String serializeSharedState() {
+        return codec.toJSONString(sharedState);
+    }
+}
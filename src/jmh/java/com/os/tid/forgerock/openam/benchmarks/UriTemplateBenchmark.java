@@ -0,0 +1,54 @@
+package com.os.tid.forgerock.openam.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.os.tid.forgerock.openam.config.Constants;
+
+/**
+ * Compares building a OneSpan request URL with {@code String.format}, as the nodes used to, and with the compiled
+ * {@link com.os.tid.forgerock.openam.utils.UriTemplate}, which also percent-encodes the values.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks test-compile exec:exec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UriTemplateBenchmark {
+    private final String apiEndpoint = "https://tenant.sdb.tid.onespan.cloud";
+    private final String username = "john.doe";
+    private final String domain = "forgerock";
+    private final String serialNumber = "VDP1234567";
+
+    @Benchmark
+    public String userLoginFormat() {
+        return apiEndpoint + String.format(Constants.OSTID_API_ADAPTIVE_USER_LOGIN, username, domain);
+    }
+
+    @Benchmark
+    public String userLoginTemplate() {
+        return Constants.OSTID_API_ADAPTIVE_USER_LOGIN_TEMPLATE.resolve(apiEndpoint, username, domain);
+    }
+
+    @Benchmark
+    public String getUserAuthenticatorFormat() {
+        return apiEndpoint + String.format(Constants.OSTID_API_GET_USER_AUTHENTICATOR, serialNumber, domain);
+    }
+
+    @Benchmark
+    public String getUserAuthenticatorTemplate() {
+        return Constants.OSTID_API_GET_USER_AUTHENTICATOR_TEMPLATE.resolve(apiEndpoint, serialNumber, domain);
+    }
+}
@@ -0,0 +1,66 @@
+package com.os.tid.forgerock.openam.config;
+
+import java.net.URI;
+import java.util.regex.Pattern;
+
+/**
+ * Classification of the OneSpan API calls made by the nodes, used to look up per-endpoint settings such as the
+ * timeout overrides of {@link com.os.tid.forgerock.openam.nodes.OSConfigurationsService#endpointTimeouts()}.
+ */
+public enum ApiEndpoint {
+    SESSION_STATUS("sessionStatus", "/v1/sessions/", true),
+    CHECK_ACTIVATION("checkActivation", "/v1/registrations/check-status", true),
+    LOGIN("login", "/login", false),
+    EVENT_VALIDATION("eventValidation", "/events/validate", false),
+    TRANSACTION_VALIDATION("transactionValidation", "/transactions/validate", false),
+    VISUAL_CODE("visualCode", "/v1/visualcodes/", true),
+    // the authenticator calls, and the lookup, registration and update of a user@domain
+    VDP("vdp", "/v1/authenticators|/v1/users/[^/]+@[^/]+$", false),
+    OTHER("other", null, false);
+
+    private final String key;
+    private final Pattern path;
+    private final boolean idempotent;
+
+    ApiEndpoint(String key, String path, boolean idempotent) {
+        this.key = key;
+        this.path = path == null ? null : Pattern.compile(path);
+        this.idempotent = idempotent;
+    }
+
+    /**
+     * The name of the endpoint in the realm configuration.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Whether a call to the endpoint may be repeated regardless of its HTTP method, e.g. the activation status
+     * check, which is a POST but does not change any state.
+     */
+    public boolean isIdempotent(String httpMethod) {
+        return idempotent || "GET".equals(httpMethod) || "PUT".equals(httpMethod) || "HEAD".equals(httpMethod);
+    }
+
+    /**
+     * Classifies a call by the path of its url. The first endpoint whose path pattern is found in the path wins,
+     * calls matching none of them are {@link #OTHER}.
+     */
+    public static ApiEndpoint fromUrl(String url) {
+        String path;
+        try {
+            path = URI.create(url).getRawPath();
+        } catch (IllegalArgumentException e) {
+            return OTHER;
+        }
+        if (path != null) {
+            for (ApiEndpoint endpoint : values()) {
+                if (endpoint.path != null && endpoint.path.matcher(path).find()) {
+                    return endpoint;
+                }
+            }
+        }
+        return OTHER;
+    }
+}
@@ -1,9 +1,12 @@
 package com.os.tid.forgerock.openam.config;
 
+import java.util.List;
 import java.util.Map;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.os.tid.forgerock.openam.nodes.OSConfigurationsService.EnvOptions;
+import com.os.tid.forgerock.openam.utils.UriTemplate;
 
 public class Constants {
 
@@ -34,6 +37,23 @@ public class Constants {
     public static final String OSTID_API_VDP_GET_USER = "/v1/users/%1$s@%2$s";
     public static final String OSTID_API_VDP_GENERATE_VOTP = "/v1/authenticators/%1$s/applications/%2$s/generate-votp";
 
+    //API Endpoints, compiled once and percent-encoding their parameters
+    public static final UriTemplate OSTID_API_ADAPTIVE_USER_UNREGISTER_TEMPLATE = UriTemplate.compile(OSTID_API_ADAPTIVE_USER_UNREGISTER);
+    public static final UriTemplate OSTID_API_ADAPTIVE_USER_LOGIN_TEMPLATE = UriTemplate.compile(OSTID_API_ADAPTIVE_USER_LOGIN);
+    public static final UriTemplate OSTID_API_ADAPTIVE_EVENT_VALIDATION_TEMPLATE = UriTemplate.compile(OSTID_API_ADAPTIVE_EVENT_VALIDATION);
+    public static final UriTemplate OSTID_API_ADAPTIVE_SEND_TRANSACTION_TEMPLATE = UriTemplate.compile(OSTID_API_ADAPTIVE_SEND_TRANSACTION);
+    public static final UriTemplate OSTID_API_ADAPTIVE_ADD_DEVICE_TEMPLATE = UriTemplate.compile(OSTID_API_ADAPTIVE_ADD_DEVICE);
+    public static final UriTemplate OSTID_API_ADAPTIVE_GENERATE_CHALLENGE_TEMPLATE = UriTemplate.compile(OSTID_API_ADAPTIVE_GENERATE_CHALLENGE);
+    public static final UriTemplate OSTID_API_ADAPTIVE_ACTIVATE_DEVICE_TEMPLATE = UriTemplate.compile(OSTID_API_ADAPTIVE_ACTIVATE_DEVICE);
+    public static final UriTemplate OSTID_API_CHECK_SESSION_STATUS_TEMPLATE = UriTemplate.compile(OSTID_API_CHECK_SESSION_STATUS);
+    public static final UriTemplate OSTID_API_ADAPTIVE_CRTONTO_RENDER_TEMPLATE = UriTemplate.compile(OSTID_API_ADAPTIVE_CRTONTO_RENDER);
+    public static final UriTemplate OSTID_API_VDP_USER_REGISTER_TEMPLATE = UriTemplate.compile(OSTID_API_VDP_USER_REGISTER);
+    public static final UriTemplate OSTID_API_VDP_GET_VIR10_AUTHENTICATOR_TEMPLATE = UriTemplate.compile(OSTID_API_VDP_GET_VIR10_AUTHENTICATOR);
+    public static final UriTemplate OSTID_API_GET_USER_AUTHENTICATOR_TEMPLATE = UriTemplate.compile(OSTID_API_GET_USER_AUTHENTICATOR);
+    public static final UriTemplate OSTID_API_VDP_ASSIGN_AUTHENTICATOR_TEMPLATE = UriTemplate.compile(OSTID_API_VDP_ASSIGN_AUTHENTICATOR);
+    public static final UriTemplate OSTID_API_VDP_GET_USER_TEMPLATE = UriTemplate.compile(OSTID_API_VDP_GET_USER);
+    public static final UriTemplate OSTID_API_VDP_GENERATE_VOTP_TEMPLATE = UriTemplate.compile(OSTID_API_VDP_GENERATE_VOTP);
+
 
     //deprecated API Endpoints
     public static final String OSTID_API_USER_REGISTER = "/userregister/v1/";
@@ -45,33 +65,13 @@ public class Constants {
     public static final String OSTID_API_DEMO_COMMANDS = "/back/commands";
 
     //JSON payload
-    public static final String OSTID_JSON_ADAPTIVE_USER_REGISTER = "{%6$s%7$s%8$s%9$s%10$s\"objectType\":\"%1$s\",\"userID\":\"%2$s\",\"clientIP\":\"%3$s\",\"cddc\":{\"browserCDDC\":{\"fingerprintHash\":\"%4$s\",\"fingerprintRaw\":\"%5$s\"}}}";
-    public static final String OSTID_JSON_ADAPTIVE_APPLICATIONREF = "\"applicationRef\":\"%1$s\",";
-    public static final String OSTID_JSON_ADAPTIVE_SESSIONID = "\"sessionID\":\"%1$s\",";
     public static final String OSTID_JSON_ADAPTIVE_REQUESTID = "\"requestID\":\"%1$s\",";
     public static final String OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY = "\"orchestrationDelivery\":[%1$s],";
     public static final String OSTID_JSON_ADAPTIVE_TIMEOUT = "\"timeout\":%1$s,";
-    public static final String OSTID_JSON_ADAPTIVE_CREDENTIALS_AUTHENTICATOR = "\"credentials\":{\"authenticator\":{\"OTP\":\"%1$s\"}},";
-    public static final String OSTID_JSON_ADAPTIVE_CREDENTIALS_FIDOAUTHENTICATOR = "\"credentials\":{\"fidoAuthenticator\":{\"authenticationResponse\":\"%1$s\"}},";
-    public static final String OSTID_JSON_ADAPTIVE_CREDENTIALS_FIDOAUTHENTICATOR_2 = "{\"fidoAuthentication\":{\"fidoProtocol\":\"%1$s\"},";
-    public static final String OSTID_JSON_ADAPTIVE_CREDENTIALS_PASSKEY = "\"credentials\":{\"passKey\":\"%1$s\"},";
-    public static final String OSTID_JSON_ADAPTIVE_USER_REGISTER_RELATIONSHIPREF = "\"relationshipRef\":\"%1$s\",";
-    public static final String OSTID_JSON_ADAPTIVE_USER_REGISTER_ACTIVATIONTYPE = "\"activationType\":\"%1$s\",";
     public static final String OSTID_JSON_ADAPTIVE_ACTIVATE_DEVICE = "{\"signature\":\"%1$s\"}";
     public static final String OSTID_JSON_ADAPTIVE_ADD_DEVICE = "{\"deviceCode\":\"%1$s\"}";
-    public static final String OSTID_JSON_ADAPTIVE_USER_LOGIN = "{%8$s%7$s%2$s%3$s%4$s%5$s%6$s\"objectType\":\"%1$s\"}";
-    public static final String OSTID_JSON_ADAPTIVE_USER_LOGIN_NO_REQUEST = "{%7$s%6$s%2$s%3$s%4$s%5$s\"objectType\":\"%1$s\"}";
-    public static final String OSTID_JSON_ADAPTIVE_EVENT_VALIDATION = "{%8$s%7$s%2$s%3$s%4$s%5$s%6$s\"eventType\":\"%1$s\"}";
-    public static final String OSTID_JSON_ADAPTIVE_SEND_TRANSACTION = "{%2$s%3$s%4$s%5$s\"objectType\":\"%1$s\"}";
-    public static final String OSTID_JSON_ADAPTIVE_USER_LOGIN_IAA_NO_CDDC_DATA = "\"relationshipRef\":\"%1$s\",\"sessionID\":\"%2$s\",\"applicationRef\":\"%3$s\",";
     public static final String OSTID_JSON_ADAPTIVE_USER_LOGIN_IAA = "\"clientIP\":\"%1$s\",\"cddc\":{\"browserCDDC\":{\"fingerprintHash\":\"%2$s\",\"fingerprintRaw\":\"%3$s\"}},\"relationshipRef\":\"%4$s\",\"sessionID\":\"%5$s\",\"applicationRef\":\"%6$s\",";
     public static final String OSTID_JSON_ADAPTIVE_GENERATE_CHALLENGE = "{\"length\":\"%1$s\",\"checkDigit\":\"%2$s\"}";
-    public static final String OSTID_JSON_ADAPTIVE_DATATOSIGN_FIDO = "\"data\":{\"fido\":{%3$s\"fidoProtocol\":\"%1$s\",\"authenticationResponse\":\"%2$s\"}},";
-    public static final String OSTID_JSON_ADAPTIVE_DATATOSIGN_STANDARD = "\"data\":{\"standard\":{\"dataFields\":[%1$s],\"signature\":\"%2$s\"}},";
-    public static final String OSTID_JSON_ADAPTIVE_DATATOSIGN_SECURECHANNEL = "\"data\":{\"secureChannel\":{\"requestID\":\"%1$s\",\"signature\":\"%2$s\"}},";
-    public static final String OSTID_JSON_ADAPTIVE_DATATOSIGN_TRANSACTIONMESSAGE = "\"data\":{\"transactionMessage\":{\"dataFields\":[%1$s]}},";
-    public static final String OSTID_JSON_ADAPTIVE_DATATOSIGN_TRANSACTIONMESSAGE_DATAFIELDS = "{\"key\":{\"text\":\"%1$s\"},\"value\":{\"text\":\"%2$s\"}}";
-    public static final String OSTID_JSON_RISK_SEND_TRANSACTION =  "{%1$s\"clientIP\":\"%2$s\",\"cddc\":{\"browserCDDC\":{\"fingerprintHash\":\"%3$s\",\"fingerprintRaw\":\"%4$s\"}},\"relationshipRef\":\"%7$s\",\"sessionID\":\"%5$s\",\"applicationRef\":\"%6$s\"}";
 
     public static final String OSTID_JSON_VDP_USER_REGISTER = "{%1$s\"vdpDeliveryMethod\":\"%2$s\"}";
     public static final String OSTID_JSON_VDP_ASSIGN_AUTHENTICATOR = "{\"domain\":\"%1$s\",\"userID\":\"%2$s\"}";
@@ -182,4 +182,98 @@ public class Constants {
 
     public static final int OSTID_DEFAULT_CHECK_ACTIVATION_TIMEOUT = 0;
     public static final int OSTID_DEFAULT_EVENT_EXPIRY = 60;
-}
\ No newline at end of file
+
+    /**
+     * Default Values for the HTTP connection pool
+     */
+    public static final int OSTID_DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    public static final int OSTID_DEFAULT_MAX_CONNECTIONS_TOTAL = 100;
+    public static final int OSTID_DEFAULT_VALIDATE_AFTER_INACTIVITY_MS = 2000;
+    public static final long OSTID_DEFAULT_IDLE_CONNECTION_TIMEOUT_MS = 30000;
+    public static final int OSTID_DEFAULT_CONNECT_TIMEOUT_MS = 5000;
+    public static final int OSTID_DEFAULT_SOCKET_TIMEOUT_MS = 15000;
+    public static final int OSTID_DEFAULT_REQUEST_TIMEOUT_MS = 30000;
+    public static final int OSTID_DEFAULT_IDV_READ_TIMEOUT_MS = 60000;
+    public static final long OSTID_DEFAULT_CONNECTION_DRAIN_TIMEOUT_MS = 60000;
+
+    /**
+     * Default Values for retrying failed OneSpan calls
+     */
+    public static final int OSTID_DEFAULT_MAX_RETRIES = 2;
+    public static final int OSTID_DEFAULT_RETRY_BUDGET_MS = 10000;
+    public static final int OSTID_DEFAULT_RETRY_BASE_DELAY_MS = 100;
+    public static final int OSTID_DEFAULT_RETRY_MAX_DELAY_MS = 2000;
+
+    /**
+     * Default Values for the circuit breaker of the OneSpan tenant endpoint
+     */
+    public static final int OSTID_DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE = 20;
+    public static final int OSTID_DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS = 10;
+    public static final int OSTID_DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE = 50;
+    public static final int OSTID_DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION_MS = 30000;
+    public static final int OSTID_DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_CALLS = 3;
+
+    /**
+     * Default Values for hedging read-only OneSpan calls
+     */
+    public static final int OSTID_DEFAULT_HEDGING_PERCENTILE = 95;
+    public static final int OSTID_DEFAULT_HEDGING_MAX_RATE = 10;
+
+    /**
+     * Default Values for the TLS session cache of the OneSpan client certificate
+     */
+    public static final int OSTID_DEFAULT_TLS_SESSION_CACHE_SIZE = 256;
+    public static final int OSTID_DEFAULT_TLS_SESSION_TIMEOUT_SECONDS = 3600;
+
+    /**
+     * Default Values for the validation cache of pinned OneSpan server certificates
+     */
+    public static final long OSTID_DEFAULT_TRUST_CACHE_TTL_MS = 3600000;
+    public static final int OSTID_DEFAULT_TRUST_CACHE_SIZE = 64;
+
+    /**
+     * Default Values for routing calls across the environments of a tenant
+     */
+    public static final long OSTID_DEFAULT_REGION_PROBE_INTERVAL_MS = 30000;
+    public static final double OSTID_DEFAULT_REGION_LATENCY_WEIGHT = 0.2;
+
+    /**
+     * Prefix of CDDC data stored deflated and pre-escaped in the shared state, and the maximum size it inflates to
+     */
+    public static final String OSTID_CDDC_PACKED_PREFIX = "z1:";
+    public static final int OSTID_DEFAULT_CDDC_MAX_SIZE = 1048576;
+
+    /**
+     * Minimum size of a request body, in bytes, before it is compressed
+     */
+    public static final int OSTID_DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+
+    /**
+     * Scripts bundled with the plugin
+     */
+    public static final String OSTID_SCRIPT_JQUERY = "/js/jquery-3.5.1.min.js";
+    public static final String OSTID_SCRIPT_JSON2 = "/js/Json2.js";
+    public static final String OSTID_SCRIPT_CDDC = "/js/Vasco.IdKey.RM.CDDC.min.js";
+    public static final List<String> OSTID_BUNDLED_SCRIPTS = ImmutableList.of(OSTID_SCRIPT_JQUERY, OSTID_SCRIPT_JSON2, OSTID_SCRIPT_CDDC);
+
+    /**
+     * Number of synthetic responses parsed by the startup warm-up
+     */
+    public static final int OSTID_DEFAULT_WARM_UP_PARSE_ITERATIONS = 2000;
+
+    /**
+     * System property selecting the JSON codec of the deployment, {@code fastjson} or {@code jackson}
+     */
+    public static final String OSTID_JSON_CODEC_PROPERTY = "com.os.tid.forgerock.openam.jsonCodec";
+    public static final String OSTID_DEFAULT_JSON_CODEC = "fastjson";
+
+    /**
+     * Error record of a failed node in the shared state, its size limits, and the system property which also copies
+     * the stack trace into the shared state
+     */
+    public static final String OSTID_ERROR_RECORD = "ostid_error_record";
+    public static final int OSTID_DEFAULT_ERROR_MESSAGE_MAX_SIZE = 512;
+    public static final int OSTID_DEFAULT_ERROR_RECORD_MAX_SIZE = 1024;
+    public static final int OSTID_DEFAULT_ERROR_DIAGNOSTICS_MAX_SIZE = 16384;
+    public static final String OSTID_ERROR_DIAGNOSTICS_PROPERTY = "com.os.tid.forgerock.openam.errorDiagnostics";
+}
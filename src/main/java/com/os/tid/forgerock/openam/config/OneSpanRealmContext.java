@@ -0,0 +1,557 @@
+package com.os.tid.forgerock.openam.config;
+
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.forgerock.openam.core.realms.Realm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.iplanet.sso.SSOException;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+import com.os.tid.forgerock.openam.utils.HttpClientUtils;
+import com.os.tid.forgerock.openam.utils.SslUtils;
+import com.os.tid.forgerock.openam.utils.StringUtils;
+import com.os.tid.forgerock.openam.utils.TimeoutUtils;
+import com.sun.identity.security.AdminTokenAction;
+import com.sun.identity.sm.DNMapper;
+import com.sun.identity.sm.SMSException;
+import com.sun.identity.sm.ServiceConfigManager;
+import com.sun.identity.sm.ServiceListener;
+
+/**
+ * The OneSpan settings of a realm, resolved once per configuration: the lower-cased tenant name and custom URL, the
+ * environment, the API endpoint derived from them, the endpoints of the failover environments and the client
+ * credentials and transport settings. The context also holds the SSL context and the pooled HTTP client of the realm,
+ * which are resolved on first use.
+ * <p>
+ * Calls routed to a failover environment use the {@link #getRegionContext(String) context of that environment}, with
+ * the SSL context and pooled HTTP client of its own endpoint.
+ * <p>
+ * Contexts are cached per realm, and per configuration instance for the callers which only hold the configuration.
+ * A change of the {@link OSConfigurationsService} of a realm marks its context stale, see {@link #registerListener()},
+ * and the next call resolves a new one.
+ */
+public final class OneSpanRealmContext {
+    private static final Logger logger = LoggerFactory.getLogger("amAuth");
+    private static final String loggerPrefix = "[OneSpan Auth OneSpanRealmContext][Marketplace] ";
+    private static final String SERVICE_NAME = OSConfigurationsService.class.getSimpleName();
+
+    private static final ConcurrentMap<String, OneSpanRealmContext> realmContexts = new ConcurrentHashMap<>();
+    private static final Cache<OSConfigurationsService, OneSpanRealmContext> configContexts = CacheBuilder.newBuilder().weakKeys().build();
+    private static ServiceConfigManager configManager;
+    private static String listenerId;
+
+    private final String realm;
+    private final String tenantName;
+    private final String customUrl;
+    private final OSConfigurationsService.EnvOptions environmentOption;
+    private final String environment;
+    private final String applicationRef;
+    private final String apiEndpoint;
+    private final List<String> regionEndpoints;
+    private final Map<String, OSConfigurationsService.EnvOptions> regionEnvironments;
+    private final String privateKey;
+    private final String publicKey;
+    private final Set<String> pinnedPublicKeys;
+    private final boolean revocationCheck;
+    private final int maxConnectionsPerRoute;
+    private final int maxConnectionsTotal;
+    private final boolean http2;
+    private final int connectTimeout;
+    private final int tlsSessionCacheSize;
+    private final int tlsSessionTimeout;
+    private final String fingerprint;
+    private final String identity;
+
+    private volatile boolean stale;
+    private volatile OneSpanRealmContext previous;
+    private volatile SslUtils.CachedSSLContext sslContext;
+    private volatile HttpClientUtils.PooledHttpClient pooledClient;
+    private final ConcurrentMap<String, OneSpanRealmContext> regionContexts = new ConcurrentHashMap<>();
+
+    private OneSpanRealmContext(String realm, OSConfigurationsService serviceConfig) {
+        this.realm = realm;
+        String tenantName = serviceConfig.tenantName();
+        String customUrl = serviceConfig.customUrl();
+        this.tenantName = StringUtils.isEmpty(tenantName) ? "" : tenantName.toLowerCase();
+        this.customUrl = StringUtils.isEmpty(customUrl) ? "" : customUrl.toLowerCase();
+        this.environmentOption = serviceConfig.environment();
+        String environment = Constants.OSTID_ENV_MAP.get(environmentOption);
+        this.environment = environment == null ? "" : environment;
+        this.applicationRef = serviceConfig.applicationRef();
+        this.apiEndpoint = StringUtils.getAPIEndpoint(this.tenantName, this.environment, this.customUrl);
+        this.regionEnvironments = getRegionEnvironments(this.tenantName, environmentOption, this.apiEndpoint, serviceConfig.failoverEnvironments());
+        this.regionEndpoints = Collections.unmodifiableList(new ArrayList<>(regionEnvironments.keySet()));
+        this.privateKey = serviceConfig.privateKey();
+        this.publicKey = serviceConfig.publicKey();
+        Set<String> pinnedPublicKeys = serviceConfig.pinnedPublicKeys();
+        this.pinnedPublicKeys = pinnedPublicKeys == null ? Collections.emptySet() : Collections.unmodifiableSet(new TreeSet<>(pinnedPublicKeys));
+        this.revocationCheck = serviceConfig.revocationCheck();
+        this.maxConnectionsPerRoute = serviceConfig.maxConnectionsPerRoute() > 0 ? serviceConfig.maxConnectionsPerRoute() : Constants.OSTID_DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+        this.maxConnectionsTotal = serviceConfig.maxConnectionsTotal() > 0 ? serviceConfig.maxConnectionsTotal() : Constants.OSTID_DEFAULT_MAX_CONNECTIONS_TOTAL;
+        this.http2 = serviceConfig.transport() == OSConfigurationsService.TransportOptions.HTTP_2;
+        this.connectTimeout = TimeoutUtils.getConnectTimeout(serviceConfig);
+        this.tlsSessionCacheSize = serviceConfig.tlsSessionCacheSize() > 0 ? serviceConfig.tlsSessionCacheSize() : Constants.OSTID_DEFAULT_TLS_SESSION_CACHE_SIZE;
+        this.tlsSessionTimeout = serviceConfig.tlsSessionTimeout() > 0 ? serviceConfig.tlsSessionTimeout() : Constants.OSTID_DEFAULT_TLS_SESSION_TIMEOUT_SECONDS;
+        this.fingerprint = getFingerprint(privateKey, publicKey, environmentOption, this.pinnedPublicKeys, revocationCheck);
+        this.identity = getIdentity(fingerprint, maxConnectionsPerRoute, maxConnectionsTotal, http2, connectTimeout, tlsSessionCacheSize,
+                tlsSessionTimeout);
+    }
+
+    /**
+     * The context of a failover environment of the realm: the settings of the realm with the environment and endpoint
+     * of the failover, and therefore a fingerprint, SSL context and pooled client of its own.
+     */
+    private OneSpanRealmContext(OneSpanRealmContext primary, OSConfigurationsService.EnvOptions environmentOption, String apiEndpoint) {
+        this.realm = primary.realm;
+        this.tenantName = primary.tenantName;
+        this.customUrl = "";
+        this.environmentOption = environmentOption;
+        this.environment = Constants.OSTID_ENV_MAP.get(environmentOption);
+        this.applicationRef = primary.applicationRef;
+        this.apiEndpoint = apiEndpoint;
+        this.regionEnvironments = Collections.singletonMap(apiEndpoint, environmentOption);
+        this.regionEndpoints = Collections.singletonList(apiEndpoint);
+        this.privateKey = primary.privateKey;
+        this.publicKey = primary.publicKey;
+        this.pinnedPublicKeys = primary.pinnedPublicKeys;
+        this.revocationCheck = primary.revocationCheck;
+        this.maxConnectionsPerRoute = primary.maxConnectionsPerRoute;
+        this.maxConnectionsTotal = primary.maxConnectionsTotal;
+        this.http2 = primary.http2;
+        this.connectTimeout = primary.connectTimeout;
+        this.tlsSessionCacheSize = primary.tlsSessionCacheSize;
+        this.tlsSessionTimeout = primary.tlsSessionTimeout;
+        this.fingerprint = getFingerprint(privateKey, publicKey, environmentOption, pinnedPublicKeys, revocationCheck);
+        this.identity = getIdentity(fingerprint, maxConnectionsPerRoute, maxConnectionsTotal, http2, connectTimeout, tlsSessionCacheSize,
+                tlsSessionTimeout);
+    }
+
+    /**
+     * Returns the context of the realm, resolving it from the configuration only on the first call and after the
+     * configuration of the realm has changed.
+     */
+    public static OneSpanRealmContext of(Realm realm, OSConfigurationsService serviceConfig) {
+        String realmPath = realm == null ? null : realm.asPath();
+        return realmPath == null ? of(serviceConfig) : of(realmPath, serviceConfig);
+    }
+
+    /**
+     * Returns the context of the realm configuration. The context of a configuration which was already passed to
+     * {@link #of(Realm, OSConfigurationsService)} is the one of its realm.
+     */
+    public static OneSpanRealmContext of(OSConfigurationsService serviceConfig) {
+        OneSpanRealmContext context = configContexts.getIfPresent(serviceConfig);
+        if (context != null && !context.stale) {
+            return context;
+        }
+        if (context != null && context.realm != null) {
+            return of(context.realm, serviceConfig);
+        }
+        return resolve(configContexts.asMap(), serviceConfig, context, new OneSpanRealmContext(null, serviceConfig));
+    }
+
+    private static OneSpanRealmContext of(String realm, OSConfigurationsService serviceConfig) {
+        OneSpanRealmContext context = realmContexts.get(realm);
+        if (context == null || context.stale) {
+            context = resolve(realmContexts, realm, context, new OneSpanRealmContext(realm, serviceConfig));
+        }
+        if (configContexts.getIfPresent(serviceConfig) != context) {
+            configContexts.put(serviceConfig, context);
+        }
+        return context;
+    }
+
+    /**
+     * Installs a resolved context in place of the missing or stale one; when another thread resolved the context
+     * first, its context is returned instead. The replaced context is kept as the previous context of the realm until
+     * the resolved one has its own HTTP client, see {@link #getPooledHttpClient()}.
+     */
+    private static <K> OneSpanRealmContext resolve(ConcurrentMap<K, OneSpanRealmContext> contexts, K key, OneSpanRealmContext replaced,
+            OneSpanRealmContext resolved) {
+        boolean installed = replaced == null ? contexts.putIfAbsent(key, resolved) == null : contexts.replace(key, replaced, resolved);
+        if (!installed) {
+            OneSpanRealmContext concurrent = contexts.get(key);
+            return concurrent != null ? concurrent : resolved;
+        }
+        if (replaced != null) {
+            OneSpanRealmContext older = replaced.previous;
+            replaced.previous = null;
+            if (older != null) {
+                HttpClientUtils.release(older);
+            }
+            resolved.previous = replaced;
+        }
+        return resolved;
+    }
+
+    /**
+     * Whether a current context, i.e. one which is not stale, or one of its failover environments matches the
+     * predicate.
+     */
+    public static boolean isInUse(Predicate<OneSpanRealmContext> predicate) {
+        return Stream.concat(realmContexts.values().stream(), configContexts.asMap().values().stream())
+                .filter(context -> !context.stale)
+                .flatMap(context -> Stream.concat(Stream.of(context), context.regionContexts.values().stream()))
+                .anyMatch(predicate);
+    }
+
+    /**
+     * Listens to the changes of the OneSpan configuration, so that the context of a realm is resolved again once its
+     * configuration changed. Called when the plugin starts.
+     */
+    public static synchronized void registerListener() {
+        if (listenerId != null) {
+            return;
+        }
+        try {
+            configManager = new ServiceConfigManager(SERVICE_NAME, AccessController.doPrivileged(AdminTokenAction.getInstance()));
+            listenerId = configManager.addListener(new ConfigurationListener());
+        } catch (SMSException | SSOException e) {
+            logger.warn(loggerPrefix + "Failed to listen to configuration changes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops listening to the changes of the OneSpan configuration and drops all contexts. Called when the plugin
+     * shuts down.
+     */
+    public static synchronized void unregisterListener() {
+        if (listenerId != null) {
+            configManager.removeListener(listenerId);
+            listenerId = null;
+            configManager = null;
+        }
+        invalidateAll();
+        realmContexts.clear();
+        configContexts.invalidateAll();
+    }
+
+    /**
+     * Marks the context of the realm stale. Contexts which are not bound to a realm are marked stale as well, as
+     * there is no telling which realm their configuration belongs to.
+     */
+    static void invalidate(String realm) {
+        OneSpanRealmContext context = realm == null ? null : realmContexts.get(realm);
+        if (context != null) {
+            context.stale = true;
+        }
+        configContexts.asMap().values().stream()
+                .filter(unbound -> unbound.realm == null)
+                .forEach(unbound -> unbound.stale = true);
+        logger.debug(loggerPrefix + "Configuration of realm " + realm + " changed");
+    }
+
+    static void invalidateAll() {
+        realmContexts.values().forEach(context -> context.stale = true);
+        configContexts.asMap().values().forEach(context -> context.stale = true);
+    }
+
+    /**
+     * The realm the context was resolved for, or {@code null} if the caller only passed the configuration.
+     */
+    public String getRealm() {
+        return realm;
+    }
+
+    public String getTenantName() {
+        return tenantName;
+    }
+
+    public String getCustomUrl() {
+        return customUrl;
+    }
+
+    public OSConfigurationsService.EnvOptions getEnvironmentOption() {
+        return environmentOption;
+    }
+
+    /**
+     * The environment as it appears in the tenant host name, e.g. {@code prod.eu1}.
+     */
+    public String getEnvironment() {
+        return environment;
+    }
+
+    public String getApplicationRef() {
+        return applicationRef;
+    }
+
+    /**
+     * The base URI of the OneSpan API, either the tenant host of the environment or the custom URL.
+     */
+    public String getApiEndpoint() {
+        return apiEndpoint;
+    }
+
+    /**
+     * The API endpoint followed by the endpoints of the same tenant in the failover environments, by priority.
+     */
+    public List<String> getRegionEndpoints() {
+        return regionEndpoints;
+    }
+
+    /**
+     * Returns the context calls to one of the {@link #getRegionEndpoints() environment endpoints} of the realm are
+     * sent with: this context for its own endpoint, otherwise the context of the failover environment, which is
+     * resolved on first use.
+     */
+    public OneSpanRealmContext getRegionContext(String endpoint) {
+        OSConfigurationsService.EnvOptions failoverEnvironment = regionEnvironments.get(endpoint);
+        if (failoverEnvironment == null || endpoint.equals(apiEndpoint)) {
+            return this;
+        }
+        return regionContexts.computeIfAbsent(endpoint, key -> new OneSpanRealmContext(this, failoverEnvironment, key));
+    }
+
+    /**
+     * The contexts of the failover environments resolved so far, see {@link #getRegionContext(String)}.
+     */
+    public List<OneSpanRealmContext> getRegionContexts() {
+        return new ArrayList<>(regionContexts.values());
+    }
+
+    /**
+     * The PEM encoded private key of the ASP client certificate.
+     */
+    public String getPrivateKey() {
+        return privateKey;
+    }
+
+    /**
+     * The PEM encoded ASP client certificate chain, leaf certificate first.
+     */
+    public String getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * The pinned public keys of the tenant server certificate, sorted. Empty if the server certificate is not pinned.
+     */
+    public Set<String> getPinnedPublicKeys() {
+        return pinnedPublicKeys;
+    }
+
+    public boolean isRevocationCheck() {
+        return revocationCheck;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    /**
+     * Whether the realm sends its OneSpan traffic over HTTP/2, see {@link HttpClientUtils#isHttp2(OSConfigurationsService)}.
+     */
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    public int getTlsSessionTimeout() {
+        return tlsSessionTimeout;
+    }
+
+    /**
+     * Hash identifying the client credentials and server trust settings of the realm, so that they do not have to be
+     * kept as cache keys or compared on every call.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * The {@link #getFingerprint() fingerprint} together with the settings the pooled HTTP client is built with.
+     */
+    public String getIdentity() {
+        return identity;
+    }
+
+    /**
+     * The tenant endpoint and identity keying the pooled HTTP client of the realm.
+     */
+    public String getClientKey() {
+        return apiEndpoint + "|" + identity;
+    }
+
+    /**
+     * The SSL context holding the ASP client certificate of the realm, or {@code null} for the sandbox environment or
+     * if the key pair cannot be loaded.
+     */
+    public SSLContext getSSLContext() {
+        return getCachedSSLContext().getSslContext();
+    }
+
+    public SSLConnectionSocketFactory getSSLConnectionSocketFactory() {
+        return getCachedSSLContext().getSocketFactory();
+    }
+
+    /**
+     * The pooled HTTP client of the tenant endpoint and client credentials of the realm.
+     */
+    public CloseableHttpClient getHttpClient() {
+        return getPooledHttpClient().getHttpClient();
+    }
+
+    /**
+     * The non-blocking HTTP client sharing the client certificate and lifecycle of {@link #getHttpClient()}.
+     */
+    public HttpClient getAsyncHttpClient() {
+        return getPooledHttpClient().getAsyncHttpClient();
+    }
+
+    private SslUtils.CachedSSLContext getCachedSSLContext() {
+        SslUtils.CachedSSLContext cached = sslContext;
+        if (cached == null) {
+            synchronized (this) {
+                cached = sslContext;
+                if (cached == null) {
+                    cached = SslUtils.getCachedSSLContext(this);
+                    sslContext = cached;
+                }
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * A client which has been replaced since it was resolved is resolved again. When the realm rotated its key pair
+     * or changed its transport settings for the same endpoint, the client of the previous context keeps serving the
+     * realm while its new client is built. Once the new client is available the previous context is released.
+     */
+    private HttpClientUtils.PooledHttpClient getPooledHttpClient() {
+        HttpClientUtils.PooledHttpClient client = pooledClient;
+        if (client != null && !client.isRetired()) {
+            return client;
+        }
+        OneSpanRealmContext replaced = previous;
+        HttpClientUtils.PooledHttpClient fallback = replaced != null && replaced.apiEndpoint.equals(apiEndpoint) ? replaced.pooledClient : null;
+        client = HttpClientUtils.getPooledHttpClient(this, fallback != null && !fallback.isRetired() ? fallback : null);
+        if (client.getKey().equals(getClientKey())) {
+            pooledClient = client;
+            if (replaced != null) {
+                previous = null;
+                HttpClientUtils.release(replaced);
+            }
+        }
+        return client;
+    }
+
+    private static String getIdentity(String fingerprint, int maxConnectionsPerRoute, int maxConnectionsTotal, boolean http2, int connectTimeout,
+            int tlsSessionCacheSize, int tlsSessionTimeout) {
+        return fingerprint + "|" + maxConnectionsPerRoute + "|" + maxConnectionsTotal + "|" + http2 + "|" + connectTimeout
+                + "|" + tlsSessionCacheSize + "|" + tlsSessionTimeout;
+    }
+
+    private static String getFingerprint(String privateKey, String publicKey, OSConfigurationsService.EnvOptions environment,
+            Set<String> pinnedPublicKeys, boolean revocationCheck) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String credentials = privateKey + "|" + publicKey + "|" + environment
+                    + "|" + (pinnedPublicKeys.isEmpty() ? "" : pinnedPublicKeys + "|" + revocationCheck);
+            return Hex.encodeHexString(digest.digest(credentials.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The environment endpoints of the realm by priority, with the environment each of them belongs to. Unknown
+     * environments and priorities which are not numbers are ignored. A custom URL has no failover.
+     */
+    private static Map<String, OSConfigurationsService.EnvOptions> getRegionEnvironments(String tenantName,
+            OSConfigurationsService.EnvOptions environmentOption, String apiEndpoint, Map<String, String> failoverEnvironments) {
+        Map<String, OSConfigurationsService.EnvOptions> endpoints = new LinkedHashMap<>();
+        endpoints.put(apiEndpoint, environmentOption);
+        if (failoverEnvironments == null || environmentOption == OSConfigurationsService.EnvOptions.CUSTOMIZED) {
+            return Collections.unmodifiableMap(endpoints);
+        }
+        failoverEnvironments.entrySet().stream()
+                .filter(failover -> getPriority(failover.getValue()) >= 0)
+                .sorted(Comparator.comparingInt(failover -> getPriority(failover.getValue())))
+                .map(failover -> getEnvironment(failover.getKey()))
+                .filter(environment -> environment != null && environment != OSConfigurationsService.EnvOptions.CUSTOMIZED)
+                .forEach(environment -> endpoints.putIfAbsent(StringUtils.getAPIEndpoint(tenantName, Constants.OSTID_ENV_MAP.get(environment), ""),
+                        environment));
+        return Collections.unmodifiableMap(endpoints);
+    }
+
+    private static int getPriority(String priority) {
+        try {
+            return Integer.parseInt(priority.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            return -1;
+        }
+    }
+
+    private static OSConfigurationsService.EnvOptions getEnvironment(String name) {
+        try {
+            return OSConfigurationsService.EnvOptions.valueOf(name.trim());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Marks the context of a realm stale when its OneSpan configuration changes, and every context when the
+     * global configuration or the schema of the service changes.
+     */
+    private static class ConfigurationListener implements ServiceListener {
+
+        @Override
+        public void schemaChanged(String serviceName, String version) {
+            if (SERVICE_NAME.equals(serviceName)) {
+                invalidateAll();
+            }
+        }
+
+        @Override
+        public void globalConfigChanged(String serviceName, String version, String groupName, String serviceComponent, int type) {
+            if (SERVICE_NAME.equals(serviceName)) {
+                invalidateAll();
+            }
+        }
+
+        @Override
+        public void organizationConfigChanged(String serviceName, String version, String orgName, String groupName,
+                String serviceComponent, int type) {
+            if (SERVICE_NAME.equals(serviceName)) {
+                invalidate(DNMapper.orgNameToRealmName(orgName));
+            }
+        }
+    }
+}
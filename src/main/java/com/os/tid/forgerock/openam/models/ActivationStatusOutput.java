@@ -0,0 +1,20 @@
+package com.os.tid.forgerock.openam.models;
+
+public class ActivationStatusOutput {
+      public String activationStatus;
+
+    public ActivationStatusOutput() {
+    }
+
+    public ActivationStatusOutput(String activationStatus) {
+        this.activationStatus = activationStatus;
+    }
+
+    public String getActivationStatus() {
+        return activationStatus;
+    }
+
+    public void setActivationStatus(String activationStatus) {
+        this.activationStatus = activationStatus;
+    }
+}
@@ -0,0 +1,143 @@
+package com.os.tid.forgerock.openam.models;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+
+/**
+ * The body of the adaptive user login, event validation and risk transaction calls. Members which are not set are
+ * left out of the request.
+ */
+public class AdaptiveRequest implements JsonRequest {
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+    private String objectType;
+    private String eventType;
+    private String fidoProtocol;
+    private String authenticationResponse;
+    private String otp;
+    private String passKey;
+    private String requestID;
+    private List<String> orchestrationDelivery;
+    private Integer timeout;
+    private String clientIP;
+    private String fingerprintHash;
+    private byte[] fingerprintRaw;
+    private String relationshipRef;
+    private String sessionID;
+    private String applicationRef;
+
+    /**
+     * Adds a top-level member, such as the optional or adaptive attributes configured in a node.
+     */
+    public void putAttribute(String name, String value) {
+        attributes.put(name, value);
+    }
+
+    public void setObjectType(String objectType) {
+        this.objectType = objectType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public void setFidoAuthenticator(String fidoProtocol, String authenticationResponse) {
+        this.fidoProtocol = fidoProtocol;
+        this.authenticationResponse = authenticationResponse;
+    }
+
+    public void setOtp(String otp) {
+        this.otp = otp;
+    }
+
+    public void setPassKey(String passKey) {
+        this.passKey = passKey;
+    }
+
+    public void setRequestID(String requestID) {
+        this.requestID = requestID;
+    }
+
+    public void setOrchestrationDelivery(List<String> orchestrationDelivery) {
+        this.orchestrationDelivery = orchestrationDelivery;
+    }
+
+    public void setTimeout(Integer timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Sets the device data collected by the CDDC script. The raw fingerprint is sent as a JSON string and is given
+     * already escaped, as returned by {@link com.os.tid.forgerock.openam.utils.CDDCUtils#getEscapedJson(String)}.
+     */
+    public void setCddc(String clientIP, String fingerprintHash, byte[] fingerprintRaw) {
+        this.clientIP = clientIP;
+        this.fingerprintHash = fingerprintHash;
+        this.fingerprintRaw = fingerprintRaw;
+    }
+
+    public void setRelationshipRef(String relationshipRef) {
+        this.relationshipRef = relationshipRef;
+    }
+
+    public void setSessionID(String sessionID) {
+        this.sessionID = sessionID;
+    }
+
+    public void setApplicationRef(String applicationRef) {
+        this.applicationRef = applicationRef;
+    }
+
+    @Override
+    public void writeJson(JsonWriter writer) {
+        // the members keep the order of the bodies the nodes used to format by hand
+        writer.beginObject();
+        if (fidoProtocol != null) {
+            writer.name("fidoAuthentication").beginObject().field("fidoProtocol", fidoProtocol).endObject();
+        }
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            writer.field(attribute.getKey(), attribute.getValue());
+        }
+        if (authenticationResponse != null) {
+            writer.name("credentials").beginObject()
+                    .name("fidoAuthenticator").beginObject().field("authenticationResponse", authenticationResponse).endObject()
+                    .endObject();
+        } else if (otp != null) {
+            writer.name("credentials").beginObject()
+                    .name("authenticator").beginObject().field("OTP", otp).endObject()
+                    .endObject();
+        } else if (passKey != null) {
+            writer.name("credentials").beginObject().field("passKey", passKey).endObject();
+        }
+        writer.field("requestID", requestID);
+        if (orchestrationDelivery != null && !orchestrationDelivery.isEmpty()) {
+            writer.name("orchestrationDelivery").beginArray();
+            for (String delivery : orchestrationDelivery) {
+                writer.value(delivery);
+            }
+            writer.endArray();
+        }
+        if (timeout != null) {
+            writer.name("timeout").value(timeout);
+        }
+        writer.field("clientIP", clientIP);
+        if (fingerprintHash != null || fingerprintRaw != null) {
+            writer.name("cddc").beginObject()
+                    .name("browserCDDC").beginObject()
+                    .field("fingerprintHash", fingerprintHash);
+            if (fingerprintRaw != null) {
+                writer.name("fingerprintRaw").rawString(fingerprintRaw);
+            }
+            writer.endObject()
+                    .endObject();
+        }
+        writer.field("relationshipRef", relationshipRef)
+                .field("sessionID", sessionID)
+                .field("applicationRef", applicationRef)
+                .field("objectType", objectType)
+                .field("eventType", eventType);
+        writer.endObject();
+    }
+}
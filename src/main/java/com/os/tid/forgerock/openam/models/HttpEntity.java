@@ -4,19 +4,35 @@ import com.alibaba.fastjson.JSONObject;
 
 public class HttpEntity {
     private JSONObject responseJSON;
+    private Object responseObject;
     private int httpStatus;
     private String log_correlation_id;
 
     public HttpEntity(JSONObject responseJSON, int httpStatus, String log_correlation_id) {
+        this(responseJSON, null, httpStatus, log_correlation_id);
+    }
+
+    public HttpEntity(JSONObject responseJSON, Object responseObject, int httpStatus, String log_correlation_id) {
         this.responseJSON = responseJSON;
+        this.responseObject = responseObject;
         this.httpStatus = httpStatus;
         this.log_correlation_id = log_correlation_id;
     }
 
+    /**
+     * The response body as a JSON tree. For calls which requested a response model, this is only set for error responses.
+     */
     public JSONObject getResponseJSON() {
         return responseJSON;
     }
 
+    /**
+     * The successful response body, decoded directly into the model requested by the caller.
+     */
+    public <T> T getResponseObject(Class<T> responseType) {
+        return responseType.cast(responseObject);
+    }
+
     public int getHttpStatus() {
         return httpStatus;
     }
@@ -29,6 +45,10 @@ public class HttpEntity {
         this.responseJSON = responseJSON;
     }
 
+    public void setResponseObject(Object responseObject) {
+        this.responseObject = responseObject;
+    }
+
     public void setHttpStatus(int httpStatus) {
         this.httpStatus = httpStatus;
     }
@@ -0,0 +1,10 @@
+package com.os.tid.forgerock.openam.models;
+
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+
+/**
+ * A OneSpan request body which writes itself, see {@link JsonWriter#toJSONBytes(JsonRequest)}.
+ */
+public interface JsonRequest {
+    void writeJson(JsonWriter writer);
+}
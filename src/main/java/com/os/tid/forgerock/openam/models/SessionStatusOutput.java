@@ -0,0 +1,20 @@
+package com.os.tid.forgerock.openam.models;
+
+public class SessionStatusOutput {
+      public String sessionStatus;
+
+    public SessionStatusOutput() {
+    }
+
+    public SessionStatusOutput(String sessionStatus) {
+        this.sessionStatus = sessionStatus;
+    }
+
+    public String getSessionStatus() {
+        return sessionStatus;
+    }
+
+    public void setSessionStatus(String sessionStatus) {
+        this.sessionStatus = sessionStatus;
+    }
+}
@@ -0,0 +1,156 @@
+package com.os.tid.forgerock.openam.models;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+
+/**
+ * The body of the adaptive transaction validation call: the data to sign in one of its four forms, followed by the
+ * adaptive attributes of the transaction. Members which are not set are left out of the request.
+ */
+public class TransactionRequest implements JsonRequest {
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+    private String objectType;
+    private JsonRequest dataToSign;
+    private List<String> orchestrationDelivery;
+    private Integer timeout;
+    private String clientIP;
+    private String fingerprintHash;
+    private byte[] fingerprintRaw;
+    private String relationshipRef;
+    private String sessionID;
+    private String applicationRef;
+
+    /**
+     * Adds a top-level member, such as the adaptive attributes configured in the node.
+     */
+    public void putAttribute(String name, String value) {
+        attributes.put(name, value);
+    }
+
+    public void setObjectType(String objectType) {
+        this.objectType = objectType;
+    }
+
+    /**
+     * Signs the transaction with a FIDO authentication response.
+     *
+     * @param requestID the ID of the FIDO2 authentication request, or {@code null} for the other FIDO protocols
+     */
+    public void setFidoData(String fidoProtocol, String authenticationResponse, String requestID) {
+        dataToSign = writer -> writer.name("fido").beginObject()
+                .field("requestID", requestID)
+                .field("fidoProtocol", fidoProtocol)
+                .field("authenticationResponse", authenticationResponse)
+                .endObject();
+    }
+
+    public void setStandardData(List<String> dataFields, String signature) {
+        dataToSign = writer -> {
+            writer.name("standard").beginObject()
+                    .name("dataFields").beginArray();
+            for (String dataField : dataFields) {
+                writer.value(dataField);
+            }
+            writer.endArray()
+                    .field("signature", signature)
+                    .endObject();
+        };
+    }
+
+    public void setSecureChannelData(String requestID, String signature) {
+        dataToSign = writer -> writer.name("secureChannel").beginObject()
+                .field("requestID", requestID)
+                .field("signature", signature)
+                .endObject();
+    }
+
+    /**
+     * Signs the transaction with the key and value pairs shown to the user, in the order of the map.
+     */
+    public void setTransactionMessageData(Map<String, String> dataFields) {
+        dataToSign = writer -> {
+            writer.name("transactionMessage").beginObject()
+                    .name("dataFields").beginArray();
+            for (Map.Entry<String, String> dataField : dataFields.entrySet()) {
+                writer.beginObject()
+                        .name("key").beginObject().field("text", dataField.getKey()).endObject()
+                        .name("value").beginObject().field("text", dataField.getValue()).endObject()
+                        .endObject();
+            }
+            writer.endArray()
+                    .endObject();
+        };
+    }
+
+    public void setOrchestrationDelivery(List<String> orchestrationDelivery) {
+        this.orchestrationDelivery = orchestrationDelivery;
+    }
+
+    public void setTimeout(Integer timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Sets the device data collected by the CDDC script, see {@link AdaptiveRequest#setCddc(String, String, byte[])}.
+     */
+    public void setCddc(String clientIP, String fingerprintHash, byte[] fingerprintRaw) {
+        this.clientIP = clientIP;
+        this.fingerprintHash = fingerprintHash;
+        this.fingerprintRaw = fingerprintRaw;
+    }
+
+    public void setRelationshipRef(String relationshipRef) {
+        this.relationshipRef = relationshipRef;
+    }
+
+    public void setSessionID(String sessionID) {
+        this.sessionID = sessionID;
+    }
+
+    public void setApplicationRef(String applicationRef) {
+        this.applicationRef = applicationRef;
+    }
+
+    @Override
+    public void writeJson(JsonWriter writer) {
+        // the members keep the order of the body the node used to format by hand
+        writer.beginObject();
+        if (dataToSign != null) {
+            writer.name("data").beginObject();
+            dataToSign.writeJson(writer);
+            writer.endObject();
+        }
+        if (orchestrationDelivery != null && !orchestrationDelivery.isEmpty()) {
+            writer.name("orchestrationDelivery").beginArray();
+            for (String delivery : orchestrationDelivery) {
+                writer.value(delivery);
+            }
+            writer.endArray();
+        }
+        if (timeout != null) {
+            writer.name("timeout").value(timeout);
+        }
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            writer.field(attribute.getKey(), attribute.getValue());
+        }
+        writer.field("clientIP", clientIP);
+        if (fingerprintHash != null || fingerprintRaw != null) {
+            writer.name("cddc").beginObject()
+                    .name("browserCDDC").beginObject()
+                    .field("fingerprintHash", fingerprintHash);
+            if (fingerprintRaw != null) {
+                writer.name("fingerprintRaw").rawString(fingerprintRaw);
+            }
+            writer.endObject()
+                    .endObject();
+        }
+        writer.field("relationshipRef", relationshipRef)
+                .field("sessionID", sessionID)
+                .field("applicationRef", applicationRef)
+                .field("objectType", objectType);
+        writer.endObject();
+    }
+}
@@ -0,0 +1,89 @@
+package com.os.tid.forgerock.openam.models;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+
+/**
+ * The body of the user register and unregister calls. Members which are not set are left out of the request.
+ */
+public class UserRegisterRequest implements JsonRequest {
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+    private String objectType;
+    private String userID;
+    private String activationType;
+    private String clientIP;
+    private String fingerprintHash;
+    private byte[] fingerprintRaw;
+    private String relationshipRef;
+    private String sessionID;
+    private String applicationRef;
+
+    /**
+     * Adds a top-level member, such as the optional attributes configured in the node.
+     */
+    public void putAttribute(String name, String value) {
+        attributes.put(name, value);
+    }
+
+    public void setObjectType(String objectType) {
+        this.objectType = objectType;
+    }
+
+    public void setUserID(String userID) {
+        this.userID = userID;
+    }
+
+    public void setActivationType(String activationType) {
+        this.activationType = activationType;
+    }
+
+    /**
+     * Sets the device data collected by the CDDC script, see {@link AdaptiveRequest#setCddc(String, String, byte[])}.
+     */
+    public void setCddc(String clientIP, String fingerprintHash, byte[] fingerprintRaw) {
+        this.clientIP = clientIP;
+        this.fingerprintHash = fingerprintHash;
+        this.fingerprintRaw = fingerprintRaw;
+    }
+
+    public void setRelationshipRef(String relationshipRef) {
+        this.relationshipRef = relationshipRef;
+    }
+
+    public void setSessionID(String sessionID) {
+        this.sessionID = sessionID;
+    }
+
+    public void setApplicationRef(String applicationRef) {
+        this.applicationRef = applicationRef;
+    }
+
+    @Override
+    public void writeJson(JsonWriter writer) {
+        // the members keep the order of the body the node used to format by hand
+        writer.beginObject()
+                .field("applicationRef", applicationRef)
+                .field("sessionID", sessionID)
+                .field("relationshipRef", relationshipRef)
+                .field("activationType", activationType);
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            writer.field(attribute.getKey(), attribute.getValue());
+        }
+        writer.field("objectType", objectType)
+                .field("userID", userID)
+                .field("clientIP", clientIP);
+        if (fingerprintHash != null || fingerprintRaw != null) {
+            writer.name("cddc").beginObject()
+                    .name("browserCDDC").beginObject()
+                    .field("fingerprintHash", fingerprintHash);
+            if (fingerprintRaw != null) {
+                writer.name("fingerprintRaw").rawString(fingerprintRaw);
+            }
+            writer.endObject()
+                    .endObject();
+        }
+        writer.endObject();
+    }
+}
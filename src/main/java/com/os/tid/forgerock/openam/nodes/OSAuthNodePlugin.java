@@ -20,14 +20,21 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import javax.inject.Inject;
+
 import org.forgerock.openam.auth.node.api.AbstractNodeAmPlugin;
 import org.forgerock.openam.auth.node.api.Node;
 import org.forgerock.openam.plugins.PluginException;
 import org.forgerock.openam.plugins.StartupType;
+import org.forgerock.openam.sm.AnnotatedServiceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
+import com.os.tid.forgerock.openam.utils.HttpClientUtils;
+import com.os.tid.forgerock.openam.utils.OneSpanMetrics;
+import com.os.tid.forgerock.openam.utils.WarmUpUtils;
 
 
 /**
@@ -66,6 +73,7 @@ public class OSAuthNodePlugin extends AbstractNodeAmPlugin {
 	static final String logAppender = "[Version: " + currentVersion + "][Marketplace] ";
     private final Logger logger = LoggerFactory.getLogger(OSAuthNodePlugin.class);
 	private String loggerPrefix = "[OSAuthNodePlugin]" + OSAuthNodePlugin.logAppender;
+	private AnnotatedServiceRegistry serviceRegistry;
 
 
 	private final List<Class<? extends Node>> nodeList = ImmutableList.of(
@@ -107,6 +115,11 @@ public class OSAuthNodePlugin extends AbstractNodeAmPlugin {
 
 //	private final Class serviceClass = OSConfigurationsService.class;
 
+	@Inject
+	public void setServiceRegistry(AnnotatedServiceRegistry serviceRegistry) {
+		this.serviceRegistry = serviceRegistry;
+	}
+
     /** 
      * Specify the Map of list of node classes that the plugin is providing. These will then be installed and
      *  registered at the appropriate times in plugin lifecycle.
@@ -136,8 +149,7 @@ public class OSAuthNodePlugin extends AbstractNodeAmPlugin {
 	 * {@link #onInstall()}, {@link #onAmUpgrade(String, String)} and
 	 * {@link #upgrade(String)} have been called (if relevant).
 	 *
-	 * No need to implement this unless your AuthNode has specific requirements on
-	 * startup.
+	 * Starts listening to the changes of the OneSpan configuration, and the warm-up of the realms which enable it.
 	 *
 	 * @param startupType The type of startup that is taking place.
 	 */
@@ -145,9 +157,27 @@ public class OSAuthNodePlugin extends AbstractNodeAmPlugin {
 	public void onStartup(StartupType startupType) throws PluginException {
         logger.info(loggerPrefix + "Starting OSConfigurationsService");
 		pluginTools.startService(OSConfigurationsService.class);
+		OneSpanMetrics.register();
+		OneSpanRealmContext.registerListener();
+		if (serviceRegistry != null) {
+			WarmUpUtils.start(serviceRegistry);
+		}
 		super.onStartup(startupType);
 	}
 
+	/**
+	 * Handle plugin shutdown. Closes the pooled HTTP clients shared by the nodes, together with their connections
+	 * to the OneSpan tenant endpoints, stops listening to configuration changes and unregisters the metrics MBean.
+	 */
+	@Override
+	public void onShutdown() {
+        logger.info(loggerPrefix + "Closing pooled HTTP clients");
+		HttpClientUtils.shutdown();
+		OneSpanRealmContext.unregisterListener();
+		OneSpanMetrics.unregister();
+		super.onShutdown();
+	}
+
 
 
 	/**
@@ -15,9 +15,15 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
 import org.forgerock.openam.annotations.sm.Attribute;
 import org.forgerock.openam.annotations.sm.Config;
 
+import com.os.tid.forgerock.openam.config.Constants;
+
 /**
  * Common Configurations for the OneSpan Auth Tree Nodes.
  */
@@ -42,6 +48,78 @@ public interface OSConfigurationsService {
     @Attribute(order = 6)
     default String privateKey(){ return ""; };
 
+    @Attribute(order = 7)
+    default int maxConnectionsPerRoute(){ return Constants.OSTID_DEFAULT_MAX_CONNECTIONS_PER_ROUTE; };
+
+    @Attribute(order = 8)
+    default int maxConnectionsTotal(){ return Constants.OSTID_DEFAULT_MAX_CONNECTIONS_TOTAL; };
+
+    @Attribute(order = 9)
+    default TransportOptions transport(){ return TransportOptions.HTTP_1_1; };
+
+    @Attribute(order = 10)
+    default int connectTimeout(){ return Constants.OSTID_DEFAULT_CONNECT_TIMEOUT_MS; };
+
+    @Attribute(order = 11)
+    default int socketTimeout(){ return Constants.OSTID_DEFAULT_SOCKET_TIMEOUT_MS; };
+
+    @Attribute(order = 12)
+    default int requestTimeout(){ return Constants.OSTID_DEFAULT_REQUEST_TIMEOUT_MS; };
+
+    @Attribute(order = 13)
+    default Map<String, String> endpointTimeouts(){ return Collections.emptyMap(); };
+
+    @Attribute(order = 14)
+    default int maxRetries(){ return Constants.OSTID_DEFAULT_MAX_RETRIES; };
+
+    @Attribute(order = 15)
+    default int retryBudget(){ return Constants.OSTID_DEFAULT_RETRY_BUDGET_MS; };
+
+    @Attribute(order = 16)
+    default boolean circuitBreakerEnabled(){ return false; };
+
+    @Attribute(order = 17)
+    default int circuitBreakerFailureRate(){ return Constants.OSTID_DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE; };
+
+    @Attribute(order = 18)
+    default int circuitBreakerWindowSize(){ return Constants.OSTID_DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE; };
+
+    @Attribute(order = 19)
+    default int circuitBreakerOpenDuration(){ return Constants.OSTID_DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION_MS; };
+
+    @Attribute(order = 20)
+    default boolean hedgingEnabled(){ return false; };
+
+    @Attribute(order = 21)
+    default int hedgingPercentile(){ return Constants.OSTID_DEFAULT_HEDGING_PERCENTILE; };
+
+    @Attribute(order = 22)
+    default int hedgingMaxRate(){ return Constants.OSTID_DEFAULT_HEDGING_MAX_RATE; };
+
+    @Attribute(order = 23)
+    default boolean requestCompression(){ return false; };
+
+    @Attribute(order = 24)
+    default boolean warmUpOnStartup(){ return false; };
+
+    @Attribute(order = 25)
+    default int tlsSessionCacheSize(){ return Constants.OSTID_DEFAULT_TLS_SESSION_CACHE_SIZE; };
+
+    @Attribute(order = 26)
+    default int tlsSessionTimeout(){ return Constants.OSTID_DEFAULT_TLS_SESSION_TIMEOUT_SECONDS; };
+
+    @Attribute(order = 27)
+    default Set<String> pinnedPublicKeys(){ return Collections.emptySet(); };
+
+    @Attribute(order = 28)
+    default boolean revocationCheck(){ return false; };
+
+    @Attribute(order = 29)
+    default Map<String, String> failoverEnvironments(){ return Collections.emptyMap(); };
+
+    @Attribute(order = 30)
+    default boolean latencyRouting(){ return false; };
+
     
     public enum EnvOptions {
         sdb,
@@ -56,6 +134,11 @@ public interface OSConfigurationsService {
         UAT_EU1,
     	CUSTOMIZED;
     }
+
+    public enum TransportOptions {
+        HTTP_1_1,
+        HTTP_2;
+    }
     
 }
 
@@ -15,7 +15,6 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
-import java.util.Date;
 import java.util.List;
 import java.util.Objects;
 import java.util.ResourceBundle;
@@ -24,6 +23,7 @@ import java.util.stream.Stream;
 import javax.security.auth.callback.Callback;
 
 import org.forgerock.json.JsonValue;
+import org.forgerock.openam.annotations.sm.Attribute;
 import org.forgerock.openam.auth.node.api.Action;
 import org.forgerock.openam.auth.node.api.Node;
 import org.forgerock.openam.auth.node.api.NodeProcessException;
@@ -36,7 +36,6 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
@@ -44,10 +43,12 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
 import com.os.tid.forgerock.openam.models.HttpEntity;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.authentication.callbacks.ScriptTextOutputCallback;
 import com.sun.identity.sm.SMSException;
@@ -62,17 +63,28 @@ import com.sun.identity.sm.SMSException;
 public class OS_Auth_ActivateDeviceNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Auth_ActivateDeviceNode.class);
     private static final String BUNDLE = "com/os/tid/forgerock/openam/nodes/OS_Auth_ActivateDeviceNode";
+    private final Config config;
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Auth Activate Device]" + OSAuthNodePlugin.logAppender;
 
     /**
      * Configuration for the OS Auth Add Device Node.
      */
     public interface Config {
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 100)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
-    public OS_Auth_ActivateDeviceNode(@Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
+    public OS_Auth_ActivateDeviceNode(@Assisted Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
+        this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -87,9 +99,7 @@ public class OS_Auth_ActivateDeviceNode implements Node {
 
             JsonValue sharedState = context.sharedState;
 	       
-	        String tenantName = StringUtils.isEmpty(serviceConfig.tenantName())? "" : serviceConfig.tenantName().toLowerCase();
-	        String customUrl = StringUtils.isEmpty(serviceConfig.customUrl())? "" : serviceConfig.customUrl().toLowerCase();
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	
 	        JsonValue registration_id = sharedState.get(Constants.OSTID_REGISTRATION_ID);
 	        JsonValue signature = sharedState.get(Constants.OSTID_SIGNATURE);
@@ -106,8 +116,8 @@ public class OS_Auth_ActivateDeviceNode implements Node {
 	            );
 
                 
-                String url = StringUtils.getAPIEndpoint(tenantName,environment, customUrl) + String.format(Constants.OSTID_API_ADAPTIVE_ACTIVATE_DEVICE,registration_id.asString());
-                HttpEntity httpEntity = RestUtils.doPostJSON(url, activateDeviceJSON,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+                String url = Constants.OSTID_API_ADAPTIVE_ACTIVATE_DEVICE_TEMPLATE.resolve(realmContext.getApiEndpoint(), registration_id.asString());
+                HttpEntity httpEntity = RestUtils.doPostJSON(url, activateDeviceJSON, serviceConfig);
                 JSONObject responseJSON = httpEntity.getResponseJSON();
                 if(httpEntity.isSuccess()) {
                     return goTo(OSTIDActivateDeviceOutcome.success).replaceSharedState(sharedState).build();
@@ -119,7 +129,7 @@ public class OS_Auth_ActivateDeviceNode implements Node {
                     String log_correction_id = httpEntity.getLog_correlation_id();
 
                     if(Stream.of(message, error, log_correction_id).anyMatch(Objects::isNull)){
-                        throw new NodeProcessException(JSON.toJSONString(responseJSON));
+                        throw new NodeProcessException(JsonUtils.toJSONString(responseJSON));
                     }else {
                         JSONArray validationErrors = responseJSON.getJSONArray("validationErrors");
                         if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -133,12 +143,8 @@ public class OS_Auth_ActivateDeviceNode implements Node {
                 }
 	        }
     	}catch (Exception ex) {			
-			String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_ActivateDeviceNode Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan OCA Activate Device process: " + ex.getMessage());
-			return Action.goTo(OSTIDActivateDeviceOutcome.error.name()).build();
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_ActivateDeviceNode", "OneSpan OCA Activate Device process: ", ex,
+					config.unavailableOutcomeEnabled(), OSTIDActivateDeviceOutcome.error.name(), OSTIDActivateDeviceOutcome.unavailable.name());
 	    }
 
         
@@ -166,7 +172,8 @@ public class OS_Auth_ActivateDeviceNode implements Node {
 
     public enum OSTIDActivateDeviceOutcome{
         success,
-        error
+        error,
+        unavailable
     }
 
     /**
@@ -177,9 +184,10 @@ public class OS_Auth_ActivateDeviceNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_ActivateDeviceNode.BUNDLE,
                     OSTIDActivateDeviceOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(OSTIDActivateDeviceOutcome.success.name(), bundle.getString("successOutcome")),
                     new Outcome(OSTIDActivateDeviceOutcome.error.name(), bundle.getString("errorOutcome")));
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, OSTIDActivateDeviceOutcome.unavailable.name()).build();
         }
     }
 }
@@ -15,13 +15,13 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
-import java.util.Date;
 import java.util.List;
 import java.util.Objects;
 import java.util.ResourceBundle;
 import java.util.stream.Stream;
 
 import org.forgerock.json.JsonValue;
+import org.forgerock.openam.annotations.sm.Attribute;
 import org.forgerock.openam.auth.node.api.Action;
 import org.forgerock.openam.auth.node.api.Node;
 import org.forgerock.openam.auth.node.api.NodeProcessException;
@@ -34,7 +34,6 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
@@ -42,11 +41,13 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
 import com.os.tid.forgerock.openam.models.AddDeviceOutput;
 import com.os.tid.forgerock.openam.models.HttpEntity;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.SMSException;
 
@@ -60,17 +61,28 @@ import com.sun.identity.sm.SMSException;
 public class OS_Auth_AddDeviceNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Auth_AddDeviceNode.class);
     private static final String BUNDLE = "com/os/tid/forgerock/openam/nodes/OS_Auth_AddDeviceNode";
+    private final Config config;
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Auth Add Device]" + OSAuthNodePlugin.logAppender;;
 
     /**
      * Configuration for the OS Auth Add Device Node.
      */
     public interface Config {
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 100)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
-    public OS_Auth_AddDeviceNode(@Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
+    public OS_Auth_AddDeviceNode(@Assisted Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
+        this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -83,9 +95,7 @@ public class OS_Auth_AddDeviceNode implements Node {
     	try {
 	        logger.debug(loggerPrefix + "OS_Auth_AddDeviceNode started");
 	        
-	        String tenantName = StringUtils.isEmpty(serviceConfig.tenantName())? "" : serviceConfig.tenantName().toLowerCase();
-	        String customUrl = StringUtils.isEmpty(serviceConfig.customUrl())? "" : serviceConfig.customUrl().toLowerCase();
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 			JsonValue sharedState = context.sharedState;
 
 	        JsonValue registration_id = sharedState.get(Constants.OSTID_REGISTRATION_ID);
@@ -101,11 +111,11 @@ public class OS_Auth_AddDeviceNode implements Node {
 	                    device_code.asString()                                //param1
 	            );
 
-	            String url = StringUtils.getAPIEndpoint(tenantName,environment, customUrl) + String.format(Constants.OSTID_API_ADAPTIVE_ADD_DEVICE,registration_id.asString());
-	            HttpEntity httpEntity = RestUtils.doPostJSON(url, deviceCodeJSON,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+	            String url = Constants.OSTID_API_ADAPTIVE_ADD_DEVICE_TEMPLATE.resolve(realmContext.getApiEndpoint(), registration_id.asString());
+	            HttpEntity httpEntity = RestUtils.doPostJSON(url, deviceCodeJSON, serviceConfig, AddDeviceOutput.class);
 	            JSONObject responseJSON = httpEntity.getResponseJSON();
 	            if(httpEntity.isSuccess()) {
-	                AddDeviceOutput addDeviceOutput = JSON.toJavaObject(responseJSON, AddDeviceOutput.class);
+	                AddDeviceOutput addDeviceOutput = httpEntity.getResponseObject(AddDeviceOutput.class);
 	                sharedState.put(Constants.OSTID_CRONTO_MSG, addDeviceOutput.getActivationMessage2());
 	                sharedState.put(Constants.OSTID_ACTIVATION_MESSAGE2, addDeviceOutput.getActivationMessage2());
 	
@@ -118,7 +128,7 @@ public class OS_Auth_AddDeviceNode implements Node {
 	                String log_correction_id = httpEntity.getLog_correlation_id();
 	
 	                if(Stream.of(message, error, log_correction_id).anyMatch(Objects::isNull)){
-	                    throw new NodeProcessException(JSON.toJSONString(responseJSON));
+	                    throw new NodeProcessException(JsonUtils.toJSONString(responseJSON));
 	                }else {
 	                    JSONArray validationErrors = responseJSON.getJSONArray("validationErrors");
 	                    if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -132,12 +142,8 @@ public class OS_Auth_AddDeviceNode implements Node {
 	            }
 	        }
     	}catch (Exception ex) {
-    		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_AddDeviceNode Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan OCA Add Device process: " + ex.getMessage());
-			return goTo(AddDeviceOutcome.error).build();
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_AddDeviceNode", "OneSpan OCA Add Device process: ", ex,
+					config.unavailableOutcomeEnabled(), AddDeviceOutcome.error.name(), AddDeviceOutcome.unavailable.name());
 	    }
     }
 
@@ -147,7 +153,8 @@ public class OS_Auth_AddDeviceNode implements Node {
 
     public enum AddDeviceOutcome{
         success,
-        error
+        error,
+        unavailable
     }
 
     /**
@@ -158,9 +165,10 @@ public class OS_Auth_AddDeviceNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_AddDeviceNode.BUNDLE,
                     OSTIDAddDeviceOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(AddDeviceOutcome.success.name(), bundle.getString("successOutcome")),
                     new Outcome(AddDeviceOutcome.error.name(), bundle.getString("errorOutcome")));
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, AddDeviceOutcome.unavailable.name()).build();
         }
     }
     
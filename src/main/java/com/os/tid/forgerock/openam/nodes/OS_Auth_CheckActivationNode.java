@@ -15,11 +15,11 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
-import java.util.Date;
 import java.util.List;
 import java.util.ResourceBundle;
 
 import org.forgerock.json.JsonValue;
+import org.forgerock.openam.annotations.sm.Attribute;
 import org.forgerock.openam.auth.node.api.Action;
 import org.forgerock.openam.auth.node.api.Node;
 import org.forgerock.openam.auth.node.api.NodeProcessException;
@@ -32,18 +32,19 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
+import com.os.tid.forgerock.openam.models.ActivationStatusOutput;
 import com.os.tid.forgerock.openam.models.HttpEntity;
 import com.os.tid.forgerock.openam.utils.DateUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
-import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.SMSException;
 
 /**
@@ -56,17 +57,28 @@ import com.sun.identity.sm.SMSException;
 public class OS_Auth_CheckActivationNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Auth_CheckActivationNode.class);
     private static final String BUNDLE = "com/os/tid/forgerock/openam/nodes/OS_Auth_CheckActivationNode";
+    private final Config config;
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Auth Check Activation]" + OSAuthNodePlugin.logAppender;
 
     /**
      * Configuration for the OS Auth Check Activate Node.
      */
     public interface Config {
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 100)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
-    public OS_Auth_CheckActivationNode(@Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
+    public OS_Auth_CheckActivationNode(@Assisted Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
+        this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -80,10 +92,8 @@ public class OS_Auth_CheckActivationNode implements Node {
 	        logger.debug(loggerPrefix + "OS_Auth_CheckActivationNode started");
 	        JsonValue sharedState = context.sharedState;
 
-	        String tenantName = StringUtils.isEmpty(serviceConfig.tenantName())? "" : serviceConfig.tenantName().toLowerCase();
-	        String customUrl = StringUtils.isEmpty(serviceConfig.customUrl())? "" : serviceConfig.customUrl().toLowerCase();      
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	        
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
 	
 	        //1. go to next
 	        JsonValue ostid_cronto_status = sharedState.get(Constants.OSTID_CRONTO_STATUS);
@@ -107,15 +117,18 @@ public class OS_Auth_CheckActivationNode implements Node {
 	                    usernameJsonValue.asString(),                            //param1
 	                    Constants.OSTID_DEFAULT_CHECK_ACTIVATION_TIMEOUT         //param2
 	            );
-                HttpEntity httpEntity = RestUtils.doPostJSON(StringUtils.getAPIEndpoint(tenantName,environment, customUrl) + Constants.OSTID_API_CHECK_ACTIVATION, checkActivationJSON,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
-                JSONObject checkActivationResponseJSON = httpEntity.getResponseJSON();
+                HttpEntity httpEntity = RestUtils.doPostJSON(realmContext.getApiEndpoint() + Constants.OSTID_API_CHECK_ACTIVATION, checkActivationJSON, serviceConfig, ActivationStatusOutput.class);
                 if(httpEntity.isSuccess()){
-                    String activationStatus = checkActivationResponseJSON.getString(Constants.OSTID_RESPONSE_CHECK_ACTIVATION_STATUS);
-                    activationStatusEnum = ActivationStatusOutcome.valueOf(activationStatus);
+                    ActivationStatusOutput activationStatusOutput = httpEntity.getResponseObject(ActivationStatusOutput.class);
+                    if(activationStatusOutput == null || activationStatusOutput.getActivationStatus() == null){
+                        throw new NodeProcessException("Fail to parse response: activation status is missing");
+                    }
+                    activationStatusEnum = ActivationStatusOutcome.valueOf(activationStatusOutput.getActivationStatus());
                 }else{
+                    JSONObject checkActivationResponseJSON = httpEntity.getResponseJSON();
                     String message = checkActivationResponseJSON.getString("message");
                     if(message == null){
-                        throw new NodeProcessException("Fail to parse response: " + JSON.toJSONString(checkActivationResponseJSON));
+                        throw new NodeProcessException("Fail to parse response: " + JsonUtils.toJSONString(checkActivationResponseJSON));
                     }else {
                         throw new NodeProcessException(message);
                     }
@@ -137,12 +150,8 @@ public class OS_Auth_CheckActivationNode implements Node {
 	                return goTo(ActivationStatusOutcome.pending).replaceSharedState(sharedState).build();
 	        }
     	}catch (Exception ex) {
-    		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_CheckActivationNode Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan Auth Check Activation: " + ex.getMessage());
-			return goTo(ActivationStatusOutcome.error).build();	
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_CheckActivationNode", "OneSpan Auth Check Activation: ", ex,
+					config.unavailableOutcomeEnabled(), ActivationStatusOutcome.error.name(), ActivationStatusOutcome.unavailable.name());
 	    }
     }
 
@@ -155,7 +164,8 @@ public class OS_Auth_CheckActivationNode implements Node {
         activated,
         timeout,
         unknown,
-        error
+        error,
+        unavailable
     }
 
     /**
@@ -166,12 +176,13 @@ public class OS_Auth_CheckActivationNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_CheckActivationNode.BUNDLE,
                     OSTIDCheckActivateOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(ActivationStatusOutcome.pending.name(), bundle.getString("pendingOutcome")),
                     new Outcome(ActivationStatusOutcome.activated.name(), bundle.getString("activatedOutcome")),
                     new Outcome(ActivationStatusOutcome.timeout.name(), bundle.getString("timeoutOutcome")),
                     new Outcome(ActivationStatusOutcome.unknown.name(), bundle.getString("unknownOutcome")),
                     new Outcome(ActivationStatusOutcome.error.name(), bundle.getString("errorOutcome")));
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, ActivationStatusOutcome.unavailable.name()).build();
         }
     }
 }
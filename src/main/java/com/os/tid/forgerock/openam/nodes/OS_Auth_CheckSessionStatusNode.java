@@ -15,11 +15,11 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
-import java.util.Date;
 import java.util.List;
 import java.util.ResourceBundle;
 
 import org.forgerock.json.JsonValue;
+import org.forgerock.openam.annotations.sm.Attribute;
 import org.forgerock.openam.auth.node.api.Action;
 import org.forgerock.openam.auth.node.api.Node;
 import org.forgerock.openam.auth.node.api.NodeProcessException;
@@ -32,18 +32,19 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
 import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.models.SessionStatusOutput;
 import com.os.tid.forgerock.openam.utils.DateUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
-import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.SMSException;
 
 /**
@@ -56,17 +57,28 @@ import com.sun.identity.sm.SMSException;
 public class OS_Auth_CheckSessionStatusNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Auth_CheckSessionStatusNode.class);
     private static final String BUNDLE = "com/os/tid/forgerock/openam/nodes/OS_Auth_CheckSessionStatusNode";
+    private final Config config;
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Auth Check Session Status]" + OSAuthNodePlugin.logAppender;
 
     /**
      * Configuration for the OS Auth Check Session Status Node.
      */
     public interface Config {
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 100)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
-    public OS_Auth_CheckSessionStatusNode(@Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
+    public OS_Auth_CheckSessionStatusNode(@Assisted Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
+        this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -80,9 +92,7 @@ public class OS_Auth_CheckSessionStatusNode implements Node {
 	        logger.debug(loggerPrefix + "OS_Auth_CheckSessionStatusNode started");
             JsonValue sharedState = context.sharedState;
             
-	        String tenantName = StringUtils.isEmpty(serviceConfig.tenantName())? "" : serviceConfig.tenantName().toLowerCase();
-	        String customUrl = StringUtils.isEmpty(serviceConfig.customUrl())? "" : serviceConfig.customUrl().toLowerCase();       
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	
 	        JsonValue eventExpiryJsonValue = sharedState.get(Constants.OSTID_EVENT_EXPIRY_DATE);
 	        JsonValue requestIdJsonValue =  sharedState.get(Constants.OSTID_REQUEST_ID);
@@ -93,15 +103,18 @@ public class OS_Auth_CheckSessionStatusNode implements Node {
 	            sharedState.put(Constants.OSTID_ERROR_MESSAGE,"OneSpan Auth Check Session Status: Your session has timed out!");
 	            checkSessionStatusEnum = CheckSessionStatusOutcome.timeout;
 	        }else {
-                HttpEntity httpEntity = RestUtils.doGet(StringUtils.getAPIEndpoint(tenantName,environment, customUrl) + String.format(Constants.OSTID_API_CHECK_SESSION_STATUS,requestIdJsonValue.asString()),SslUtils.getSSLConnectionSocketFactory(serviceConfig));
-                JSONObject checkSessionStatusResponseJSON = httpEntity.getResponseJSON();
+                HttpEntity httpEntity = RestUtils.doGet(Constants.OSTID_API_CHECK_SESSION_STATUS_TEMPLATE.resolve(realmContext.getApiEndpoint(), requestIdJsonValue.asString()), serviceConfig, SessionStatusOutput.class);
                 if(httpEntity.isSuccess()){
-                    String sessionStatus = checkSessionStatusResponseJSON.getString("sessionStatus");
-                    checkSessionStatusEnum = CheckSessionStatusOutcome.valueOf(sessionStatus);
+                    SessionStatusOutput sessionStatusOutput = httpEntity.getResponseObject(SessionStatusOutput.class);
+                    if(sessionStatusOutput == null || sessionStatusOutput.getSessionStatus() == null){
+                        throw new NodeProcessException("Fail to parse response: session status is missing");
+                    }
+                    checkSessionStatusEnum = CheckSessionStatusOutcome.valueOf(sessionStatusOutput.getSessionStatus());
                 }else{
+                    JSONObject checkSessionStatusResponseJSON = httpEntity.getResponseJSON();
                     String message = checkSessionStatusResponseJSON.getString("message");
                     if(message == null){
-                        throw new NodeProcessException("Fail to parse response: " + JSON.toJSONString(checkSessionStatusResponseJSON));
+                        throw new NodeProcessException("Fail to parse response: " + JsonUtils.toJSONString(checkSessionStatusResponseJSON));
                     }else {
                         throw new NodeProcessException(message);
                     }
@@ -129,12 +142,8 @@ public class OS_Auth_CheckSessionStatusNode implements Node {
 	                return goTo(CheckSessionStatusOutcome.pending).replaceSharedState(sharedState).build();
 	        }
     	}catch (Exception ex) {
-	   		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_CheckSessionStatusNode Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan Auth Check Session Status: " + ex.getMessage());
-			return goTo(CheckSessionStatusOutcome.error).build();	
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_CheckSessionStatusNode", "OneSpan Auth Check Session Status: ", ex,
+					config.unavailableOutcomeEnabled(), CheckSessionStatusOutcome.error.name(), CheckSessionStatusOutcome.unavailable.name());
 	    }
     }
 
@@ -149,7 +158,8 @@ public class OS_Auth_CheckSessionStatusNode implements Node {
         failure,
         timeout,
         unknown,
-        error
+        error,
+        unavailable
     }
 
     /**
@@ -160,7 +170,7 @@ public class OS_Auth_CheckSessionStatusNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_CheckSessionStatusNode.BUNDLE,
                     OSTIDCheckSessionStatusOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(CheckSessionStatusOutcome.pending.name(), bundle.getString("pendingOutcome")),
                     new Outcome(CheckSessionStatusOutcome.accepted.name(), bundle.getString("acceptedOutcome")),
                     new Outcome(CheckSessionStatusOutcome.refused.name(), bundle.getString("refusedOutcome")),
@@ -169,6 +179,7 @@ public class OS_Auth_CheckSessionStatusNode implements Node {
                     new Outcome(CheckSessionStatusOutcome.unknown.name(), bundle.getString("unknownOutcome")),
                     new Outcome(CheckSessionStatusOutcome.error.name(), bundle.getString("errorOutcome"))
             );
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, CheckSessionStatusOutcome.unavailable.name()).build();
         }
     }
 }
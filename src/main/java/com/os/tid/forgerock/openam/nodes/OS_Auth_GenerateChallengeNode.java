@@ -15,7 +15,6 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
-import java.util.Date;
 import java.util.List;
 import java.util.Objects;
 import java.util.ResourceBundle;
@@ -35,7 +34,6 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
@@ -43,10 +41,12 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
 import com.os.tid.forgerock.openam.models.GenerateChallengeOutput;
 import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.RequiredValueValidator;
 import com.sun.identity.sm.SMSException;
@@ -61,6 +61,7 @@ public class OS_Auth_GenerateChallengeNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Auth_GenerateChallengeNode.class);
     private static final String BUNDLE = "com/os/tid/forgerock/openam/nodes/OS_Auth_GenerateChallengeNode";
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private final OS_Auth_GenerateChallengeNode.Config config;
     private static final String loggerPrefix = "[OneSpan Auth Generate Challenge]" + OSAuthNodePlugin.logAppender;
 
@@ -98,11 +99,20 @@ public class OS_Auth_GenerateChallengeNode implements Node {
         default String userNameInSharedData() {
             return Constants.OSTID_DEFAULT_USERNAME;
         }
+
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 500)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
     public OS_Auth_GenerateChallengeNode(@Assisted OS_Auth_GenerateChallengeNode.Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
         this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -116,9 +126,7 @@ public class OS_Auth_GenerateChallengeNode implements Node {
 	        logger.debug(loggerPrefix + "OS_Auth_GenerateChallengeNode started");
             JsonValue sharedState = context.sharedState;
             
-	        String tenantName = StringUtils.isEmpty(serviceConfig.tenantName())? "" : serviceConfig.tenantName().toLowerCase();
-	        String customUrl = StringUtils.isEmpty(serviceConfig.customUrl())? "" : serviceConfig.customUrl().toLowerCase();         	        
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	        
 	        JsonValue usernameJsonValue = sharedState.get(config.userNameInSharedData());
 	
@@ -126,11 +134,11 @@ public class OS_Auth_GenerateChallengeNode implements Node {
 	                config.length(),                                    //param1
 	                config.checkDigit()                                 //param2
 	        );
-            String url = StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + String.format(Constants.OSTID_API_ADAPTIVE_GENERATE_CHALLENGE, usernameJsonValue.asString(), config.domain());
-            HttpEntity httpEntity = RestUtils.doPostJSON(url, generateChallengeJSON,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+            String url = Constants.OSTID_API_ADAPTIVE_GENERATE_CHALLENGE_TEMPLATE.resolve(realmContext.getApiEndpoint(), usernameJsonValue.asString(), config.domain());
+            HttpEntity httpEntity = RestUtils.doPostJSON(url, generateChallengeJSON, serviceConfig, GenerateChallengeOutput.class);
             JSONObject responseJSON = httpEntity.getResponseJSON();
             if (httpEntity.isSuccess()) {
-                GenerateChallengeOutput generateChallengeOutput = JSON.toJavaObject(responseJSON, GenerateChallengeOutput.class);
+                GenerateChallengeOutput generateChallengeOutput = httpEntity.getResponseObject(GenerateChallengeOutput.class);
                 sharedState.put(Constants.OSTID_REQUEST_ID, generateChallengeOutput.getRequestID());
                 sharedState.put(Constants.OSTID_CRONTO_MSG, StringUtils.stringToHex2(generateChallengeOutput.getChallenge()));
 
@@ -143,7 +151,7 @@ public class OS_Auth_GenerateChallengeNode implements Node {
                 String log_correction_id = httpEntity.getLog_correlation_id();
 
                 if (Stream.of(message, error, log_correction_id).anyMatch(Objects::isNull)) {
-                    throw new NodeProcessException(JSON.toJSONString(responseJSON));
+                    throw new NodeProcessException(JsonUtils.toJSONString(responseJSON));
                 } else {
                     JSONArray validationErrors = responseJSON.getJSONArray("validationErrors");
                     if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -156,12 +164,8 @@ public class OS_Auth_GenerateChallengeNode implements Node {
                 }
             }
     	}catch (Exception ex) {
-	   		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-		    context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_GenerateChallengeNode Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan OCA Generate Challenge: " + ex.getMessage());
-			return goTo(GenerateChallengeOutcome.error).build();	
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_GenerateChallengeNode", "OneSpan OCA Generate Challenge: ", ex,
+					config.unavailableOutcomeEnabled(), GenerateChallengeOutcome.error.name(), GenerateChallengeOutcome.unavailable.name());
 	    }
     }
 
@@ -171,7 +175,8 @@ public class OS_Auth_GenerateChallengeNode implements Node {
 
     public enum GenerateChallengeOutcome {
         success,
-        error
+        error,
+        unavailable
     }
 
     /**
@@ -182,9 +187,10 @@ public class OS_Auth_GenerateChallengeNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_GenerateChallengeNode.BUNDLE,
                     OS_Auth_GenerateChallengeNode.OSTIDGenerateChallengeOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(OS_Auth_GenerateChallengeNode.GenerateChallengeOutcome.success.name(), bundle.getString("successOutcome")),
                     new Outcome(OS_Auth_GenerateChallengeNode.GenerateChallengeOutcome.error.name(), bundle.getString("errorOutcome")));
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, GenerateChallengeOutcome.unavailable.name()).build();
         }
     }
 }
@@ -15,10 +15,11 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 import org.forgerock.json.JsonValue;
@@ -35,7 +36,6 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
@@ -43,10 +43,13 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
 import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.utils.AsyncRestUtils;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.RequiredValueValidator;
 import com.sun.identity.sm.SMSException;
@@ -62,6 +65,7 @@ public class OS_Auth_GetUserAuthenticatorNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Auth_GetUserAuthenticatorNode.class);
     private static final String BUNDLE = "com/os/tid/forgerock/openam/nodes/OS_Auth_GetUserAuthenticatorNode";
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Auth Get User Authenticator]"  + OSAuthNodePlugin.logAppender;
     private final OS_Auth_GetUserAuthenticatorNode.Config config;
 
@@ -84,11 +88,20 @@ public class OS_Auth_GetUserAuthenticatorNode implements Node {
         default String userNameInSharedData() {
             return Constants.OSTID_DEFAULT_USERNAME;
         }
+
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 300)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
     public OS_Auth_GetUserAuthenticatorNode(@Assisted Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
         this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -102,9 +115,7 @@ public class OS_Auth_GetUserAuthenticatorNode implements Node {
 	        logger.debug(loggerPrefix + "OS_Auth_GetUserAuthenticatorNode started");
             JsonValue sharedState = context.sharedState;
             
-	        String tenantName = StringUtils.isEmpty(serviceConfig.tenantName())? "" : serviceConfig.tenantName().toLowerCase();
-	        String customUrl = StringUtils.isEmpty(serviceConfig.customUrl())? "" : serviceConfig.customUrl().toLowerCase();             	        
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	
 	        JsonValue usernameJsonValue = sharedState.get(config.userNameInSharedData());
 	        sharedState.put(Constants.OSTID_USERNAME_IN_SHARED_STATE, config.userNameInSharedData());
@@ -116,8 +127,8 @@ public class OS_Auth_GetUserAuthenticatorNode implements Node {
 	        
     		
 	        //API1: GET /v1/users/duotest2305011@duoliang-onespan
-            String getUserURL = StringUtils.getAPIEndpoint(tenantName,environment, customUrl) + String.format(Constants.OSTID_API_VDP_GET_USER,usernameJsonValue.asString(),config.domain());
-            HttpEntity getUserHttpEntity = RestUtils.doGet(getUserURL,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+            String getUserURL = Constants.OSTID_API_VDP_GET_USER_TEMPLATE.resolve(realmContext.getApiEndpoint(), usernameJsonValue.asString(),config.domain());
+            HttpEntity getUserHttpEntity = RestUtils.doGet(getUserURL, serviceConfig);
             JSONObject getUserResponseJSON = getUserHttpEntity.getResponseJSON();
             if(!getUserHttpEntity.isSuccess()) {
                 String error = getUserResponseJSON.getString("error");
@@ -127,7 +138,7 @@ public class OS_Auth_GetUserAuthenticatorNode implements Node {
                 String log_correction_id = getUserHttpEntity.getLog_correlation_id();
 
                 if(Stream.of(message, error, log_correction_id).anyMatch(Objects::isNull)){
-                    throw new NodeProcessException(JSON.toJSONString(getUserResponseJSON));
+                    throw new NodeProcessException(JsonUtils.toJSONString(getUserResponseJSON));
                 }else {
                     JSONArray validationErrors = getUserResponseJSON.getJSONArray("validationErrors");
                     if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -149,9 +160,15 @@ public class OS_Auth_GetUserAuthenticatorNode implements Node {
 	            Boolean hasVIR10Authenticator = false;
 	            Boolean hasTYPAuthenticator = false;
 	            
+	            //the authenticator lookups are independent, so they are all sent before waiting for the first response
+	            List<CompletableFuture<HttpEntity>> getAuthenticatorFutures = new ArrayList<>();
 	            for (String authenticator : authenticatorsList) {
-	                String getAuthenticatorURL = StringUtils.getAPIEndpoint(tenantName,environment, customUrl) + String.format(Constants.OSTID_API_GET_USER_AUTHENTICATOR,authenticator,config.domain());
-	                HttpEntity getAuthenticatorHttpEntity = RestUtils.doGet(getAuthenticatorURL,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+	                String getAuthenticatorURL = Constants.OSTID_API_GET_USER_AUTHENTICATOR_TEMPLATE.resolve(realmContext.getApiEndpoint(), authenticator,config.domain());
+	                getAuthenticatorFutures.add(AsyncRestUtils.doGetAsync(getAuthenticatorURL, serviceConfig));
+	            }
+	            for (int index = 0; index < authenticatorsList.size(); index++) {
+	                String authenticator = authenticatorsList.get(index);
+	                HttpEntity getAuthenticatorHttpEntity = AsyncRestUtils.join(getAuthenticatorFutures.get(index));
 	                JSONObject getAuthenticatorResponseJSON = getAuthenticatorHttpEntity.getResponseJSON();
 	                if(getAuthenticatorHttpEntity.isSuccess()) {
 	                	Integer total = getAuthenticatorResponseJSON.getInteger("total");
@@ -186,12 +203,8 @@ public class OS_Auth_GetUserAuthenticatorNode implements Node {
             
             return goTo(OS_Auth_GetUserAuthenticatorNode.GetUserAuthenticatorOutcome.None).replaceSharedState(sharedState).build();
     	}catch (Exception ex) {
-	   		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_GetUserAuthenticatorNode Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan Get User Authenticator process: " + ex.getMessage());
-			return goTo(GetUserAuthenticatorOutcome.Error).build();	
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_GetUserAuthenticatorNode", "OneSpan Get User Authenticator process: ", ex,
+					config.unavailableOutcomeEnabled(), GetUserAuthenticatorOutcome.Error.name(), GetUserAuthenticatorOutcome.Unavailable.name());
 	    }
     }
 
@@ -204,7 +217,8 @@ public class OS_Auth_GetUserAuthenticatorNode implements Node {
         VIR10,
         Both,
         None,
-        Error
+        Error,
+        Unavailable
     }
 
     /**
@@ -215,13 +229,14 @@ public class OS_Auth_GetUserAuthenticatorNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_GetUserAuthenticatorNode.BUNDLE,
             		OSTIDGetUserAuthenticatorOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(GetUserAuthenticatorOutcome.TYP.name(), bundle.getString("TYPOutcome")),
                     new Outcome(GetUserAuthenticatorOutcome.VIR10.name(), bundle.getString("VIR10Outcome")),
                     new Outcome(GetUserAuthenticatorOutcome.Both.name(), bundle.getString("BothOutcome")),
                     new Outcome(GetUserAuthenticatorOutcome.None.name(), bundle.getString("NoneOutcome")),
                     new Outcome(GetUserAuthenticatorOutcome.Error.name(), bundle.getString("ErrorOutcome"))
             		);
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, GetUserAuthenticatorOutcome.Unavailable.name()).build();
         }
     }
 }
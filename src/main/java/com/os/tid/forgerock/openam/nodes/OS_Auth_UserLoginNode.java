@@ -15,8 +15,8 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
-import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -26,7 +26,6 @@ import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
-import org.apache.commons.lang.StringEscapeUtils;
 import org.forgerock.json.JsonValue;
 import org.forgerock.openam.annotations.sm.Attribute;
 import org.forgerock.openam.auth.node.api.Action;
@@ -40,19 +39,23 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
+import com.os.tid.forgerock.openam.models.AdaptiveRequest;
 import com.os.tid.forgerock.openam.models.GeneralResponseOutput;
 import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.utils.CDDCUtils;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
 import com.os.tid.forgerock.openam.utils.DateUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.RequiredValueValidator;
 import com.sun.identity.sm.SMSException;
@@ -68,6 +71,7 @@ public class OS_Auth_UserLoginNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Auth_UserLoginNode.class);
     private final OS_Auth_UserLoginNode.Config config;
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Auth User Login]" + OSAuthNodePlugin.logAppender;
 
     /**
@@ -146,11 +150,20 @@ public class OS_Auth_UserLoginNode implements Node {
         default boolean sendCDDCData() {
             return true;
         }
+
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 1100)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
     public OS_Auth_UserLoginNode(@Assisted Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
         this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -164,8 +177,7 @@ public class OS_Auth_UserLoginNode implements Node {
 	        logger.debug(loggerPrefix + "OS_Auth_UserLoginNode started");
             JsonValue sharedState = context.sharedState;
             JsonValue transientState = context.transientState;
-	        String tenantName = serviceConfig.tenantName().toLowerCase();
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	
 	        JsonValue usernameJsonValue = sharedState.get(config.userNameInSharedData());
 	        JsonValue cddcJsonJsonValue = sharedState.get(Constants.OSTID_CDDC_JSON);
@@ -174,12 +186,12 @@ public class OS_Auth_UserLoginNode implements Node {
 	        sharedState.put(Constants.OSTID_USERNAME_IN_SHARED_STATE, config.userNameInSharedData());
 	
 	        boolean missOptionalAttr = false;
-	        StringBuilder optionalAttributesStringBuilder = new StringBuilder(1000);
+	        AdaptiveRequest userLoginRequest = new AdaptiveRequest();
 	        Map<String, String> optionalAttributesMap = config.optionalAttributes();
 	        for (Map.Entry<String, String> entrySet : optionalAttributesMap.entrySet()) {
 	            JsonValue jsonValue = sharedState.get(entrySet.getValue());
 	            if (jsonValue.isString()) {
-	                optionalAttributesStringBuilder.append("\"").append(entrySet.getKey()).append("\":\"").append(jsonValue.asString()).append("\",");
+	                userLoginRequest.putAttribute(entrySet.getKey(), jsonValue.asString());
 	            } else {
 	                missOptionalAttr = true;
 	            }
@@ -194,114 +206,58 @@ public class OS_Auth_UserLoginNode implements Node {
 	            throw new NodeProcessException("Oopts, there are missing data for OneSpan Auth User Login Process!");
 	        } 
 	        
-            String APIUrl = String.format(Constants.OSTID_API_ADAPTIVE_USER_LOGIN, usernameJsonValue.asString(), config.domain());
-            /**
-             * 1.objectType
-             * 2.credentials
-             * 3.requestID
-             * 4.orchestrationDelivery
-             * 5.timeout
-             * 6.IAA
-             * 6.1 clientIP
-             * 6.2 fingerprintHash
-             * 6.3 fingerprintRaw
-             * 6.4 relationshipRef
-             * 6.5 sessionID
-             * 6.6 applicationRef
-             */
-            //param 1
-            String objectType = config.objectType().name();
-            //param2&8
-            String credentials = "";
-            String fido = "";
+            String APIUrl = Constants.OSTID_API_ADAPTIVE_USER_LOGIN_TEMPLATE.expand(usernameJsonValue.asString(), config.domain());
+            userLoginRequest.setObjectType(config.objectType().name());
             switch (config.credentialsType()) {
                 case fidoAuthenticator:
-                    credentials = String.format(Constants.OSTID_JSON_ADAPTIVE_CREDENTIALS_FIDOAUTHENTICATOR, sharedState.get("authenticationResponse").asString());
-                    fido = String.format(Constants.OSTID_JSON_ADAPTIVE_CREDENTIALS_FIDOAUTHENTICATOR_2, sharedState.get("fidoProtocol").asString());
+                    userLoginRequest.setFidoAuthenticator(sharedState.get("fidoProtocol").asString(), sharedState.get("authenticationResponse").asString());
                     break;
                 case authenticator:
-                    credentials = String.format(Constants.OSTID_JSON_ADAPTIVE_CREDENTIALS_AUTHENTICATOR, sharedState.get("OTP").asString());
+                    userLoginRequest.setOtp(sharedState.get("OTP").asString());
                     break;
                 case passKey:
-                    credentials = String.format(Constants.OSTID_JSON_ADAPTIVE_CREDENTIALS_PASSKEY, transientState.get("password").asString());
+                    userLoginRequest.setPassKey(transientState.get("password").asString());
                     break;
             }
-            //param3
-
-            String requestID = sharedState.get(Constants.OSTID_REQUEST_ID).isString() ? String.format(Constants.OSTID_JSON_ADAPTIVE_REQUESTID, sharedState.get(Constants.OSTID_REQUEST_ID).asString()) : "";
-            //param4
-            String orchestrationDelivery = "";
+            String requestID = sharedState.get(Constants.OSTID_REQUEST_ID).isString() ? sharedState.get(Constants.OSTID_REQUEST_ID).asString() : "";
+            if (config.sendRequestID() && !requestID.isEmpty()) {
+                userLoginRequest.setRequestID(requestID);
+            }
             switch (config.orchestrationDelivery()) {
                 case pushNotification:
-                    orchestrationDelivery = String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"pushNotification\"");
+                    userLoginRequest.setOrchestrationDelivery(ImmutableList.of("pushNotification"));
                     break;
                 case requestMessage:
-                    orchestrationDelivery = String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"requestMessage\"");
+                    userLoginRequest.setOrchestrationDelivery(ImmutableList.of("requestMessage"));
                     break;
                 case both:
-                    orchestrationDelivery = String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"pushNotification\",\"requestMessage\"");
+                    userLoginRequest.setOrchestrationDelivery(ImmutableList.of("pushNotification", "requestMessage"));
                     break;
                 case none:
                     break;
             }
-            //param5: for now, API timeout will always set to 0, timeout specified in config will be used for visual code time out
-            String timeout = String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0);
-            //param6
+            //for now, API timeout will always set to 0, timeout specified in config will be used for visual code time out
+            userLoginRequest.setTimeout(0);
             String sessionID = sharedState.get(Constants.OSTID_SESSIONID).isString() ? sharedState.get(Constants.OSTID_SESSIONID).asString() : StringUtils.stringToHex(UUID.randomUUID().toString());
             String relationshipRef = sharedState.get("relationshipRef").isString() ? sharedState.get("relationshipRef").asString():usernameJsonValue.asString();
-
-            String IAA = String.format(Constants.OSTID_JSON_ADAPTIVE_USER_LOGIN_IAA_NO_CDDC_DATA,
-                    relationshipRef,      																//param6.4
-                    sessionID,                                          								//param6.5
-                    serviceConfig.applicationRef()                      								//param6.6
-            );
-
-            if(config.sendCDDCData()) {
-
-                IAA = String.format(Constants.OSTID_JSON_ADAPTIVE_USER_LOGIN_IAA,
-                        cddcIpJsonValue.asString(),                                                         //param6.1
-                        cddcHashJsonValue.asString(),                                                       //param6.2
-                        StringEscapeUtils.escapeJava(cddcJsonJsonValue.asString()),                         //param6.3
-                        relationshipRef,                                                                    //param6.4
-                        sessionID,                                                                          //param6.5
-                        serviceConfig.applicationRef()                                                      //param6.6
-                );
+            if (config.objectType() == ObjectType.AdaptiveLoginInput) {
+                if (config.sendCDDCData()) {
+                    userLoginRequest.setCddc(cddcIpJsonValue.asString(), cddcHashJsonValue.asString(), CDDCUtils.getEscapedJson(cddcJsonJsonValue.asString()));
+                }
+                userLoginRequest.setRelationshipRef(relationshipRef);
+                userLoginRequest.setSessionID(sessionID);
+                userLoginRequest.setApplicationRef(realmContext.getApplicationRef());
             }
-
-            IAA = config.objectType() == ObjectType.AdaptiveLoginInput ? IAA : "";
-
-
-            String userLoginJSON = String.format(Constants.OSTID_JSON_ADAPTIVE_USER_LOGIN_NO_REQUEST,
-                    objectType,                                                     //param1
-                    credentials,                                                    //param2                                                   //param3
-                    orchestrationDelivery,                                          //param4
-                    timeout,                                                        //param5
-                    IAA,                                                            //param6
-                    optionalAttributesStringBuilder.toString(),                     //param7
-                    fido                                                            //param8
-            );
-
-            if(config.sendRequestID()) {
-
-                 userLoginJSON = String.format(Constants.OSTID_JSON_ADAPTIVE_USER_LOGIN,
-                        objectType,                                                     //param1
-                        credentials,                                                    //param2
-                        requestID,                                                      //param3
-                        orchestrationDelivery,                                          //param4
-                        timeout,                                                        //param5
-                        IAA,                                                            //param6
-                        optionalAttributesStringBuilder.toString(),                     //param7
-                        fido                                                            //param8
-                );
+            byte[] userLoginJSON = JsonWriter.toJSONBytes(userLoginRequest);
+            if (logger.isDebugEnabled()) {
+                logger.debug(loggerPrefix + "OS_Auth_UserLoginNode user login JSON:" + new String(userLoginJSON, StandardCharsets.UTF_8));
             }
-            logger.debug(loggerPrefix + "OS_Auth_UserLoginNode user login JSON:" + userLoginJSON);
 
-            String customUrl = serviceConfig.customUrl().toLowerCase();
-            HttpEntity httpEntity = RestUtils.doPostJSON(StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl, userLoginJSON,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+            HttpEntity httpEntity = RestUtils.doPostJSON(realmContext.getApiEndpoint() + APIUrl, userLoginJSON, serviceConfig, GeneralResponseOutput.class);
             JSONObject responseJSON = httpEntity.getResponseJSON();
 
             if (httpEntity.isSuccess()) {
-                GeneralResponseOutput loginOutput = JSON.toJavaObject(responseJSON, GeneralResponseOutput.class);
+                GeneralResponseOutput loginOutput = httpEntity.getResponseObject(GeneralResponseOutput.class);
                 int irmResponse = loginOutput.getRiskResponseCode();
                 sharedState.put(Constants.OSTID_LOGIN_OUTPUT, loginOutput);
                 sharedState.put(Constants.OSTID_IRM_RESPONSE,irmResponse);
@@ -363,10 +319,10 @@ public class OS_Auth_UserLoginNode implements Node {
             } else {
                 String log_correction_id = httpEntity.getLog_correlation_id();
                 String message = responseJSON.getString("message");
-                String requestJSON = "POST " + StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl + " : " + userLoginJSON;
+                String requestJSON = "POST " + realmContext.getApiEndpoint() + APIUrl + " : " + new String(userLoginJSON, StandardCharsets.UTF_8);
 
                 if (Stream.of(log_correction_id, message).anyMatch(Objects::isNull)) {
-                    throw new NodeProcessException("Fail to parse response: " + JSON.toJSONString(responseJSON));
+                    throw new NodeProcessException("Fail to parse response: " + JsonUtils.toJSONString(responseJSON));
                 } else {
                     JSONArray validationErrors = responseJSON.getJSONArray("validationErrors");
                     if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -380,12 +336,8 @@ public class OS_Auth_UserLoginNode implements Node {
             }
 	        
     	}catch (Exception ex) {
-	   		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_UserLoginNode Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan Auth User Login: " + ex.getMessage());
-			return goTo(UserLoginOutcome.Error).build();	
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_UserLoginNode", "OneSpan Auth User Login: ", ex,
+					config.unavailableOutcomeEnabled(), UserLoginOutcome.Error.name(), UserLoginOutcome.Unavailable.name());
 	    }
 
         
@@ -400,7 +352,7 @@ public class OS_Auth_UserLoginNode implements Node {
     }
 
     public enum UserLoginOutcome {
-        Accept, Decline, StepUp, Error
+        Accept, Decline, StepUp, Error, Unavailable
     }
 
     public enum UserLoginSessionStatus {
@@ -427,12 +379,13 @@ public class OS_Auth_UserLoginNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_UserLoginNode.BUNDLE,
                     OS_Auth_UserLoginNode.OSTID_Adaptive_UserLoginNodeOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(UserLoginOutcome.Accept.name(), bundle.getString("acceptOutcome")),
                     new Outcome(UserLoginOutcome.Decline.name(), bundle.getString("declineOutcome")),
                     new Outcome(UserLoginOutcome.StepUp.name(), bundle.getString("stepupOutcome")),
                     new Outcome(UserLoginOutcome.Error.name(), bundle.getString("errorOutcome"))
             );
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, UserLoginOutcome.Unavailable.name()).build();
         }
     }
 }
\ No newline at end of file
@@ -15,8 +15,8 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
-import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -26,7 +26,6 @@ import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
-import org.apache.commons.lang.StringEscapeUtils;
 import org.forgerock.json.JsonValue;
 import org.forgerock.openam.annotations.sm.Attribute;
 import org.forgerock.openam.auth.node.api.Action;
@@ -40,19 +39,23 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
 import com.os.tid.forgerock.openam.models.HttpEntity;
 import com.os.tid.forgerock.openam.models.UserRegisterOutputEx;
+import com.os.tid.forgerock.openam.models.UserRegisterRequest;
+import com.os.tid.forgerock.openam.utils.CDDCUtils;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
 import com.os.tid.forgerock.openam.utils.DateUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.RequiredValueValidator;
 import com.sun.identity.sm.SMSException;
@@ -68,6 +71,7 @@ public class OS_Auth_UserRegisterNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Auth_UserRegisterNode.class);
     private final OS_Auth_UserRegisterNode.Config config;
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Auth User Register]" + OSAuthNodePlugin.logAppender;
 
     /**
@@ -127,11 +131,20 @@ public class OS_Auth_UserRegisterNode implements Node {
         default int activationTokenExpiry() {
             return Constants.OSTID_DEFAULT_EVENT_EXPIRY;
         }
+
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 800)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
     public OS_Auth_UserRegisterNode(@Assisted Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
         this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -145,9 +158,7 @@ public class OS_Auth_UserRegisterNode implements Node {
 	        logger.debug(loggerPrefix + "OS_Auth_UserRegisterNode started");
 	        JsonValue sharedState = context.sharedState;
             JsonValue transientState = context.transientState;
-	        String tenantName = serviceConfig.tenantName().toLowerCase();
-            String customUrl = serviceConfig.customUrl().toLowerCase();
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	
 	        JsonValue usernameJsonValue = sharedState.get(config.userNameInSharedData());
 	        JsonValue cddcJsonJsonValue = sharedState.get(Constants.OSTID_CDDC_JSON);
@@ -157,7 +168,7 @@ public class OS_Auth_UserRegisterNode implements Node {
 	        sharedState.put(Constants.OSTID_USERNAME_IN_SHARED_STATE, config.userNameInSharedData());
 	
 	        boolean allOptionalFieldsIncluded = true;
-	        StringBuilder optionalAttributesStringBuilder = new StringBuilder(1000);
+	        UserRegisterRequest userRegisterRequest = new UserRegisterRequest();
 	        Map<String, String> optionalAttributesMap = config.optionalAttributes();
 	        for (Map.Entry<String, String> entrySet : optionalAttributesMap.entrySet()) {
 	        	JsonValue jsonValue;
@@ -167,7 +178,7 @@ public class OS_Auth_UserRegisterNode implements Node {
 	        		jsonValue = sharedState.get(entrySet.getValue());
 	        	} 
 	            if (jsonValue.isString()) {
-	                optionalAttributesStringBuilder.append("\"").append(entrySet.getKey()).append("\":\"").append(jsonValue.asString()).append("\",");
+	                userRegisterRequest.putAttribute(entrySet.getKey(), jsonValue.asString());
 	            } else {
 	                allOptionalFieldsIncluded = false;
 	            }
@@ -186,8 +197,7 @@ public class OS_Auth_UserRegisterNode implements Node {
             String APIUrl = config.nodeFunction() == NodeFunction.UserRegister ?
                     Constants.OSTID_API_ADAPTIVE_USER_REGISTER
                     :
-                    String.format(Constants.OSTID_API_ADAPTIVE_USER_UNREGISTER,usernameJsonValue.asString(),config.domain());
-            //param 1
+                    Constants.OSTID_API_ADAPTIVE_USER_UNREGISTER_TEMPLATE.expand(usernameJsonValue.asString(),config.domain());
             String objectType = "";
             switch(config.objectType()) {
                 case IAA:
@@ -197,36 +207,27 @@ public class OS_Auth_UserRegisterNode implements Node {
                     objectType = config.nodeFunction() == NodeFunction.UserRegister ? "RegisterUserInputEx" : "UnregisterUserInputEx";
                     break;
             }
-            //param 7
-            String applicationRef = config.objectType() == ObjectType.IAA ? String.format(Constants.OSTID_JSON_ADAPTIVE_APPLICATIONREF, serviceConfig.applicationRef()) : "";
-            //param 8
+            userRegisterRequest.setObjectType(objectType);
+            userRegisterRequest.setUserID(usernameJsonValue.asString());
+            userRegisterRequest.setActivationType(config.activationType().name());
+            userRegisterRequest.setCddc(cddcIpJsonValue.asString(), cddcHashJsonValue.asString(), CDDCUtils.getEscapedJson(cddcJsonJsonValue.asString()));
             String sessionId = sharedState.get(Constants.OSTID_SESSIONID).isString() ? sharedState.get(Constants.OSTID_SESSIONID).asString() : StringUtils.stringToHex(UUID.randomUUID().toString());
-            String sessionIdJSON = config.objectType() == ObjectType.IAA ? String.format(Constants.OSTID_JSON_ADAPTIVE_SESSIONID, sessionId) : "";
-            //param 9
-            String relationshipRef = sharedState.get("relationshipRef").isString() ? sharedState.get("relationshipRef").asString():usernameJsonValue.asString();
-            relationshipRef = config.objectType() == ObjectType.IAA ? String.format(Constants.OSTID_JSON_ADAPTIVE_USER_REGISTER_RELATIONSHIPREF, relationshipRef) : "";
-            //param 10
-            String activationType = String.format(Constants.OSTID_JSON_ADAPTIVE_USER_REGISTER_ACTIVATIONTYPE, config.activationType().name());
-
-            String userRegisterJSON = String.format(Constants.OSTID_JSON_ADAPTIVE_USER_REGISTER,
-                    objectType,                                                                      //param1
-                    usernameJsonValue.asString(),                                                    //param2
-                    cddcIpJsonValue.asString(),                                                      //param3
-                    cddcHashJsonValue.asString(),                                                    //param4
-                    StringEscapeUtils.escapeJava(cddcJsonJsonValue.asString()),                      //param5
-                    applicationRef,                                                                  //param6
-                    sessionIdJSON,                                                                   //param7
-                    relationshipRef,                                                                 //param8
-                    activationType,                                                                  //param9
-                    optionalAttributesStringBuilder.toString()                                       //param10
-            );
-            logger.debug(loggerPrefix + "OS_Auth_UserRegisterNode userRegisterJSON:" + userRegisterJSON);
+            if (config.objectType() == ObjectType.IAA) {
+                String relationshipRef = sharedState.get("relationshipRef").isString() ? sharedState.get("relationshipRef").asString():usernameJsonValue.asString();
+                userRegisterRequest.setApplicationRef(realmContext.getApplicationRef());
+                userRegisterRequest.setSessionID(sessionId);
+                userRegisterRequest.setRelationshipRef(relationshipRef);
+            }
+            byte[] userRegisterJSON = JsonWriter.toJSONBytes(userRegisterRequest);
+            if (logger.isDebugEnabled()) {
+                logger.debug(loggerPrefix + "OS_Auth_UserRegisterNode userRegisterJSON:" + new String(userRegisterJSON, StandardCharsets.UTF_8));
+            }
 
-            HttpEntity httpEntity = RestUtils.doPostJSON(StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl, userRegisterJSON,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+            HttpEntity httpEntity = RestUtils.doPostJSON(realmContext.getApiEndpoint() + APIUrl, userRegisterJSON, serviceConfig, UserRegisterOutputEx.class);
             JSONObject responseJSON = httpEntity.getResponseJSON();
 
             if (httpEntity.isSuccess()) {
-                UserRegisterOutputEx userRegisterOutputEx = JSON.toJavaObject(responseJSON, UserRegisterOutputEx.class);
+                UserRegisterOutputEx userRegisterOutputEx = httpEntity.getResponseObject(UserRegisterOutputEx.class);
                 String activationCode = userRegisterOutputEx.getActivationPassword();
                 if (config.nodeFunction() == NodeFunction.UserRegister && config.activationType() == ActivationType.onlineMDL) {
                     //"02;user01211;111;duoliang11071-mailin;3zE6RNH5;duoliang11071-mailin"
@@ -236,7 +237,7 @@ public class OS_Auth_UserRegisterNode implements Node {
                             usernameJsonValue.asString(),                       //param2
                             config.domain(),                                    //param3
                             activationCode,                                     //param4
-                            tenantName,                                         //param5
+                            realmContext.getTenantName(),                       //param5
                             userProfile                                         //param6
                     );
                     String crontoValueHex = StringUtils.stringToHex(crontoValueRaw);
@@ -263,10 +264,10 @@ public class OS_Auth_UserRegisterNode implements Node {
             } else {
                 String log_correction_id = httpEntity.getLog_correlation_id();
                 String message = responseJSON.getString("message");
-                String requestJSON = "POST " + StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl + " : " + userRegisterJSON;
+                String requestJSON = "POST " + realmContext.getApiEndpoint() + APIUrl + " : " + new String(userRegisterJSON, StandardCharsets.UTF_8);
 
                 if (Stream.of(log_correction_id, message).anyMatch(Objects::isNull)) {
-                    throw new NodeProcessException("Fail to parse response: " + JSON.toJSONString(responseJSON));
+                    throw new NodeProcessException("Fail to parse response: " + JsonUtils.toJSONString(responseJSON));
                 } else {
                     JSONArray validationErrors = responseJSON.getJSONArray("validationErrors");
                     if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -279,12 +280,8 @@ public class OS_Auth_UserRegisterNode implements Node {
                 }
             }
     	}catch (Exception ex) {
-	   		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_UserRegisterNode Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan User Register process: " + ex.getMessage());
-			return goTo(UserRegisterOutcome.Error).build();	
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_UserRegisterNode", "OneSpan User Register process: ", ex,
+					config.unavailableOutcomeEnabled(), UserRegisterOutcome.Error.name(), UserRegisterOutcome.Unavailable.name());
 	    }
     }
 
@@ -300,7 +297,7 @@ public class OS_Auth_UserRegisterNode implements Node {
     }
 
     public enum UserRegisterOutcome {
-        Success, Error
+        Success, Error, Unavailable
     }
 
     private Action.ActionBuilder goTo(OS_Auth_UserRegisterNode.UserRegisterOutcome outcome) {
@@ -315,10 +312,11 @@ public class OS_Auth_UserRegisterNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_UserRegisterNode.BUNDLE,
                     OS_Auth_UserRegisterNode.OSTIDUserRegisterOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(OS_Auth_UserRegisterNode.UserRegisterOutcome.Success.name(), bundle.getString("successOutcome")),
                     new Outcome(OS_Auth_UserRegisterNode.UserRegisterOutcome.Error.name(), bundle.getString("errorOutcome"))
             );
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, UserRegisterOutcome.Unavailable.name()).build();
         }
     }
 }
\ No newline at end of file
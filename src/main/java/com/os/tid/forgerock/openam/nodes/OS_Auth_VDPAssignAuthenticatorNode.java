@@ -15,10 +15,11 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 import org.forgerock.json.JsonValue;
@@ -35,7 +36,6 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
@@ -43,10 +43,13 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
 import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.utils.AsyncRestUtils;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.RequiredValueValidator;
 import com.sun.identity.sm.SMSException;
@@ -62,6 +65,7 @@ public class OS_Auth_VDPAssignAuthenticatorNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Auth_VDPAssignAuthenticatorNode.class);
     private static final String BUNDLE = "com/os/tid/forgerock/openam/nodes/OS_Auth_VDPAssignAuthenticatorNode";
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Auth VDP Assign Authenticator]" + OSAuthNodePlugin.logAppender;
     private final OS_Auth_VDPAssignAuthenticatorNode.Config config;
 
@@ -76,11 +80,20 @@ public class OS_Auth_VDPAssignAuthenticatorNode implements Node {
         default String domain() {
             return Constants.OSTID_DEFAULT_DOMAIN;
         }
+
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 200)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
     public OS_Auth_VDPAssignAuthenticatorNode(@Assisted Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
         this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -95,9 +108,7 @@ public class OS_Auth_VDPAssignAuthenticatorNode implements Node {
 	        JsonValue sharedState = context.sharedState;
 	        
 	        
-	        String tenantName = StringUtils.isEmpty(serviceConfig.tenantName())? "" : serviceConfig.tenantName().toLowerCase();
-	        String customUrl = StringUtils.isEmpty(serviceConfig.customUrl())? "" : serviceConfig.customUrl().toLowerCase();   	        
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	
 	        String usernameInSharedState = sharedState.get(Constants.OSTID_USERNAME_IN_SHARED_STATE) == null ? Constants.OSTID_DEFAULT_USERNAME : sharedState.get(Constants.OSTID_USERNAME_IN_SHARED_STATE).asString();
 	        JsonValue usernameJsonValue = sharedState.get(usernameInSharedState);
@@ -109,8 +120,8 @@ public class OS_Auth_VDPAssignAuthenticatorNode implements Node {
 	        
     		
 	        //API1: GET /v1/users/duotest2305011@duoliang-onespan
-            String getUserURL = StringUtils.getAPIEndpoint(tenantName,environment, customUrl) + String.format(Constants.OSTID_API_VDP_GET_USER,usernameJsonValue.asString(),config.domain());
-            HttpEntity getUserHttpEntity = RestUtils.doGet(getUserURL,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+            String getUserURL = Constants.OSTID_API_VDP_GET_USER_TEMPLATE.resolve(realmContext.getApiEndpoint(), usernameJsonValue.asString(),config.domain());
+            HttpEntity getUserHttpEntity = RestUtils.doGet(getUserURL, serviceConfig);
             JSONObject getUserResponseJSON = getUserHttpEntity.getResponseJSON();
             if(!getUserHttpEntity.isSuccess()) {
                 String error = getUserResponseJSON.getString("error");
@@ -120,7 +131,7 @@ public class OS_Auth_VDPAssignAuthenticatorNode implements Node {
                 String log_correction_id = getUserHttpEntity.getLog_correlation_id();
 
                 if(Stream.of(message, error, log_correction_id).anyMatch(Objects::isNull)){
-                    throw new NodeProcessException(JSON.toJSONString(getUserResponseJSON));
+                    throw new NodeProcessException(JsonUtils.toJSONString(getUserResponseJSON));
                 }else {
                     JSONArray validationErrors = getUserResponseJSON.getJSONArray("validationErrors");
                     if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -139,9 +150,15 @@ public class OS_Auth_VDPAssignAuthenticatorNode implements Node {
             if(authenticatorsJsonArray != null && authenticatorsJsonArray.size() > 0) {
 	            List<String> authenticatorsList = authenticatorsJsonArray.toJavaList(String.class);
 	            String vir10SerialNumber = null;
+	            //the authenticator lookups are independent, so they are all sent before waiting for the first response
+	            List<CompletableFuture<HttpEntity>> getAuthenticatorFutures = new ArrayList<>();
 	            for (String authenticator : authenticatorsList) {
-	                String getAuthenticatorURL = StringUtils.getAPIEndpoint(tenantName,environment, customUrl) + String.format(Constants.OSTID_API_VDP_GET_VIR10_AUTHENTICATOR,authenticator,config.domain());
-	                HttpEntity getAuthenticatorHttpEntity = RestUtils.doGet(getAuthenticatorURL,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+	                String getAuthenticatorURL = Constants.OSTID_API_VDP_GET_VIR10_AUTHENTICATOR_TEMPLATE.resolve(realmContext.getApiEndpoint(), authenticator,config.domain());
+	                getAuthenticatorFutures.add(AsyncRestUtils.doGetAsync(getAuthenticatorURL, serviceConfig));
+	            }
+	            for (int index = 0; index < authenticatorsList.size(); index++) {
+	                String authenticator = authenticatorsList.get(index);
+	                HttpEntity getAuthenticatorHttpEntity = AsyncRestUtils.join(getAuthenticatorFutures.get(index));
 	                JSONObject getAuthenticatorResponseJSON = getAuthenticatorHttpEntity.getResponseJSON();
 	                if(getAuthenticatorHttpEntity.isSuccess()) {
 	                	Integer total = getAuthenticatorResponseJSON.getInteger("total");
@@ -166,8 +183,8 @@ public class OS_Auth_VDPAssignAuthenticatorNode implements Node {
             }
 	        
 	        //API3: GET /v1/authenticators?type=VIR10&assigned=false&offset=0&limit=20
-            String getVIR10AuthenticatorsURL = StringUtils.getAPIEndpoint(tenantName,environment, customUrl) + Constants.OSTID_API_VDP_GET_VIR10_AUTHENTICATORS;
-            HttpEntity getVIR10AuthenticatorsHttpEntity = RestUtils.doGet(getVIR10AuthenticatorsURL,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+            String getVIR10AuthenticatorsURL = realmContext.getApiEndpoint() + Constants.OSTID_API_VDP_GET_VIR10_AUTHENTICATORS;
+            HttpEntity getVIR10AuthenticatorsHttpEntity = RestUtils.doGet(getVIR10AuthenticatorsURL, serviceConfig);
             JSONObject getVIR10AuthenticatorsResponseJSON = getVIR10AuthenticatorsHttpEntity.getResponseJSON();
             if(!getVIR10AuthenticatorsHttpEntity.isSuccess()) {
                 String error = getVIR10AuthenticatorsResponseJSON.getString("error");
@@ -177,7 +194,7 @@ public class OS_Auth_VDPAssignAuthenticatorNode implements Node {
                 String log_correction_id = getVIR10AuthenticatorsHttpEntity.getLog_correlation_id();
 
                 if(Stream.of(message, error, log_correction_id).anyMatch(Objects::isNull)){
-                    throw new NodeProcessException(JSON.toJSONString(getVIR10AuthenticatorsResponseJSON));
+                    throw new NodeProcessException(JsonUtils.toJSONString(getVIR10AuthenticatorsResponseJSON));
                 }else {
                     JSONArray validationErrors = getVIR10AuthenticatorsResponseJSON.getJSONArray("validationErrors");
                     if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -205,8 +222,8 @@ public class OS_Auth_VDPAssignAuthenticatorNode implements Node {
             		usernameJsonValue.asString()                                //param2
             );
 
-            String assignAuthenticatorURL = StringUtils.getAPIEndpoint(tenantName,environment, customUrl) + String.format(Constants.OSTID_API_VDP_ASSIGN_AUTHENTICATOR,serialNumber);
-            HttpEntity assignAuthenticatorHttpEntity = RestUtils.doPostJSON(assignAuthenticatorURL, assignAuthenticatorJSON,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+            String assignAuthenticatorURL = Constants.OSTID_API_VDP_ASSIGN_AUTHENTICATOR_TEMPLATE.resolve(realmContext.getApiEndpoint(), serialNumber);
+            HttpEntity assignAuthenticatorHttpEntity = RestUtils.doPostJSON(assignAuthenticatorURL, assignAuthenticatorJSON, serviceConfig);
             JSONObject assignAuthenticatorResponseJSON = assignAuthenticatorHttpEntity.getResponseJSON();
             if(!assignAuthenticatorHttpEntity.isSuccess()) {
                 String error = assignAuthenticatorResponseJSON.getString("error");
@@ -216,7 +233,7 @@ public class OS_Auth_VDPAssignAuthenticatorNode implements Node {
                 String log_correction_id = assignAuthenticatorHttpEntity.getLog_correlation_id();
 
                 if(Stream.of(message, error, log_correction_id).anyMatch(Objects::isNull)){
-                    throw new NodeProcessException(JSON.toJSONString(assignAuthenticatorResponseJSON));
+                    throw new NodeProcessException(JsonUtils.toJSONString(assignAuthenticatorResponseJSON));
                 }else {
                     JSONArray validationErrors = assignAuthenticatorResponseJSON.getJSONArray("validationErrors");
                     if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -231,12 +248,8 @@ public class OS_Auth_VDPAssignAuthenticatorNode implements Node {
             
             return goTo(OS_Auth_VDPAssignAuthenticatorNode.VDPAssignAuthenticatorOutcome.success).replaceSharedState(sharedState).build();
     	}catch (Exception ex) {
-	   		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_VDPAssignAuthenticatorNode Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan VDP Assign Authenticator process: " + ex.getMessage());
-			return goTo(VDPAssignAuthenticatorOutcome.error).build();	
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_VDPAssignAuthenticatorNode", "OneSpan VDP Assign Authenticator process: ", ex,
+					config.unavailableOutcomeEnabled(), VDPAssignAuthenticatorOutcome.error.name(), VDPAssignAuthenticatorOutcome.unavailable.name());
 	    }
     }
 
@@ -246,7 +259,8 @@ public class OS_Auth_VDPAssignAuthenticatorNode implements Node {
 
     public enum VDPAssignAuthenticatorOutcome{
         success,
-        error
+        error,
+        unavailable
     }
 
     /**
@@ -257,9 +271,10 @@ public class OS_Auth_VDPAssignAuthenticatorNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_VDPAssignAuthenticatorNode.BUNDLE,
             		OSTIDVDPAssignAuthenticatorOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(VDPAssignAuthenticatorOutcome.success.name(), bundle.getString("successOutcome")),
                     new Outcome(VDPAssignAuthenticatorOutcome.error.name(), bundle.getString("errorOutcome")));
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, VDPAssignAuthenticatorOutcome.unavailable.name()).build();
         }
     }
 }
@@ -15,11 +15,12 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 import org.forgerock.json.JsonValue;
@@ -36,7 +37,6 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
@@ -45,10 +45,13 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
 import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.utils.AsyncRestUtils;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.RequiredValueValidator;
 import com.sun.identity.sm.SMSException;
@@ -63,6 +66,7 @@ public class OS_Auth_VDPGenerateVOTPNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Auth_VDPGenerateVOTPNode.class);
     private static final String BUNDLE = "com/os/tid/forgerock/openam/nodes/OS_Auth_VDPGenerateVOTPNode";
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private final OS_Auth_VDPGenerateVOTPNode.Config config;
     private static final String loggerPrefix = "[OneSpan Auth VDP Generate VOTP]" + OSAuthNodePlugin.logAppender;
 
@@ -102,11 +106,20 @@ public class OS_Auth_VDPGenerateVOTPNode implements Node {
             return ImmutableMap.of("emailAddress", "emailAddress");
         }
       
+
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 500)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
     public OS_Auth_VDPGenerateVOTPNode(@Assisted OS_Auth_VDPGenerateVOTPNode.Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
         this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -120,9 +133,7 @@ public class OS_Auth_VDPGenerateVOTPNode implements Node {
 	        logger.debug(loggerPrefix + "OS_Auth_VDPGenerateVOTPNode started");
 	        JsonValue sharedState = context.sharedState;
 	        
-	        String tenantName = StringUtils.isEmpty(serviceConfig.tenantName())? "" : serviceConfig.tenantName().toLowerCase();
-	        String customUrl = StringUtils.isEmpty(serviceConfig.customUrl())? "" : serviceConfig.customUrl().toLowerCase();        
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	
 	        JsonValue usernameJsonValue = sharedState.get(config.userNameInSharedData());
 	        sharedState.put(Constants.OSTID_USERNAME_IN_SHARED_STATE, config.userNameInSharedData());
@@ -148,8 +159,8 @@ public class OS_Auth_VDPGenerateVOTPNode implements Node {
 	        
     		
 	        //API1: GET /v1/users/duotest2305011@duoliang-onespan
-            String getUserURL = StringUtils.getAPIEndpoint(tenantName,environment, customUrl) + String.format(Constants.OSTID_API_VDP_GET_USER,usernameJsonValue.asString(),config.domain());
-            HttpEntity getUserHttpEntity = RestUtils.doGet(getUserURL,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+            String getUserURL = Constants.OSTID_API_VDP_GET_USER_TEMPLATE.resolve(realmContext.getApiEndpoint(), usernameJsonValue.asString(),config.domain());
+            HttpEntity getUserHttpEntity = RestUtils.doGet(getUserURL, serviceConfig);
             JSONObject getUserResponseJSON = getUserHttpEntity.getResponseJSON();
             if(!getUserHttpEntity.isSuccess()) {
                 String error = getUserResponseJSON.getString("error");
@@ -159,7 +170,7 @@ public class OS_Auth_VDPGenerateVOTPNode implements Node {
                 String log_correction_id = getUserHttpEntity.getLog_correlation_id();
 
                 if(Stream.of(message, error, log_correction_id).anyMatch(Objects::isNull)){
-                    throw new NodeProcessException(JSON.toJSONString(getUserResponseJSON));
+                    throw new NodeProcessException(JsonUtils.toJSONString(getUserResponseJSON));
                 }else {
                     JSONArray validationErrors = getUserResponseJSON.getJSONArray("validationErrors");
                     if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -183,9 +194,15 @@ public class OS_Auth_VDPGenerateVOTPNode implements Node {
             List<String> authenticatorsList = authenticatorsJsonArray.toJavaList(String.class);
             String vir10SerialNumber = null;
             String applicationName = null;
+            //the authenticator lookups are independent, so they are all sent before waiting for the first response
+            List<CompletableFuture<HttpEntity>> getAuthenticatorFutures = new ArrayList<>();
             for (String authenticator : authenticatorsList) {
-                String getAuthenticatorURL = StringUtils.getAPIEndpoint(tenantName,environment, customUrl) + String.format(Constants.OSTID_API_VDP_GET_VIR10_AUTHENTICATOR,authenticator,config.domain());
-                HttpEntity getAuthenticatorHttpEntity = RestUtils.doGet(getAuthenticatorURL,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+                String getAuthenticatorURL = Constants.OSTID_API_VDP_GET_VIR10_AUTHENTICATOR_TEMPLATE.resolve(realmContext.getApiEndpoint(), authenticator,config.domain());
+                getAuthenticatorFutures.add(AsyncRestUtils.doGetAsync(getAuthenticatorURL, serviceConfig));
+            }
+            for (int index = 0; index < authenticatorsList.size(); index++) {
+                String authenticator = authenticatorsList.get(index);
+                HttpEntity getAuthenticatorHttpEntity = AsyncRestUtils.join(getAuthenticatorFutures.get(index));
                 JSONObject getAuthenticatorResponseJSON = getAuthenticatorHttpEntity.getResponseJSON();
                 if(getAuthenticatorHttpEntity.isSuccess()) {
                 	Integer total = getAuthenticatorResponseJSON.getInteger("total");
@@ -219,7 +236,7 @@ public class OS_Auth_VDPGenerateVOTPNode implements Node {
             }
             
             //API3: POST /v1/authenticators/VDP4957024/applications/PASSWORD/generate-votp
-            String generateVotpURL = StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + String.format(Constants.OSTID_API_VDP_GENERATE_VOTP,vir10SerialNumber,applicationName);
+            String generateVotpURL = Constants.OSTID_API_VDP_GENERATE_VOTP_TEMPLATE.resolve(realmContext.getApiEndpoint(), vir10SerialNumber,applicationName);
 
             String generateVotpJSON = String.format(Constants.OSTID_JSON_VDP_GENERATE_VOTP,
                     optionalAttributesStringBuilder.toString(),                              //param1
@@ -227,7 +244,7 @@ public class OS_Auth_VDPGenerateVOTPNode implements Node {
             );
             logger.debug(loggerPrefix + "OS_Auth_VDPGenerateVOTPNode generateVotpJSON:" + generateVotpJSON);
 
-            HttpEntity generateVotpHttpEntity = RestUtils.doPostJSON(generateVotpURL, generateVotpJSON,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+            HttpEntity generateVotpHttpEntity = RestUtils.doPostJSON(generateVotpURL, generateVotpJSON, serviceConfig);
             JSONObject generateVotpResponseJSON = generateVotpHttpEntity.getResponseJSON();
 
             if (!generateVotpHttpEntity.isSuccess()) {
@@ -236,7 +253,7 @@ public class OS_Auth_VDPGenerateVOTPNode implements Node {
                 String requestJSON = "POST " + generateVotpURL + " : " + generateVotpJSON;
 
                 if (Stream.of(log_correction_id, message).anyMatch(Objects::isNull)) {
-                    throw new NodeProcessException("Fail to parse response: " + JSON.toJSONString(generateVotpResponseJSON));
+                    throw new NodeProcessException("Fail to parse response: " + JsonUtils.toJSONString(generateVotpResponseJSON));
                 } else {
                     JSONArray validationErrors = generateVotpResponseJSON.getJSONArray("validationErrors");
                     if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -251,12 +268,8 @@ public class OS_Auth_VDPGenerateVOTPNode implements Node {
             
 	        return goTo(OS_Auth_VDPGenerateVOTPNode.GenerateVOTPOutcome.success).replaceSharedState(sharedState).build();
     	}catch (Exception ex) {
-	   		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_VDPGenerateVOTP Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan Generate VOTP: " + ex.getMessage());
-			return goTo(GenerateVOTPOutcome.error).build();	
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_VDPGenerateVOTPNode", "OneSpan Generate VOTP: ", ex,
+					config.unavailableOutcomeEnabled(), GenerateVOTPOutcome.error.name(), GenerateVOTPOutcome.unavailable.name());
 	    }
     }
 
@@ -271,7 +284,8 @@ public class OS_Auth_VDPGenerateVOTPNode implements Node {
     
     public enum GenerateVOTPOutcome {
         success,
-        error
+        error,
+        unavailable
     }
 
     /**
@@ -282,9 +296,10 @@ public class OS_Auth_VDPGenerateVOTPNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_VDPGenerateVOTPNode.BUNDLE,
                     OS_Auth_VDPGenerateVOTPNode.OSVdpGenerateVOTPOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(OS_Auth_VDPGenerateVOTPNode.GenerateVOTPOutcome.success.name(), bundle.getString("successOutcome")),
                     new Outcome(OS_Auth_VDPGenerateVOTPNode.GenerateVOTPOutcome.error.name(), bundle.getString("errorOutcome")));
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, GenerateVOTPOutcome.unavailable.name()).build();
         }
     }
 }
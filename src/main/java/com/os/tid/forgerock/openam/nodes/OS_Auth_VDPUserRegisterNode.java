@@ -15,7 +15,6 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
-import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -38,7 +37,6 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
@@ -46,10 +44,12 @@ import com.google.common.collect.ImmutableMap;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
 import com.os.tid.forgerock.openam.models.HttpEntity;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.RequiredValueValidator;
 import com.sun.identity.sm.SMSException;
@@ -65,6 +65,7 @@ public class OS_Auth_VDPUserRegisterNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Auth_VDPUserRegisterNode.class);
     private final OS_Auth_VDPUserRegisterNode.Config config;
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Auth VDP User Register]" + OSAuthNodePlugin.logAppender;
 
     /**
@@ -103,11 +104,20 @@ public class OS_Auth_VDPUserRegisterNode implements Node {
             return ImmutableMap.of("emailAddress", "emailAddress");
         }
 
+
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 500)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
     public OS_Auth_VDPUserRegisterNode(@Assisted Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
         this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -123,9 +133,7 @@ public class OS_Auth_VDPUserRegisterNode implements Node {
             JsonValue transientState = context.transientState;
             
             
-	        String tenantName = StringUtils.isEmpty(serviceConfig.tenantName())? "" : serviceConfig.tenantName().toLowerCase();
-	        String customUrl = StringUtils.isEmpty(serviceConfig.customUrl())? "" : serviceConfig.customUrl().toLowerCase();   	        
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	
 	        JsonValue usernameJsonValue = sharedState.get(config.userNameInSharedData());
 	        sharedState.put(Constants.OSTID_USERNAME_IN_SHARED_STATE, config.userNameInSharedData());
@@ -153,10 +161,10 @@ public class OS_Auth_VDPUserRegisterNode implements Node {
 	            throw new NodeProcessException("Oopts, there are missing data for OneSpan Auth VDP User Register Process!");
 	        } 
 	        
-            String APIUrl = String.format(Constants.OSTID_API_VDP_USER_REGISTER,usernameJsonValue.asString(),config.domain());
+            String APIUrl = Constants.OSTID_API_VDP_USER_REGISTER_TEMPLATE.expand(usernameJsonValue.asString(),config.domain());
 
             //step1: GET /v1/users/user1@duoliang-onespan
-            HttpEntity getUserHttpEntity = RestUtils.doGet(StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+            HttpEntity getUserHttpEntity = RestUtils.doGet(realmContext.getApiEndpoint() + APIUrl, serviceConfig);
 
             
             //if exist: PATCH /v1/users/user1@duoliang-onespan
@@ -167,7 +175,7 @@ public class OS_Auth_VDPUserRegisterNode implements Node {
                 );
                 logger.debug(loggerPrefix + "OS_Auth_VDPUserRegisterNode vdpUserRegisterJSON:" + vdpUserRegisterJSON);
 
-                HttpEntity httpEntity = RestUtils.doPatchJSON(StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl, vdpUserRegisterJSON,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+                HttpEntity httpEntity = RestUtils.doPatchJSON(realmContext.getApiEndpoint() + APIUrl, vdpUserRegisterJSON, serviceConfig);
                 JSONObject responseJSON = httpEntity.getResponseJSON();
 
                 if (httpEntity.isSuccess()) {
@@ -175,10 +183,10 @@ public class OS_Auth_VDPUserRegisterNode implements Node {
                 } else {
                     String log_correction_id = httpEntity.getLog_correlation_id();
                     String message = responseJSON.getString("message");
-                    String requestJSON = "PUT " + StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl + " : " + vdpUserRegisterJSON;
+                    String requestJSON = "PUT " + realmContext.getApiEndpoint() + APIUrl + " : " + vdpUserRegisterJSON;
 
                     if (Stream.of(log_correction_id, message).anyMatch(Objects::isNull)) {
-                        throw new NodeProcessException("Fail to parse response: " + JSON.toJSONString(responseJSON));
+                        throw new NodeProcessException("Fail to parse response: " + JsonUtils.toJSONString(responseJSON));
                     } else {
                         JSONArray validationErrors = responseJSON.getJSONArray("validationErrors");
                         if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -198,7 +206,7 @@ public class OS_Auth_VDPUserRegisterNode implements Node {
                 );
                 logger.debug(loggerPrefix + "OS_Auth_VDPUserRegisterNode vdpUserRegisterJSON:" + vdpUserRegisterJSON);
 
-                HttpEntity httpEntity = RestUtils.doPutJSON(StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl, vdpUserRegisterJSON,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+                HttpEntity httpEntity = RestUtils.doPutJSON(realmContext.getApiEndpoint() + APIUrl, vdpUserRegisterJSON, serviceConfig);
                 JSONObject responseJSON = httpEntity.getResponseJSON();
 
                 if (httpEntity.isSuccess()) {
@@ -206,10 +214,10 @@ public class OS_Auth_VDPUserRegisterNode implements Node {
                 } else {
                     String log_correction_id = httpEntity.getLog_correlation_id();
                     String message = responseJSON.getString("message");
-                    String requestJSON = "PUT " + StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl + " : " + vdpUserRegisterJSON;
+                    String requestJSON = "PUT " + realmContext.getApiEndpoint() + APIUrl + " : " + vdpUserRegisterJSON;
 
                     if (Stream.of(log_correction_id, message).anyMatch(Objects::isNull)) {
-                        throw new NodeProcessException("Fail to parse response: " + JSON.toJSONString(responseJSON));
+                        throw new NodeProcessException("Fail to parse response: " + JsonUtils.toJSONString(responseJSON));
                     } else {
                         JSONArray validationErrors = responseJSON.getJSONArray("validationErrors");
                         if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -223,15 +231,8 @@ public class OS_Auth_VDPUserRegisterNode implements Node {
                 }
             }
     	}catch (Exception ex) {
-    		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-//			context.getStateFor(this).putShared("OS_Auth_VDPUserRegisterNode Exception", new Date() + ": " + stackTrace)
-//									 .putShared(Constants.OSTID_ERROR_MESSAGE, "OneSpan VDP User Register process: " + stackTrace);
-
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_VDPUserRegisterNode Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan VDP User Register process: " + ex.getMessage());
-			return goTo(VDPUserRegisterOutcome.Error).build();	    
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_VDPUserRegisterNode", "OneSpan VDP User Register process: ", ex,
+					config.unavailableOutcomeEnabled(), VDPUserRegisterOutcome.Error.name(), VDPUserRegisterOutcome.Unavailable.name());
 		 }
     }
 
@@ -243,7 +244,7 @@ public class OS_Auth_VDPUserRegisterNode implements Node {
  
 
     public enum VDPUserRegisterOutcome {
-        Success, Error
+        Success, Error, Unavailable
     }
 
     private Action.ActionBuilder goTo(OS_Auth_VDPUserRegisterNode.VDPUserRegisterOutcome outcome) {
@@ -258,10 +259,11 @@ public class OS_Auth_VDPUserRegisterNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_VDPUserRegisterNode.BUNDLE,
                     OS_Auth_VDPUserRegisterNode.OSVdpUserRegisterOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(OS_Auth_VDPUserRegisterNode.VDPUserRegisterOutcome.Success.name(), bundle.getString("successOutcome")),
                     new Outcome(OS_Auth_VDPUserRegisterNode.VDPUserRegisterOutcome.Error.name(), bundle.getString("errorOutcome"))
             );
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, VDPUserRegisterOutcome.Unavailable.name()).build();
         }
     }
 }
@@ -15,8 +15,8 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
-import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -26,7 +26,6 @@ import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
-import org.apache.commons.lang.StringEscapeUtils;
 import org.forgerock.json.JsonValue;
 import org.forgerock.openam.annotations.sm.Attribute;
 import org.forgerock.openam.auth.node.api.Action;
@@ -40,19 +39,23 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
+import com.os.tid.forgerock.openam.models.AdaptiveRequest;
 import com.os.tid.forgerock.openam.models.GeneralResponseOutput;
 import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.utils.CDDCUtils;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
 import com.os.tid.forgerock.openam.utils.DateUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.RequiredValueValidator;
 import com.sun.identity.sm.SMSException;
@@ -68,6 +71,7 @@ public class OS_Auth_ValidateEventNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Auth_ValidateEventNode.class);
     private final OS_Auth_ValidateEventNode.Config config;
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Auth Validate Event]" + OSAuthNodePlugin.logAppender;
 
     /**
@@ -154,11 +158,20 @@ public class OS_Auth_ValidateEventNode implements Node {
         default VisualCodeMessageOptions visualCodeMessageOptions() {
             return VisualCodeMessageOptions.sessionID;
         }
+
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 1100)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
     public OS_Auth_ValidateEventNode(@Assisted Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
         this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -173,8 +186,7 @@ public class OS_Auth_ValidateEventNode implements Node {
 	        JsonValue sharedState = context.sharedState;
             JsonValue transientState = context.transientState;
 
-	        String tenantName = serviceConfig.tenantName().toLowerCase();
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	
 	        JsonValue usernameJsonValue = sharedState.get(config.userNameInSharedData());
 	        JsonValue cddcJsonJsonValue = sharedState.get(Constants.OSTID_CDDC_JSON);
@@ -183,12 +195,12 @@ public class OS_Auth_ValidateEventNode implements Node {
 	        sharedState.put(Constants.OSTID_USERNAME_IN_SHARED_STATE, config.userNameInSharedData());
 	
 	        boolean missOptionalAttr = false;
-	        StringBuilder optionalAttributesStringBuilder = new StringBuilder(1000);
+	        AdaptiveRequest eventValidationRequest = new AdaptiveRequest();
 	        Map<String, String> optionalAttributesMap = config.optionalAttributes();
 	        for (Map.Entry<String, String> entrySet : optionalAttributesMap.entrySet()) {
 	            JsonValue jsonValue = sharedState.get(entrySet.getValue());
 	            if (jsonValue.isString()) {
-	                optionalAttributesStringBuilder.append("\"").append(entrySet.getKey()).append("\":\"").append(jsonValue.asString()).append("\",");
+	                eventValidationRequest.putAttribute(entrySet.getKey(), jsonValue.asString());
 	            } else {
 	                missOptionalAttr = true;
 	            }
@@ -203,98 +215,63 @@ public class OS_Auth_ValidateEventNode implements Node {
 	            throw new NodeProcessException("Oopts, there are missing data for OneSpan Auth Event Validation Process!");
 	        } 
 	        
-            String APIUrl = String.format(Constants.OSTID_API_ADAPTIVE_EVENT_VALIDATION, usernameJsonValue.asString(), config.domain());
-            /**
-             * 1.eventType
-             * 2.credentials
-             * 3.requestID
-             * 4.orchestrationDelivery
-             * 5.timeout
-             * 6.IAA
-             * 6.1 clientIP
-             * 6.2 fingerprintHash
-             * 6.3 fingerprintRaw
-             * 6.4 relationshipRef
-             * 6.5 sessionID
-             * 6.6 applicationRef
-             */
-            //param 1
-            String eventType = null;
+            String APIUrl = Constants.OSTID_API_ADAPTIVE_EVENT_VALIDATION_TEMPLATE.expand(usernameJsonValue.asString(), config.domain());
             switch(config.eventType()) {
                 case SpecifyBelow:
-                    eventType = config.specifyEventType();
+                    eventValidationRequest.setEventType(config.specifyEventType());
                     break;
                 case ReadFromSharedState:
-                    eventType = sharedState.get(config.eventTypeInSharedState()).asString();
+                    eventValidationRequest.setEventType(sharedState.get(config.eventTypeInSharedState()).asString());
                     break;
                 default:
                     break;
             }
-            //param2&8
-            String credentials = "";
-            String fido = "";
             switch (config.credentialsType()) {
                 case fidoAuthenticator:
-                    credentials = String.format(Constants.OSTID_JSON_ADAPTIVE_CREDENTIALS_FIDOAUTHENTICATOR, sharedState.get("authenticationResponse").asString());
-                    fido = String.format(Constants.OSTID_JSON_ADAPTIVE_CREDENTIALS_FIDOAUTHENTICATOR_2, sharedState.get("fidoProtocol").asString());
+                    eventValidationRequest.setFidoAuthenticator(sharedState.get("fidoProtocol").asString(), sharedState.get("authenticationResponse").asString());
                     break;
                 case authenticator:
-                    credentials = String.format(Constants.OSTID_JSON_ADAPTIVE_CREDENTIALS_AUTHENTICATOR, sharedState.get("OTP").asString());
+                    eventValidationRequest.setOtp(sharedState.get("OTP").asString());
                     break;
                 case passKey:
-                    credentials = String.format(Constants.OSTID_JSON_ADAPTIVE_CREDENTIALS_PASSKEY, transientState.get("password").asString());
+                    eventValidationRequest.setPassKey(transientState.get("password").asString());
                     break;
             }
-            //param3
-            String requestID = sharedState.get(Constants.OSTID_REQUEST_ID).isString() ? String.format(Constants.OSTID_JSON_ADAPTIVE_REQUESTID, sharedState.get(Constants.OSTID_REQUEST_ID).asString()) : "";
-            //param4
-            String orchestrationDelivery = "";
+            String requestID = sharedState.get(Constants.OSTID_REQUEST_ID).isString() ? sharedState.get(Constants.OSTID_REQUEST_ID).asString() : "";
+            if (!requestID.isEmpty()) {
+                eventValidationRequest.setRequestID(requestID);
+            }
             switch (config.orchestrationDelivery()) {
                 case pushNotification:
-                    orchestrationDelivery = String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"pushNotification\"");
+                    eventValidationRequest.setOrchestrationDelivery(ImmutableList.of("pushNotification"));
                     break;
                 case requestMessage:
-                    orchestrationDelivery = String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"requestMessage\"");
+                    eventValidationRequest.setOrchestrationDelivery(ImmutableList.of("requestMessage"));
                     break;
                 case both:
-                    orchestrationDelivery = String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"pushNotification\",\"requestMessage\"");
+                    eventValidationRequest.setOrchestrationDelivery(ImmutableList.of("pushNotification", "requestMessage"));
                     break;
                 case none:
                     break;
             }
-            //param5: for now, API timeout will always set to 0, timeout specified in config will be used for visual code time out
-            String timeout = String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0);
-            //param6
+            //for now, API timeout will always set to 0, timeout specified in config will be used for visual code time out
+            eventValidationRequest.setTimeout(0);
             String sessionID = sharedState.get(Constants.OSTID_SESSIONID).isString() ? sharedState.get(Constants.OSTID_SESSIONID).asString() : StringUtils.stringToHex(UUID.randomUUID().toString());
             String relationshipRef = sharedState.get("relationshipRef").isString() ? sharedState.get("relationshipRef").asString():usernameJsonValue.asString();
+            eventValidationRequest.setCddc(cddcIpJsonValue.asString(), cddcHashJsonValue.asString(), CDDCUtils.getEscapedJson(cddcJsonJsonValue.asString()));
+            eventValidationRequest.setRelationshipRef(relationshipRef);
+            eventValidationRequest.setSessionID(sessionID);
+            eventValidationRequest.setApplicationRef(realmContext.getApplicationRef());
+            byte[] eventValidationJSON = JsonWriter.toJSONBytes(eventValidationRequest);
+            if (logger.isDebugEnabled()) {
+                logger.debug(loggerPrefix + "OS_Auth_ValidateEventNode request JSON:" + new String(eventValidationJSON, StandardCharsets.UTF_8));
+            }
 
-            String IAA = String.format(Constants.OSTID_JSON_ADAPTIVE_USER_LOGIN_IAA,
-                    cddcIpJsonValue.asString(),                         								//param6.1
-                    cddcHashJsonValue.asString(),                       								//param6.2
-                    StringEscapeUtils.escapeJava(cddcJsonJsonValue.asString()),                         //param6.3
-                    relationshipRef,      																//param6.4
-                    sessionID,                                          								//param6.5
-                    serviceConfig.applicationRef()                      								//param6.6
-            );
-
-            String eventValidationJSON = String.format(Constants.OSTID_JSON_ADAPTIVE_EVENT_VALIDATION,
-                    eventType,                                                      //param1
-                    credentials,                                                    //param2
-                    requestID,                                                      //param3
-                    orchestrationDelivery,                                          //param4
-                    timeout,                                                        //param5
-                    IAA,                                                            //param6
-                    optionalAttributesStringBuilder.toString(),                     //param7
-                    fido                                                            //param8
-            );
-            logger.debug(loggerPrefix + "OS_Auth_ValidateEventNode request JSON:" + eventValidationJSON);
-
-            String customUrl = serviceConfig.customUrl().toLowerCase();
-            HttpEntity httpEntity = RestUtils.doPostJSON(StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl, eventValidationJSON,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+            HttpEntity httpEntity = RestUtils.doPostJSON(realmContext.getApiEndpoint() + APIUrl, eventValidationJSON, serviceConfig, GeneralResponseOutput.class);
             JSONObject responseJSON = httpEntity.getResponseJSON();
 
             if (httpEntity.isSuccess()) {
-                GeneralResponseOutput responseOutput = JSON.toJavaObject(responseJSON, GeneralResponseOutput.class);
+                GeneralResponseOutput responseOutput = httpEntity.getResponseObject(GeneralResponseOutput.class);
                 int irmResponse = responseOutput.getRiskResponseCode();
                 sharedState.put(Constants.OSTID_IRM_RESPONSE,irmResponse);
                 sharedState.put(Constants.OSTID_SESSIONID,sessionID);
@@ -353,10 +330,10 @@ public class OS_Auth_ValidateEventNode implements Node {
             } else {
                 String log_correction_id = httpEntity.getLog_correlation_id();
                 String message = responseJSON.getString("message");
-                String requestJSON = "POST " + StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl + " : " + eventValidationJSON;
+                String requestJSON = "POST " + realmContext.getApiEndpoint() + APIUrl + " : " + new String(eventValidationJSON, StandardCharsets.UTF_8);
 
                 if (Stream.of(log_correction_id, message).anyMatch(Objects::isNull)) {
-                    throw new NodeProcessException("Fail to parse response: " + JSON.toJSONString(responseJSON));
+                    throw new NodeProcessException("Fail to parse response: " + JsonUtils.toJSONString(responseJSON));
                 } else {
                     JSONArray validationErrors = responseJSON.getJSONArray("validationErrors");
                     if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -369,12 +346,8 @@ public class OS_Auth_ValidateEventNode implements Node {
                 }
             }
     	}catch (Exception ex) {
-	   		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_ValidateEventNode Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan Auth Event Validation process: " + ex.getMessage());
-			return goTo(EventValidationOutcome.Error).build();	
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_ValidateEventNode", "OneSpan Auth Event Validation process: ", ex,
+					config.unavailableOutcomeEnabled(), EventValidationOutcome.Error.name(), EventValidationOutcome.Unavailable.name());
 	    }
         
     }
@@ -388,7 +361,7 @@ public class OS_Auth_ValidateEventNode implements Node {
     }
 
     public enum EventValidationOutcome {
-        Accept, Decline, StepUp, Error
+        Accept, Decline, StepUp, Error, Unavailable
     }
 
     public enum EventValidationSessionStatus {
@@ -415,12 +388,13 @@ public class OS_Auth_ValidateEventNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_ValidateEventNode.BUNDLE,
                     OS_Auth_ValidateEventNode.OS_Auth_EventValidationNodeOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(EventValidationOutcome.Accept.name(), bundle.getString("acceptOutcome")),
                     new Outcome(EventValidationOutcome.Decline.name(), bundle.getString("declineOutcome")),
                     new Outcome(EventValidationOutcome.StepUp.name(), bundle.getString("stepupOutcome")),
                     new Outcome(EventValidationOutcome.Error.name(), bundle.getString("errorOutcome"))
             );
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, EventValidationOutcome.Unavailable.name()).build();
         }
     }
 }
\ No newline at end of file
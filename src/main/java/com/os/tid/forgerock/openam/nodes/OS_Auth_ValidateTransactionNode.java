@@ -15,9 +15,10 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -27,7 +28,6 @@ import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
-import org.apache.commons.lang.StringEscapeUtils;
 import org.forgerock.json.JsonValue;
 import org.forgerock.openam.annotations.sm.Attribute;
 import org.forgerock.openam.auth.node.api.Action;
@@ -41,7 +41,6 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
@@ -49,12 +48,17 @@ import com.google.common.collect.ImmutableMap;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
 import com.os.tid.forgerock.openam.models.GeneralResponseOutput;
 import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.models.TransactionRequest;
+import com.os.tid.forgerock.openam.utils.CDDCUtils;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
 import com.os.tid.forgerock.openam.utils.DateUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.RequiredValueValidator;
 import com.sun.identity.sm.SMSException;
@@ -70,6 +74,7 @@ public class OS_Auth_ValidateTransactionNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Auth_ValidateTransactionNode.class);
     private final OS_Auth_ValidateTransactionNode.Config config;
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Auth Validate Transaction]" + OSAuthNodePlugin.logAppender;
 
     /**
@@ -189,11 +194,20 @@ public class OS_Auth_ValidateTransactionNode implements Node {
         default VisualCodeMessageOptions visualCodeMessageOptions() {
             return VisualCodeMessageOptions.sessionID;
         }
+
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 1400)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
     public OS_Auth_ValidateTransactionNode(@Assisted Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
         this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -206,27 +220,21 @@ public class OS_Auth_ValidateTransactionNode implements Node {
     	try {
 	        logger.debug(loggerPrefix + "OS_Auth_ValidateTransactionNode started");
 	        JsonValue sharedState = context.sharedState;
-	        String tenantName = serviceConfig.tenantName().toLowerCase();
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	
 	        JsonValue usernameJsonValue = sharedState.get(config.userNameInSharedData());
 	        sharedState.put(Constants.OSTID_USERNAME_IN_SHARED_STATE, config.userNameInSharedData());
 	
 	        boolean missOptionalAttr = false;
-	        StringBuilder optionalAttributesStringBuilder = new StringBuilder(1000);
 	        Map<String, String> optionalAttributesMap = config.optionalAttributes();
 	        for (Map.Entry<String, String> entrySet : optionalAttributesMap.entrySet()) {
-	            JsonValue jsonValue = sharedState.get(entrySet.getValue());
-	            if (jsonValue.isString()) {
-	                optionalAttributesStringBuilder.append("\"").append(entrySet.getKey()).append("\":\"").append(jsonValue.asString()).append("\",");
-	            } else {
+	            if (!sharedState.get(entrySet.getValue()).isString()) {
 	                missOptionalAttr = true;
 	            }
 	        }
 	
 	        String sessionID = sharedState.get(Constants.OSTID_SESSIONID).isString() ? sharedState.get(Constants.OSTID_SESSIONID).asString() : StringUtils.stringToHex(UUID.randomUUID().toString());
-	        String dataJSON = "";
-	        String IAAJson = "";
+	        TransactionRequest sendTransactionRequest = new TransactionRequest();
 	        boolean hasNullValue = false;
 	        switch (config.dataToSign()){
 	            case fido:
@@ -239,10 +247,10 @@ public class OS_Auth_ValidateTransactionNode implements Node {
 	                        sharedState.get(authenticationResponse)
 	                )) ||  (isFido2 && sharedState.get(Constants.OSTID_REQUEST_ID).isNull());
 	                if(!hasNullValue){
-	                    dataJSON = String.format(Constants.OSTID_JSON_ADAPTIVE_DATATOSIGN_FIDO,
-	                            sharedState.get(fidoProtocol).asString(),                                                                                   //param1
-	                            sharedState.get(authenticationResponse).asString(),                                                                         //param2
-	                            isFido2? String.format(Constants.OSTID_JSON_ADAPTIVE_REQUESTID,sharedState.get(Constants.OSTID_REQUEST_ID).asString()):""   //param3
+	                    sendTransactionRequest.setFidoData(
+	                            sharedState.get(fidoProtocol).asString(),
+	                            sharedState.get(authenticationResponse).asString(),
+	                            isFido2 ? sharedState.get(Constants.OSTID_REQUEST_ID).asString() : null
 	                    );
 	                }
 	                break;
@@ -253,15 +261,12 @@ public class OS_Auth_ValidateTransactionNode implements Node {
 	                    if(!sharedState.get(dataToSign).isString()){
 	                        hasNullValue = true;
 	                    }else{
-	                        dataValues.add("\""+sharedState.get(dataToSign).asString()+"\"");
+	                        dataValues.add(sharedState.get(dataToSign).asString());
 	                    }
 	                }
 	                hasNullValue |= !sharedState.get(config.signatureInSharedData()).isString();
 	                if(!hasNullValue){
-	                    dataJSON = String.format(Constants.OSTID_JSON_ADAPTIVE_DATATOSIGN_STANDARD,
-	                            String.join(",", dataValues),                           //param1
-	                            sharedState.get(config.signatureInSharedData()).asString()          //param2
-	                    );
+	                    sendTransactionRequest.setStandardData(dataValues, sharedState.get(config.signatureInSharedData()).asString());
 	                }
 	                break;
 	            case secureChannel:
@@ -270,22 +275,20 @@ public class OS_Auth_ValidateTransactionNode implements Node {
 	                        sharedState.get(config.signatureInSharedData())
 	                ));
 	                if(!hasNullValue){
-	                    dataJSON = String.format(Constants.OSTID_JSON_ADAPTIVE_DATATOSIGN_SECURECHANNEL,
-	                            sharedState.get(Constants.OSTID_REQUEST_ID).asString(),             //param1
-	                            sharedState.get(config.signatureInSharedData()).asString()          //param2
+	                    sendTransactionRequest.setSecureChannelData(
+	                            sharedState.get(Constants.OSTID_REQUEST_ID).asString(),
+	                            sharedState.get(config.signatureInSharedData()).asString()
 	                    );
 	                }
 	                break;
 	            case transactionMessage:
-	                List<String> adaptiveAttributesList = new ArrayList<>();
-	                List<String> dataFieldsList = new ArrayList<>();
 	                Map<String, String> adaptiveAttributes = config.adaptiveAttributes();
 	                for (Map.Entry<String, String> entry : adaptiveAttributes.entrySet()) {
 	                    String nameInSharedState = entry.getValue();
 	                    if(!sharedState.get(nameInSharedState).isString()){
 	                        hasNullValue = true;
 	                    }else{
-	                        adaptiveAttributesList.add("\""+entry.getKey()+"\":\""+sharedState.get(nameInSharedState).asString()+"\"");
+	                        sendTransactionRequest.putAttribute(entry.getKey(), sharedState.get(nameInSharedState).asString());
 	                    }
 	                }
 	
@@ -297,6 +300,7 @@ public class OS_Auth_ValidateTransactionNode implements Node {
 	                dataToSignMap.put("amount",config.adaptiveAttributes().get("amount"));
 	                dataToSignMap.put("currency",config.adaptiveAttributes().get("currency"));
 	
+	                Map<String, String> dataFields = new LinkedHashMap<>();
 	                for (Map.Entry<String, String> entry : dataToSignMap.entrySet()) {
 	                    String key = entry.getKey();
 	                    String value = entry.getValue();
@@ -306,9 +310,7 @@ public class OS_Auth_ValidateTransactionNode implements Node {
 	                        hasNullValue = true;
 	                    }else{
 	                        logger.debug(loggerPrefix + "OSS data value value= " + sharedState.get(value).asString());
-	                        dataFieldsList.add(String.format(Constants.OSTID_JSON_ADAPTIVE_DATATOSIGN_TRANSACTIONMESSAGE_DATAFIELDS,
-	                                key,
-	                                sharedState.get(value).asString()));
+	                        dataFields.put(key, sharedState.get(value).asString());
 	                    }
 	                }
 	
@@ -320,18 +322,18 @@ public class OS_Auth_ValidateTransactionNode implements Node {
 	                    ));
 	                }
 	                if(!hasNullValue){
-	                    String applicationRef = serviceConfig.applicationRef() != null ? serviceConfig.applicationRef() : "";
+	                    String applicationRef = realmContext.getApplicationRef() != null ? realmContext.getApplicationRef() : "";
 	                    String relationshipRefNameInSharedState = config.adaptiveAttributes().containsKey("relationshipRef") ? config.adaptiveAttributes().get("relationshipRef") : "relationshipRef";
 	                    String relationshipRef = sharedState.get(relationshipRefNameInSharedState).isString() ? sharedState.get(relationshipRefNameInSharedState).asString():usernameJsonValue.asString();
-	                    IAAJson = String.join(",",adaptiveAttributesList)+","+String.format(Constants.OSTID_JSON_ADAPTIVE_USER_LOGIN_IAA,
+	                    sendTransactionRequest.setCddc(
 	                            sharedState.get(Constants.OSTID_CDDC_IP).asString(),
 	                            sharedState.get(Constants.OSTID_CDDC_HASH).asString(),
-	                            StringEscapeUtils.escapeJava(sharedState.get(Constants.OSTID_CDDC_JSON).asString()),
-	                            relationshipRef,
-	                            sessionID,
-	                            applicationRef
-	                            );
-	                    dataJSON = String.format(Constants.OSTID_JSON_ADAPTIVE_DATATOSIGN_TRANSACTIONMESSAGE, String.join(",",dataFieldsList));
+	                            CDDCUtils.getEscapedJson(sharedState.get(Constants.OSTID_CDDC_JSON).asString())
+	                    );
+	                    sendTransactionRequest.setRelationshipRef(relationshipRef);
+	                    sendTransactionRequest.setSessionID(sessionID);
+	                    sendTransactionRequest.setApplicationRef(applicationRef);
+	                    sendTransactionRequest.setTransactionMessageData(dataFields);
 	                }
 	                break;
 	        }
@@ -340,49 +342,34 @@ public class OS_Auth_ValidateTransactionNode implements Node {
 	            throw new NodeProcessException("Oopts, there are missing data for OneSpan Auth Validate Transaction Process!");
 	        } 
 	        
-            String APIUrl = String.format(Constants.OSTID_API_ADAPTIVE_SEND_TRANSACTION, usernameJsonValue.asString(), config.domain());
-            /**
-             * 1.objectType
-             * 2.dataToSign
-             * 3.orchestrationDelivery
-             * 4.timeout
-             * 5.IAA
-             **/
-            //param 1
-            String objectType = config.objectType().name();
-            //param3
-            String orchestrationDelivery = "";
+            String APIUrl = Constants.OSTID_API_ADAPTIVE_SEND_TRANSACTION_TEMPLATE.expand(usernameJsonValue.asString(), config.domain());
+            sendTransactionRequest.setObjectType(config.objectType().name());
             switch (config.orchestrationDelivery()) {
                 case pushNotification:
-                    orchestrationDelivery = String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"pushNotification\"");
+                    sendTransactionRequest.setOrchestrationDelivery(ImmutableList.of("pushNotification"));
                     break;
                 case requestMessage:
-                    orchestrationDelivery = String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"requestMessage\"");
+                    sendTransactionRequest.setOrchestrationDelivery(ImmutableList.of("requestMessage"));
                     break;
                 case both:
-                    orchestrationDelivery = String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"pushNotification\",\"requestMessage\"");
+                    sendTransactionRequest.setOrchestrationDelivery(ImmutableList.of("pushNotification", "requestMessage"));
                     break;
                 case none:
                     break;
             }
-            //param4: for now, API timeout will always set to 0, timeout specified in config will be used for visual code time out
-            String timeout = String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0);
-
-            String sendTransactionJSON = String.format(Constants.OSTID_JSON_ADAPTIVE_SEND_TRANSACTION,
-                    objectType,                                                     //param1
-                    dataJSON,                                                       //param2
-                    orchestrationDelivery,                                          //param3
-                    timeout,                                                        //param4
-                    IAAJson                                                         //param5
-            );
-            logger.debug(loggerPrefix + "OS_Auth_ValidateTransactionNode JSON:" + sendTransactionJSON);
+            //for now, API timeout will always set to 0, timeout specified in config will be used for visual code time out
+            sendTransactionRequest.setTimeout(0);
+
+            byte[] sendTransactionJSON = JsonWriter.toJSONBytes(sendTransactionRequest);
+            if (logger.isDebugEnabled()) {
+                logger.debug(loggerPrefix + "OS_Auth_ValidateTransactionNode JSON:" + new String(sendTransactionJSON, StandardCharsets.UTF_8));
+            }
 
-            String customUrl = serviceConfig.customUrl().toLowerCase();
-            HttpEntity httpEntity = RestUtils.doPostJSON(StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl, sendTransactionJSON,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+            HttpEntity httpEntity = RestUtils.doPostJSON(realmContext.getApiEndpoint() + APIUrl, sendTransactionJSON, serviceConfig, GeneralResponseOutput.class);
             JSONObject responseJSON = httpEntity.getResponseJSON();
 
             if (httpEntity.isSuccess()) {
-                GeneralResponseOutput loginOutput = JSON.toJavaObject(responseJSON, GeneralResponseOutput.class);
+                GeneralResponseOutput loginOutput = httpEntity.getResponseObject(GeneralResponseOutput.class);
                 int irmResponse = loginOutput.getRiskResponseCode();
                 sharedState.put(Constants.OSTID_IRM_RESPONSE,irmResponse);
                 sharedState.put(Constants.OSTID_SESSIONID,sessionID);
@@ -444,10 +431,10 @@ public class OS_Auth_ValidateTransactionNode implements Node {
                 String log_correction_id = httpEntity.getLog_correlation_id();
                 String message = responseJSON.getString("message");
 
-                String requestJSON = "POST " + StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl + " : " + sendTransactionJSON;
+                String requestJSON = "POST " + realmContext.getApiEndpoint() + APIUrl + " : " + new String(sendTransactionJSON, StandardCharsets.UTF_8);
 
                 if (Stream.of(log_correction_id, message).anyMatch(Objects::isNull)) {
-                    throw new NodeProcessException("Fail to parse response: " + JSON.toJSONString(responseJSON));
+                    throw new NodeProcessException("Fail to parse response: " + JsonUtils.toJSONString(responseJSON));
                 } else {
                     JSONArray validationErrors = responseJSON.getJSONArray("validationErrors");
                     if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -460,12 +447,8 @@ public class OS_Auth_ValidateTransactionNode implements Node {
                 }
             }
 		}catch (Exception ex) {
-	   		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_ValidateTransactionNode Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan Auth Validate Transactin Process: " + ex.getMessage());
-			return goTo(SendTransactionOutcome.Error).build();	
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_ValidateTransactionNode", "OneSpan Auth Validate Transactin Process: ", ex,
+					config.unavailableOutcomeEnabled(), SendTransactionOutcome.Error.name(), SendTransactionOutcome.Unavailable.name());
 	    }
         
     }
@@ -479,7 +462,7 @@ public class OS_Auth_ValidateTransactionNode implements Node {
     }
 
     public enum SendTransactionOutcome {
-        Accept, Decline, StepUp, Error
+        Accept, Decline, StepUp, Error, Unavailable
     }
 
     public enum OrchestrationDelivery {
@@ -505,12 +488,13 @@ public class OS_Auth_ValidateTransactionNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_ValidateTransactionNode.BUNDLE,
                     OS_Auth_ValidateTransactionNode.OSTID_Adaptive_SendTransactionNodeOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(SendTransactionOutcome.Accept.name(), bundle.getString("acceptOutcome")),
                     new Outcome(SendTransactionOutcome.Decline.name(), bundle.getString("declineOutcome")),
                     new Outcome(SendTransactionOutcome.StepUp.name(), bundle.getString("stepupOutcome")),
                     new Outcome(SendTransactionOutcome.Error.name(), bundle.getString("errorOutcome"))
             );
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, SendTransactionOutcome.Unavailable.name()).build();
         }
     }
 }
\ No newline at end of file
@@ -41,10 +41,10 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
 import com.os.tid.forgerock.openam.utils.DateUtils;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
-import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.authentication.callbacks.HiddenValueCallback;
 import com.sun.identity.authentication.callbacks.ScriptTextOutputCallback;
 import com.sun.identity.sm.SMSException;
@@ -62,6 +62,7 @@ public class OS_Auth_VisualCodeNode implements Node {
     private static final String BUNDLE = "com/os/tid/forgerock/openam/nodes/OS_Auth_VisualCodeNode";
     private final OS_Auth_VisualCodeNode.Config config;
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Auth Visual Code]" + OSAuthNodePlugin.logAppender;
 
     /**
@@ -164,11 +165,20 @@ public class OS_Auth_VisualCodeNode implements Node {
         default String cssForExpired() {
             return "";
         }
+
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 1300)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
     public OS_Auth_VisualCodeNode(@Assisted OS_Auth_VisualCodeNode.Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
         this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -184,9 +194,7 @@ public class OS_Auth_VisualCodeNode implements Node {
             JsonValue sharedState = context.sharedState;
             
             
-	        String tenantName = StringUtils.isEmpty(serviceConfig.tenantName())? "" : serviceConfig.tenantName().toLowerCase();
-	        String customUrl = StringUtils.isEmpty(serviceConfig.customUrl())? "" : serviceConfig.customUrl().toLowerCase();   
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	
 	        JsonValue crontoMsgJsonValue = config.visualCodeMessageOption() == VisualCodeMessageOptions.CustomCrontoMessage ? sharedState.get(config.customMessageInSharedState()) : sharedState.get(Constants.OSTID_CRONTO_MSG);
 	        boolean hasConsumed = false;
@@ -215,10 +223,9 @@ public class OS_Auth_VisualCodeNode implements Node {
 	            //return visual code URL as hiddenValueCallback
 	            String crontURL = "";
 	            if (sharedState.get(config.visualCodeHiddenValueId()).isNull()) {
-	                crontURL = StringUtils.getAPIEndpoint(tenantName,environment, customUrl) + String.format(Constants.OSTID_API_ADAPTIVE_CRTONTO_RENDER,
-	                        config.visualCodeType().name().toUpperCase(),
+	                crontURL = Constants.OSTID_API_ADAPTIVE_CRTONTO_RENDER_TEMPLATE.resolve(realmContext.getApiEndpoint(), config.visualCodeType().name().toUpperCase(),
 	                        crontoMsgJsonValue.asString());
-	                crontURL = RestUtils.doGetImage(crontURL, SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+	                crontURL = RestUtils.doGetImage(crontURL, serviceConfig);
                     sharedState.put(config.visualCodeHiddenValueId(), crontURL);
 	            } else {
 	                crontURL = sharedState.get(config.visualCodeHiddenValueId()).asString();
@@ -243,12 +250,8 @@ public class OS_Auth_VisualCodeNode implements Node {
 	        }
         
     	}catch (Exception ex) {
-    		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_VisualCodeNode Exception", new Date() + ": " + stackTrace)
-									 .putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan Auth Visual Code Node: " + stackTrace);
-			return goTo(VisualCodeOutcome.Error).build();	
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Auth_VisualCodeNode", "OneSpan Auth Visual Code Node: ", ex,
+					config.unavailableOutcomeEnabled(), VisualCodeOutcome.Error.name(), VisualCodeOutcome.Unavailable.name());
 	    }
     }
 
@@ -366,7 +369,7 @@ public class OS_Auth_VisualCodeNode implements Node {
     }
     
     public enum VisualCodeOutcome {
-        Next, Error
+        Next, Error, Unavailable
     }
 
     private String getExpiryString(JsonValue sharedState){
@@ -385,10 +388,11 @@ public class OS_Auth_VisualCodeNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Auth_VisualCodeNode.BUNDLE,
             		OS_Auth_VisualCodeNode.OSAuthVisualCodeOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(OS_Auth_VisualCodeNode.VisualCodeOutcome.Next.name(), bundle.getString("nextOutcome")),
                     new Outcome(OS_Auth_VisualCodeNode.VisualCodeOutcome.Error.name(), bundle.getString("errorOutcome"))
             );
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, VisualCodeOutcome.Unavailable.name()).build();
         }
     }
     
@@ -15,7 +15,6 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
-import java.util.Date;
 import java.util.List;
 import java.util.ResourceBundle;
 
@@ -34,6 +33,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.utils.ErrorUtils;
 import com.sun.identity.authentication.callbacks.ScriptTextOutputCallback;
 
 
@@ -67,11 +67,8 @@ public class OS_Auth_VisualCodeStopNode implements Node {
 	            return Action.send(getStopCrontoCallback()).replaceSharedState(sharedState).build();
 	        }
     	}catch (Exception ex) {
-    		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Auth_VisualCodeStopNode Exception", new Date() + ": " + stackTrace)
-									 .putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan Auth Stop Visual Code Node: " + stackTrace);
+			logger.error(loggerPrefix + "Exception occurred", ex);
+			ErrorUtils.recordError(context.getStateFor(this), loggerPrefix, "OS_Auth_VisualCodeStopNode", "OneSpan Auth Stop Visual Code Node: ", ex);
 			return goTo(VisualCodeStopOutcome.Error).build();
 	    }
     }
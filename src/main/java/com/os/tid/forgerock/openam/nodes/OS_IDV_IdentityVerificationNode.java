@@ -26,6 +26,8 @@ import java.time.Duration;
 import java.net.URI;
 import org.json.JSONObject;
 import com.sun.identity.sm.RequiredValueValidator;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.utils.ErrorUtils;
 /*
  * This code is to be used exclusively in connection with ForgeRock’s software or services.
  * ForgeRock only offers ForgeRock software or services to legal entities who have entered
@@ -115,6 +117,16 @@ public class OS_IDV_IdentityVerificationNode implements Node {
             return CustomPayload.none;
         }
 
+        @Attribute(order = 1100)
+        default int connectTimeout() {
+            return Constants.OSTID_DEFAULT_CONNECT_TIMEOUT_MS;
+        }
+
+        @Attribute(order = 1200)
+        default int readTimeout() {
+            return Constants.OSTID_DEFAULT_IDV_READ_TIMEOUT_MS;
+        }
+
     }
 
 
@@ -132,6 +144,14 @@ public class OS_IDV_IdentityVerificationNode implements Node {
         this.realm = realm;
     }
 
+    private int getConnectTimeout() {
+        return config.connectTimeout() > 0 ? config.connectTimeout() : Constants.OSTID_DEFAULT_CONNECT_TIMEOUT_MS;
+    }
+
+    private int getReadTimeout() {
+        return config.readTimeout() > 0 ? config.readTimeout() : Constants.OSTID_DEFAULT_IDV_READ_TIMEOUT_MS;
+    }
+
     static String convertStreamToString(InputStream is) throws Exception {
         BufferedReader reader = new BufferedReader(new InputStreamReader(is));
         StringBuilder retVal = new StringBuilder();
@@ -172,6 +192,8 @@ public class OS_IDV_IdentityVerificationNode implements Node {
 
                 url = new URL(config.url() + "transactions/" + transactionId +"/detailed-verification-report");
                 conn = (HttpURLConnection) url.openConnection();
+                conn.setConnectTimeout(getConnectTimeout());
+                conn.setReadTimeout(getReadTimeout());
                 conn.setDoOutput(true);
                 conn.setDoInput(true);
                 conn.setRequestMethod("GET");
@@ -208,7 +230,7 @@ public class OS_IDV_IdentityVerificationNode implements Node {
 
             switch (config.customPayload()) {
                 case usersPayload: {
-                    HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(60)).build();
+                    HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(getConnectTimeout())).build();
                     HttpRequest.Builder requestBuilder;
                     String osBody = ns.get("os_payload_body").asString();
                     JSONObject jsonBody = new JSONObject(osBody);
@@ -272,7 +294,7 @@ public class OS_IDV_IdentityVerificationNode implements Node {
                     requestBuilder.header("X-Tenant", config.XTenant());
                     requestBuilder.header("Content-Type", "application/json");
                     
-                    HttpRequest request = requestBuilder.uri(URI.create(config.url() + "transaction/")).timeout(Duration.ofSeconds(60)).build();
+                    HttpRequest request = requestBuilder.uri(URI.create(config.url() + "transaction/")).timeout(Duration.ofMillis(getReadTimeout())).build();
 
                     HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
 
@@ -283,7 +305,7 @@ public class OS_IDV_IdentityVerificationNode implements Node {
                     break;
                 }
                 case customPayload : {
-                    HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(60)).build();
+                    HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(getConnectTimeout())).build();
                     HttpRequest.Builder requestBuilder;
                     String osBody = ns.get("os_payload_body").asString();
                     JSONObject jsonBody = new JSONObject(osBody);
@@ -295,7 +317,7 @@ public class OS_IDV_IdentityVerificationNode implements Node {
                     requestBuilder.header("X-Tenant", config.XTenant());
                     requestBuilder.header("Content-Type", "application/json");
                     
-                    HttpRequest request = requestBuilder.uri(URI.create(config.url() + "transaction/")).timeout(Duration.ofSeconds(60)).build();
+                    HttpRequest request = requestBuilder.uri(URI.create(config.url() + "transaction/")).timeout(Duration.ofMillis(getReadTimeout())).build();
 
                     HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
 
@@ -312,6 +334,8 @@ public class OS_IDV_IdentityVerificationNode implements Node {
 
 
                     conn1 = (HttpURLConnection) url.openConnection();
+                    conn1.setConnectTimeout(getConnectTimeout());
+                    conn1.setReadTimeout(getReadTimeout());
                     conn1.setDoOutput(true);
                     conn1.setDoInput(true);
                     conn1.setRequestMethod("PUT");
@@ -404,6 +428,8 @@ public class OS_IDV_IdentityVerificationNode implements Node {
 
 
                     conn1 = (HttpURLConnection) url.openConnection();
+                    conn1.setConnectTimeout(getConnectTimeout());
+                    conn1.setReadTimeout(getReadTimeout());
                     conn1.setDoOutput(true);
                     conn1.setDoInput(true);
                     conn1.setRequestMethod("PUT");
@@ -497,12 +523,8 @@ public class OS_IDV_IdentityVerificationNode implements Node {
             }
             return Action.goTo("error").build();
         } catch(Exception ex) {
-            logger.error(loggerPrefix + "Exception occurred: " + ex.getStackTrace());
-            context.getStateFor(this).putShared(loggerPrefix + "Exception", new Date() + ": " + ex.getMessage());
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            ex.printStackTrace(pw);
-            context.getStateFor(this).putShared(loggerPrefix + "StackTrack", new Date() + ": " + sw.toString());
+            logger.error(loggerPrefix + "Exception occurred", ex);
+            ErrorUtils.recordError(context.getStateFor(this), loggerPrefix, "OS_IDV_IdentityVerificationNode", "OneSpan Identity Verification: ", ex);
             return Action.goTo("error").build();
         }
     }
@@ -16,7 +16,6 @@
 package com.os.tid.forgerock.openam.nodes;
 
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,7 +36,9 @@ import org.slf4j.LoggerFactory;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.assistedinject.Assisted;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.utils.CDDCUtils;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
+import com.os.tid.forgerock.openam.utils.ErrorUtils;
 import com.os.tid.forgerock.openam.utils.ScriptUtils;
 import com.sun.identity.authentication.callbacks.HiddenValueCallback;
 import com.sun.identity.authentication.callbacks.ScriptTextOutputCallback;
@@ -118,7 +119,7 @@ public class OS_Risk_CDDCNode extends SingleOutcomeNode {
 					CDDCIp = "127.0.0.1";
 				}
 
-				sharedState.put(Constants.OSTID_CDDC_JSON,CDDCJson);
+				sharedState.put(Constants.OSTID_CDDC_JSON,CDDCUtils.pack(CDDCJson));
 				sharedState.put(Constants.OSTID_CDDC_HASH,CDDCHash);
 				sharedState.put(Constants.OSTID_CDDC_IP,CDDCIp);
 
@@ -137,13 +138,13 @@ public class OS_Risk_CDDCNode extends SingleOutcomeNode {
 					//only push CDDC JS once
 					JsonValue hasPushedJSJsonValue = sharedState.get(Constants.OSTID_CDDC_HAS_PUSHED_JS);
 					if(hasPushedJSJsonValue.isNull()) {
-						String jqueryScript = ScriptUtils.getScriptFromFile("/js/jquery-3.5.1.min.js");
+						String jqueryScript = ScriptUtils.getScriptFromFile(Constants.OSTID_SCRIPT_JQUERY);
 						ScriptTextOutputCallback jqueryScriptCallback = new ScriptTextOutputCallback(jqueryScript);
 
-						String JsonScript = ScriptUtils.getScriptFromFile("/js/Json2.js");
+						String JsonScript = ScriptUtils.getScriptFromFile(Constants.OSTID_SCRIPT_JSON2);
 						ScriptTextOutputCallback JsonScriptScriptCallback = new ScriptTextOutputCallback(JsonScript);
 
-						String CDDCScript = ScriptUtils.getScriptFromFile("/js/Vasco.IdKey.RM.CDDC.min.js");
+						String CDDCScript = ScriptUtils.getScriptFromFile(Constants.OSTID_SCRIPT_CDDC);
 						ScriptTextOutputCallback CDDCScriptCallback = new ScriptTextOutputCallback(CDDCScript);
 
 						returnCallback.add(jqueryScriptCallback);
@@ -171,10 +172,8 @@ public class OS_Risk_CDDCNode extends SingleOutcomeNode {
 			}
 
 		}catch (Exception ex) {
-			String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared("OS_Risk_CDDCNode Exception", new Date() + ": " + stackTrace)
-					.putShared(Constants.OSTID_ERROR_MESSAGE, "OneSpan Risk CDDC: " + stackTrace);
+			logger.error(loggerPrefix + "Exception occurred", ex);
+			ErrorUtils.recordError(context.getStateFor(this), "", "OS_Risk_CDDCNode", "OneSpan Risk CDDC: ", ex);
 			throw new NodeProcessException(ex.getMessage());
 		}
 	}
@@ -15,7 +15,7 @@
  */
 package com.os.tid.forgerock.openam.nodes;
 
-import java.util.Date;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -25,7 +25,6 @@ import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
-import org.apache.commons.lang.StringEscapeUtils;
 import org.forgerock.json.JsonValue;
 import org.forgerock.openam.annotations.sm.Attribute;
 import org.forgerock.openam.auth.node.api.Action;
@@ -39,7 +38,6 @@ import org.forgerock.util.i18n.PreferredLocales;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableList;
@@ -47,10 +45,15 @@ import com.google.common.collect.ImmutableMap;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
+import com.os.tid.forgerock.openam.models.AdaptiveRequest;
 import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.utils.CDDCUtils;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
-import com.os.tid.forgerock.openam.utils.SslUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.RequiredValueValidator;
 import com.sun.identity.sm.SMSException;
@@ -66,6 +69,7 @@ public class OS_Risk_InsertTransactionNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Risk_InsertTransactionNode.class);
     private final OS_Risk_InsertTransactionNode.Config config;
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Risk Analytics Send Transaction]" + OSAuthNodePlugin.logAppender;
 
     /**
@@ -104,11 +108,20 @@ public class OS_Risk_InsertTransactionNode implements Node {
                     .put("debtorIBAN", "debtorIBAN")
                     .build();
         }
+
+        /**
+         * Routes to the Unavailable outcome instead of Error while the OneSpan service is unavailable.
+         */
+        @Attribute(order = 400)
+        default boolean unavailableOutcomeEnabled() {
+            return false;
+        }
     }
 
     @Inject
     public OS_Risk_InsertTransactionNode(@Assisted Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
         this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -121,20 +134,19 @@ public class OS_Risk_InsertTransactionNode implements Node {
     	try {
 	        logger.debug(loggerPrefix + "OS_Risk_InsertTransactionNode started");
             JsonValue sharedState = context.sharedState;
-	        String tenantName = serviceConfig.tenantName().toLowerCase();
-	        String environment = Constants.OSTID_ENV_MAP.get(serviceConfig.environment());
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 	
 	        boolean missAttr = false;
 	        JsonValue usernameJsonValue = sharedState.get(config.userNameInSharedData());
 	        missAttr |= !usernameJsonValue.isString();
             sharedState.put(Constants.OSTID_USERNAME_IN_SHARED_STATE, config.userNameInSharedData());
 	
-	        StringBuilder attributesStringBuilder = new StringBuilder(1000);
+	        AdaptiveRequest sendTransactionRequest = new AdaptiveRequest();
 	        Map<String, String> attributesMap = config.adaptiveAttributes();
 	        for (Map.Entry<String, String> entrySet : attributesMap.entrySet()) {
 	            JsonValue jsonValue = sharedState.get(entrySet.getValue());
 	            if (jsonValue.isString()) {
-	                attributesStringBuilder.append("\"").append(entrySet.getKey()).append("\":\"").append(jsonValue.asString()).append("\",");
+	                sendTransactionRequest.putAttribute(entrySet.getKey(), jsonValue.asString());
 	            } else {
 	                missAttr = true;
 	            }
@@ -147,37 +159,26 @@ public class OS_Risk_InsertTransactionNode implements Node {
 	                sharedState.get(Constants.OSTID_CDDC_HASH),
 	                sharedState.get(Constants.OSTID_CDDC_IP)
 	        ));
-	        String applicationRef = serviceConfig.applicationRef() != null ? serviceConfig.applicationRef() : "";
+	        String applicationRef = realmContext.getApplicationRef() != null ? realmContext.getApplicationRef() : "";
 	
 	        if(missAttr) { //missing data
-	            logger.debug(loggerPrefix + JSON.toJSONString(sharedState));
+	            if (logger.isDebugEnabled()) {
+	                logger.debug(loggerPrefix + JsonUtils.toJSONString(sharedState.getObject()));
+	            }
 	            throw new NodeProcessException("Oopts, there are missing data for OneSpan Risk Insert Transaction Node!");
 	        }
 	        
-	        /**
-	         * 1.attributes
-	         * 2.CDDC IP
-	         * 3.CDDC Hash
-	         * 4.CDDC Json
-	         * 5.session ID
-	         * 6.application reference
-	         * 7.relationship ID
-	         **/
-	        
             String relationshipRef = sharedState.get("relationshipRef").isString() ? sharedState.get("relationshipRef").asString():usernameJsonValue.asString();
-	        
-            String sendTransactionJSON = String.format(Constants.OSTID_JSON_RISK_SEND_TRANSACTION,
-                    attributesStringBuilder.toString(),                              								//param1
-                    sharedState.get(Constants.OSTID_CDDC_IP).asString(),             								//param2
-                    sharedState.get(Constants.OSTID_CDDC_HASH).asString(),           								//param3
-                    StringEscapeUtils.escapeJava(sharedState.get(Constants.OSTID_CDDC_JSON).asString()),            //param4
-                    sessionID,                                                       								//param5
-                    applicationRef,                                                  								//param6
-                    relationshipRef                                     			 								//param7
-            );
+
+            sendTransactionRequest.setCddc(sharedState.get(Constants.OSTID_CDDC_IP).asString(),
+                    sharedState.get(Constants.OSTID_CDDC_HASH).asString(),
+                    CDDCUtils.getEscapedJson(sharedState.get(Constants.OSTID_CDDC_JSON).asString()));
+            sendTransactionRequest.setRelationshipRef(relationshipRef);
+            sendTransactionRequest.setSessionID(sessionID);
+            sendTransactionRequest.setApplicationRef(applicationRef);
+            byte[] sendTransactionJSON = JsonWriter.toJSONBytes(sendTransactionRequest);
             String APIUrl = Constants.OSTID_API_RISK_SEND_TRANSACTION;
-            String customUrl = serviceConfig.customUrl().toLowerCase();
-            HttpEntity httpEntity = RestUtils.doPostJSON(StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl, sendTransactionJSON,SslUtils.getSSLConnectionSocketFactory(serviceConfig));
+            HttpEntity httpEntity = RestUtils.doPostJSON(realmContext.getApiEndpoint() + APIUrl, sendTransactionJSON, serviceConfig);
             JSONObject responseJSON = httpEntity.getResponseJSON();
 
             if (httpEntity.isSuccess()) {
@@ -198,10 +199,10 @@ public class OS_Risk_InsertTransactionNode implements Node {
             } else {
                 String log_correction_id = httpEntity.getLog_correlation_id();
                 String message = responseJSON.getString("message");
-                String requestJSON = "POST " + StringUtils.getAPIEndpoint(tenantName, environment, customUrl) + APIUrl + " : " + sendTransactionJSON;
+                String requestJSON = "POST " + realmContext.getApiEndpoint() + APIUrl + " : " + new String(sendTransactionJSON, StandardCharsets.UTF_8);
 
                 if (Stream.of(log_correction_id, message).anyMatch(Objects::isNull)) {
-                    throw new NodeProcessException("Fail to parse response: " + JSON.toJSONString(responseJSON));
+                    throw new NodeProcessException("Fail to parse response: " + JsonUtils.toJSONString(responseJSON));
                 } else {
                     JSONArray validationErrors = responseJSON.getJSONArray("validationErrors");
                     if(validationErrors != null && validationErrors.size() > 0 && validationErrors.getJSONObject(0).getString("message") != null){
@@ -214,17 +215,13 @@ public class OS_Risk_InsertTransactionNode implements Node {
                 }
             }
     	}catch (Exception ex) {
-	   		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-			context.getStateFor(this).putShared(loggerPrefix + "OS_Risk_InsertTransactionNode Exception", new Date() + ": " + ex.getMessage());
-			context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "OneSpan Risk Insert Transaction: " + ex.getMessage());
-			return goTo(RiskTransactionOutcome.Error).build();	
+			return OutcomeUtils.onException(context.getStateFor(this), logger, loggerPrefix, "OS_Risk_InsertTransactionNode", "OneSpan Risk Insert Transaction: ", ex,
+					config.unavailableOutcomeEnabled(), RiskTransactionOutcome.Error.name(), RiskTransactionOutcome.Unavailable.name());
 	    }
     }
 
     public enum RiskTransactionOutcome {
-        Accept, Decline, Challenge, Error
+        Accept, Decline, Challenge, Error, Unavailable
     }
 
     private Action.ActionBuilder goTo(RiskTransactionOutcome outcome) {
@@ -239,12 +236,13 @@ public class OS_Risk_InsertTransactionNode implements Node {
         public List<Outcome> getOutcomes(PreferredLocales locales, JsonValue nodeAttributes) {
             ResourceBundle bundle = locales.getBundleInPreferredLocale(OS_Risk_InsertTransactionNode.BUNDLE,
                     OSTID_Risk_InsertTransactionNodeOutcomeProvider.class.getClassLoader());
-            return ImmutableList.of(
+            ImmutableList.Builder<Outcome> outcomes = ImmutableList.<Outcome>builder().add(
                     new Outcome(RiskTransactionOutcome.Accept.name(), bundle.getString("acceptOutcome")),
                     new Outcome(RiskTransactionOutcome.Decline.name(), bundle.getString("declineOutcome")),
                     new Outcome(RiskTransactionOutcome.Challenge.name(), bundle.getString("challengeOutcome")),
                     new Outcome(RiskTransactionOutcome.Error.name(), bundle.getString("errorOutcome"))
             );
+            return OutcomeUtils.addUnavailableOutcome(outcomes, nodeAttributes, bundle, RiskTransactionOutcome.Unavailable.name()).build();
         }
     }
 }
\ No newline at end of file
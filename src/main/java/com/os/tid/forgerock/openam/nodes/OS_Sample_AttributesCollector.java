@@ -17,7 +17,6 @@ package com.os.tid.forgerock.openam.nodes;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +39,7 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.os.tid.forgerock.openam.config.Constants;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
+import com.os.tid.forgerock.openam.utils.ErrorUtils;
 
 
 @Node.Metadata( outcomeProvider = SingleOutcomeNode.OutcomeProvider.class,
@@ -95,10 +95,8 @@ public class OS_Sample_AttributesCollector extends SingleOutcomeNode {
 	            return Action.send(callbackList).build();
 	        }
     	}catch (Exception ex) {
-    		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared("OS_Sample_AttributesCollector Exception", new Date() + ": " + stackTrace)
-									 .putShared(Constants.OSTID_ERROR_MESSAGE, "OneSpan Sample Attributes Collector: " + stackTrace);
+			logger.error(loggerPrefix + "Exception occurred", ex);
+			ErrorUtils.recordError(context.getStateFor(this), "", "OS_Sample_AttributesCollector", "OneSpan Sample Attributes Collector: ", ex);
 			throw new NodeProcessException(ex.getMessage());
 	    }
     }
@@ -16,7 +16,6 @@
 package com.os.tid.forgerock.openam.nodes;
 
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
 import javax.security.auth.callback.TextOutputCallback;
@@ -31,6 +30,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.utils.ErrorUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 
 @Node.Metadata( outcomeProvider = SingleOutcomeNode.OutcomeProvider.class,
@@ -70,10 +70,8 @@ public class OS_Sample_ErrorDisplayNode extends SingleOutcomeNode {
 	            return goToNext().build();
 	        }
     	}catch (Exception ex) {
-    		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-			context.getStateFor(this).putShared("OS_Sample_ErrorDisplayNode Exception", new Date() + ": " + stackTrace)
-									 .putShared(Constants.OSTID_ERROR_MESSAGE, "OneSpan Sample Error Display: " + stackTrace);
+			logger.error(loggerPrefix + "Exception occurred", ex);
+			ErrorUtils.recordError(context.getStateFor(this), "", "OS_Sample_ErrorDisplayNode", "OneSpan Sample Error Display: ", ex);
 			throw new NodeProcessException(ex.getMessage());
 	    }
     }
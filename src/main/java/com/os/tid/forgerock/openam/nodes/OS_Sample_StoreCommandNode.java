@@ -16,7 +16,6 @@
 package com.os.tid.forgerock.openam.nodes;
 
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,7 +41,9 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
 import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.utils.ErrorUtils;
 import com.os.tid.forgerock.openam.utils.RestUtils;
 import com.os.tid.forgerock.openam.utils.StringUtils;
 import com.sun.identity.sm.RequiredValueValidator;
@@ -56,6 +57,7 @@ public class OS_Sample_StoreCommandNode implements Node {
     private final Logger logger = LoggerFactory.getLogger(OS_Sample_StoreCommandNode.class);
     private final OS_Sample_StoreCommandNode.Config config;
     private final OSConfigurationsService serviceConfig;
+    private final Realm realm;
     private static final String loggerPrefix = "[OneSpan Sample Store Command]" + OSAuthNodePlugin.logAppender;
 
     /**
@@ -100,6 +102,7 @@ public class OS_Sample_StoreCommandNode implements Node {
     @Inject
     public OS_Sample_StoreCommandNode(@Assisted OS_Sample_StoreCommandNode.Config config, @Assisted Realm realm, AnnotatedServiceRegistry serviceRegistry) throws NodeProcessException {
         this.config = config;
+        this.realm = realm;
         try {
             this.serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).get();
         } catch (SSOException | SMSException e) {
@@ -112,8 +115,7 @@ public class OS_Sample_StoreCommandNode implements Node {
     	try {
 	        logger.debug(loggerPrefix + "OSTID_DEMO_BackCommandsNode started");
 	        
-	        String tenantName = StringUtils.isEmpty(serviceConfig.tenantName())? "" : serviceConfig.tenantName().toLowerCase();
-	        String customUrl = StringUtils.isEmpty(serviceConfig.customUrl())? "" : serviceConfig.customUrl().toLowerCase(); 
+	        OneSpanRealmContext realmContext = OneSpanRealmContext.of(realm, serviceConfig);
 
             JsonValue sharedState=context.sharedState;
 	
@@ -126,8 +128,8 @@ public class OS_Sample_StoreCommandNode implements Node {
 
             //build back command API URL
             Map<String, String> placeholders = new HashMap<String, String>() {{
-                put("tenantName", tenantName);
-                put("customUrl", customUrl);
+                put("tenantName", realmContext.getTenantName());
+                put("customUrl", realmContext.getCustomUrl());
                 put("sessionIdentifier", StringUtils.hexToString(ostid_sessionid.asString()));
                 put("sessionID", ostid_sessionid.asString());
                 put("requestID", requestId);
@@ -151,11 +153,8 @@ public class OS_Sample_StoreCommandNode implements Node {
                 throw new NodeProcessException(httpEntity.getResponseJSON().toJSONString());
             }
     	}catch (Exception ex) {
-	   		String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
-			logger.error(loggerPrefix + "Exception occurred: " + stackTrace);
-		    context.getStateFor(this).putShared(loggerPrefix + "StackTrace", new Date() + ": " + stackTrace);
-		    context.getStateFor(this).putShared(loggerPrefix + "OSTID_DEMO_BackCommandsNode Exception", new Date() + ": " + ex.getMessage());
-		    context.getStateFor(this).putShared(loggerPrefix + Constants.OSTID_ERROR_MESSAGE, "Fail to Store Command in backoffice: " + ex.getMessage());
+			logger.error(loggerPrefix + "Exception occurred", ex);
+			ErrorUtils.recordError(context.getStateFor(this), loggerPrefix, "OS_Sample_StoreCommandNode", "Fail to Store Command in backoffice: ", ex);
 			return goTo(OSTID_DEMO_StoreCommandNode_Outcome.Error).build();	
 	    }
     }
@@ -17,7 +17,6 @@ package com.os.tid.forgerock.openam.nodes;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,11 +37,12 @@ import org.forgerock.openam.auth.node.api.TreeContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alibaba.fastjson.JSON;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.os.tid.forgerock.openam.config.Constants;
 import com.os.tid.forgerock.openam.utils.CollectionsUtils;
+import com.os.tid.forgerock.openam.utils.ErrorUtils;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
 
 
 @Node.Metadata( outcomeProvider = SingleOutcomeNode.OutcomeProvider.class,
@@ -132,8 +132,10 @@ public class OS_Sample_TransactionCollector extends SingleOutcomeNode {
 	            if(config.passKeyRequired()){
 	                transientState.put(Constants.OSTID_DEFAULT_PASSKEY,password);
 	            }
-	            logger.debug(loggerPrefix + "OS_Sample_TransactionCollector shared state: " + JSON.toJSONString(sharedState));
-	            logger.debug(loggerPrefix + "OS_Sample_TransactionCollector transient state: " + JSON.toJSONString(transientState));
+	            if (logger.isDebugEnabled()) {
+	                logger.debug(loggerPrefix + "OS_Sample_TransactionCollector shared state: " + JsonUtils.toJSONString(sharedState.getObject()));
+	                logger.debug(loggerPrefix + "OS_Sample_TransactionCollector transient state: " + JsonUtils.toJSONString(transientState.getObject()));
+	            }
 	            return goToNext()
 	                    .replaceSharedState(sharedState)
 	                    .replaceTransientState(transientState)
@@ -143,11 +145,8 @@ public class OS_Sample_TransactionCollector extends SingleOutcomeNode {
 	        }
         
     	}catch (Exception ex) {
-			logger.error(loggerPrefix + "Exception occurred: " + ex.getMessage());
-			logger.error(loggerPrefix + "Exception occurred: " + ex.getStackTrace());
-			ex.printStackTrace();
-			context.getStateFor(this).putShared("OS_Sample_TransactionCollector Exception", new Date() + ": " + ex.getMessage())
-									 .putShared(Constants.OSTID_ERROR_MESSAGE, "OneSpan Sample Transaction Collector: " + ex.getMessage());
+			logger.error(loggerPrefix + "Exception occurred", ex);
+			ErrorUtils.recordError(context.getStateFor(this), "", "OS_Sample_TransactionCollector", "OneSpan Sample Transaction Collector: ", ex);
 			throw new NodeProcessException(ex.getMessage());
 	    }
         
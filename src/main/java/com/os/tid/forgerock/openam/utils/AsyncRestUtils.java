@@ -0,0 +1,234 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.os.tid.forgerock.openam.config.ApiEndpoint;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+
+/**
+ * Non-blocking variant of {@link RestUtils}. The returned futures complete on the HTTP client's own threads, so a node
+ * can issue several independent OneSpan calls at once and only park its request thread once, in {@link #join}.
+ */
+public class AsyncRestUtils {
+    private static final Logger logger = LoggerFactory.getLogger("amAuth");
+
+    private AsyncRestUtils() {
+    }
+
+    public static CompletableFuture<HttpEntity> doPostJSONAsync(String url, String payload, OSConfigurationsService serviceConfig) {
+        return doPostJSONAsync(url, payload, serviceConfig, null);
+    }
+
+    /**
+     * Posts the payload and decodes a successful response into the given model, see
+     * {@link RestUtils#doPostJSON(String, String, OSConfigurationsService, Class)}.
+     */
+    public static CompletableFuture<HttpEntity> doPostJSONAsync(String url, String payload, OSConfigurationsService serviceConfig, Class<?> responseType) {
+        return send("POST", RegionUtils.route(serviceConfig, url), RestUtils.encode(payload), null, serviceConfig, responseType);
+    }
+
+    public static CompletableFuture<HttpEntity> doPutJSONAsync(String url, String payload, OSConfigurationsService serviceConfig) {
+        return send("PUT", RegionUtils.route(serviceConfig, url), RestUtils.encode(payload), null, serviceConfig, null);
+    }
+
+    public static CompletableFuture<HttpEntity> doPatchJSONAsync(String url, String payload, OSConfigurationsService serviceConfig) {
+        return send("PATCH", RegionUtils.route(serviceConfig, url), RestUtils.encode(payload), null, serviceConfig, null);
+    }
+
+    public static CompletableFuture<HttpEntity> doGetAsync(String url, OSConfigurationsService serviceConfig) {
+        return send("GET", RegionUtils.route(serviceConfig, url), null, null, serviceConfig, null);
+    }
+
+    public static CompletableFuture<String> doGetImageAsync(String url, OSConfigurationsService serviceConfig) {
+        return getImage(RegionUtils.route(serviceConfig, url), serviceConfig);
+    }
+
+    /**
+     * Fetches an image from a url already routed by {@link RegionUtils}.
+     */
+    static CompletableFuture<String> getImage(String url, OSConfigurationsService serviceConfig) {
+        HttpRequest request = request("GET", url, serviceConfig).header("Accept", "image/png").GET().build();
+        return sendWithRetry(request, CompressionUtils.decompressing(bytes -> bytes), serviceConfig)
+                .thenApply(response -> {
+                    byte[] imageBytes = response.body();
+                    return imageBytes == null ? null : "data:image/png;base64," + Base64.getEncoder().encodeToString(imageBytes);
+                });
+    }
+
+    /**
+     * Waits for the response of an asynchronous call, rethrowing its failure the way the blocking
+     * {@link RestUtils} methods would.
+     */
+    public static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for OneSpan response", e);
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * The single entry point of all asynchronous JSON calls. The payload is sent as is, or gzip compressed when the
+     * realm allows it; a 415 response to a compressed payload disables compression for the endpoint and the payload
+     * is sent again uncompressed. The url must already be routed by {@link RegionUtils}.
+     */
+    static CompletableFuture<HttpEntity> send(String method, String url, byte[] payload, Map<String, String> requestHeaders,
+            OSConfigurationsService serviceConfig, Class<?> responseType) {
+        boolean compress = CompressionUtils.shouldCompress(serviceConfig, url, payload);
+        CompletableFuture<HttpEntity> response = sendAsync(jsonRequest(method, url, payload, requestHeaders, compress, serviceConfig), serviceConfig, responseType);
+        if (!compress) {
+            return response;
+        }
+        return response.thenCompose(httpEntity -> {
+            if (httpEntity.getHttpStatus() != CompressionUtils.UNSUPPORTED_MEDIA_TYPE) {
+                return CompletableFuture.completedFuture(httpEntity);
+            }
+            CompressionUtils.markUnsupported(serviceConfig, url);
+            return sendAsync(jsonRequest(method, url, payload, requestHeaders, false, serviceConfig), serviceConfig, responseType);
+        });
+    }
+
+    /**
+     * Starts a request with the timeout of its endpoint and the headers contributed by the {@link RequestInterceptors}.
+     */
+    private static HttpRequest.Builder request(String method, String url, OSConfigurationsService serviceConfig) {
+        URI uri = URI.create(url);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(TimeoutUtils.getRequestTimeout(serviceConfig, ApiEndpoint.fromUrl(url))))
+                .header("Accept-Encoding", CompressionUtils.GZIP);
+        RequestInterceptors.beforeRequest(method, uri).forEach(builder::header);
+        return builder;
+    }
+
+    private static HttpRequest jsonRequest(String method, String url, byte[] payload, Map<String, String> requestHeaders, boolean compress,
+            OSConfigurationsService serviceConfig) {
+        HttpRequest.Builder builder = request(method, url, serviceConfig)
+                .header("Accept", "application/json");
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.noBody();
+        if (payload != null) {
+            builder.header("Content-Type", "application/json");
+            if (compress) {
+                builder.header("Content-Encoding", CompressionUtils.GZIP);
+            }
+            body = HttpRequest.BodyPublishers.ofByteArray(compress ? CompressionUtils.gzip(payload) : payload);
+        }
+        if (requestHeaders != null) {
+            requestHeaders.forEach(builder::setHeader);
+        }
+        return builder.method(method, body).build();
+    }
+
+    /**
+     * Sends the request and, when a response model is given, binds a successful response body to it directly from
+     * the received bytes. Any other response is parsed into a JSON tree.
+     */
+    private static CompletableFuture<HttpEntity> sendAsync(HttpRequest request, OSConfigurationsService serviceConfig, Class<?> responseType) {
+        return sendWithRetry(request, CompressionUtils.decompressing(bytes -> bytes), serviceConfig)
+                .thenApply(response -> {
+                    int sourceResponseCode = response.statusCode();
+                    byte[] responseBytes = response.body();
+                    String log_correlation_id = response.headers().firstValue(Constants.OSTID_LOG_CORRELATION_ID).orElse("");
+                    if (responseType != null && RestUtils.isSuccess(sourceResponseCode) && responseBytes.length > 0) {
+                        Object responseObject;
+                        try {
+                            responseObject = RestUtils.decode(responseBytes, responseType);
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("AsyncRestUtils " + request.method() + " response: " + JsonUtils.toJSONString(responseObject));
+                        }
+                        return new HttpEntity(null, responseObject, sourceResponseCode, log_correlation_id);
+                    }
+                    String responseBody = new String(responseBytes, StandardCharsets.UTF_8);
+                    logger.debug("AsyncRestUtils " + request.method() + " response: " + responseBody);
+                    return RestUtils.toHttpEntity(responseBody, sourceResponseCode, log_correlation_id);
+                });
+    }
+
+    private static <T> CompletableFuture<HttpResponse<T>> sendWithRetry(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+            OSConfigurationsService serviceConfig) {
+        long start = System.nanoTime();
+        CircuitBreaker circuitBreaker;
+        try {
+            circuitBreaker = CircuitBreakerUtils.acquire(serviceConfig, request.uri());
+        } catch (CircuitBreakerOpenException e) {
+            RequestInterceptors.afterFailure(request.method(), request.uri(), e, start);
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpResponse<T>> send;
+        try {
+            ApiEndpoint endpoint = ApiEndpoint.fromUrl(request.uri().toString());
+            send = sendWithRetry(HttpClientUtils.getAsyncHttpClient(serviceConfig, request.uri()), request, bodyHandler, endpoint.isIdempotent(request.method()),
+                    HedgingUtils.getLatencyTracker(serviceConfig, request), 1, RetryUtils.getMaxAttempts(serviceConfig), RetryUtils.getDeadline(serviceConfig));
+        } catch (RuntimeException e) {
+            // the permit taken above must be given back, see CircuitBreaker#tryAcquire
+            send = CompletableFuture.failedFuture(e);
+        }
+        return send.whenComplete((response, failure) -> {
+            if (failure != null) {
+                CircuitBreakerUtils.onFailure(circuitBreaker);
+                RequestInterceptors.afterFailure(request.method(), request.uri(),
+                        failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure, start);
+            } else {
+                CircuitBreakerUtils.onResponse(circuitBreaker, response.statusCode());
+                RequestInterceptors.afterResponse(request.method(), request.uri(), response.statusCode(), start);
+            }
+        });
+    }
+
+    /**
+     * Sends the request, hedging it when a latency tracker is given, and schedules another attempt on a delayed
+     * executor instead of blocking a thread while backing off.
+     */
+    private static <T> CompletableFuture<HttpResponse<T>> sendWithRetry(HttpClient httpClient, HttpRequest request,
+            HttpResponse.BodyHandler<T> bodyHandler, boolean idempotent, HedgingUtils.LatencyTracker latencyTracker,
+            int attempt, int maxAttempts, long retryDeadline) {
+        CompletableFuture<HttpResponse<T>> send = latencyTracker != null
+                ? HedgingUtils.sendHedged(httpClient, request, bodyHandler, latencyTracker)
+                : httpClient.sendAsync(request, bodyHandler);
+        return send.handle((response, failure) -> {
+            long delay = RetryUtils.getBackoffDelay(attempt);
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            boolean retryable = cause == null
+                    ? idempotent && RetryUtils.isRetryableStatus(response.statusCode())
+                    : RetryUtils.isRetryable(cause, idempotent);
+            if (retryable && RetryUtils.canRetry(attempt, maxAttempts, retryDeadline, delay)) {
+                logger.debug("AsyncRestUtils " + request.method() + " " + request.uri().getPath() + " failed, retrying in " + delay + "ms");
+                OneSpanMetrics.getInstance().recordRetry();
+                Executor delayedExecutor = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+                return CompletableFuture.supplyAsync(() -> request, delayedExecutor)
+                        .thenCompose(retry -> sendWithRetry(httpClient, retry, bodyHandler, idempotent, latencyTracker, attempt + 1, maxAttempts, retryDeadline));
+            }
+            if (retryable) {
+                OneSpanMetrics.getInstance().recordRetryGiveUp();
+            }
+            return cause == null ? CompletableFuture.completedFuture(response) : CompletableFuture.<HttpResponse<T>>failedFuture(cause);
+        }).thenCompose(future -> future);
+    }
+}
@@ -0,0 +1,111 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.os.tid.forgerock.openam.config.Constants;
+
+/**
+ * Stores the CDDC data collected by the CDDC node in the shared state. The JSON is escaped once, as it is sent
+ * within the request bodies, then deflated and Base64 encoded behind {@value Constants#OSTID_CDDC_PACKED_PREFIX}.
+ * This keeps the shared state, which travels in the journey JWT with client-side sessions, small, and lets the nodes
+ * write the data into request bodies without escaping it again. Data stored as plain JSON, by an older version of the
+ * CDDC node or another node, is still accepted.
+ */
+public class CDDCUtils {
+    private static final Logger logger = LoggerFactory.getLogger("amAuth");
+    private static final String loggerPrefix = "[OneSpan Auth CDDCUtils][Marketplace] ";
+
+    private CDDCUtils() {
+    }
+
+    /**
+     * Returns the value to store for the collected CDDC JSON. The JSON is stored as is when packing would not make
+     * it smaller.
+     */
+    public static String pack(String cddcJson) {
+        if (cddcJson == null) {
+            return null;
+        }
+        byte[] deflated = deflate(JsonWriter.escape(cddcJson));
+        String packed = Constants.OSTID_CDDC_PACKED_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(deflated);
+        int rawBytes = cddcJson.getBytes(StandardCharsets.UTF_8).length;
+        // a value which looks packed is always packed, so that stored data is never taken for what it is not
+        String stored = packed.length() < rawBytes || cddcJson.startsWith(Constants.OSTID_CDDC_PACKED_PREFIX) ? packed : cddcJson;
+        OneSpanMetrics.getInstance().recordCddcPacked(rawBytes, stored.length());
+        logger.debug(loggerPrefix + "Stored CDDC data of " + rawBytes + " bytes in " + stored.length() + " bytes");
+        return stored;
+    }
+
+    /**
+     * Returns the stored CDDC data as JSON-escaped UTF-8, ready for {@link JsonWriter#rawString(byte[])}, or
+     * {@code null} when there is none.
+     *
+     * @throws IllegalArgumentException if packed data is corrupt or inflates beyond
+     *         {@value Constants#OSTID_DEFAULT_CDDC_MAX_SIZE} bytes
+     */
+    public static byte[] getEscapedJson(String stored) {
+        if (stored == null) {
+            return null;
+        }
+        if (!stored.startsWith(Constants.OSTID_CDDC_PACKED_PREFIX)) {
+            return JsonWriter.escape(stored);
+        }
+        return inflate(Base64.getUrlDecoder().decode(stored.substring(Constants.OSTID_CDDC_PACKED_PREFIX.length())));
+    }
+
+    /**
+     * Returns the stored CDDC data as a JSON-escaped string, see {@link #getEscapedJson(String)}.
+     */
+    public static String getEscapedJsonString(String stored) {
+        byte[] escaped = getEscapedJson(stored);
+        return escaped == null ? null : new String(escaped, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] chunk = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] chunk = new byte[4096];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(chunk);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated CDDC data");
+                }
+                if (out.size() + inflated > Constants.OSTID_DEFAULT_CDDC_MAX_SIZE) {
+                    throw new IllegalArgumentException("CDDC data exceeds " + Constants.OSTID_DEFAULT_CDDC_MAX_SIZE + " bytes");
+                }
+                out.write(chunk, 0, inflated);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt CDDC data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
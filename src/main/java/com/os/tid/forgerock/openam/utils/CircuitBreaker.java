@@ -0,0 +1,153 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Count-based circuit breaker guarding one OneSpan tenant endpoint.
+ * <p>
+ * While closed, the outcomes of the last {@code windowSize} calls are recorded and the breaker opens once their
+ * failure rate reaches the threshold. While open, calls are rejected without touching the network until the open
+ * duration has elapsed. The breaker then lets a few trial calls through (half-open) and closes again only if all
+ * of them succeed.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String endpoint;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+    private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+
+    public CircuitBreaker(String endpoint, int windowSize, int minimumCalls, int failureRateThreshold, long openDurationMs, int halfOpenCalls) {
+        this.endpoint = endpoint;
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDurationMs * 1_000_000L;
+        this.halfOpenCalls = halfOpenCalls;
+        this.window = new boolean[windowSize];
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public boolean hasSettings(int windowSize, int failureRateThreshold, long openDurationMs) {
+        return this.windowSize == windowSize && this.failureRateThreshold == failureRateThreshold
+                && this.openDurationNanos == openDurationMs * 1_000_000L;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Whether {@link #tryAcquire()} would currently permit a call, without taking a permit.
+     */
+    public boolean isAvailable() {
+        State current = state;
+        if (current == State.OPEN) {
+            return System.nanoTime() - openedAt >= openDurationNanos;
+        }
+        return current == State.CLOSED || halfOpenPermits.get() > 0;
+    }
+
+    /**
+     * Whether a call may be sent now. Every permitted call must be followed by {@link #onSuccess()} or
+     * {@link #onFailure()}.
+     */
+    public boolean tryAcquire() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                return false;
+            }
+            transitionToHalfOpen();
+        }
+        return halfOpenPermits.getAndDecrement() > 0;
+    }
+
+    public void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (halfOpenSuccesses.incrementAndGet() >= halfOpenCalls) {
+                transitionToClosed();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionToOpen();
+            return;
+        }
+        record(true);
+    }
+
+    private synchronized void record(boolean failure) {
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (windowCount == windowSize) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % windowSize;
+        if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+            transitionToOpen();
+        }
+    }
+
+    private synchronized void transitionToOpen() {
+        if (state != State.OPEN) {
+            OneSpanMetrics.getInstance().recordCircuitBreakerOpen();
+        }
+        openedAt = System.nanoTime();
+        state = State.OPEN;
+    }
+
+    private synchronized void transitionToHalfOpen() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+            halfOpenPermits.set(halfOpenCalls);
+            halfOpenSuccesses.set(0);
+            state = State.HALF_OPEN;
+        }
+    }
+
+    private synchronized void transitionToClosed() {
+        if (state == State.HALF_OPEN) {
+            windowIndex = 0;
+            windowCount = 0;
+            windowFailures = 0;
+            state = State.CLOSED;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of calling OneSpan while the circuit breaker of the tenant endpoint is open.
+ */
+public class CircuitBreakerOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public CircuitBreakerOpenException(String endpoint) {
+        super("OneSpan endpoint " + endpoint + " is unavailable, circuit breaker is open");
+    }
+}
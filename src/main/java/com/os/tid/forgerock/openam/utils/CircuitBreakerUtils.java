@@ -0,0 +1,101 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+
+/**
+ * Keeps one {@link CircuitBreaker} per OneSpan tenant endpoint, shared by all nodes calling that endpoint. A realm with
+ * failover environments has a breaker per environment.
+ */
+public class CircuitBreakerUtils {
+
+    private static final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    private CircuitBreakerUtils() {
+    }
+
+    /**
+     * Returns the circuit breaker of the tenant configured in the realm, or {@code null} when the realm has
+     * disabled it. The breaker is replaced when its settings change.
+     */
+    public static CircuitBreaker getCircuitBreaker(OSConfigurationsService serviceConfig) {
+        return serviceConfig == null ? null : getCircuitBreaker(serviceConfig, HttpClientUtils.getEndpoint(serviceConfig));
+    }
+
+    /**
+     * Returns the circuit breaker of one of the environment endpoints of the realm, see
+     * {@link RegionUtils#route(OSConfigurationsService, String)}.
+     */
+    static CircuitBreaker getCircuitBreaker(OSConfigurationsService serviceConfig, String endpoint) {
+        if (!serviceConfig.circuitBreakerEnabled()) {
+            return null;
+        }
+        CircuitBreaker current = circuitBreakers.get(endpoint);
+        int windowSize = serviceConfig.circuitBreakerWindowSize() > 0 ? serviceConfig.circuitBreakerWindowSize() : Constants.OSTID_DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE;
+        int failureRate = serviceConfig.circuitBreakerFailureRate() > 0 && serviceConfig.circuitBreakerFailureRate() <= 100
+                ? serviceConfig.circuitBreakerFailureRate() : Constants.OSTID_DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE;
+        int openDuration = serviceConfig.circuitBreakerOpenDuration() > 0 ? serviceConfig.circuitBreakerOpenDuration() : Constants.OSTID_DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION_MS;
+        if (current != null && current.hasSettings(windowSize, failureRate, openDuration)) {
+            return current;
+        }
+        return circuitBreakers.compute(endpoint, (key, circuitBreaker) ->
+                circuitBreaker != null && circuitBreaker.hasSettings(windowSize, failureRate, openDuration)
+                        ? circuitBreaker
+                        : new CircuitBreaker(endpoint, windowSize, Constants.OSTID_DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS, failureRate, openDuration,
+                                Constants.OSTID_DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_CALLS));
+    }
+
+    /**
+     * Checks that the circuit breaker of the environment the call is sent to permits it.
+     *
+     * @return the circuit breaker to report the outcome of the call to, or {@code null} when it is disabled.
+     * @throws CircuitBreakerOpenException if the breaker is open.
+     */
+    public static CircuitBreaker acquire(OSConfigurationsService serviceConfig, URI uri) throws CircuitBreakerOpenException {
+        CircuitBreaker circuitBreaker = serviceConfig == null ? null : getCircuitBreaker(serviceConfig, RegionUtils.getRegionEndpoint(serviceConfig, uri));
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            OneSpanMetrics.getInstance().recordCircuitBreakerRejection();
+            throw new CircuitBreakerOpenException(circuitBreaker.getEndpoint());
+        }
+        return circuitBreaker;
+    }
+
+    /**
+     * Reports a response to the circuit breaker. Server errors count against the health of the endpoint.
+     */
+    public static void onResponse(CircuitBreaker circuitBreaker, int httpStatus) {
+        if (circuitBreaker == null) {
+            return;
+        }
+        if (httpStatus >= 500) {
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onSuccess();
+        }
+    }
+
+    public static void onFailure(CircuitBreaker circuitBreaker) {
+        if (circuitBreaker != null) {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    /**
+     * Reports a failed call to the circuit breaker. A response which could not be decoded was still served by the
+     * endpoint, so it counts as a success.
+     */
+    public static void onFailure(CircuitBreaker circuitBreaker, Throwable failure) {
+        if (circuitBreaker == null) {
+            return;
+        }
+        if (failure instanceof ResponseDecodeException) {
+            circuitBreaker.onSuccess();
+        } else {
+            circuitBreaker.onFailure();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.os.tid.forgerock.openam.config.ApiEndpoint;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+
+/**
+ * gzip support for OneSpan calls. Request bodies are only compressed when the realm enables it and the payload is
+ * large enough, e.g. when it embeds the CDDC data; an endpoint answering such a request with 415 is remembered and
+ * sent uncompressed bodies from then on.
+ */
+public class CompressionUtils {
+    private static final Logger logger = LoggerFactory.getLogger("amAuth");
+    private static final String loggerPrefix = "[OneSpan Auth CompressionUtils][Marketplace] ";
+    public static final String GZIP = "gzip";
+    public static final int UNSUPPORTED_MEDIA_TYPE = 415;
+
+    private static final Set<String> unsupportedEndpoints = ConcurrentHashMap.newKeySet();
+
+    private CompressionUtils() {
+    }
+
+    public static boolean shouldCompress(OSConfigurationsService serviceConfig, String url, byte[] payload) {
+        return serviceConfig != null && serviceConfig.requestCompression()
+                && payload != null && payload.length >= Constants.OSTID_DEFAULT_COMPRESSION_MIN_SIZE
+                && !unsupportedEndpoints.contains(getKey(serviceConfig, url));
+    }
+
+    public static void markUnsupported(OSConfigurationsService serviceConfig, String url) {
+        if (unsupportedEndpoints.add(getKey(serviceConfig, url))) {
+            logger.info(loggerPrefix + "OneSpan endpoint does not accept compressed requests, disabling compression for " + getKey(serviceConfig, url));
+        }
+    }
+
+    public static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+            gzipOutputStream.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    public static byte[] gunzip(byte[] bytes) {
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return gzipInputStream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Body handler decoding a gzip encoded response before handing its bytes to the mapper. Used with the JDK
+     * {@link java.net.http.HttpClient}, which, unlike Apache HttpClient, does not decompress responses itself.
+     */
+    public static <T> HttpResponse.BodyHandler<T> decompressing(Function<byte[], T> mapper) {
+        return responseInfo -> {
+            boolean gzipped = responseInfo.headers().firstValue("Content-Encoding").map(GZIP::equalsIgnoreCase).orElse(false);
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(),
+                    bytes -> mapper.apply(gzipped && bytes.length > 0 ? gunzip(bytes) : bytes));
+        };
+    }
+
+    private static String getKey(OSConfigurationsService serviceConfig, String url) {
+        return HttpClientUtils.getEndpoint(serviceConfig) + "|" + ApiEndpoint.fromUrl(url).getKey();
+    }
+}
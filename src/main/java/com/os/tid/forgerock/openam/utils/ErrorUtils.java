@@ -0,0 +1,110 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.forgerock.openam.auth.node.api.NodeState;
+
+import com.os.tid.forgerock.openam.config.Constants;
+
+/**
+ * Records the failure of a node in the shared state as a compact error record: the exception type, its message,
+ * the log correlation ID of the OneSpan call if the message carries one, the node and the time. Every value is
+ * truncated, and the message gives way to keep the whole record, keys included, within
+ * {@value Constants#OSTID_DEFAULT_ERROR_RECORD_MAX_SIZE} characters whatever the size of the exception. Stack traces
+ * belong in the log; they are only copied into the shared state when
+ * {@value Constants#OSTID_ERROR_DIAGNOSTICS_PROPERTY} is set, for troubleshooting a journey.
+ */
+public class ErrorUtils {
+    private static final String CORRELATION_ID_MARKER = "Log Correction ID: ";
+    private static final int MAX_CODE_SIZE = 64;
+    private static final int MAX_CORRELATION_ID_SIZE = 64;
+    private static final String TRUNCATED = "...";
+
+    private static final boolean diagnosticsEnabled = Boolean.getBoolean(Constants.OSTID_ERROR_DIAGNOSTICS_PROPERTY);
+
+    private ErrorUtils() {
+    }
+
+    /**
+     * Stores the error record of the exception under {@code keyPrefix + }{@value Constants#OSTID_ERROR_RECORD} and
+     * its bounded message under {@code keyPrefix + }{@value Constants#OSTID_ERROR_MESSAGE}.
+     *
+     * @param keyPrefix the prefix of the keys the node writes into the shared state, possibly empty
+     * @param node the name of the node
+     * @param messagePrefix the text shown before the message of the exception, e.g. {@code "OneSpan Auth User Login: "}
+     */
+    public static void recordError(NodeState state, String keyPrefix, String node, String messagePrefix, Throwable ex) {
+        state.putShared(keyPrefix + Constants.OSTID_ERROR_RECORD, toRecord(node, ex))
+             .putShared(keyPrefix + Constants.OSTID_ERROR_MESSAGE, getErrorMessage(messagePrefix, ex));
+        if (diagnosticsEnabled) {
+            String stackTrace = org.apache.commons.lang.exception.ExceptionUtils.getStackTrace(ex);
+            state.putShared(keyPrefix + "StackTrace", truncate(stackTrace, Constants.OSTID_DEFAULT_ERROR_DIAGNOSTICS_MAX_SIZE));
+        }
+    }
+
+    /**
+     * Returns the message of the exception behind the prefix, truncated to
+     * {@value Constants#OSTID_DEFAULT_ERROR_MESSAGE_MAX_SIZE} characters.
+     */
+    public static String getErrorMessage(String messagePrefix, Throwable ex) {
+        return truncate(messagePrefix + getMessage(ex), Constants.OSTID_DEFAULT_ERROR_MESSAGE_MAX_SIZE);
+    }
+
+    /**
+     * Returns the error record of the exception, as a map the shared state can hold. The record, counted as the
+     * length of its keys and values, never exceeds {@value Constants#OSTID_DEFAULT_ERROR_RECORD_MAX_SIZE}
+     * characters.
+     */
+    public static Map<String, Object> toRecord(String node, Throwable ex) {
+        String message = getMessage(ex);
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("code", truncate(ex.getClass().getSimpleName(), MAX_CODE_SIZE));
+        record.put("message", "");
+        record.put("correlationId", getCorrelationId(message));
+        record.put("node", truncate(node, MAX_CODE_SIZE));
+        record.put("timestamp", System.currentTimeMillis());
+        int messageSize = Math.min(Constants.OSTID_DEFAULT_ERROR_MESSAGE_MAX_SIZE, Constants.OSTID_DEFAULT_ERROR_RECORD_MAX_SIZE - sizeOf(record));
+        record.put("message", truncate(message, messageSize));
+        return Collections.unmodifiableMap(record);
+    }
+
+    private static int sizeOf(Map<String, Object> record) {
+        int size = 0;
+        for (Map.Entry<String, Object> entry : record.entrySet()) {
+            size += entry.getKey().length() + String.valueOf(entry.getValue()).length();
+        }
+        return size;
+    }
+
+    private static String getMessage(Throwable ex) {
+        String message = ex.getMessage();
+        return message == null ? ex.getClass().getSimpleName() : message;
+    }
+
+    /**
+     * The error messages built by {@link StringUtils} end with the log correlation ID of the failed call.
+     */
+    private static String getCorrelationId(String message) {
+        int start = message.lastIndexOf(CORRELATION_ID_MARKER);
+        if (start < 0) {
+            return null;
+        }
+        start += CORRELATION_ID_MARKER.length();
+        int end = message.indexOf(';', start);
+        String correlationId = (end < 0 ? message.substring(start) : message.substring(start, end)).trim();
+        return correlationId.isEmpty() || "null".equals(correlationId) ? null : truncate(correlationId, MAX_CORRELATION_ID_SIZE);
+    }
+
+    static String truncate(String value, int maxSize) {
+        if (value == null || value.length() <= maxSize) {
+            return value;
+        }
+        int end = maxSize - TRUNCATED.length();
+        if (Character.isHighSurrogate(value.charAt(end - 1))) {
+            end--;
+        }
+        return value.substring(0, end) + TRUNCATED;
+    }
+}
@@ -0,0 +1,48 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+
+/**
+ * The codec backed by the fastjson library shaded into the plugin.
+ */
+public final class FastjsonCodec implements JsonCodec {
+    public static final String NAME = "fastjson";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public <T> T decode(InputStream content, Class<T> type) throws IOException {
+        try {
+            return JSON.parseObject(content, StandardCharsets.UTF_8, type);
+        } catch (JSONException e) {
+            throw new ResponseDecodeException("Failed to decode JSON as " + type.getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] content, Class<T> type) throws IOException {
+        try {
+            return JSON.parseObject(content, type);
+        } catch (JSONException e) {
+            throw new ResponseDecodeException("Failed to decode JSON as " + type.getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public String toJSONString(Object value) {
+        return JSON.toJSONString(value);
+    }
+
+    @Override
+    public byte[] toJSONBytes(Object value) {
+        return JSON.toJSONBytes(value);
+    }
+}
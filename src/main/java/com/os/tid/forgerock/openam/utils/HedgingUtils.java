@@ -0,0 +1,166 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.os.tid.forgerock.openam.config.ApiEndpoint;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+
+/**
+ * Request hedging for the read-only status and lookup calls: when the first attempt has not answered within the
+ * configured latency percentile of its endpoint, a second identical request is sent and the first response wins.
+ * The future of the other request is cancelled, but only Java 16 and later abort the exchange behind it; on Java 11
+ * it runs to completion, bounded by the request timeout of its endpoint, and its response is discarded. The share of
+ * hedged requests is capped by a token bucket so that hedging cannot double the load on a slow tenant.
+ */
+public class HedgingUtils {
+
+    private static final ConcurrentMap<String, LatencyTracker> latencyTrackers = new ConcurrentHashMap<>();
+
+    private HedgingUtils() {
+    }
+
+    public static boolean isEnabled(OSConfigurationsService serviceConfig) {
+        return serviceConfig != null && serviceConfig.hedgingEnabled();
+    }
+
+    /**
+     * Whether a call may be hedged: a GET of the session status or of a VDP lookup, in a realm which has enabled
+     * hedging. Other GETs are served by the transport of the realm without hedging.
+     */
+    public static boolean isHedged(OSConfigurationsService serviceConfig, String method, String url) {
+        return isEnabled(serviceConfig) && "GET".equals(method) && isHedged(ApiEndpoint.fromUrl(url));
+    }
+
+    private static boolean isHedged(ApiEndpoint endpoint) {
+        return endpoint == ApiEndpoint.SESSION_STATUS || endpoint == ApiEndpoint.VDP;
+    }
+
+    /**
+     * Returns the latency tracker for a request if it may be hedged, see
+     * {@link #isHedged(OSConfigurationsService, String, String)}, otherwise {@code null}.
+     */
+    public static LatencyTracker getLatencyTracker(OSConfigurationsService serviceConfig, HttpRequest request) {
+        if (!isHedged(serviceConfig, request.method(), request.uri().toString())) {
+            return null;
+        }
+        ApiEndpoint endpoint = ApiEndpoint.fromUrl(request.uri().toString());
+        int percentile = serviceConfig.hedgingPercentile() > 0 && serviceConfig.hedgingPercentile() < 100
+                ? serviceConfig.hedgingPercentile() : Constants.OSTID_DEFAULT_HEDGING_PERCENTILE;
+        int maxRate = serviceConfig.hedgingMaxRate() > 0 && serviceConfig.hedgingMaxRate() <= 100
+                ? serviceConfig.hedgingMaxRate() : Constants.OSTID_DEFAULT_HEDGING_MAX_RATE;
+        String key = HttpClientUtils.getEndpoint(serviceConfig) + "|" + endpoint.getKey();
+        LatencyTracker latencyTracker = latencyTrackers.get(key);
+        if (latencyTracker == null || latencyTracker.percentile != percentile || latencyTracker.maxRate != maxRate) {
+            latencyTracker = new LatencyTracker(percentile, maxRate);
+            latencyTrackers.put(key, latencyTracker);
+        }
+        return latencyTracker;
+    }
+
+    public static <T> CompletableFuture<HttpResponse<T>> sendHedged(HttpClient httpClient, HttpRequest request,
+            HttpResponse.BodyHandler<T> bodyHandler, LatencyTracker latencyTracker) {
+        latencyTracker.onRequest();
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        CompletableFuture<HttpResponse<T>> primary = send(httpClient, request, bodyHandler, latencyTracker, result, pending, false);
+
+        long hedgeDelay = latencyTracker.getHedgeDelayNanos();
+        if (hedgeDelay > 0) {
+            CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.NANOSECONDS).execute(() -> {
+                if (result.isDone() || !latencyTracker.tryAcquireHedge()) {
+                    return;
+                }
+                pending.incrementAndGet();
+                OneSpanMetrics.getInstance().recordHedge();
+                CompletableFuture<HttpResponse<T>> hedge = send(httpClient, request, bodyHandler, latencyTracker, result, pending, true);
+                result.whenComplete((response, failure) -> hedge.cancel(true));
+            });
+        }
+        result.whenComplete((response, failure) -> primary.cancel(true));
+        return result;
+    }
+
+    private static <T> CompletableFuture<HttpResponse<T>> send(HttpClient httpClient, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+            LatencyTracker latencyTracker, CompletableFuture<HttpResponse<T>> result, AtomicInteger pending, boolean hedge) {
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> attempt = httpClient.sendAsync(request, bodyHandler);
+        attempt.whenComplete((response, failure) -> {
+            if (failure == null) {
+                latencyTracker.record(System.nanoTime() - start);
+                if (result.complete(response) && hedge) {
+                    OneSpanMetrics.getInstance().recordHedgeWin();
+                }
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(failure);
+            }
+        });
+        return attempt;
+    }
+
+    /**
+     * Recent latencies of one endpoint, together with the hedge budget of that endpoint.
+     */
+    public static class LatencyTracker {
+        private static final int SAMPLES = 256;
+        private static final int MINIMUM_SAMPLES = 20;
+        private static final int RECOMPUTE_INTERVAL = 16;
+        private static final long TOKEN = 100;
+        private static final long MAX_TOKENS = 10 * TOKEN;
+
+        private final int percentile;
+        private final int maxRate;
+        private final long[] samples = new long[SAMPLES];
+        private int sampleIndex;
+        private int sampleCount;
+        private volatile long hedgeDelayNanos;
+        private final AtomicLong hedgeTokens = new AtomicLong();
+
+        LatencyTracker(int percentile, int maxRate) {
+            this.percentile = percentile;
+            this.maxRate = maxRate;
+        }
+
+        synchronized void record(long latencyNanos) {
+            samples[sampleIndex] = latencyNanos;
+            sampleIndex = (sampleIndex + 1) % SAMPLES;
+            sampleCount = Math.min(sampleCount + 1, SAMPLES);
+            if (sampleCount >= MINIMUM_SAMPLES && sampleIndex % RECOMPUTE_INTERVAL == 0) {
+                long[] sorted = Arrays.copyOf(samples, sampleCount);
+                Arrays.sort(sorted);
+                hedgeDelayNanos = sorted[Math.min(sampleCount - 1, sampleCount * percentile / 100)];
+            }
+        }
+
+        /**
+         * The delay after which a request is hedged, or 0 while too few latencies have been recorded.
+         */
+        long getHedgeDelayNanos() {
+            return hedgeDelayNanos;
+        }
+
+        void onRequest() {
+            hedgeTokens.getAndUpdate(tokens -> Math.min(MAX_TOKENS, tokens + maxRate));
+        }
+
+        boolean tryAcquireHedge() {
+            long tokens;
+            do {
+                tokens = hedgeTokens.get();
+                if (tokens < TOKEN) {
+                    return false;
+                }
+            } while (!hedgeTokens.compareAndSet(tokens, tokens - TOKEN));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+
+/**
+ * Keeps one long-lived, connection-pooled HTTP client per OneSpan tenant endpoint and credential identity,
+ * so that all nodes of the plugin reuse the same TCP/TLS connections instead of paying a new handshake per call.
+ */
+public class HttpClientUtils {
+    private static final Logger logger = LoggerFactory.getLogger("amAuth");
+    private static final String loggerPrefix = "[OneSpan Auth HttpClientUtils][Marketplace] ";
+
+    private static final ConcurrentMap<String, PooledHttpClient> pooledClients = new ConcurrentHashMap<>();
+    private static volatile PooledHttpClient defaultClient;
+    private static final ConcurrentMap<String, CompletableFuture<PooledHttpClient>> builds = new ConcurrentHashMap<>();
+    private static final ScheduledThreadPoolExecutor deadlineScheduler = createDeadlineScheduler();
+    private static final ExecutorService buildExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("onespan-client-build-%d").setDaemon(true).build());
+
+    private HttpClientUtils() {
+    }
+
+    /**
+     * Returns the shared HTTP client for the tenant configured in the realm. The client is created on first use and
+     * rebuilt when the endpoint, credentials or pool sizes of the realm configuration change.
+     *
+     * @param serviceConfig the realm configuration, or {@code null} for calls which are not targeting OneSpan.
+     */
+    public static CloseableHttpClient getHttpClient(OSConfigurationsService serviceConfig) {
+        if (serviceConfig == null) {
+            return getDefaultHttpClient();
+        }
+        return OneSpanRealmContext.of(serviceConfig).getHttpClient();
+    }
+
+    /**
+     * Returns the shared HTTP client a call to the URI is sent with: the client of the realm, or of the failover
+     * environment the call was routed to, which has the TLS settings of its own endpoint.
+     */
+    public static CloseableHttpClient getHttpClient(OSConfigurationsService serviceConfig, URI uri) {
+        if (serviceConfig == null) {
+            return getDefaultHttpClient();
+        }
+        return getRegionContext(serviceConfig, uri).getHttpClient();
+    }
+
+    /**
+     * Returns the shared non-blocking HTTP client for the tenant configured in the realm. It uses the same
+     * client certificate and lifecycle as the client returned by {@link #getHttpClient(OSConfigurationsService)}.
+     */
+    public static HttpClient getAsyncHttpClient(OSConfigurationsService serviceConfig) {
+        return OneSpanRealmContext.of(serviceConfig).getAsyncHttpClient();
+    }
+
+    /**
+     * Returns the shared non-blocking HTTP client a call to the URI is sent with, see
+     * {@link #getHttpClient(OSConfigurationsService, URI)}.
+     */
+    public static HttpClient getAsyncHttpClient(OSConfigurationsService serviceConfig, URI uri) {
+        return getRegionContext(serviceConfig, uri).getAsyncHttpClient();
+    }
+
+    private static OneSpanRealmContext getRegionContext(OSConfigurationsService serviceConfig, URI uri) {
+        return OneSpanRealmContext.of(serviceConfig).getRegionContext(RegionUtils.getRegionEndpoint(serviceConfig, uri));
+    }
+
+    /**
+     * Whether the realm sends its OneSpan traffic over HTTP/2. Apache HttpClient 4 only speaks HTTP/1.1, so
+     * such realms are served by the {@link HttpClient} of the JDK, which negotiates h2 through ALPN.
+     */
+    public static boolean isHttp2(OSConfigurationsService serviceConfig) {
+        return serviceConfig != null && OneSpanRealmContext.of(serviceConfig).isHttp2();
+    }
+
+    /**
+     * Aborts the request if it is still running once the timeout has elapsed. Apache HttpClient 4 only bounds
+     * individual socket reads, so this enforces the total request timeout. The returned future must be cancelled
+     * once the response has been consumed.
+     */
+    public static ScheduledFuture<?> scheduleAbort(HttpRequestBase request, long timeoutMs) {
+        return deadlineScheduler.schedule(request::abort, timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static ScheduledThreadPoolExecutor createDeadlineScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setNameFormat("onespan-request-deadline-%d").setDaemon(true).build());
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * Returns the pooled client of the tenant endpoint and client identity of a realm context, see
+     * {@link OneSpanRealmContext#getHttpClient()}. Realms with the same endpoint and identity share one client. A
+     * missing client is built in the background; the call waits for it, unless a fallback is given.
+     *
+     * @param fallback the client of the same realm before its configuration changed, which is returned while the
+     *                 new client is being built, or {@code null}.
+     */
+    public static PooledHttpClient getPooledHttpClient(OneSpanRealmContext realmContext, PooledHttpClient fallback) {
+        String key = realmContext.getClientKey();
+        PooledHttpClient pooledClient = pooledClients.get(key);
+        if (pooledClient != null) {
+            return pooledClient;
+        }
+        CompletableFuture<PooledHttpClient> newBuild = new CompletableFuture<>();
+        CompletableFuture<PooledHttpClient> build = builds.putIfAbsent(key, newBuild);
+        if (build == null) {
+            build = newBuild;
+            buildExecutor.execute(() -> {
+                try {
+                    PooledHttpClient newClient = createPooledHttpClient(key, realmContext.getSSLContext(),
+                            realmContext.getSSLConnectionSocketFactory(),
+                            realmContext.getMaxConnectionsPerRoute(), realmContext.getMaxConnectionsTotal(),
+                            realmContext.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1,
+                            realmContext.getConnectTimeout());
+                    PooledHttpClient concurrent = pooledClients.putIfAbsent(key, newClient);
+                    if (concurrent != null) {
+                        close(newClient);
+                        newClient = concurrent;
+                    }
+                    newBuild.complete(newClient);
+                } catch (RuntimeException | Error e) {
+                    // the waiting callers must not block forever, also on a linkage error
+                    logger.error(loggerPrefix + "Failed to build HTTP client for " + realmContext.getApiEndpoint() + ": " + e);
+                    newBuild.completeExceptionally(e);
+                } finally {
+                    builds.remove(key);
+                }
+            });
+        }
+        if (fallback != null && !build.isDone()) {
+            return fallback;
+        }
+        return build.join();
+    }
+
+    /**
+     * Drains the client of a realm context which was replaced after a configuration change of its realm, and the
+     * clients of its failover environments, unless another realm still uses the same endpoint and identity.
+     */
+    public static void release(OneSpanRealmContext replaced) {
+        replaced.getRegionContexts().forEach(HttpClientUtils::release);
+        String key = replaced.getClientKey();
+        if (!OneSpanRealmContext.isInUse(realmContext -> key.equals(realmContext.getClientKey()))) {
+            PooledHttpClient oldClient = pooledClients.remove(key);
+            if (oldClient != null) {
+                logger.info(loggerPrefix + "configuration changed, replaced HTTP client for " + replaced.getApiEndpoint());
+                drain(oldClient);
+            }
+        }
+        SslUtils.release(replaced);
+    }
+
+    /**
+     * Closes the idle connections of a replaced client right away, and the client itself once the requests which
+     * are still using it have had the time to complete.
+     */
+    private static void drain(PooledHttpClient pooledClient) {
+        pooledClient.retired = true;
+        pooledClient.connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+        deadlineScheduler.schedule(() -> close(pooledClient), Constants.OSTID_DEFAULT_CONNECTION_DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the shared HTTP client used for calls which do not require the OneSpan client certificate.
+     */
+    public static CloseableHttpClient getDefaultHttpClient() {
+        PooledHttpClient client = defaultClient;
+        if (client == null) {
+            synchronized (pooledClients) {
+                client = defaultClient;
+                if (client == null) {
+                    client = createPooledHttpClient("", null, null, Constants.OSTID_DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+                            Constants.OSTID_DEFAULT_MAX_CONNECTIONS_TOTAL, HttpClient.Version.HTTP_1_1,
+                            Constants.OSTID_DEFAULT_CONNECT_TIMEOUT_MS);
+                    defaultClient = client;
+                }
+            }
+        }
+        return client.httpClient;
+    }
+
+    /**
+     * Closes all pooled clients and their connections. Called when the plugin shuts down.
+     */
+    public static void shutdown() {
+        synchronized (pooledClients) {
+            pooledClients.values().forEach(HttpClientUtils::close);
+            pooledClients.clear();
+            SslUtils.clearCache();
+            if (defaultClient != null) {
+                close(defaultClient);
+                defaultClient = null;
+            }
+        }
+    }
+
+    private static PooledHttpClient createPooledHttpClient(String key, SSLContext sslContext, SSLConnectionSocketFactory sslConSocFactory,
+            int maxPerRoute, int maxTotal, HttpClient.Version httpVersion, int connectTimeout) {
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslConSocFactory != null ? sslConSocFactory : SslUtils.getDefaultSSLConnectionSocketFactory())
+                .build();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setValidateAfterInactivity(Constants.OSTID_DEFAULT_VALIDATE_AFTER_INACTIVITY_MS);
+
+        // every pool belongs to exactly one client certificate, so connections can be shared without tracking
+        // the TLS principal as connection state (which would otherwise prevent their reuse). Retries are handled
+        // by RestUtils, which knows which OneSpan calls are idempotent.
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .disableConnectionState()
+                .disableAutomaticRetries()
+                .evictExpiredConnections()
+                .evictIdleConnections(Constants.OSTID_DEFAULT_IDLE_CONNECTION_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .build();
+        return new PooledHttpClient(key, sslContext, httpVersion, connectTimeout, connectionManager, httpClient);
+    }
+
+    private static void close(PooledHttpClient pooledClient) {
+        pooledClient.retired = true;
+        try {
+            pooledClient.httpClient.close();
+        } catch (IOException e) {
+            logger.warn(loggerPrefix + "Failed to close HTTP client: " + e.getMessage());
+        }
+        pooledClient.releaseAsyncHttpClient();
+    }
+
+    static String getEndpoint(OSConfigurationsService serviceConfig) {
+        return OneSpanRealmContext.of(serviceConfig).getApiEndpoint();
+    }
+
+    /**
+     * A pooled client and the endpoint and identity it was built for. A client is retired once it has been replaced
+     * or closed, and must not be handed out anymore.
+     */
+    public static final class PooledHttpClient {
+        private final String key;
+        private final SSLContext sslContext;
+        private final HttpClient.Version httpVersion;
+        private final int connectTimeout;
+        private final PoolingHttpClientConnectionManager connectionManager;
+        private final CloseableHttpClient httpClient;
+        private volatile HttpClient asyncHttpClient;
+        private volatile boolean retired;
+        private boolean closed;
+
+        private PooledHttpClient(String key, SSLContext sslContext, HttpClient.Version httpVersion, int connectTimeout,
+                PoolingHttpClientConnectionManager connectionManager, CloseableHttpClient httpClient) {
+            this.key = key;
+            this.sslContext = sslContext;
+            this.httpVersion = httpVersion;
+            this.connectTimeout = connectTimeout;
+            this.connectionManager = connectionManager;
+            this.httpClient = httpClient;
+        }
+
+        /**
+         * The tenant endpoint and client identity, see {@link OneSpanRealmContext#getClientKey()}.
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public boolean isRetired() {
+            return retired;
+        }
+
+        public CloseableHttpClient getHttpClient() {
+            return httpClient;
+        }
+
+        /**
+         * Returns the non-blocking client of the same endpoint and identity. It is only created by the realms which
+         * use it, i.e. the realms on HTTP/2 and the calls which are hedged or warmed up, and is released together
+         * with the pooled client.
+         *
+         * @throws IllegalStateException when the pooled client has been closed.
+         */
+        public HttpClient getAsyncHttpClient() {
+            HttpClient client = asyncHttpClient;
+            if (client == null) {
+                synchronized (this) {
+                    if (closed) {
+                        throw new IllegalStateException("HTTP client has been closed");
+                    }
+                    client = asyncHttpClient;
+                    if (client == null) {
+                        HttpClient.Builder builder = HttpClient.newBuilder()
+                                .version(httpVersion)
+                                .connectTimeout(Duration.ofMillis(connectTimeout));
+                        if (sslContext != null) {
+                            builder.sslContext(sslContext);
+                        }
+                        client = builder.build();
+                        asyncHttpClient = client;
+                    }
+                }
+            }
+            return client;
+        }
+
+        /**
+         * Drops the non-blocking client. Before Java 21 the {@link HttpClient} cannot be closed: its selector thread
+         * stops once the client is no longer reachable, so the pooled client must not keep a reference to it. From Java
+         * 21 on it is closed, off the deadline thread as closing waits for the exchanges still running.
+         */
+        private void releaseAsyncHttpClient() {
+            HttpClient client;
+            synchronized (this) {
+                closed = true;
+                client = asyncHttpClient;
+                asyncHttpClient = null;
+            }
+            if (client instanceof AutoCloseable) {
+                buildExecutor.execute(() -> {
+                    try {
+                        ((AutoCloseable) client).close();
+                    } catch (Exception e) {
+                        logger.warn(loggerPrefix + "Failed to close asynchronous HTTP client: " + e.getMessage());
+                    }
+                });
+            }
+        }
+    }
+}
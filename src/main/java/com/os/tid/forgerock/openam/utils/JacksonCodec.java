@@ -0,0 +1,226 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * The codec backed by the Jackson streaming API of the platform, see {@link JsonUtils#createCodec(String)}. Models
+ * are bound field by field from the token stream, without a tree or a data binding layer: JSON members are matched
+ * ignoring case to the public {@code String}, {@code int}, {@code long} and {@code boolean} fields of the model, and
+ * other members are skipped. Other objects are serialized from their public fields.
+ */
+public final class JacksonCodec implements JsonCodec {
+    public static final String NAME = "jackson";
+
+    private static final JsonFactory factory = new JsonFactory();
+
+    private static final ClassValue<Map<String, Field>> fields = new ClassValue<Map<String, Field>>() {
+        @Override
+        protected Map<String, Field> computeValue(Class<?> type) {
+            Map<String, Field> publicFields = new LinkedHashMap<>();
+            for (Field field : type.getFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    publicFields.put(field.getName().toLowerCase(Locale.ROOT), field);
+                }
+            }
+            return Collections.unmodifiableMap(publicFields);
+        }
+    };
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public <T> T decode(InputStream content, Class<T> type) throws IOException {
+        try (JsonParser parser = factory.createParser(content)) {
+            return decode(parser, type);
+        } catch (JsonProcessingException e) {
+            throw new ResponseDecodeException("Failed to decode JSON as " + type.getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] content, Class<T> type) throws IOException {
+        try (JsonParser parser = factory.createParser(content)) {
+            return decode(parser, type);
+        } catch (JsonProcessingException e) {
+            throw new ResponseDecodeException("Failed to decode JSON as " + type.getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public String toJSONString(Object value) {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = factory.createGenerator(writer)) {
+            write(generator, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    @Override
+    public byte[] toJSONBytes(Object value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            write(generator, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static <T> T decode(JsonParser parser, Class<T> type) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null || token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object for " + type.getSimpleName());
+        }
+        T model = newInstance(type);
+        Map<String, Field> modelFields = fields.get(type);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            Field field = modelFields.get(parser.currentName().toLowerCase(Locale.ROOT));
+            parser.nextToken();
+            if (field == null) {
+                parser.skipChildren();
+            } else {
+                set(parser, model, field);
+            }
+        }
+        if (parser.nextToken() != null) {
+            throw new JsonParseException(parser, "Unexpected data after the JSON value");
+        }
+        return model;
+    }
+
+    private static void set(JsonParser parser, Object model, Field field) throws IOException {
+        JsonToken token = parser.currentToken();
+        Class<?> fieldType = field.getType();
+        if (fieldType.isPrimitive() && (token == JsonToken.VALUE_NULL || token.isStructStart())) {
+            // primitives keep their default
+            parser.skipChildren();
+            return;
+        }
+        try {
+            if (fieldType == String.class) {
+                field.set(model, readString(parser, token));
+            } else if (fieldType == int.class) {
+                field.setInt(model, token == JsonToken.VALUE_STRING ? Integer.parseInt(parser.getText().trim()) : parser.getValueAsInt());
+            } else if (fieldType == long.class) {
+                field.setLong(model, token == JsonToken.VALUE_STRING ? Long.parseLong(parser.getText().trim()) : parser.getValueAsLong());
+            } else if (fieldType == boolean.class) {
+                field.setBoolean(model, parser.getValueAsBoolean());
+            } else {
+                parser.skipChildren();
+            }
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(parser, "Expected a number for " + field.getName() + " but was \"" + parser.getText() + "\"", e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Objects and arrays read as their JSON text, like fastjson binds them to a string field.
+     */
+    private static String readString(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            StringWriter writer = new StringWriter();
+            try (JsonGenerator generator = factory.createGenerator(writer)) {
+                generator.copyCurrentStructure(parser);
+            }
+            return writer.toString();
+        }
+        return parser.getText();
+    }
+
+    private static <T> T newInstance(Class<T> type) {
+        try {
+            return type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(type.getName() + " has no accessible no-argument constructor", e);
+        }
+    }
+
+    private static void write(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof CharSequence || value instanceof Character || value instanceof Enum) {
+            generator.writeString(value.toString());
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            generator.writeNumber(value.toString());
+        } else if (value instanceof Date) {
+            generator.writeNumber(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            generator.writeBinary((byte[]) value);
+        } else if (value instanceof Map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                write(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } else if (value instanceof Iterable) {
+            generator.writeStartArray();
+            for (Object element : (Iterable<?>) value) {
+                write(generator, element);
+            }
+            generator.writeEndArray();
+        } else if (value.getClass().isArray()) {
+            generator.writeStartArray();
+            for (int i = 0; i < Array.getLength(value); i++) {
+                write(generator, Array.get(value, i));
+            }
+            generator.writeEndArray();
+        } else {
+            writeFields(generator, value);
+        }
+    }
+
+    private static void writeFields(JsonGenerator generator, Object value) throws IOException {
+        Map<String, Field> valueFields = fields.get(value.getClass());
+        if (valueFields.isEmpty()) {
+            generator.writeString(value.toString());
+            return;
+        }
+        generator.writeStartObject();
+        for (Field field : valueFields.values()) {
+            generator.writeFieldName(field.getName());
+            try {
+                write(generator, field.get(value));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        generator.writeEndObject();
+    }
+}
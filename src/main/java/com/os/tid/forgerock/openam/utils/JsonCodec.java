@@ -0,0 +1,32 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Binds JSON to response models and serializes objects to JSON. The codec of the deployment is selected by
+ * {@link JsonUtils}; the request bodies written by {@link JsonWriter} and the models read by {@link ResponseDecoders}
+ * do not depend on it.
+ */
+public interface JsonCodec {
+
+    /**
+     * The name the codec is selected by.
+     */
+    String getName();
+
+    /**
+     * Binds a UTF-8 encoded JSON object to the model. Returns {@code null} for an empty input or a {@code null}
+     * literal, and fails with a {@link ResponseDecodeException} on malformed input.
+     */
+    <T> T decode(InputStream content, Class<T> type) throws IOException;
+
+    <T> T decode(byte[] content, Class<T> type) throws IOException;
+
+    /**
+     * Serializes maps, collections, arrays, JSON trees, scalars and models.
+     */
+    String toJSONString(Object value);
+
+    byte[] toJSONBytes(Object value);
+}
@@ -0,0 +1,464 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.alibaba.fastjson.JSONException;
+
+/**
+ * Reads UTF-8 encoded JSON token by token, straight from the bytes of a response. Member names are matched in place
+ * against the names a decoder knows, and the values of any other member are skipped without being decoded, so no
+ * JSON tree and no strings other than the values read are created. Malformed input fails with a
+ * {@link JSONException}, like the fastjson parser.
+ */
+public final class JsonReader {
+    private static final int BUFFER_SIZE = 4096;
+    private static final int END = -1;
+
+    private final InputStream in;
+    private byte[] buffer;
+    private int pos;
+    private int limit;
+    /** The start of the token being read, which {@link #fill()} keeps in the buffer, or -1. */
+    private int tokenStart = -1;
+    /** The number of bytes dropped from the buffer, so that errors report the offset in the whole input. */
+    private long discarded;
+    /** Whether the next member or element must be preceded by a comma. */
+    private boolean needsComma;
+
+    public JsonReader(byte[] content) {
+        this.in = null;
+        this.buffer = content;
+        this.limit = content.length;
+    }
+
+    public JsonReader(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Returns whether the input holds nothing but whitespace or a {@code null} literal, which decode to no model.
+     */
+    public boolean isNull() throws IOException {
+        int c = peek();
+        if (c == END) {
+            return true;
+        }
+        if (c == 'n') {
+            literal("null");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Fails unless only whitespace is left after the value read.
+     */
+    public void endDocument() throws IOException {
+        if (peek() != END) {
+            throw syntaxError("Unexpected data after the JSON value");
+        }
+    }
+
+    public void beginObject() throws IOException {
+        expect('{');
+        needsComma = false;
+    }
+
+    public void beginArray() throws IOException {
+        expect('[');
+        needsComma = false;
+    }
+
+    /**
+     * Returns whether the current object or array has another member or element, consuming the comma before it.
+     * Returns {@code false} after consuming the closing bracket.
+     */
+    public boolean hasNext() throws IOException {
+        int c = peek();
+        if (c == '}' || c == ']') {
+            pos++;
+            needsComma = true;
+            return false;
+        }
+        if (needsComma) {
+            expect(',');
+            needsComma = false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the name of the next member and returns its index in {@code names}, or -1 for a member the caller does
+     * not know, whose value should then be skipped. Names are compared ignoring ASCII case, as fastjson does.
+     */
+    public int nextName(String[] names) throws IOException {
+        expect('"');
+        tokenStart = pos;
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw syntaxError("Unterminated name");
+            }
+            byte b = buffer[pos];
+            if (b == '"') {
+                break;
+            }
+            if (b == '\\') {
+                // escaped names are legal but never sent by the API, so they take the slow path
+                pos = tokenStart;
+                tokenStart = -1;
+                String name = readString();
+                expect(':');
+                for (int i = 0; i < names.length; i++) {
+                    if (names[i].equalsIgnoreCase(name)) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+            pos++;
+        }
+        int index = match(names, tokenStart, pos - tokenStart);
+        tokenStart = -1;
+        pos++;
+        expect(':');
+        return index;
+    }
+
+    /**
+     * Reads a string value. {@code null} reads as {@code null}, numbers and booleans as their text, and objects and
+     * arrays as their JSON text.
+     */
+    public String nextString() throws IOException {
+        int c = peek();
+        String value;
+        if (c == '"') {
+            pos++;
+            value = readString();
+        } else if (c == 'n') {
+            literal("null");
+            value = null;
+        } else if (c == '{' || c == '[') {
+            tokenStart = pos;
+            skipValue();
+            value = new String(buffer, tokenStart, pos - tokenStart, StandardCharsets.UTF_8);
+            tokenStart = -1;
+        } else {
+            int start = scalar();
+            value = new String(buffer, start, pos - start, StandardCharsets.US_ASCII);
+            tokenStart = -1;
+        }
+        needsComma = true;
+        return value;
+    }
+
+    /**
+     * Reads an integer value, which may also be sent as a string. {@code null} reads as {@code ifNull}, and a
+     * fraction is truncated.
+     */
+    public int nextInt(int ifNull) throws IOException {
+        int c = peek();
+        if (c == 'n') {
+            literal("null");
+            needsComma = true;
+            return ifNull;
+        }
+        if (c == '"') {
+            pos++;
+            String value = readString();
+            needsComma = true;
+            try {
+                return parseInt(value);
+            } catch (NumberFormatException e) {
+                throw syntaxError("Expected a number but was \"" + value + "\"");
+            }
+        }
+        int start = scalar();
+        int value = parseInt(start, pos);
+        tokenStart = -1;
+        needsComma = true;
+        return value;
+    }
+
+    /**
+     * Skips the next value, including any nested objects and arrays, without decoding it.
+     */
+    public void skipValue() throws IOException {
+        boolean capturing = tokenStart >= 0;
+        int depth = 0;
+        do {
+            int c = peek();
+            switch (c) {
+            case '{':
+            case '[':
+                depth++;
+                pos++;
+                break;
+            case '}':
+            case ']':
+            case ',':
+            case ':':
+                if (depth == 0) {
+                    throw syntaxError("Expected a value");
+                }
+                if (c == '}' || c == ']') {
+                    depth--;
+                }
+                pos++;
+                break;
+            case '"':
+                pos++;
+                skipString();
+                break;
+            default:
+                scalar();
+                if (!capturing) {
+                    tokenStart = -1;
+                }
+                break;
+            }
+        } while (depth > 0);
+        needsComma = true;
+    }
+
+    private int match(String[] names, int start, int length) {
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            if (name.length() != length) {
+                continue;
+            }
+            int j = 0;
+            while (j < length && (buffer[start + j] | 0x20) == (name.charAt(j) | 0x20)) {
+                j++;
+            }
+            if (j == length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the rest of a string whose opening quote has been consumed. Strings without escapes are decoded in one
+     * go from the buffer.
+     */
+    private String readString() throws IOException {
+        StringBuilder builder = null;
+        tokenStart = pos;
+        boolean ascii = true;
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            byte b = buffer[pos];
+            if (b == '"') {
+                String segment = new String(buffer, tokenStart, pos - tokenStart, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+                tokenStart = -1;
+                pos++;
+                return builder == null ? segment : builder.append(segment).toString();
+            }
+            if (b == '\\') {
+                if (builder == null) {
+                    builder = new StringBuilder();
+                }
+                builder.append(new String(buffer, tokenStart, pos - tokenStart, StandardCharsets.UTF_8));
+                tokenStart = -1;
+                pos++;
+                builder.append(readEscape());
+                tokenStart = pos;
+                continue;
+            }
+            if (b < 0) {
+                ascii = false;
+            }
+            pos++;
+        }
+    }
+
+    private char readEscape() throws IOException {
+        require(1);
+        byte b = buffer[pos++];
+        switch (b) {
+        case '"':
+        case '\\':
+        case '/':
+            return (char) b;
+        case 'b':
+            return '\b';
+        case 'f':
+            return '\f';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 't':
+            return '\t';
+        case 'u':
+            require(4);
+            int c = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(buffer[pos++], 16);
+                if (digit < 0) {
+                    throw syntaxError("Invalid unicode escape");
+                }
+                c = (c << 4) | digit;
+            }
+            return (char) c;
+        default:
+            throw syntaxError("Invalid escape");
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            byte b = buffer[pos++];
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                require(1);
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Consumes a number or a literal and returns where it starts. The token is kept in the buffer until
+     * {@link #tokenStart} is reset.
+     */
+    private int scalar() throws IOException {
+        if (tokenStart < 0) {
+            tokenStart = pos;
+        }
+        int offset = pos - tokenStart;
+        while (true) {
+            if (pos == limit && !fill()) {
+                break;
+            }
+            byte b = buffer[pos];
+            if (b == ',' || b == '}' || b == ']' || b == ':' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                break;
+            }
+            if (b == '"' || b == '{' || b == '[') {
+                throw syntaxError("Unexpected character");
+            }
+            pos++;
+        }
+        int start = tokenStart + offset;
+        if (pos == start) {
+            throw syntaxError("Expected a value");
+        }
+        return start;
+    }
+
+    private int parseInt(int start, int end) {
+        boolean negative = buffer[start] == '-';
+        int i = negative ? start + 1 : start;
+        long value = 0;
+        for (; i < end && i - start < 11; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+        }
+        if (i == end && i > (negative ? start + 1 : start) && value <= Integer.MAX_VALUE) {
+            return (int) (negative ? -value : value);
+        }
+        String text = new String(buffer, start, end - start, StandardCharsets.US_ASCII);
+        try {
+            return parseInt(text);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected a number but was " + text);
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return (int) Double.parseDouble(value.trim());
+        }
+    }
+
+    private void literal(String literal) throws IOException {
+        require(literal.length());
+        for (int i = 0; i < literal.length(); i++) {
+            if (buffer[pos + i] != literal.charAt(i)) {
+                throw syntaxError("Unexpected character");
+            }
+        }
+        pos += literal.length();
+    }
+
+    private void expect(char c) throws IOException {
+        if (peek() != c) {
+            throw syntaxError("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it, or {@link #END}.
+     */
+    private int peek() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return END;
+            }
+            byte b = buffer[pos];
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                pos++;
+            } else {
+                return b & 0xff;
+            }
+        }
+    }
+
+    private void require(int count) throws IOException {
+        while (limit - pos < count) {
+            if (!fill()) {
+                throw syntaxError("Unexpected end of input");
+            }
+        }
+    }
+
+    /**
+     * Reads more input into the buffer, dropping what has been consumed except the current token. Returns
+     * {@code false} at the end of the input.
+     */
+    private boolean fill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        int keep = tokenStart >= 0 ? tokenStart : pos;
+        if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+            discarded += keep;
+            pos -= keep;
+            limit -= keep;
+            if (tokenStart >= 0) {
+                tokenStart = 0;
+            }
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read <= 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at offset " + (discarded + pos));
+    }
+}
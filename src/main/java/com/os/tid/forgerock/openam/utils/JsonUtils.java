@@ -0,0 +1,66 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.os.tid.forgerock.openam.config.Constants;
+
+/**
+ * The JSON codec of the deployment, selected once by the {@value Constants#OSTID_JSON_CODEC_PROPERTY} system
+ * property. fastjson is used by default and whenever the selected codec is unknown or its library is missing.
+ */
+public class JsonUtils {
+    private static final Logger logger = LoggerFactory.getLogger("amAuth");
+    private static final String loggerPrefix = "[OneSpan Auth JsonUtils][Marketplace] ";
+
+    private static final byte[] CODEC_SAMPLE = "{\"sample\":[1,\"a\"]}".getBytes(StandardCharsets.UTF_8);
+    private static final JsonCodec codec = createCodec(System.getProperty(Constants.OSTID_JSON_CODEC_PROPERTY, Constants.OSTID_DEFAULT_JSON_CODEC));
+
+    private JsonUtils() {
+    }
+
+    public static JsonCodec getCodec() {
+        return codec;
+    }
+
+    public static <T> T decode(InputStream content, Class<T> type) throws IOException {
+        return codec.decode(content, type);
+    }
+
+    public static <T> T decode(byte[] content, Class<T> type) throws IOException {
+        return codec.decode(content, type);
+    }
+
+    public static String toJSONString(Object value) {
+        return codec.toJSONString(value);
+    }
+
+    public static byte[] toJSONBytes(Object value) {
+        return codec.toJSONBytes(value);
+    }
+
+    /**
+     * Returns the codec with the given name. The Jackson codec is only loaded when selected, so deployments without
+     * Jackson on the class path are not affected. It decodes a sample once, so that a Jackson version lacking part of
+     * the streaming API it uses falls back as well.
+     */
+    static JsonCodec createCodec(String name) {
+        if (JacksonCodec.NAME.equalsIgnoreCase(name.trim())) {
+            try {
+                JsonCodec jacksonCodec = new JacksonCodec();
+                jacksonCodec.decode(CODEC_SAMPLE, Object.class);
+                logger.info(loggerPrefix + "Using the " + jacksonCodec.getName() + " JSON codec");
+                return jacksonCodec;
+            } catch (LinkageError | IOException e) {
+                logger.warn(loggerPrefix + "Jackson is not available, falling back to " + FastjsonCodec.NAME + ": " + e);
+            }
+        } else if (!FastjsonCodec.NAME.equalsIgnoreCase(name.trim())) {
+            logger.warn(loggerPrefix + "Unknown JSON codec " + name + ", falling back to " + FastjsonCodec.NAME);
+        }
+        return new FastjsonCodec();
+    }
+}
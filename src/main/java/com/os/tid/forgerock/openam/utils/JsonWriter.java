@@ -0,0 +1,217 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.util.Arrays;
+
+import com.os.tid.forgerock.openam.models.JsonRequest;
+
+/**
+ * Writes a request body as UTF-8 encoded JSON, escaping every string it writes. Each thread reuses one buffer, so
+ * serializing a request allocates little more than the returned byte array.
+ */
+public final class JsonWriter {
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MAX_RETAINED_CAPACITY = 65536;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final ThreadLocal<JsonWriter> writers = ThreadLocal.withInitial(JsonWriter::new);
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int size;
+    private boolean needsComma;
+
+    private JsonWriter() {
+    }
+
+    /**
+     * Serializes the request into a new byte array.
+     */
+    public static byte[] toJSONBytes(JsonRequest request) {
+        JsonWriter writer = writers.get();
+        writer.size = 0;
+        writer.needsComma = false;
+        try {
+            request.writeJson(writer);
+            return Arrays.copyOf(writer.buffer, writer.size);
+        } finally {
+            if (writer.buffer.length > MAX_RETAINED_CAPACITY) {
+                writer.buffer = new byte[INITIAL_CAPACITY];
+            }
+        }
+    }
+
+    /**
+     * Returns the string JSON-escaped and encoded as UTF-8, without the enclosing quotes, as
+     * {@link #rawString(byte[])} takes it.
+     */
+    public static byte[] escape(String value) {
+        // not the buffer of the thread, which may be in use by a request being serialized
+        JsonWriter writer = new JsonWriter();
+        writer.string(value);
+        return Arrays.copyOfRange(writer.buffer, 1, writer.size - 1);
+    }
+
+    public JsonWriter beginObject() {
+        comma();
+        write('{');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        write('}');
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        comma();
+        write('[');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        write(']');
+        needsComma = true;
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of the current object.
+     */
+    public JsonWriter name(String name) {
+        comma();
+        string(name);
+        write(':');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        comma();
+        if (value == null) {
+            ascii("null");
+        } else {
+            string(value);
+        }
+        needsComma = true;
+        return this;
+    }
+
+    /**
+     * Writes a string which has already been JSON-escaped and encoded, see {@link #escape(String)}.
+     */
+    public JsonWriter rawString(byte[] escaped) {
+        comma();
+        ensureCapacity(escaped.length + 2);
+        buffer[size++] = '"';
+        System.arraycopy(escaped, 0, buffer, size, escaped.length);
+        size += escaped.length;
+        buffer[size++] = '"';
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        comma();
+        ascii(Long.toString(value));
+        needsComma = true;
+        return this;
+    }
+
+    /**
+     * Writes a string member, or nothing when the value is {@code null}.
+     */
+    public JsonWriter field(String name, String value) {
+        return value == null ? this : name(name).value(value);
+    }
+
+    private void comma() {
+        if (needsComma) {
+            write(',');
+        }
+    }
+
+    private void ascii(String value) {
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void string(String value) {
+        // every char takes at most 6 bytes, as a \\u escape
+        ensureCapacity(value.length() * 6 + 2);
+        byte[] bytes = buffer;
+        int position = size;
+        bytes[position++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                bytes[position++] = (byte) c;
+            } else if (c == '"' || c == '\\') {
+                bytes[position++] = '\\';
+                bytes[position++] = (byte) c;
+            } else if (c < 0x20) {
+                position = control(bytes, position, c);
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xc0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                bytes[position++] = (byte) (0xf0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate has no UTF-8 encoding
+                position = unicodeEscape(bytes, position, c);
+            } else {
+                bytes[position++] = (byte) (0xe0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                bytes[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        bytes[position++] = '"';
+        size = position;
+    }
+
+    private static int control(byte[] bytes, int position, char c) {
+        switch (c) {
+        case '\n':
+            bytes[position++] = '\\';
+            bytes[position++] = 'n';
+            return position;
+        case '\r':
+            bytes[position++] = '\\';
+            bytes[position++] = 'r';
+            return position;
+        case '\t':
+            bytes[position++] = '\\';
+            bytes[position++] = 't';
+            return position;
+        default:
+            return unicodeEscape(bytes, position, c);
+        }
+    }
+
+    private static int unicodeEscape(byte[] bytes, int position, char c) {
+        bytes[position++] = '\\';
+        bytes[position++] = 'u';
+        bytes[position++] = HEX[(c >> 12) & 0x0f];
+        bytes[position++] = HEX[(c >> 8) & 0x0f];
+        bytes[position++] = HEX[(c >> 4) & 0x0f];
+        bytes[position++] = HEX[c & 0x0f];
+        return position;
+    }
+
+    private void write(char c) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+        }
+    }
+}
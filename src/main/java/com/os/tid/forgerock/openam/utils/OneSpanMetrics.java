@@ -0,0 +1,233 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counters of the OneSpan REST layer, published over JMX as {@value #OBJECT_NAME}.
+ */
+public class OneSpanMetrics implements OneSpanMetricsMBean {
+    private static final Logger logger = LoggerFactory.getLogger("amAuth");
+    private static final String loggerPrefix = "[OneSpan Auth OneSpanMetrics][Marketplace] ";
+    public static final String OBJECT_NAME = "com.os.tid.forgerock.openam:type=OneSpanMetrics";
+
+    private static final OneSpanMetrics instance = new OneSpanMetrics();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder requestFailures = new LongAdder();
+    private final LongAdder requestTimeMillis = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder retryGiveUps = new LongAdder();
+    private final LongAdder circuitBreakerOpens = new LongAdder();
+    private final LongAdder circuitBreakerRejections = new LongAdder();
+    private final LongAdder regionFailovers = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder sslContextCacheHits = new LongAdder();
+    private final LongAdder sslContextCacheMisses = new LongAdder();
+    private final LongAdder fullHandshakes = new LongAdder();
+    private final LongAdder fullHandshakeTimeMillis = new LongAdder();
+    private final LongAdder resumedHandshakes = new LongAdder();
+    private final LongAdder resumedHandshakeTimeMillis = new LongAdder();
+    private final LongAdder cddcPacked = new LongAdder();
+    private final LongAdder cddcRawBytes = new LongAdder();
+    private final LongAdder cddcStoredBytes = new LongAdder();
+
+    private OneSpanMetrics() {
+    }
+
+    public static OneSpanMetrics getInstance() {
+        return instance;
+    }
+
+    public void recordRequest(long elapsedMs) {
+        requests.increment();
+        requestTimeMillis.add(elapsedMs);
+    }
+
+    public void recordRequestFailure(long elapsedMs) {
+        requestFailures.increment();
+        requestTimeMillis.add(elapsedMs);
+    }
+
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    public void recordRetryGiveUp() {
+        retryGiveUps.increment();
+    }
+
+    public void recordCircuitBreakerOpen() {
+        circuitBreakerOpens.increment();
+    }
+
+    public void recordCircuitBreakerRejection() {
+        circuitBreakerRejections.increment();
+    }
+
+    public void recordRegionFailover() {
+        regionFailovers.increment();
+    }
+
+    public void recordHedge() {
+        hedges.increment();
+    }
+
+    public void recordHedgeWin() {
+        hedgeWins.increment();
+    }
+
+    public void recordSslContextCacheHit() {
+        sslContextCacheHits.increment();
+    }
+
+    public void recordSslContextCacheMiss() {
+        sslContextCacheMisses.increment();
+    }
+
+    public void recordHandshake(boolean resumed, long elapsedMs) {
+        if (resumed) {
+            resumedHandshakes.increment();
+            resumedHandshakeTimeMillis.add(elapsedMs);
+        } else {
+            fullHandshakes.increment();
+            fullHandshakeTimeMillis.add(elapsedMs);
+        }
+    }
+
+    /**
+     * Records the CDDC data of a journey stored in the shared state, with its size as collected and as stored.
+     */
+    public void recordCddcPacked(long rawBytes, long storedBytes) {
+        cddcPacked.increment();
+        cddcRawBytes.add(rawBytes);
+        cddcStoredBytes.add(storedBytes);
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getRequestFailures() {
+        return requestFailures.sum();
+    }
+
+    @Override
+    public long getRequestTimeMillis() {
+        return requestTimeMillis.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getRetryGiveUps() {
+        return retryGiveUps.sum();
+    }
+
+    @Override
+    public long getCircuitBreakerOpens() {
+        return circuitBreakerOpens.sum();
+    }
+
+    @Override
+    public long getCircuitBreakerRejections() {
+        return circuitBreakerRejections.sum();
+    }
+
+    @Override
+    public long getRegionFailovers() {
+        return regionFailovers.sum();
+    }
+
+    @Override
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    @Override
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    @Override
+    public long getSslContextCacheHits() {
+        return sslContextCacheHits.sum();
+    }
+
+    @Override
+    public long getSslContextCacheMisses() {
+        return sslContextCacheMisses.sum();
+    }
+
+    @Override
+    public long getFullHandshakes() {
+        return fullHandshakes.sum();
+    }
+
+    @Override
+    public long getFullHandshakeTimeMillis() {
+        return fullHandshakeTimeMillis.sum();
+    }
+
+    @Override
+    public long getResumedHandshakes() {
+        return resumedHandshakes.sum();
+    }
+
+    @Override
+    public long getResumedHandshakeTimeMillis() {
+        return resumedHandshakeTimeMillis.sum();
+    }
+
+    @Override
+    public long getCddcPacked() {
+        return cddcPacked.sum();
+    }
+
+    @Override
+    public long getCddcRawBytes() {
+        return cddcRawBytes.sum();
+    }
+
+    @Override
+    public long getCddcStoredBytes() {
+        return cddcStoredBytes.sum();
+    }
+
+    public static void register() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(instance, objectName);
+            }
+        } catch (JMException e) {
+            logger.warn(loggerPrefix + "Failed to register MBean: " + e.getMessage());
+        }
+    }
+
+    public static void unregister() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            logger.warn(loggerPrefix + "Failed to unregister MBean: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.os.tid.forgerock.openam.utils;
+
+/**
+ * JMX view of {@link OneSpanMetrics}.
+ */
+public interface OneSpanMetricsMBean {
+
+    long getRequests();
+
+    long getRequestFailures();
+
+    long getRequestTimeMillis();
+
+    long getRetries();
+
+    long getRetryGiveUps();
+
+    long getCircuitBreakerOpens();
+
+    long getCircuitBreakerRejections();
+
+    long getRegionFailovers();
+
+    long getHedges();
+
+    long getHedgeWins();
+
+    long getSslContextCacheHits();
+
+    long getSslContextCacheMisses();
+
+    long getFullHandshakes();
+
+    long getFullHandshakeTimeMillis();
+
+    long getResumedHandshakes();
+
+    long getResumedHandshakeTimeMillis();
+
+    long getCddcPacked();
+
+    long getCddcRawBytes();
+
+    long getCddcStoredBytes();
+}
@@ -0,0 +1,62 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.util.ResourceBundle;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.openam.auth.node.api.Action;
+import org.forgerock.openam.auth.node.api.NodeState;
+import org.forgerock.openam.auth.node.api.OutcomeProvider.Outcome;
+import org.slf4j.Logger;
+
+import com.google.common.collect.ImmutableList;
+import com.os.tid.forgerock.openam.config.Constants;
+
+/**
+ * Routes the failures of the nodes calling OneSpan. A node offering the optional Unavailable outcome takes it instead
+ * of its Error outcome while the circuit breaker of the tenant endpoint is open, so that the tree can route to a
+ * fallback path.
+ */
+public class OutcomeUtils {
+    /**
+     * The node attribute enabling the Unavailable outcome.
+     */
+    public static final String UNAVAILABLE_OUTCOME_ATTRIBUTE = "unavailableOutcomeEnabled";
+    private static final String UNAVAILABLE_OUTCOME_BUNDLE_KEY = "unavailableOutcome";
+
+    private OutcomeUtils() {
+    }
+
+    /**
+     * Records the failure of a node and returns the action taking its Error outcome, or its Unavailable outcome when
+     * the node has enabled it and the call was rejected by an open circuit breaker.
+     *
+     * @param keyPrefix the prefix of the keys the node writes into the shared state, see
+     *                  {@link ErrorUtils#recordError(NodeState, String, String, String, Throwable)}
+     * @param node the name of the node
+     * @param messagePrefix the text shown before the message of the exception
+     * @param unavailableOutcomeEnabled whether the node has enabled its Unavailable outcome
+     */
+    public static Action onException(NodeState state, Logger logger, String keyPrefix, String node, String messagePrefix, Exception ex,
+                                     boolean unavailableOutcomeEnabled, String errorOutcome, String unavailableOutcome) {
+        if (ex instanceof CircuitBreakerOpenException && unavailableOutcomeEnabled) {
+            logger.warn(keyPrefix + ex.getMessage());
+            state.putShared(keyPrefix + Constants.OSTID_ERROR_MESSAGE, ErrorUtils.getErrorMessage(messagePrefix, ex));
+            return Action.goTo(unavailableOutcome).build();
+        }
+        logger.error(keyPrefix + "Exception occurred", ex);
+        ErrorUtils.recordError(state, keyPrefix, node, messagePrefix, ex);
+        return Action.goTo(errorOutcome).build();
+    }
+
+    /**
+     * Adds the Unavailable outcome to the outcomes of a node when its {@value #UNAVAILABLE_OUTCOME_ATTRIBUTE}
+     * attribute is set. The bundle of the node provides its display name.
+     */
+    public static ImmutableList.Builder<Outcome> addUnavailableOutcome(ImmutableList.Builder<Outcome> outcomes, JsonValue nodeAttributes,
+                                                                       ResourceBundle bundle, String unavailableOutcome) {
+        if (nodeAttributes.isDefined(UNAVAILABLE_OUTCOME_ATTRIBUTE) && nodeAttributes.get(UNAVAILABLE_OUTCOME_ATTRIBUTE).asBoolean()) {
+            outcomes.add(new Outcome(unavailableOutcome, bundle.getString(UNAVAILABLE_OUTCOME_BUNDLE_KEY)));
+        }
+        return outcomes;
+    }
+}
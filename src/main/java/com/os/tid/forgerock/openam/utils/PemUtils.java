@@ -0,0 +1,135 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Reads the ASP client credentials configured in the realm. Private keys may be RSA or EC, either in PKCS#8
+ * ({@code BEGIN PRIVATE KEY}), PKCS#1 ({@code BEGIN RSA PRIVATE KEY}) or SEC1 ({@code BEGIN EC PRIVATE KEY}) form.
+ * Certificates may hold the whole chain, leaf certificate first. Values pasted without PEM headers are read as a
+ * single PKCS#8 key or certificate, as before.
+ */
+public class PemUtils {
+    private static final Pattern PEM_BLOCK = Pattern.compile("-----BEGIN ([A-Z0-9 ]+)-----(.*?)-----END \\1-----", Pattern.DOTALL);
+
+    private static final byte[] RSA_ALGORITHM_IDENTIFIER = {
+            0x30, 0x0d, 0x06, 0x09, 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x0d, 0x01, 0x01, 0x01, 0x05, 0x00 };
+    private static final byte[] EC_PUBLIC_KEY_OID = { 0x06, 0x07, 0x2a, (byte) 0x86, 0x48, (byte) 0xce, 0x3d, 0x02, 0x01 };
+    private static final byte[] PKCS8_VERSION = { 0x02, 0x01, 0x00 };
+
+    private PemUtils() {
+    }
+
+    public static PrivateKey readPrivateKey(String privateKeyPem) throws GeneralSecurityException {
+        Matcher matcher = PEM_BLOCK.matcher(privateKeyPem);
+        while (matcher.find()) {
+            byte[] der = DatatypeConverter.parseBase64Binary(matcher.group(2).trim());
+            switch (matcher.group(1)) {
+            case "PRIVATE KEY":
+                return readPkcs8(der);
+            case "RSA PRIVATE KEY":
+                return KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(
+                        der(0x30, PKCS8_VERSION, RSA_ALGORITHM_IDENTIFIER, der(0x04, der))));
+            case "EC PRIVATE KEY":
+                return KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(
+                        der(0x30, PKCS8_VERSION, der(0x30, EC_PUBLIC_KEY_OID, getNamedCurve(der)), der(0x04, der))));
+            default:
+                // e.g. the EC PARAMETERS block written by openssl ahead of the key
+            }
+        }
+        return readPkcs8(DatatypeConverter.parseBase64Binary(privateKeyPem.trim()));
+    }
+
+    public static X509Certificate[] readCertificates(String certificatePem) throws GeneralSecurityException {
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+        List<X509Certificate> chain = new ArrayList<>();
+        Matcher matcher = PEM_BLOCK.matcher(certificatePem);
+        while (matcher.find()) {
+            if ("CERTIFICATE".equals(matcher.group(1))) {
+                byte[] der = DatatypeConverter.parseBase64Binary(matcher.group(2).trim());
+                chain.add((X509Certificate) factory.generateCertificate(new ByteArrayInputStream(der)));
+            }
+        }
+        if (chain.isEmpty()) {
+            byte[] der = DatatypeConverter.parseBase64Binary(certificatePem.trim());
+            chain.add((X509Certificate) factory.generateCertificate(new ByteArrayInputStream(der)));
+        }
+        return chain.toArray(new X509Certificate[0]);
+    }
+
+    private static PrivateKey readPkcs8(byte[] der) throws GeneralSecurityException {
+        PKCS8EncodedKeySpec spec = new PKCS8EncodedKeySpec(der);
+        try {
+            return KeyFactory.getInstance("RSA").generatePrivate(spec);
+        } catch (InvalidKeySpecException e) {
+            return KeyFactory.getInstance("EC").generatePrivate(spec);
+        }
+    }
+
+    /**
+     * Returns the curve OID of a SEC1 {@code ECPrivateKey}, which follows its version and private key as the
+     * explicitly tagged {@code [0]} parameters.
+     */
+    private static byte[] getNamedCurve(byte[] sec1) throws InvalidKeySpecException {
+        int offset = getContentOffset(sec1, 0);
+        offset = getNextOffset(sec1, offset);
+        offset = getNextOffset(sec1, offset);
+        if (offset < sec1.length && (sec1[offset] & 0xff) == 0xa0) {
+            int curveOffset = getContentOffset(sec1, offset);
+            return Arrays.copyOfRange(sec1, curveOffset, getNextOffset(sec1, curveOffset));
+        }
+        throw new InvalidKeySpecException("EC private key does not name its curve");
+    }
+
+    private static int getContentOffset(byte[] der, int offset) {
+        int length = der[offset + 1] & 0xff;
+        return offset + 2 + (length > 0x80 ? length & 0x7f : 0);
+    }
+
+    private static int getNextOffset(byte[] der, int offset) {
+        int length = der[offset + 1] & 0xff;
+        if (length > 0x80) {
+            int lengthBytes = length & 0x7f;
+            length = 0;
+            for (int i = 0; i < lengthBytes; i++) {
+                length = (length << 8) | (der[offset + 2 + i] & 0xff);
+            }
+        }
+        return getContentOffset(der, offset) + length;
+    }
+
+    private static byte[] der(int tag, byte[]... elements) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] element : elements) {
+            content.writeBytes(element);
+        }
+        ByteArrayOutputStream der = new ByteArrayOutputStream();
+        der.write(tag);
+        int length = content.size();
+        if (length < 0x80) {
+            der.write(length);
+        } else {
+            int lengthBytes = (Integer.SIZE - Integer.numberOfLeadingZeros(length) + 7) / 8;
+            der.write(0x80 | lengthBytes);
+            for (int i = lengthBytes - 1; i >= 0; i--) {
+                der.write(length >>> (8 * i));
+            }
+        }
+        der.writeBytes(content.toByteArray());
+        return der.toByteArray();
+    }
+}
@@ -0,0 +1,142 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertPathBuilder;
+import java.security.cert.CertificateException;
+import java.security.cert.PKIXBuilderParameters;
+import java.security.cert.PKIXRevocationChecker;
+import java.security.cert.X509CertSelector;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import javax.net.ssl.CertPathTrustManagerParameters;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import com.os.tid.forgerock.openam.config.Constants;
+
+/**
+ * Trusts the OneSpan tenant endpoint only if its certificate chain is valid against the default trust store of the
+ * JVM and contains one of the pinned public keys. Pins are the base64 encoded SHA-256 hash of a certificate's
+ * SubjectPublicKeyInfo, as in HTTP Public Key Pinning, optionally prefixed with {@code sha256/}.
+ * <p>
+ * Validated server certificates are remembered until the cache TTL elapses or they expire, so that only the first
+ * handshake with a server pays for path validation and revocation checking. The TLS handshake proves the server holds
+ * the private key of a remembered certificate.
+ * <p>
+ * As a plain {@link X509TrustManager}, it leaves the host name check to the JSSE on the JDK client, while the Apache
+ * client of a pinned realm uses the default host name verifier, so both transports verify the host name.
+ */
+public class PinningTrustManager implements X509TrustManager {
+    private static final String PIN_PREFIX = "sha256/";
+
+    private final Set<String> pins;
+    private final X509TrustManager pkixTrustManager;
+    private final long cacheTtlMs;
+    private final ConcurrentMap<String, Long> validatedCertificates = new ConcurrentHashMap<>();
+
+    public PinningTrustManager(Set<String> pins, boolean revocationCheck, long cacheTtlMs) throws GeneralSecurityException, IOException {
+        this.pins = pins.stream()
+                .map(String::trim)
+                .map(pin -> pin.startsWith(PIN_PREFIX) ? pin.substring(PIN_PREFIX.length()) : pin)
+                .collect(Collectors.toSet());
+        this.pkixTrustManager = createPkixTrustManager(revocationCheck);
+        this.cacheTtlMs = cacheTtlMs;
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+        if (chain == null || chain.length == 0) {
+            throw new CertificateException("OneSpan endpoint presented no certificate");
+        }
+        long now = System.currentTimeMillis();
+        String leaf = sha256(chain[0].getEncoded());
+        Long validUntil = validatedCertificates.get(leaf);
+        if (validUntil != null && validUntil > now) {
+            return;
+        }
+
+        pkixTrustManager.checkServerTrusted(chain, authType);
+        checkPins(chain);
+        if (validatedCertificates.size() >= Constants.OSTID_DEFAULT_TRUST_CACHE_SIZE) {
+            validatedCertificates.clear();
+        }
+        validatedCertificates.put(leaf, Math.min(now + cacheTtlMs, chain[0].getNotAfter().getTime()));
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+        pkixTrustManager.checkClientTrusted(chain, authType);
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return pkixTrustManager.getAcceptedIssuers();
+    }
+
+    private void checkPins(X509Certificate[] chain) throws CertificateException {
+        for (X509Certificate certificate : chain) {
+            if (pins.contains(sha256(certificate.getPublicKey().getEncoded()))) {
+                return;
+            }
+        }
+        throw new CertificateException("OneSpan endpoint certificate " + chain[0].getSubjectX500Principal()
+                + " does not match any pinned public key");
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Revocation is checked through OCSP, falling back to CRLs. An unreachable responder does not fail the
+     * handshake, a revoked certificate does.
+     */
+    private static X509TrustManager createPkixTrustManager(boolean revocationCheck) throws GeneralSecurityException, IOException {
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance("PKIX");
+        if (revocationCheck) {
+            PKIXBuilderParameters parameters = new PKIXBuilderParameters(loadDefaultTrustStore(), new X509CertSelector());
+            PKIXRevocationChecker revocationChecker = (PKIXRevocationChecker) CertPathBuilder.getInstance("PKIX").getRevocationChecker();
+            revocationChecker.setOptions(EnumSet.of(PKIXRevocationChecker.Option.SOFT_FAIL));
+            parameters.addCertPathChecker(revocationChecker);
+            trustManagerFactory.init(new CertPathTrustManagerParameters(parameters));
+        } else {
+            trustManagerFactory.init((KeyStore) null);
+        }
+        for (TrustManager trustManager : trustManagerFactory.getTrustManagers()) {
+            if (trustManager instanceof X509TrustManager) {
+                return (X509TrustManager) trustManager;
+            }
+        }
+        throw new GeneralSecurityException("No X509TrustManager available");
+    }
+
+    private static KeyStore loadDefaultTrustStore() throws GeneralSecurityException, IOException {
+        String trustStore = System.getProperty("javax.net.ssl.trustStore");
+        Path trustStorePath = trustStore != null ? Paths.get(trustStore) : Paths.get(System.getProperty("java.home"), "lib", "security", "cacerts");
+        String password = System.getProperty("javax.net.ssl.trustStorePassword");
+        KeyStore keyStore = KeyStore.getInstance(System.getProperty("javax.net.ssl.trustStoreType", KeyStore.getDefaultType()));
+        try (InputStream in = Files.newInputStream(trustStorePath)) {
+            keyStore.load(in, password != null ? password.toCharArray() : null);
+        }
+        return keyStore;
+    }
+}
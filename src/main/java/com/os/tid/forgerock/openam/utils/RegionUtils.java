@@ -0,0 +1,217 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.os.tid.forgerock.openam.config.ApiEndpoint;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+
+/**
+ * Routes the calls of a realm across the environments hosting its tenant, see
+ * {@link OSConfigurationsService#failoverEnvironments()}. Each environment has its own circuit breaker; a call goes
+ * to the first environment by priority whose breaker permits calls or, with latency routing, to the one with the
+ * lowest average latency. Latencies are then measured on every call and by probing the other environments in the
+ * background.
+ */
+public class RegionUtils {
+    private static final Logger logger = LoggerFactory.getLogger("amAuth");
+    private static final String loggerPrefix = "[OneSpan Auth RegionUtils][Marketplace] ";
+
+    private static final ConcurrentMap<String, RegionStats> regions = new ConcurrentHashMap<>();
+    private static final ExecutorService probeExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("onespan-region-probe-%d").setDaemon(true).build());
+
+    private RegionUtils() {
+    }
+
+    /**
+     * Returns the URL of the call in the environment it should be sent to. URLs of realms without failover
+     * environments are returned as is.
+     */
+    public static String route(OSConfigurationsService serviceConfig, String url) {
+        List<String> endpoints = OneSpanRealmContext.of(serviceConfig).getRegionEndpoints();
+        String primary = endpoints.get(0);
+        if (endpoints.size() < 2 || !url.startsWith(primary)) {
+            return url;
+        }
+        boolean latencyRouting = serviceConfig.latencyRouting();
+        String selected = select(serviceConfig, endpoints, latencyRouting);
+        if (latencyRouting) {
+            probe(serviceConfig, endpoints, selected);
+        }
+        if (selected.equals(primary)) {
+            return url;
+        }
+        OneSpanMetrics.getInstance().recordRegionFailover();
+        logger.debug(loggerPrefix + "Routing call for " + primary + " to " + selected);
+        return selected + url.substring(primary.length());
+    }
+
+    /**
+     * Returns the environment endpoint a call to the URI belongs to, which keys its circuit breaker.
+     */
+    static String getRegionEndpoint(OSConfigurationsService serviceConfig, URI uri) {
+        List<String> endpoints = OneSpanRealmContext.of(serviceConfig).getRegionEndpoints();
+        if (endpoints.size() > 1) {
+            String origin = getOrigin(uri);
+            if (endpoints.contains(origin)) {
+                return origin;
+            }
+        }
+        return endpoints.get(0);
+    }
+
+    static void recordResponse(URI uri, long elapsedMs) {
+        RegionStats stats = regions.get(getOrigin(uri));
+        if (stats != null) {
+            stats.record(elapsedMs);
+        }
+    }
+
+    static void recordFailure(URI uri) {
+        RegionStats stats = regions.get(getOrigin(uri));
+        if (stats != null) {
+            stats.recordFailure();
+        }
+    }
+
+    /**
+     * Environments with an open circuit breaker are skipped. When every breaker is open the call goes to the
+     * configured environment, whose breaker rejects it.
+     */
+    private static String select(OSConfigurationsService serviceConfig, List<String> endpoints, boolean latencyRouting) {
+        String selected = null;
+        double selectedLatency = Double.MAX_VALUE;
+        for (String endpoint : endpoints) {
+            CircuitBreaker circuitBreaker = CircuitBreakerUtils.getCircuitBreaker(serviceConfig, endpoint);
+            if (circuitBreaker != null && !circuitBreaker.isAvailable()) {
+                continue;
+            }
+            if (!latencyRouting) {
+                return endpoint;
+            }
+            double latency = getStats(endpoint).getLatency();
+            if (selected == null || latency < selectedLatency) {
+                selected = endpoint;
+                selectedLatency = latency;
+            }
+        }
+        return selected != null ? selected : endpoints.get(0);
+    }
+
+    /**
+     * Sends a HEAD request to every other environment whose latency was last measured longer than the probe
+     * interval ago, so that a faster or recovered environment is noticed without sending it real calls. The probes
+     * run in the background, through the transport of the realm and the client of the probed environment.
+     */
+    private static void probe(OSConfigurationsService serviceConfig, List<String> endpoints, String selected) {
+        OneSpanRealmContext realmContext = OneSpanRealmContext.of(serviceConfig);
+        for (String endpoint : endpoints) {
+            RegionStats stats = getStats(endpoint);
+            if (endpoint.equals(selected) || !stats.startProbe()) {
+                continue;
+            }
+            try {
+                probeExecutor.execute(() -> probe(serviceConfig, realmContext.getRegionContext(endpoint), stats));
+            } catch (RuntimeException e) {
+                logger.warn(loggerPrefix + "Failed to probe " + endpoint + ": " + e.getMessage());
+                stats.endProbe();
+            }
+        }
+    }
+
+    private static void probe(OSConfigurationsService serviceConfig, OneSpanRealmContext regionContext, RegionStats stats) {
+        String endpoint = regionContext.getApiEndpoint();
+        long start = System.nanoTime();
+        try {
+            if (regionContext.isHttp2()) {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(endpoint))
+                        .timeout(Duration.ofMillis(TimeoutUtils.getRequestTimeout(serviceConfig, ApiEndpoint.OTHER)))
+                        .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                        .build();
+                regionContext.getAsyncHttpClient().send(request, HttpResponse.BodyHandlers.discarding());
+            } else {
+                HttpHead request = new HttpHead(endpoint);
+                request.setConfig(TimeoutUtils.getRequestConfig(serviceConfig, ApiEndpoint.OTHER));
+                ScheduledFuture<?> deadline = HttpClientUtils.scheduleAbort(request, TimeoutUtils.getRequestTimeout(serviceConfig, ApiEndpoint.OTHER));
+                try (CloseableHttpResponse response = regionContext.getHttpClient().execute(request)) {
+                    EntityUtils.consume(response.getEntity());
+                } finally {
+                    deadline.cancel(false);
+                }
+            }
+            stats.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            logger.debug(loggerPrefix + "Probe of " + endpoint + " failed: " + e);
+            stats.recordFailure();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stats.recordFailure();
+        } finally {
+            stats.endProbe();
+        }
+    }
+
+    private static RegionStats getStats(String endpoint) {
+        return regions.computeIfAbsent(endpoint, key -> new RegionStats());
+    }
+
+    private static String getOrigin(URI uri) {
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    /**
+     * The exponentially weighted average latency of an environment. An environment which has not been measured yet
+     * or whose last call failed ranks behind every measured one.
+     */
+    private static class RegionStats {
+        private final AtomicBoolean probing = new AtomicBoolean();
+        private volatile double latency = Double.MAX_VALUE;
+        private volatile long lastSample = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(Constants.OSTID_DEFAULT_REGION_PROBE_INTERVAL_MS);
+
+        private double getLatency() {
+            return latency;
+        }
+
+        private synchronized void record(long elapsedMs) {
+            latency = latency == Double.MAX_VALUE
+                    ? elapsedMs
+                    : latency + Constants.OSTID_DEFAULT_REGION_LATENCY_WEIGHT * (elapsedMs - latency);
+            lastSample = System.nanoTime();
+        }
+
+        private void recordFailure() {
+            latency = Double.MAX_VALUE;
+            lastSample = System.nanoTime();
+        }
+
+        private boolean startProbe() {
+            return System.nanoTime() - lastSample >= TimeUnit.MILLISECONDS.toNanos(Constants.OSTID_DEFAULT_REGION_PROBE_INTERVAL_MS)
+                    && probing.compareAndSet(false, true);
+        }
+
+        private void endProbe() {
+            probing.set(false);
+        }
+    }
+}
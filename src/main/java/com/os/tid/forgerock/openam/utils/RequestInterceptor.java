@@ -0,0 +1,30 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Hook into every call sent by {@link RestUtils} and {@link AsyncRestUtils}, whichever transport serves the realm.
+ * Interceptors are registered with {@link RequestInterceptors#add(RequestInterceptor)} and run in registration order.
+ * Retries, hedges and the 415 fallback of compressed requests happen within a single call.
+ */
+public interface RequestInterceptor {
+
+    /**
+     * Called before the call is sent. Headers put into the map are sent with every attempt of the call.
+     */
+    default void beforeRequest(String method, URI uri, Map<String, String> headers) {
+    }
+
+    /**
+     * Called once the final response of the call has been read.
+     */
+    default void afterResponse(String method, URI uri, int status, long elapsedMs) {
+    }
+
+    /**
+     * Called when the call failed without a usable response, including calls rejected by the circuit breaker.
+     */
+    default void afterFailure(String method, URI uri, Throwable failure, long elapsedMs) {
+    }
+}
@@ -0,0 +1,117 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The interceptors applied to every OneSpan call. Request logging, the request metrics of {@link OneSpanMetrics} and
+ * the latency measurement of {@link RegionUtils} are registered by default. A failing interceptor is logged and
+ * skipped, it never fails the call itself.
+ */
+public class RequestInterceptors {
+    private static final Logger logger = LoggerFactory.getLogger("amAuth");
+    private static final String loggerPrefix = "[OneSpan Auth RequestInterceptors][Marketplace] ";
+
+    private static final List<RequestInterceptor> interceptors = new CopyOnWriteArrayList<>(
+            List.of(new LoggingInterceptor(), new MetricsInterceptor(), new RegionInterceptor()));
+
+    private RequestInterceptors() {
+    }
+
+    public static void add(RequestInterceptor interceptor) {
+        interceptors.add(interceptor);
+    }
+
+    public static void remove(RequestInterceptor interceptor) {
+        interceptors.remove(interceptor);
+    }
+
+    /**
+     * Runs the interceptors ahead of a call and returns the headers they contributed.
+     */
+    static Map<String, String> beforeRequest(String method, URI uri) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (RequestInterceptor interceptor : interceptors) {
+            try {
+                interceptor.beforeRequest(method, uri, headers);
+            } catch (RuntimeException e) {
+                logger.warn(loggerPrefix + interceptor.getClass().getName() + " failed: " + e.getMessage());
+            }
+        }
+        return headers;
+    }
+
+    static void afterResponse(String method, URI uri, int status, long startNanos) {
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        for (RequestInterceptor interceptor : interceptors) {
+            try {
+                interceptor.afterResponse(method, uri, status, elapsedMs);
+            } catch (RuntimeException e) {
+                logger.warn(loggerPrefix + interceptor.getClass().getName() + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    static void afterFailure(String method, URI uri, Throwable failure, long startNanos) {
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        for (RequestInterceptor interceptor : interceptors) {
+            try {
+                interceptor.afterFailure(method, uri, failure, elapsedMs);
+            } catch (RuntimeException e) {
+                logger.warn(loggerPrefix + interceptor.getClass().getName() + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static class LoggingInterceptor implements RequestInterceptor {
+        @Override
+        public void beforeRequest(String method, URI uri, Map<String, String> headers) {
+            logger.debug("RestUtils " + method + " url: " + uri);
+        }
+
+        @Override
+        public void afterResponse(String method, URI uri, int status, long elapsedMs) {
+            logger.debug("RestUtils " + method + " " + uri.getPath() + " response status: " + status + " in " + elapsedMs + "ms");
+        }
+
+        @Override
+        public void afterFailure(String method, URI uri, Throwable failure, long elapsedMs) {
+            logger.debug("RestUtils " + method + " " + uri.getPath() + " failed after " + elapsedMs + "ms: " + failure);
+        }
+    }
+
+    private static class MetricsInterceptor implements RequestInterceptor {
+        @Override
+        public void afterResponse(String method, URI uri, int status, long elapsedMs) {
+            OneSpanMetrics.getInstance().recordRequest(elapsedMs);
+        }
+
+        @Override
+        public void afterFailure(String method, URI uri, Throwable failure, long elapsedMs) {
+            OneSpanMetrics.getInstance().recordRequestFailure(elapsedMs);
+        }
+    }
+
+    private static class RegionInterceptor implements RequestInterceptor {
+        @Override
+        public void afterResponse(String method, URI uri, int status, long elapsedMs) {
+            if (status >= 500) {
+                RegionUtils.recordFailure(uri);
+            } else {
+                RegionUtils.recordResponse(uri, elapsedMs);
+            }
+        }
+
+        @Override
+        public void afterFailure(String method, URI uri, Throwable failure, long elapsedMs) {
+            RegionUtils.recordFailure(uri);
+        }
+    }
+}
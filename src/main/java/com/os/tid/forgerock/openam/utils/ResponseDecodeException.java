@@ -0,0 +1,15 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a OneSpan response body cannot be decoded into its model. The endpoint did respond, so the call is
+ * neither retried nor counted against its circuit breaker.
+ */
+public class ResponseDecodeException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public ResponseDecodeException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,216 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableMap;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.models.ActivationStatusOutput;
+import com.os.tid.forgerock.openam.models.AddDeviceOutput;
+import com.os.tid.forgerock.openam.models.GenerateChallengeOutput;
+import com.os.tid.forgerock.openam.models.GeneralResponseOutput;
+import com.os.tid.forgerock.openam.models.SessionStatusOutput;
+import com.os.tid.forgerock.openam.models.UserRegisterOutputEx;
+
+/**
+ * Decoders of the response models, reading the members of each model from a {@link JsonReader} and skipping any
+ * other member. Models without a decoder are bound by fastjson.
+ */
+public class ResponseDecoders {
+    private static final String[] GENERAL_RESPONSE_NAMES = {
+            "challenge", "requestID", "riskResponseCode", "eventId", "sessionStatus", "requestMessage", "fidoAuthenticationRequest", "uafStatusCode"};
+    private static final String[] USER_REGISTER_NAMES = {"activationPassword", "riskResponseCode", "serialNumber", "registrationID"};
+    private static final String[] ADD_DEVICE_NAMES = {
+            "activationMessage2", "activationType", "deviceStatus", "deviceType", "domain", "registrationID", "serialNumber", "userID"};
+    private static final String[] GENERATE_CHALLENGE_NAMES = {"challenge", "requestID"};
+
+    private static final Map<Class<?>, Decoder<?>> decoders = ImmutableMap.<Class<?>, Decoder<?>>builder()
+            .put(GeneralResponseOutput.class, (Decoder<GeneralResponseOutput>) ResponseDecoders::decodeGeneralResponse)
+            .put(UserRegisterOutputEx.class, (Decoder<UserRegisterOutputEx>) ResponseDecoders::decodeUserRegister)
+            .put(AddDeviceOutput.class, (Decoder<AddDeviceOutput>) ResponseDecoders::decodeAddDevice)
+            .put(GenerateChallengeOutput.class, (Decoder<GenerateChallengeOutput>) ResponseDecoders::decodeGenerateChallenge)
+            .put(SessionStatusOutput.class, new FieldsDecoder<>(values -> new SessionStatusOutput(values[0]), "sessionStatus"))
+            .put(ActivationStatusOutput.class, new FieldsDecoder<>(values -> new ActivationStatusOutput(values[0]), Constants.OSTID_RESPONSE_CHECK_ACTIVATION_STATUS))
+            .build();
+
+    private ResponseDecoders() {
+    }
+
+    static boolean canDecode(Class<?> responseType) {
+        return decoders.containsKey(responseType);
+    }
+
+    /**
+     * Decodes the input into the model, or returns {@code null} for an empty body or a {@code null} literal. Models
+     * read by a {@link FieldsDecoder} stop at their last member, the rest of the input is neither read nor checked.
+     */
+    static <T> T decode(JsonReader reader, Class<T> responseType) throws IOException {
+        if (reader.isNull()) {
+            return null;
+        }
+        Decoder<?> decoder = decoders.get(responseType);
+        T responseObject = responseType.cast(decoder.read(reader));
+        if (!(decoder instanceof FieldsDecoder)) {
+            reader.endDocument();
+        }
+        return responseObject;
+    }
+
+    private static GeneralResponseOutput decodeGeneralResponse(JsonReader reader) throws IOException {
+        GeneralResponseOutput output = new GeneralResponseOutput();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(GENERAL_RESPONSE_NAMES)) {
+            case 0:
+                output.challenge = reader.nextString();
+                break;
+            case 1:
+                output.requestID = reader.nextString();
+                break;
+            case 2:
+                output.riskResponseCode = reader.nextInt(output.riskResponseCode);
+                break;
+            case 3:
+                output.eventId = reader.nextInt(output.eventId);
+                break;
+            case 4:
+                output.sessionStatus = reader.nextString();
+                break;
+            case 5:
+                output.requestMessage = reader.nextString();
+                break;
+            case 6:
+                output.fidoAuthenticationRequest = reader.nextString();
+                break;
+            case 7:
+                output.uafStatusCode = reader.nextInt(output.uafStatusCode);
+                break;
+            default:
+                reader.skipValue();
+                break;
+            }
+        }
+        return output;
+    }
+
+    private static UserRegisterOutputEx decodeUserRegister(JsonReader reader) throws IOException {
+        UserRegisterOutputEx output = new UserRegisterOutputEx();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(USER_REGISTER_NAMES)) {
+            case 0:
+                output.activationPassword = reader.nextString();
+                break;
+            case 1:
+                output.riskResponseCode = reader.nextString();
+                break;
+            case 2:
+                output.serialNumber = reader.nextString();
+                break;
+            case 3:
+                output.registrationID = reader.nextString();
+                break;
+            default:
+                reader.skipValue();
+                break;
+            }
+        }
+        return output;
+    }
+
+    private static AddDeviceOutput decodeAddDevice(JsonReader reader) throws IOException {
+        AddDeviceOutput output = new AddDeviceOutput();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(ADD_DEVICE_NAMES)) {
+            case 0:
+                output.activationMessage2 = reader.nextString();
+                break;
+            case 1:
+                output.activationType = reader.nextString();
+                break;
+            case 2:
+                output.deviceStatus = reader.nextString();
+                break;
+            case 3:
+                output.deviceType = reader.nextString();
+                break;
+            case 4:
+                output.domain = reader.nextString();
+                break;
+            case 5:
+                output.registrationID = reader.nextString();
+                break;
+            case 6:
+                output.serialNumber = reader.nextString();
+                break;
+            case 7:
+                output.userID = reader.nextString();
+                break;
+            default:
+                reader.skipValue();
+                break;
+            }
+        }
+        return output;
+    }
+
+    private static GenerateChallengeOutput decodeGenerateChallenge(JsonReader reader) throws IOException {
+        GenerateChallengeOutput output = new GenerateChallengeOutput();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(GENERATE_CHALLENGE_NAMES)) {
+            case 0:
+                output.challenge = reader.nextString();
+                break;
+            case 1:
+                output.requestID = reader.nextString();
+                break;
+            default:
+                reader.skipValue();
+                break;
+            }
+        }
+        return output;
+    }
+
+    @FunctionalInterface
+    private interface Decoder<T> {
+        T read(JsonReader reader) throws IOException;
+    }
+
+    /**
+     * Reads the string values of a few top-level members and stops as soon as it has read all of them, for the
+     * polling responses of which a node needs a single status. Values of members which are not sent are
+     * {@code null}.
+     */
+    private static final class FieldsDecoder<T> implements Decoder<T> {
+        private final Function<String[], T> factory;
+        private final String[] names;
+
+        private FieldsDecoder(Function<String[], T> factory, String... names) {
+            this.factory = factory;
+            this.names = names;
+        }
+
+        @Override
+        public T read(JsonReader reader) throws IOException {
+            String[] values = new String[names.length];
+            boolean[] found = new boolean[names.length];
+            int remaining = names.length;
+            reader.beginObject();
+            while (remaining > 0 && reader.hasNext()) {
+                int index = reader.nextName(names);
+                if (index < 0 || found[index]) {
+                    reader.skipValue();
+                } else {
+                    values[index] = reader.nextString();
+                    found[index] = true;
+                    remaining--;
+                }
+            }
+            return factory.apply(values);
+        }
+    }
+}
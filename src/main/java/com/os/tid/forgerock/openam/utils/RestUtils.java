@@ -1,29 +1,32 @@
 package com.os.tid.forgerock.openam.utils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ScheduledFuture;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
 import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.ImmutableMap;
+import com.os.tid.forgerock.openam.config.ApiEndpoint;
 import com.os.tid.forgerock.openam.config.Constants;
 import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
 
 public class RestUtils {
     private static final Logger logger = LoggerFactory.getLogger("amAuth");
@@ -31,203 +34,64 @@ public class RestUtils {
     private RestUtils() {
     }
 
-    public static HttpEntity doPostJSON(String url, String payload, SSLConnectionSocketFactory sslConSocFactory) throws IOException {
-        logger.debug("RestUtils doPostJSON url: " + url);
-        logger.debug("RestUtils doPostJSON payload: " + payload);
+    public static HttpEntity doPostJSON(String url, String payload, OSConfigurationsService serviceConfig) throws IOException {
+        return doPostJSON(url, payload, serviceConfig, null);
+    }
 
-        org.apache.http.HttpEntity entity = new org.apache.http.entity.StringEntity(payload, ContentType.APPLICATION_JSON);
-        
-        HttpDynamicMethod httpDynamicMethod = new HttpDynamicMethod("POST", url);
-        httpDynamicMethod.setEntity(entity);
-        httpDynamicMethod.setHeader("Content-Type", "application/json");
-        httpDynamicMethod.setHeader("Accept", "application/json");
+    /**
+     * Posts the payload and decodes a successful response straight from the response stream into the given model,
+     * which is then available from {@link HttpEntity#getResponseObject(Class)}. Error responses are still parsed
+     * into a JSON tree, see {@link HttpEntity#getResponseJSON()}.
+     */
+    public static HttpEntity doPostJSON(String url, String payload, OSConfigurationsService serviceConfig, Class<?> responseType) throws IOException {
+        return doPostJSON(url, encode(payload), serviceConfig, responseType);
+    }
 
-	    HttpClientBuilder clientbuilder = HttpClients.custom();
-	    if(sslConSocFactory != null) {
-	    	clientbuilder.setSSLSocketFactory(sslConSocFactory);
-	    }
-        try (     
-    	     CloseableHttpClient httpClient = clientbuilder.build();
-             CloseableHttpResponse response = httpClient.execute(httpDynamicMethod)) {
-        	int sourceResponseCode = response.getStatusLine().getStatusCode();
-        	logger.debug("RestUtils doPostJSON response status: " + sourceResponseCode);
-        	String responseBody = null;
-        	if(response.getEntity() != null) {
-        		responseBody = EntityUtils.toString(response.getEntity());
-	            logger.debug("RestUtils doPostJSON response: " + responseBody);
-        	}
-            Header headerField = response.getFirstHeader(Constants.OSTID_LOG_CORRELATION_ID);
-            String log_correlation_id = headerField != null && !StringUtils.isEmpty(headerField.getValue()) ? headerField.getValue() : "";
-            try {
-                return new HttpEntity(JSON.parseObject(responseBody), sourceResponseCode, log_correlation_id);
-            } catch (Exception e) {
-                return new HttpEntity(new JSONObject(ImmutableMap.of("response",responseBody)), sourceResponseCode, log_correlation_id);
-            }
-        }
+    public static HttpEntity doPostJSON(String url, byte[] payload, OSConfigurationsService serviceConfig) throws IOException {
+        return doPostJSON(url, payload, serviceConfig, null);
     }
-    
-    
-    public static HttpEntity doPutJSON(String url, String payload, SSLConnectionSocketFactory sslConSocFactory) throws IOException {
-        logger.debug("RestUtils doPutJSON url: " + url);
-        logger.debug("RestUtils doPutJSON payload: " + payload);
 
-        org.apache.http.HttpEntity entity = new org.apache.http.entity.StringEntity(payload, ContentType.APPLICATION_JSON);
-        
-        HttpDynamicMethod httpDynamicMethod = new HttpDynamicMethod("PUT", url);
-        httpDynamicMethod.setEntity(entity);
-        httpDynamicMethod.setHeader("Content-Type", "application/json");
-        httpDynamicMethod.setHeader("Accept", "application/json");
+    /**
+     * Posts a payload which has already been encoded as UTF-8 JSON, e.g. by {@link JsonWriter}.
+     */
+    public static HttpEntity doPostJSON(String url, byte[] payload, OSConfigurationsService serviceConfig, Class<?> responseType) throws IOException {
+        return send("POST", url, payload, null, serviceConfig, responseType);
+    }
 
-	    HttpClientBuilder clientbuilder = HttpClients.custom();
-	    if(sslConSocFactory != null) {
-	    	clientbuilder.setSSLSocketFactory(sslConSocFactory);
-	    }
-        try (     
-    	     CloseableHttpClient httpClient = clientbuilder.build();
-             CloseableHttpResponse response = httpClient.execute(httpDynamicMethod)) {
-           	int sourceResponseCode = response.getStatusLine().getStatusCode();
-           	logger.debug("RestUtils doPutJSON response status: " + sourceResponseCode);
-           	String responseBody = null;
-           	if(response.getEntity() != null) {
-           		responseBody = EntityUtils.toString(response.getEntity());
-   	            logger.debug("RestUtils doPutJSON response: " + responseBody);
-           	}
-           Header headerField = response.getFirstHeader(Constants.OSTID_LOG_CORRELATION_ID);
-           String log_correlation_id = headerField != null && !StringUtils.isEmpty(headerField.getValue()) ? headerField.getValue() : "";
-           try {
-               return new HttpEntity(JSON.parseObject(responseBody), sourceResponseCode, log_correlation_id);
-           } catch (Exception e) {
-               return new HttpEntity(new JSONObject(ImmutableMap.of("response",responseBody)), sourceResponseCode, log_correlation_id);
-           }
-       }
+    public static HttpEntity doPutJSON(String url, String payload, OSConfigurationsService serviceConfig) throws IOException {
+        return send("PUT", url, encode(payload), null, serviceConfig, null);
     }
-    
-    
-    
-    public static HttpEntity doPatchJSON(String url, String payload, SSLConnectionSocketFactory sslConSocFactory) throws IOException {
-        logger.debug("RestUtils doPatchJSON url: " + url);
-        logger.debug("RestUtils doPatchJSON payload: " + payload);
-
-        org.apache.http.HttpEntity entity = new org.apache.http.entity.StringEntity(payload, ContentType.APPLICATION_JSON);
-        
-        HttpDynamicMethod httpDynamicMethod = new HttpDynamicMethod("PATCH", url);
-        httpDynamicMethod.setEntity(entity);
-        httpDynamicMethod.setHeader("Content-Type", "application/json");
-        httpDynamicMethod.setHeader("Accept", "application/json");
 
-	    HttpClientBuilder clientbuilder = HttpClients.custom();
-	    if(sslConSocFactory != null) {
-	    	clientbuilder.setSSLSocketFactory(sslConSocFactory);
-	    }
-        try (     
-    	     CloseableHttpClient httpClient = clientbuilder.build();
-             CloseableHttpResponse response = httpClient.execute(httpDynamicMethod)) {
-           	int sourceResponseCode = response.getStatusLine().getStatusCode();
-           	logger.debug("RestUtils doPatchJSON response status: " + sourceResponseCode);
-           	String responseBody = null;
-           	if(response.getEntity() != null) {
-           		responseBody = EntityUtils.toString(response.getEntity());
-   	            logger.debug("RestUtils doPatchJSON response: " + responseBody);
-           	}
-           Header headerField = response.getFirstHeader(Constants.OSTID_LOG_CORRELATION_ID);
-           String log_correlation_id = headerField != null && !StringUtils.isEmpty(headerField.getValue()) ? headerField.getValue() : "";
-           try {
-               return new HttpEntity(JSON.parseObject(responseBody), sourceResponseCode, log_correlation_id);
-           } catch (Exception e) {
-               return new HttpEntity(new JSONObject(ImmutableMap.of("response",responseBody)), sourceResponseCode, log_correlation_id);
-           }
-       }
+    public static HttpEntity doPatchJSON(String url, String payload, OSConfigurationsService serviceConfig) throws IOException {
+        return send("PATCH", url, encode(payload), null, serviceConfig, null);
     }
 
-    public static HttpEntity doHttpRequestWithoutResponse(String url, String payload, String httpmethod, Map<String, String> requestHeaders, SSLConnectionSocketFactory sslConSocFactory) throws IOException {
-        logger.debug("RestUtils doHttpRequestWithoutResponse url: " + url);
-        logger.debug("RestUtils doHttpRequestWithoutResponse payload: " + payload);
+    public static HttpEntity doHttpRequestWithoutResponse(String url, String payload, String httpmethod, Map<String, String> requestHeaders, OSConfigurationsService serviceConfig) throws IOException {
+        return send(httpmethod, url, encode(payload), requestHeaders, serviceConfig, null);
+    }
 
-        org.apache.http.HttpEntity entity = new org.apache.http.entity.StringEntity(payload, ContentType.APPLICATION_JSON);
-        
-        HttpDynamicMethod httpDynamicMethod = new HttpDynamicMethod(httpmethod, url);
-        httpDynamicMethod.setEntity(entity);
-        httpDynamicMethod.setHeader("Content-Type", "application/json");
-        httpDynamicMethod.setHeader("Accept", "application/json");
-        if(requestHeaders != null && requestHeaders.size() > 0) {
-			for (Entry<String, String> entry : requestHeaders.entrySet()) {
-				String key = entry.getKey();
-				String value = entry.getValue();
-				httpDynamicMethod.setHeader(key, value);
-			}
-        }
-        
-	    HttpClientBuilder clientbuilder = HttpClients.custom();
-	    if(sslConSocFactory != null) {
-	    	clientbuilder.setSSLSocketFactory(sslConSocFactory);
-	    }
-        try (     
-    	     CloseableHttpClient httpClient = clientbuilder.build();
-             CloseableHttpResponse response = httpClient.execute(httpDynamicMethod)) {
-           	int sourceResponseCode = response.getStatusLine().getStatusCode();
-           	logger.debug("RestUtils doHttpRequestWithoutResponse response status: " + sourceResponseCode);
-           	String responseBody = null;
-           	if(response.getEntity() != null) {
-           		responseBody = EntityUtils.toString(response.getEntity());
-   	            logger.debug("RestUtils doHttpRequestWithoutResponse response: " + responseBody);
-           	}
-           Header headerField = response.getFirstHeader(Constants.OSTID_LOG_CORRELATION_ID);
-           String log_correlation_id = headerField != null && !StringUtils.isEmpty(headerField.getValue()) ? headerField.getValue() : "";
-           try {
-               return new HttpEntity(JSON.parseObject(responseBody), sourceResponseCode, log_correlation_id);
-           } catch (Exception e) {
-               return new HttpEntity(new JSONObject(ImmutableMap.of("response",responseBody)), sourceResponseCode, log_correlation_id);
-           }
-       }
+    public static HttpEntity doGet(String url, OSConfigurationsService serviceConfig) throws IOException {
+        return send("GET", url, null, null, serviceConfig, null);
     }
 
-    
-    public static HttpEntity doGet(String url, SSLConnectionSocketFactory sslConSocFactory) throws IOException {
-        logger.debug("RestUtils doGet url: " + url);
-        
-        HttpDynamicMethod httpDynamicMethod = new HttpDynamicMethod("GET", url);
-        httpDynamicMethod.setHeader("Accept", "application/json");
-        
-	    HttpClientBuilder clientbuilder = HttpClients.custom();
-	    if(sslConSocFactory != null) {
-	    	clientbuilder.setSSLSocketFactory(sslConSocFactory);
-	    }
-        try (     
-    	     CloseableHttpClient httpClient = clientbuilder.build();
-             CloseableHttpResponse response = httpClient.execute(httpDynamicMethod)) {
-           	int sourceResponseCode = response.getStatusLine().getStatusCode();
-           	logger.debug("RestUtils doGet response status: " + sourceResponseCode);
-           	String responseBody = null;
-           	if(response.getEntity() != null) {
-           		responseBody = EntityUtils.toString(response.getEntity());
-   	            logger.debug("RestUtils doGet response: " + responseBody);
-           	}
-           Header headerField = response.getFirstHeader(Constants.OSTID_LOG_CORRELATION_ID);
-           String log_correlation_id = headerField != null && !StringUtils.isEmpty(headerField.getValue()) ? headerField.getValue() : "";
-           try {
-               return new HttpEntity(JSON.parseObject(responseBody), sourceResponseCode, log_correlation_id);
-           } catch (Exception e) {
-               return new HttpEntity(new JSONObject(ImmutableMap.of("response",responseBody)), sourceResponseCode, log_correlation_id);
-           }
-       }
+    /**
+     * Gets the URL and decodes a successful response into the given model, see
+     * {@link #doPostJSON(String, String, OSConfigurationsService, Class)}.
+     */
+    public static HttpEntity doGet(String url, OSConfigurationsService serviceConfig, Class<?> responseType) throws IOException {
+        return send("GET", url, null, null, serviceConfig, responseType);
     }
-    
 
-    public static String doGetImage(String url, SSLConnectionSocketFactory sslConSocFactory) throws IOException {
-        logger.debug("RestUtils doGetImage url: " + url);
+    public static String doGetImage(String url, OSConfigurationsService serviceConfig) throws IOException {
+        url = RegionUtils.route(serviceConfig, url);
+        if (HttpClientUtils.isHttp2(serviceConfig)) {
+            return AsyncRestUtils.join(AsyncRestUtils.getImage(url, serviceConfig));
+        }
         
         HttpDynamicMethod httpDynamicMethod = new HttpDynamicMethod("GET", url);
         httpDynamicMethod.setHeader("Accept", "image/png");
         
-	    HttpClientBuilder clientbuilder = HttpClients.custom();
-	    if(sslConSocFactory != null) {
-	    	clientbuilder.setSSLSocketFactory(sslConSocFactory);
-	    }
-        try (     
-    	     CloseableHttpClient httpClient = clientbuilder.build();
-             CloseableHttpResponse response = httpClient.execute(httpDynamicMethod)) {
-           	int sourceResponseCode = response.getStatusLine().getStatusCode();
-           	logger.debug("RestUtils doGetImage response status: " + sourceResponseCode);
+        return execute(httpDynamicMethod, serviceConfig, response -> {
            	String imageForHtml  = null;
            	if(response.getEntity() != null) {
                 byte[] imageBytes = EntityUtils.toByteArray(response.getEntity());
@@ -235,14 +99,205 @@ public class RestUtils {
             	imageForHtml = "data:image/png;base64," + imageBase64;
    	            logger.debug("RestUtils doGetImage imageBase64 : " + imageForHtml);
            	}
-           try {
-               return imageForHtml;
-           } catch (Exception e) {
-               return url;
-           }
-       }
+            return imageForHtml;
+        });
+    }
+
+    static byte[] encode(String payload) {
+        return payload == null ? null : payload.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The single entry point of all JSON calls. The payload is sent as is, or gzip compressed when the realm allows
+     * it; a 415 response to a compressed payload disables compression for the endpoint and the payload is sent again
+     * uncompressed. Realms on HTTP/2, and the calls which may be hedged, are served by {@link AsyncRestUtils}. Calls of
+     * realms with failover environments are routed by {@link RegionUtils}.
+     */
+    private static HttpEntity send(String httpmethod, String url, byte[] payload, Map<String, String> requestHeaders,
+            OSConfigurationsService serviceConfig, Class<?> responseType) throws IOException {
+        url = RegionUtils.route(serviceConfig, url);
+        if (payload != null && logger.isDebugEnabled()) {
+            logger.debug("RestUtils " + httpmethod + " payload: " + new String(payload, StandardCharsets.UTF_8));
+        }
+        if (HttpClientUtils.isHttp2(serviceConfig) || HedgingUtils.isHedged(serviceConfig, httpmethod, url)) {
+            return AsyncRestUtils.join(AsyncRestUtils.send(httpmethod, url, payload, requestHeaders, serviceConfig, responseType));
+        }
+
+        boolean compress = CompressionUtils.shouldCompress(serviceConfig, url, payload);
+        HttpEntity httpEntity = execute(jsonMethod(httpmethod, url, payload, requestHeaders, compress), serviceConfig,
+                response -> toHttpEntity(httpmethod, response, responseType));
+        if (compress && httpEntity.getHttpStatus() == CompressionUtils.UNSUPPORTED_MEDIA_TYPE) {
+            CompressionUtils.markUnsupported(serviceConfig, url);
+            httpEntity = execute(jsonMethod(httpmethod, url, payload, requestHeaders, false), serviceConfig,
+                    response -> toHttpEntity(httpmethod, response, responseType));
+        }
+        return httpEntity;
+    }
+
+    private static HttpDynamicMethod jsonMethod(String httpmethod, String url, byte[] payload, Map<String, String> requestHeaders, boolean compress) {
+        HttpDynamicMethod httpDynamicMethod = new HttpDynamicMethod(httpmethod, url);
+        if (payload != null) {
+            // byte array entities are repeatable, so the same entity is resent by every retry
+            httpDynamicMethod.setEntity(new ByteArrayEntity(compress ? CompressionUtils.gzip(payload) : payload, ContentType.APPLICATION_JSON));
+            httpDynamicMethod.setHeader("Content-Type", "application/json");
+            if (compress) {
+                httpDynamicMethod.setHeader("Content-Encoding", CompressionUtils.GZIP);
+            }
+        }
+        httpDynamicMethod.setHeader("Accept", "application/json");
+        if (requestHeaders != null) {
+            requestHeaders.forEach(httpDynamicMethod::setHeader);
+        }
+        return httpDynamicMethod;
+    }
+
+    /**
+     * Executes the request with the timeouts configured for its endpoint. The response is consumed by the reader
+     * before the deadline of the request is cancelled, so a slow response body is bounded as well. Transient failures
+     * are retried with backoff as long as the retry policy and the retry budget of the realm allow it. The final
+     * outcome is reported to the circuit breaker of the tenant, which rejects the call upfront while it is open, and
+     * to the {@link RequestInterceptors}. A call ending in an unexpected runtime exception counts as a failure.
+     */
+    private static <T> T execute(HttpDynamicMethod httpDynamicMethod, OSConfigurationsService serviceConfig, ResponseReader<T> reader) throws IOException {
+        String method = httpDynamicMethod.getMethod();
+        URI uri = httpDynamicMethod.getURI();
+        RequestInterceptors.beforeRequest(method, uri).forEach(httpDynamicMethod::setHeader);
+        long start = System.nanoTime();
+        try {
+            ApiEndpoint endpoint = ApiEndpoint.fromUrl(uri.toString());
+            boolean idempotent = endpoint.isIdempotent(method);
+            int maxAttempts = RetryUtils.getMaxAttempts(serviceConfig);
+            long retryDeadline = RetryUtils.getDeadline(serviceConfig);
+            httpDynamicMethod.setConfig(TimeoutUtils.getRequestConfig(serviceConfig, endpoint));
+
+            CircuitBreaker circuitBreaker = CircuitBreakerUtils.acquire(serviceConfig, uri);
+            // from here on, every way out of the loop reports an outcome to the breaker, which otherwise keeps the
+            // permit of a half-open call forever
+            try {
+                for (int attempt = 1; ; attempt++) {
+                    long delay = RetryUtils.getBackoffDelay(attempt);
+                    ScheduledFuture<?> deadline = HttpClientUtils.scheduleAbort(httpDynamicMethod, TimeoutUtils.getRequestTimeout(serviceConfig, endpoint));
+                    try (CloseableHttpResponse response = HttpClientUtils.getHttpClient(serviceConfig, uri).execute(httpDynamicMethod)) {
+                        int sourceResponseCode = response.getStatusLine().getStatusCode();
+                        boolean retryable = idempotent && RetryUtils.isRetryableStatus(sourceResponseCode);
+                        if (!retryable || !RetryUtils.canRetry(attempt, maxAttempts, retryDeadline, delay)) {
+                            if (retryable) {
+                                OneSpanMetrics.getInstance().recordRetryGiveUp();
+                            }
+                            T result = reader.read(response);
+                            CircuitBreakerUtils.onResponse(circuitBreaker, sourceResponseCode);
+                            RequestInterceptors.afterResponse(method, uri, sourceResponseCode, start);
+                            return result;
+                        }
+                        // consumed so that the connection goes back to the pool instead of being closed
+                        EntityUtils.consumeQuietly(response.getEntity());
+                        logger.debug("RestUtils " + method + " " + endpoint.getKey() + " returned " + sourceResponseCode + ", retrying in " + delay + "ms");
+                    } catch (IOException e) {
+                        boolean retryable = RetryUtils.isRetryable(e, idempotent);
+                        if (!retryable || !RetryUtils.canRetry(attempt, maxAttempts, retryDeadline, delay)) {
+                            if (retryable) {
+                                OneSpanMetrics.getInstance().recordRetryGiveUp();
+                            }
+                            CircuitBreakerUtils.onFailure(circuitBreaker, e);
+                            throw e;
+                        }
+                        logger.debug("RestUtils " + method + " " + endpoint.getKey() + " failed with " + e + ", retrying in " + delay + "ms");
+                    } finally {
+                        deadline.cancel(false);
+                    }
+                    OneSpanMetrics.getInstance().recordRetry();
+                    try {
+                        sleep(delay);
+                    } catch (InterruptedIOException e) {
+                        CircuitBreakerUtils.onFailure(circuitBreaker);
+                        throw e;
+                    }
+                    httpDynamicMethod.reset();
+                }
+            } catch (RuntimeException e) {
+                CircuitBreakerUtils.onFailure(circuitBreaker);
+                throw e;
+            }
+        } catch (IOException e) {
+            RequestInterceptors.afterFailure(method, uri, e, start);
+            throw e;
+        }
+    }
+
+    private static void sleep(long delay) throws InterruptedIOException {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry OneSpan call");
+        }
+    }
+
+    private static HttpEntity toHttpEntity(String methodName, CloseableHttpResponse response, Class<?> responseType) throws IOException {
+       	int sourceResponseCode = response.getStatusLine().getStatusCode();
+        Header headerField = response.getFirstHeader(Constants.OSTID_LOG_CORRELATION_ID);
+        String log_correlation_id = headerField != null && !StringUtils.isEmpty(headerField.getValue()) ? headerField.getValue() : "";
+        if (responseType != null && isSuccess(sourceResponseCode) && response.getEntity() != null) {
+            Object responseObject;
+            try (InputStream content = response.getEntity().getContent()) {
+                responseObject = decode(content, responseType);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("RestUtils " + methodName + " response: " + JsonUtils.toJSONString(responseObject));
+            }
+            return new HttpEntity(null, responseObject, sourceResponseCode, log_correlation_id);
+        }
+       	String responseBody = null;
+       	if(response.getEntity() != null) {
+       		responseBody = EntityUtils.toString(response.getEntity());
+            logger.debug("RestUtils " + methodName + " response: " + responseBody);
+       	}
+        return toHttpEntity(responseBody, sourceResponseCode, log_correlation_id);
+    }
+
+    static boolean isSuccess(int sourceResponseCode) {
+        return sourceResponseCode >= 200 && sourceResponseCode <= 299;
+    }
+
+    /**
+     * Binds a response body to the model without materialising it as a {@code String} or a JSON tree first. The
+     * models known to {@link ResponseDecoders} are read token by token, any other model is bound by the
+     * {@link JsonUtils#getCodec() codec} of the deployment.
+     */
+    static <T> T decode(InputStream content, Class<T> responseType) throws IOException {
+        try {
+            if (ResponseDecoders.canDecode(responseType)) {
+                return ResponseDecoders.decode(new JsonReader(content), responseType);
+            }
+            return JsonUtils.decode(content, responseType);
+        } catch (JSONException e) {
+            throw new ResponseDecodeException("Failed to decode OneSpan response as " + responseType.getSimpleName(), e);
+        }
+    }
+
+    static <T> T decode(byte[] content, Class<T> responseType) throws IOException {
+        try {
+            if (ResponseDecoders.canDecode(responseType)) {
+                return ResponseDecoders.decode(new JsonReader(content), responseType);
+            }
+            return JsonUtils.decode(content, responseType);
+        } catch (JSONException e) {
+            throw new ResponseDecodeException("Failed to decode OneSpan response as " + responseType.getSimpleName(), e);
+        }
+    }
+
+    static HttpEntity toHttpEntity(String responseBody, int sourceResponseCode, String log_correlation_id) {
+        try {
+            return new HttpEntity(JSON.parseObject(responseBody), sourceResponseCode, log_correlation_id);
+        } catch (Exception e) {
+            return new HttpEntity(new JSONObject(ImmutableMap.of("response",responseBody)), sourceResponseCode, log_correlation_id);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResponseReader<T> {
+        T read(CloseableHttpResponse response) throws IOException;
     }
-    
 
 }
 
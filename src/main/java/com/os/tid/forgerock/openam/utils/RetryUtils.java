@@ -0,0 +1,81 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+
+/**
+ * Retry policy of the OneSpan REST layer: which failures are transient, how long to back off between attempts and
+ * when to give up.
+ */
+public class RetryUtils {
+
+    private RetryUtils() {
+    }
+
+    public static int getMaxAttempts(OSConfigurationsService serviceConfig) {
+        if (serviceConfig == null) {
+            return 1;
+        }
+        return 1 + (serviceConfig.maxRetries() >= 0 ? serviceConfig.maxRetries() : Constants.OSTID_DEFAULT_MAX_RETRIES);
+    }
+
+    /**
+     * The point in time, in {@link System#nanoTime()} units, after which a call started now must not be retried anymore.
+     */
+    public static long getDeadline(OSConfigurationsService serviceConfig) {
+        int retryBudget = serviceConfig != null && serviceConfig.retryBudget() > 0 ? serviceConfig.retryBudget() : Constants.OSTID_DEFAULT_RETRY_BUDGET_MS;
+        return System.nanoTime() + retryBudget * 1_000_000L;
+    }
+
+    public static boolean isRetryableStatus(int httpStatus) {
+        return httpStatus == 502 || httpStatus == 503 || httpStatus == 504;
+    }
+
+    /**
+     * Whether the call may be attempted again after the given failure. Failures which happen before the request
+     * is written, such as a refused connection, are always safe to retry. Other transient failures are only retried
+     * for idempotent calls, as OneSpan may already have processed the request. A response which could not be
+     * decoded is never retried. The JDK client reports a response timeout as an {@link HttpTimeoutException} and a
+     * connection closed by the server as a plain {@link IOException} or a {@link ClosedChannelException}, where
+     * the Apache client throws a {@link SocketTimeoutException} or a {@link NoHttpResponseException}.
+     */
+    public static boolean isRetryable(Throwable failure, boolean idempotent) {
+        if (failure instanceof ConnectException || failure instanceof ConnectTimeoutException
+                || failure instanceof ConnectionPoolTimeoutException || failure instanceof HttpConnectTimeoutException) {
+            return true;
+        }
+        if (!idempotent) {
+            return false;
+        }
+        return failure instanceof NoHttpResponseException || failure instanceof SocketException
+                || failure instanceof SocketTimeoutException || failure instanceof EOFException
+                || failure instanceof HttpTimeoutException || failure instanceof ClosedChannelException
+                || failure.getClass() == IOException.class;
+    }
+
+    /**
+     * Exponential backoff with full jitter, so that nodes failing at the same time do not retry in lockstep.
+     */
+    public static long getBackoffDelay(int attempt) {
+        long ceiling = Math.min(Constants.OSTID_DEFAULT_RETRY_MAX_DELAY_MS, (long) Constants.OSTID_DEFAULT_RETRY_BASE_DELAY_MS << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    public static boolean canRetry(int attempt, int maxAttempts, long deadline, long delay) {
+        return attempt < maxAttempts && System.nanoTime() + delay * 1_000_000L < deadline;
+    }
+}
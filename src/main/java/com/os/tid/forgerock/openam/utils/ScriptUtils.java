@@ -3,6 +3,8 @@ package com.os.tid.forgerock.openam.utils;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.io.IOUtils;
 import org.forgerock.openam.auth.node.api.NodeProcessException;
@@ -12,9 +14,23 @@ import org.slf4j.LoggerFactory;
 public class ScriptUtils {
     private final static Logger logger = LoggerFactory.getLogger("amAuth");
 
+    private static final ConcurrentMap<String, String> scripts = new ConcurrentHashMap<>();
+
     private  ScriptUtils(){}
 
+    /**
+     * Returns the content of a script bundled with the plugin. Scripts are read once and then served from memory.
+     */
     public static String getScriptFromFile(String scriptPath) throws NodeProcessException{
+        String script = scripts.get(scriptPath);
+        if (script == null) {
+            script = readScript(scriptPath);
+            scripts.putIfAbsent(scriptPath, script);
+        }
+        return script;
+    }
+
+    private static String readScript(String scriptPath) throws NodeProcessException{
         String script;
         try (InputStreamReader inputStreamReader = new InputStreamReader(
                 ScriptUtils.class.getResourceAsStream(scriptPath), StandardCharsets.UTF_8)) {
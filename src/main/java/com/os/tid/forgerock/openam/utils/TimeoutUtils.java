@@ -0,0 +1,62 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.util.Map;
+
+import org.apache.http.client.config.RequestConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.os.tid.forgerock.openam.config.ApiEndpoint;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+
+/**
+ * Resolves the timeouts of a OneSpan call from the realm configuration, falling back to the plugin defaults
+ * when a value is not configured.
+ */
+public class TimeoutUtils {
+    private static final Logger logger = LoggerFactory.getLogger("amAuth");
+    private static final String loggerPrefix = "[OneSpan Auth TimeoutUtils][Marketplace] ";
+
+    private TimeoutUtils() {
+    }
+
+    public static int getConnectTimeout(OSConfigurationsService serviceConfig) {
+        return serviceConfig != null && serviceConfig.connectTimeout() > 0 ? serviceConfig.connectTimeout() : Constants.OSTID_DEFAULT_CONNECT_TIMEOUT_MS;
+    }
+
+    public static int getSocketTimeout(OSConfigurationsService serviceConfig, ApiEndpoint endpoint) {
+        int socketTimeout = serviceConfig != null && serviceConfig.socketTimeout() > 0 ? serviceConfig.socketTimeout() : Constants.OSTID_DEFAULT_SOCKET_TIMEOUT_MS;
+        return Math.min(socketTimeout, getRequestTimeout(serviceConfig, endpoint));
+    }
+
+    /**
+     * The total time budget of a call, taken from the endpoint override table when the endpoint is listed there.
+     */
+    public static int getRequestTimeout(OSConfigurationsService serviceConfig, ApiEndpoint endpoint) {
+        if (serviceConfig == null) {
+            return Constants.OSTID_DEFAULT_REQUEST_TIMEOUT_MS;
+        }
+        Map<String, String> endpointTimeouts = serviceConfig.endpointTimeouts();
+        if (endpointTimeouts != null && endpointTimeouts.containsKey(endpoint.getKey())) {
+            String value = endpointTimeouts.get(endpoint.getKey());
+            try {
+                int timeout = Integer.parseInt(value.trim());
+                if (timeout > 0) {
+                    return timeout;
+                }
+            } catch (NumberFormatException | NullPointerException e) {
+                logger.warn(loggerPrefix + "Ignoring invalid timeout for endpoint " + endpoint.getKey() + ": " + value);
+            }
+        }
+        return serviceConfig.requestTimeout() > 0 ? serviceConfig.requestTimeout() : Constants.OSTID_DEFAULT_REQUEST_TIMEOUT_MS;
+    }
+
+    public static RequestConfig getRequestConfig(OSConfigurationsService serviceConfig, ApiEndpoint endpoint) {
+        return RequestConfig.custom()
+                .setConnectTimeout(getConnectTimeout(serviceConfig))
+                .setSocketTimeout(getSocketTimeout(serviceConfig, endpoint))
+                .setConnectionRequestTimeout(getRequestTimeout(serviceConfig, endpoint))
+                .build();
+    }
+}
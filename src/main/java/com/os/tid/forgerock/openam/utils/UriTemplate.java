@@ -0,0 +1,149 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A OneSpan API path such as {@code /v1/users/%1$s@%2$s/login}, parsed once so that building a request URL is a
+ * single pass over its parts. The {@code %n$s} and {@code %s} placeholders of the {@code Constants.OSTID_API_*}
+ * paths are kept, but the values are percent-encoded: as a path segment before the {@code ?}, as a query parameter
+ * value after it.
+ */
+public final class UriTemplate {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final boolean[] PATH_SEGMENT_CHARS = allowed("!$&'()*+,;=:@");
+    private static final boolean[] QUERY_VALUE_CHARS = allowed("!$'()*,;:@/?");
+
+    private final String template;
+    private final String[] literals;
+    private final int[] arguments;
+    private final boolean[] inQuery;
+    private final int literalsLength;
+
+    private UriTemplate(String template, List<String> literals, List<Integer> arguments, List<Boolean> inQuery) {
+        this.template = template;
+        this.literals = literals.toArray(new String[0]);
+        this.arguments = arguments.stream().mapToInt(Integer::intValue).toArray();
+        this.inQuery = new boolean[inQuery.size()];
+        for (int i = 0; i < this.inQuery.length; i++) {
+            this.inQuery[i] = inQuery.get(i);
+        }
+        this.literalsLength = literals.stream().mapToInt(String::length).sum();
+    }
+
+    public static UriTemplate compile(String template) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> arguments = new ArrayList<>();
+        List<Boolean> inQuery = new ArrayList<>();
+        int nextArgument = 0;
+        int literalStart = 0;
+        int i = 0;
+        while (i < template.length()) {
+            if (template.charAt(i) != '%') {
+                i++;
+                continue;
+            }
+            int end = i + 1;
+            while (end < template.length() && Character.isDigit(template.charAt(end))) {
+                end++;
+            }
+            int argument;
+            if (end == i + 1 && end < template.length() && template.charAt(end) == 's') {
+                argument = nextArgument++;
+            } else if (end > i + 1 && end + 1 < template.length() && template.charAt(end) == '$' && template.charAt(end + 1) == 's') {
+                argument = Integer.parseInt(template.substring(i + 1, end)) - 1;
+                end++;
+            } else {
+                throw new IllegalArgumentException("Unsupported placeholder at " + i + " in " + template);
+            }
+            literals.add(template.substring(literalStart, i));
+            arguments.add(argument);
+            inQuery.add(template.lastIndexOf('?', i) >= 0);
+            i = end + 1;
+            literalStart = i;
+        }
+        literals.add(template.substring(literalStart));
+        return new UriTemplate(template, literals, arguments, inQuery);
+    }
+
+    /**
+     * Returns the path with the placeholders replaced by the encoded values.
+     */
+    public String expand(String... values) {
+        return resolve("", values);
+    }
+
+    /**
+     * Returns the base URL followed by the path with the placeholders replaced by the encoded values.
+     */
+    public String resolve(String baseUrl, String... values) {
+        int capacity = baseUrl.length() + literalsLength;
+        for (int argument : arguments) {
+            capacity += length(values, argument);
+        }
+        StringBuilder url = new StringBuilder(capacity + 16).append(baseUrl);
+        for (int i = 0; i < arguments.length; i++) {
+            url.append(literals[i]);
+            encode(url, value(values, arguments[i]), inQuery[i] ? QUERY_VALUE_CHARS : PATH_SEGMENT_CHARS);
+        }
+        return url.append(literals[arguments.length]).toString();
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+
+    private String value(String[] values, int argument) {
+        if (argument >= values.length) {
+            throw new IllegalArgumentException("Missing value " + (argument + 1) + " for " + template);
+        }
+        return String.valueOf(values[argument]);
+    }
+
+    private static int length(String[] values, int argument) {
+        return argument < values.length && values[argument] != null ? values[argument].length() : 4;
+    }
+
+    private static void encode(StringBuilder url, String value, boolean[] allowed) {
+        int length = value.length();
+        int i = 0;
+        while (i < length && isAllowed(value.charAt(i), allowed)) {
+            i++;
+        }
+        url.append(value, 0, i);
+        if (i == length) {
+            return;
+        }
+        for (byte b : value.substring(i).getBytes(StandardCharsets.UTF_8)) {
+            if (b >= 0 && isAllowed((char) b, allowed)) {
+                url.append((char) b);
+            } else {
+                url.append('%').append(HEX[(b >> 4) & 0x0f]).append(HEX[b & 0x0f]);
+            }
+        }
+    }
+
+    private static boolean isAllowed(char c, boolean[] allowed) {
+        return c < allowed.length && allowed[c];
+    }
+
+    /**
+     * The unreserved characters of RFC 3986 and the given delimiters.
+     */
+    private static boolean[] allowed(String delimiters) {
+        boolean[] allowed = new boolean[128];
+        for (char c = 'a'; c <= 'z'; c++) {
+            allowed[c] = true;
+            allowed[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            allowed[c] = true;
+        }
+        for (char c : ("-._~" + delimiters).toCharArray()) {
+            allowed[c] = true;
+        }
+        return allowed;
+    }
+}
@@ -0,0 +1,134 @@
+package com.os.tid.forgerock.openam.utils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.AccessController;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.util.EntityUtils;
+import org.forgerock.openam.core.realms.Realm;
+import org.forgerock.openam.core.realms.RealmLookupException;
+import org.forgerock.openam.core.realms.Realms;
+import org.forgerock.openam.sm.AnnotatedServiceRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.iplanet.sso.SSOToken;
+import com.os.tid.forgerock.openam.config.ApiEndpoint;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
+import com.os.tid.forgerock.openam.models.GeneralResponseOutput;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+import com.sun.identity.security.AdminTokenAction;
+import com.sun.identity.sm.OrganizationConfigManager;
+import com.sun.identity.sm.SMSException;
+
+/**
+ * Pays the cold-start costs of the OneSpan calls when AM starts rather than on the first logins: for every realm which
+ * enables it, the tenant endpoint is resolved and connected to, which also loads its client certificate, and the
+ * bundled scripts and the JSON parser are loaded once.
+ */
+public class WarmUpUtils {
+    private static final Logger logger = LoggerFactory.getLogger("amAuth");
+    private static final String loggerPrefix = "[OneSpan Auth WarmUpUtils][Marketplace] ";
+
+    private WarmUpUtils() {
+    }
+
+    /**
+     * Starts the warm-up on a background thread, so that it never delays the startup of AM.
+     */
+    public static void start(AnnotatedServiceRegistry serviceRegistry) {
+        new ThreadFactoryBuilder().setNameFormat("onespan-warm-up-%d").setDaemon(true).build()
+                .newThread(() -> warmUp(serviceRegistry))
+                .start();
+    }
+
+    private static void warmUp(AnnotatedServiceRegistry serviceRegistry) {
+        long start = System.nanoTime();
+        int warmedUp = 0;
+        try {
+            for (Realm realm : getRealms()) {
+                try {
+                    OSConfigurationsService serviceConfig = serviceRegistry.getRealmSingleton(OSConfigurationsService.class, realm).orElse(null);
+                    if (serviceConfig != null && serviceConfig.warmUpOnStartup()) {
+                        // binds the configuration to its realm, so that a configuration change refreshes its context
+                        OneSpanRealmContext.of(realm, serviceConfig);
+                        warmUpConnection(serviceConfig);
+                        warmedUp++;
+                    }
+                } catch (Exception e) {
+                    logger.warn(loggerPrefix + "Failed to warm up realm " + realm.asPath() + ": " + e.getMessage());
+                }
+            }
+        } catch (SMSException | RealmLookupException e) {
+            logger.warn(loggerPrefix + "Failed to list realms: " + e.getMessage());
+        }
+        if (warmedUp == 0) {
+            return;
+        }
+        try {
+            for (String scriptPath : Constants.OSTID_BUNDLED_SCRIPTS) {
+                ScriptUtils.getScriptFromFile(scriptPath);
+            }
+            warmUpJson();
+        } catch (Exception e) {
+            logger.warn(loggerPrefix + "Failed to warm up: " + e.getMessage());
+        }
+        logger.info(loggerPrefix + "Warmed up " + warmedUp + " realm(s) in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+    }
+
+    private static List<Realm> getRealms() throws SMSException, RealmLookupException {
+        SSOToken adminToken = AccessController.doPrivileged(AdminTokenAction.getInstance());
+        List<Realm> realms = new ArrayList<>();
+        realms.add(Realms.root());
+        for (Object subRealm : new OrganizationConfigManager(adminToken, "/").getSubOrganizationNames("*", true)) {
+            realms.add(Realms.of("/" + subRealm));
+        }
+        return realms;
+    }
+
+    /**
+     * Sends a HEAD request to the tenant endpoint through the pooled client of the realm. This builds the SSL context
+     * and the client, resolves the host and leaves a connection with a completed TLS handshake in the pool.
+     */
+    private static void warmUpConnection(OSConfigurationsService serviceConfig) throws IOException, InterruptedException {
+        String endpoint = HttpClientUtils.getEndpoint(serviceConfig);
+        int requestTimeout = TimeoutUtils.getRequestTimeout(serviceConfig, ApiEndpoint.OTHER);
+        if (HttpClientUtils.isHttp2(serviceConfig)) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(endpoint))
+                    .timeout(Duration.ofMillis(requestTimeout))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .build();
+            HttpClientUtils.getAsyncHttpClient(serviceConfig).send(request, HttpResponse.BodyHandlers.discarding());
+            return;
+        }
+        HttpHead request = new HttpHead(endpoint);
+        request.setConfig(TimeoutUtils.getRequestConfig(serviceConfig, ApiEndpoint.OTHER));
+        try (CloseableHttpResponse response = HttpClientUtils.getHttpClient(serviceConfig).execute(request)) {
+            EntityUtils.consume(response.getEntity());
+        }
+    }
+
+    /**
+     * Decodes a synthetic response both into a model and into a JSON tree, so that the decoder, the codec and fastjson
+     * have loaded their classes and the JIT has compiled the decoding paths before the first real response arrives.
+     */
+    private static void warmUpJson() throws IOException {
+        byte[] sample = JsonUtils.toJSONBytes(new GeneralResponseOutput("challenge", "requestID", 0, "accepted", "requestMessage", 1));
+        String sampleString = new String(sample, StandardCharsets.UTF_8);
+        for (int i = 0; i < Constants.OSTID_DEFAULT_WARM_UP_PARSE_ITERATIONS; i++) {
+            RestUtils.decode(sample, GeneralResponseOutput.class);
+            RestUtils.toHttpEntity(sampleString, 200, "");
+        }
+    }
+}
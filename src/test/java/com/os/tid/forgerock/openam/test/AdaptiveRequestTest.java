@@ -0,0 +1,211 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.google.common.collect.ImmutableList;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.models.AdaptiveRequest;
+import com.os.tid.forgerock.openam.utils.CDDCUtils;
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the bodies written by {@link AdaptiveRequest} against the format strings the nodes used to build them with.
+ */
+@Test
+public class AdaptiveRequestTest {
+    //the removed JSON payloads
+    private static final String OSTID_JSON_ADAPTIVE_USER_LOGIN = "{%8$s%7$s%2$s%3$s%4$s%5$s%6$s\"objectType\":\"%1$s\"}";
+    private static final String OSTID_JSON_ADAPTIVE_USER_LOGIN_NO_REQUEST = "{%7$s%6$s%2$s%3$s%4$s%5$s\"objectType\":\"%1$s\"}";
+    private static final String OSTID_JSON_ADAPTIVE_EVENT_VALIDATION = "{%8$s%7$s%2$s%3$s%4$s%5$s%6$s\"eventType\":\"%1$s\"}";
+    private static final String OSTID_JSON_ADAPTIVE_USER_LOGIN_IAA_NO_CDDC_DATA = "\"relationshipRef\":\"%1$s\",\"sessionID\":\"%2$s\",\"applicationRef\":\"%3$s\",";
+    private static final String OSTID_JSON_RISK_SEND_TRANSACTION = "{%1$s\"clientIP\":\"%2$s\",\"cddc\":{\"browserCDDC\":{\"fingerprintHash\":\"%3$s\",\"fingerprintRaw\":\"%4$s\"}},\"relationshipRef\":\"%7$s\",\"sessionID\":\"%5$s\",\"applicationRef\":\"%6$s\"}";
+    private static final String OSTID_JSON_ADAPTIVE_CREDENTIALS_AUTHENTICATOR = "\"credentials\":{\"authenticator\":{\"OTP\":\"%1$s\"}},";
+    private static final String OSTID_JSON_ADAPTIVE_CREDENTIALS_FIDOAUTHENTICATOR = "\"credentials\":{\"fidoAuthenticator\":{\"authenticationResponse\":\"%1$s\"}},";
+    private static final String OSTID_JSON_ADAPTIVE_CREDENTIALS_FIDOAUTHENTICATOR_2 = "{\"fidoAuthentication\":{\"fidoProtocol\":\"%1$s\"},";
+    private static final String OSTID_JSON_ADAPTIVE_CREDENTIALS_PASSKEY = "\"credentials\":{\"passKey\":\"%1$s\"},";
+
+    private static final String CDDC_JSON = "{\"browser\":{\"userAgent\":\"Mozilla 5.0\"},\"additional\":{}}";
+    private static final String ESCAPED_CDDC_JSON = "{\\\"browser\\\":{\\\"userAgent\\\":\\\"Mozilla 5.0\\\"},\\\"additional\\\":{}}";
+    private static final String SESSION_ID = "38663233383530352d62396638";
+    private static final String REQUEST_ID = "dummy_request_id";
+
+    @Test
+    public void testUserLogin() {
+        // Given
+        AdaptiveRequest request = new AdaptiveRequest();
+        request.putAttribute("mobilePhoneNumber", TestData.TEST_MOBILE_PHONE);
+        request.putAttribute("emailAddress", TestData.TEST_EMAIL_ADDRESS);
+        request.setObjectType("AdaptiveLoginInput");
+        request.setPassKey(TestData.TEST_PASS_KEY);
+        request.setRequestID(REQUEST_ID);
+        request.setOrchestrationDelivery(ImmutableList.of("pushNotification", "requestMessage"));
+        request.setTimeout(0);
+        request.setCddc(TestData.TEST_CDDC_IP, TestData.TEST_CDDC_HASH, CDDCUtils.getEscapedJson(CDDC_JSON));
+        request.setRelationshipRef(TestData.TEST_USERNAME);
+        request.setSessionID(SESSION_ID);
+        request.setApplicationRef(TestData.APPLICATION_REF);
+
+        // Then
+        String expected = String.format(OSTID_JSON_ADAPTIVE_USER_LOGIN,
+                "AdaptiveLoginInput",
+                String.format(OSTID_JSON_ADAPTIVE_CREDENTIALS_PASSKEY, TestData.TEST_PASS_KEY),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_REQUESTID, REQUEST_ID),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"pushNotification\",\"requestMessage\""),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_USER_LOGIN_IAA, TestData.TEST_CDDC_IP, TestData.TEST_CDDC_HASH, ESCAPED_CDDC_JSON,
+                        TestData.TEST_USERNAME, SESSION_ID, TestData.APPLICATION_REF),
+                "\"mobilePhoneNumber\":\"" + TestData.TEST_MOBILE_PHONE + "\",\"emailAddress\":\"" + TestData.TEST_EMAIL_ADDRESS + "\",",
+                "");
+        assertThat(toJson(request)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testUserLoginWithoutOptionalMembers() {
+        // Given
+        AdaptiveRequest request = new AdaptiveRequest();
+        request.setObjectType("AdaptiveLoginInput");
+        request.setOtp("123456");
+        request.setTimeout(0);
+        request.setRelationshipRef(TestData.TEST_USERNAME);
+        request.setSessionID(SESSION_ID);
+        request.setApplicationRef(TestData.APPLICATION_REF);
+
+        // Then
+        String expected = String.format(OSTID_JSON_ADAPTIVE_USER_LOGIN_NO_REQUEST,
+                "AdaptiveLoginInput",
+                String.format(OSTID_JSON_ADAPTIVE_CREDENTIALS_AUTHENTICATOR, "123456"),
+                "",
+                String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0),
+                String.format(OSTID_JSON_ADAPTIVE_USER_LOGIN_IAA_NO_CDDC_DATA, TestData.TEST_USERNAME, SESSION_ID, TestData.APPLICATION_REF),
+                "",
+                "");
+        assertThat(toJson(request)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testUserLoginWithoutAdaptiveData() {
+        // Given
+        AdaptiveRequest request = new AdaptiveRequest();
+        request.setObjectType("LoginInput");
+        request.setPassKey(TestData.TEST_PASS_KEY);
+        request.setOrchestrationDelivery(ImmutableList.of("requestMessage"));
+        request.setTimeout(0);
+
+        // Then
+        String expected = String.format(OSTID_JSON_ADAPTIVE_USER_LOGIN_NO_REQUEST,
+                "LoginInput",
+                String.format(OSTID_JSON_ADAPTIVE_CREDENTIALS_PASSKEY, TestData.TEST_PASS_KEY),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"requestMessage\""),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0),
+                "",
+                "",
+                "");
+        assertThat(toJson(request)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testUserLoginWithFidoAuthenticator() {
+        // Given
+        AdaptiveRequest request = new AdaptiveRequest();
+        request.putAttribute("emailAddress", TestData.TEST_EMAIL_ADDRESS);
+        request.setObjectType("LoginInput");
+        request.setFidoAuthenticator("FIDO2", "authentication-response");
+        request.setTimeout(0);
+
+        // Then
+        String formatted = String.format(OSTID_JSON_ADAPTIVE_USER_LOGIN_NO_REQUEST,
+                "LoginInput",
+                String.format(OSTID_JSON_ADAPTIVE_CREDENTIALS_FIDOAUTHENTICATOR, "authentication-response"),
+                "",
+                String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0),
+                "",
+                "\"emailAddress\":\"" + TestData.TEST_EMAIL_ADDRESS + "\",",
+                String.format(OSTID_JSON_ADAPTIVE_CREDENTIALS_FIDOAUTHENTICATOR_2, "FIDO2"));
+        // the FIDO fragment opened a second object, which made the body invalid
+        assertThat(formatted).startsWith("{{");
+        assertThat(toJson(request)).isEqualTo(formatted.substring(1));
+    }
+
+    @Test
+    public void testEventValidation() {
+        // Given
+        AdaptiveRequest request = new AdaptiveRequest();
+        request.putAttribute("accountRef", "account-1");
+        request.setEventType("NonMonetary");
+        request.setOtp("123456");
+        request.setRequestID(REQUEST_ID);
+        request.setOrchestrationDelivery(ImmutableList.of("pushNotification"));
+        request.setTimeout(0);
+        request.setCddc(TestData.TEST_CDDC_IP, TestData.TEST_CDDC_HASH, CDDCUtils.getEscapedJson(CDDCUtils.pack(CDDC_JSON)));
+        request.setRelationshipRef(TestData.TEST_USERNAME);
+        request.setSessionID(SESSION_ID);
+        request.setApplicationRef(TestData.APPLICATION_REF);
+
+        // Then
+        String expected = String.format(OSTID_JSON_ADAPTIVE_EVENT_VALIDATION,
+                "NonMonetary",
+                String.format(OSTID_JSON_ADAPTIVE_CREDENTIALS_AUTHENTICATOR, "123456"),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_REQUESTID, REQUEST_ID),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"pushNotification\""),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_USER_LOGIN_IAA, TestData.TEST_CDDC_IP, TestData.TEST_CDDC_HASH, ESCAPED_CDDC_JSON,
+                        TestData.TEST_USERNAME, SESSION_ID, TestData.APPLICATION_REF),
+                "\"accountRef\":\"account-1\",",
+                "");
+        assertThat(toJson(request)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testRiskSendTransaction() {
+        // Given
+        AdaptiveRequest request = new AdaptiveRequest();
+        request.putAttribute("objectType", "TransactionInput");
+        request.putAttribute("amount", "100");
+        request.setCddc(TestData.TEST_CDDC_IP, TestData.TEST_CDDC_HASH, CDDCUtils.getEscapedJson(CDDC_JSON));
+        request.setRelationshipRef(TestData.TEST_USERNAME);
+        request.setSessionID(SESSION_ID);
+        request.setApplicationRef(TestData.APPLICATION_REF);
+
+        // Then
+        String expected = String.format(OSTID_JSON_RISK_SEND_TRANSACTION,
+                "\"objectType\":\"TransactionInput\",\"amount\":\"100\",",
+                TestData.TEST_CDDC_IP,
+                TestData.TEST_CDDC_HASH,
+                ESCAPED_CDDC_JSON,
+                SESSION_ID,
+                TestData.APPLICATION_REF,
+                TestData.TEST_USERNAME);
+        assertThat(toJson(request)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testEscapesControlCharacters() {
+        // Given
+        AdaptiveRequest request = new AdaptiveRequest();
+        request.putAttribute("note", "a\"b\\c\nd\re\tf\u0000g\u001fh\u007f");
+
+        // Then
+        assertThat(toJson(request)).isEqualTo("{\"note\":\"a\\\"b\\\\c\\nd\\re\\tf\\u0000g\\u001fh\u007f\"}");
+    }
+
+    @Test
+    public void testEncodesSurrogates() {
+        // Given
+        AdaptiveRequest request = new AdaptiveRequest();
+        request.putAttribute("paired", "\u00e9\u20ac\ud83d\ude00");
+        request.putAttribute("unpaired", "a\ud83db\ude00");
+
+        // Then
+        byte[] json = JsonWriter.toJSONBytes(request);
+        assertThat(new String(json, StandardCharsets.UTF_8))
+                .isEqualTo("{\"paired\":\"\u00e9\u20ac\ud83d\ude00\",\"unpaired\":\"a\\ud83db\\ude00\"}");
+        assertThat(json).containsSequence("\u00e9\u20ac\ud83d\ude00".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String toJson(AdaptiveRequest request) {
+        return new String(JsonWriter.toJSONBytes(request), StandardCharsets.UTF_8);
+    }
+}
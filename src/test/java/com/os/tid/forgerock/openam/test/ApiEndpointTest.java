@@ -0,0 +1,103 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.config.ApiEndpoint;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.utils.UriTemplate;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class ApiEndpointTest {
+    private static final String BASE_URL = "https://tenant.sdb.tid.onespan.cloud";
+
+    private static final Map<String, ApiEndpoint> EXPECTED = new HashMap<>();
+
+    static {
+        EXPECTED.put("OSTID_API_ADAPTIVE_USER_REGISTER", ApiEndpoint.OTHER);
+        EXPECTED.put("OSTID_API_ADAPTIVE_USER_UNREGISTER", ApiEndpoint.OTHER);
+        EXPECTED.put("OSTID_API_ADAPTIVE_USER_LOGIN", ApiEndpoint.LOGIN);
+        EXPECTED.put("OSTID_API_ADAPTIVE_EVENT_VALIDATION", ApiEndpoint.EVENT_VALIDATION);
+        EXPECTED.put("OSTID_API_ADAPTIVE_SEND_TRANSACTION", ApiEndpoint.TRANSACTION_VALIDATION);
+        EXPECTED.put("OSTID_API_ADAPTIVE_ADD_DEVICE", ApiEndpoint.OTHER);
+        EXPECTED.put("OSTID_API_ADAPTIVE_GENERATE_CHALLENGE", ApiEndpoint.OTHER);
+        EXPECTED.put("OSTID_API_ADAPTIVE_ACTIVATE_DEVICE", ApiEndpoint.OTHER);
+        EXPECTED.put("OSTID_API_CHECK_ACTIVATION", ApiEndpoint.CHECK_ACTIVATION);
+        EXPECTED.put("OSTID_API_CHECK_SESSION_STATUS", ApiEndpoint.SESSION_STATUS);
+        EXPECTED.put("OSTID_API_ADAPTIVE_CRTONTO_RENDER", ApiEndpoint.VISUAL_CODE);
+        EXPECTED.put("OSTID_API_RISK_SEND_TRANSACTION", ApiEndpoint.OTHER);
+        EXPECTED.put("OSTID_API_VDP_USER_REGISTER", ApiEndpoint.VDP);
+        EXPECTED.put("OSTID_API_VDP_GET_VIR10_AUTHENTICATORS", ApiEndpoint.VDP);
+        EXPECTED.put("OSTID_API_VDP_GET_VIR10_AUTHENTICATOR", ApiEndpoint.VDP);
+        EXPECTED.put("OSTID_API_GET_USER_AUTHENTICATOR", ApiEndpoint.VDP);
+        EXPECTED.put("OSTID_API_VDP_ASSIGN_AUTHENTICATOR", ApiEndpoint.VDP);
+        EXPECTED.put("OSTID_API_VDP_GET_USER", ApiEndpoint.VDP);
+        EXPECTED.put("OSTID_API_VDP_GENERATE_VOTP", ApiEndpoint.VDP);
+        // the paths of the legacy API
+        EXPECTED.put("OSTID_API_USER_REGISTER", ApiEndpoint.OTHER);
+        EXPECTED.put("OSTID_API_USER_UNREGISTER", ApiEndpoint.OTHER);
+        EXPECTED.put("OSTID_API_CRTONTO_RENDER", ApiEndpoint.OTHER);
+        EXPECTED.put("OSTID_API_EVENT_VALIDATION", ApiEndpoint.OTHER);
+        EXPECTED.put("OSTID_API_LOGIN", ApiEndpoint.LOGIN);
+        EXPECTED.put("OSTID_API_TRANSACTION", ApiEndpoint.OTHER);
+        EXPECTED.put("OSTID_API_DEMO_COMMANDS", ApiEndpoint.OTHER);
+    }
+
+    @Test
+    public void testEveryApiPathIsClassified() throws IllegalAccessException {
+        int count = 0;
+        for (Field field : Constants.class.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class || !field.getName().startsWith("OSTID_API_")) {
+                continue;
+            }
+            String path = (String) field.get(null);
+            if (!path.startsWith("/")) {
+                continue;
+            }
+            // Given
+            String url = UriTemplate.compile(path).resolve(BASE_URL, "john.doe", "tenant-domain");
+
+            // Then
+            assertThat(EXPECTED.get(field.getName())).as(field.getName()).isNotNull();
+            assertThat(ApiEndpoint.fromUrl(url)).as(field.getName()).isEqualTo(EXPECTED.get(field.getName()));
+            count++;
+        }
+        assertThat(count).isEqualTo(EXPECTED.size());
+    }
+
+    @Test
+    public void testVdpUserCalls() {
+        // Given
+        String url = Constants.OSTID_API_VDP_GET_USER_TEMPLATE.resolve(BASE_URL, "john.doe", "tenant-domain");
+
+        // Then
+        assertThat(ApiEndpoint.fromUrl(url)).isEqualTo(ApiEndpoint.VDP);
+        assertThat(ApiEndpoint.fromUrl(url).isIdempotent("GET")).isTrue();
+        assertThat(ApiEndpoint.fromUrl(url).isIdempotent("PUT")).isTrue();
+        assertThat(ApiEndpoint.fromUrl(url).isIdempotent("PATCH")).isFalse();
+        assertThat(ApiEndpoint.fromUrl(BASE_URL + Constants.OSTID_API_ADAPTIVE_USER_REGISTER).isIdempotent("POST")).isFalse();
+    }
+
+    @Test
+    public void testCustomUrlWithBasePath() {
+        assertThat(ApiEndpoint.fromUrl("https://proxy.example.com/onespan/v1/users/john.doe@tenant-domain")).isEqualTo(ApiEndpoint.VDP);
+        assertThat(ApiEndpoint.fromUrl("https://proxy.example.com/onespan/v1/sessions/abc")).isEqualTo(ApiEndpoint.SESSION_STATUS);
+    }
+
+    @Test
+    public void testInvalidUrl() {
+        assertThat(ApiEndpoint.fromUrl("https://tenant.sdb.tid.onespan.cloud/v1/users/{user}")).isEqualTo(ApiEndpoint.OTHER);
+    }
+
+    @Test
+    public void testStateChangingCallsAreNotIdempotent() {
+        assertThat(ApiEndpoint.LOGIN.isIdempotent("POST")).isFalse();
+        assertThat(ApiEndpoint.TRANSACTION_VALIDATION.isIdempotent("POST")).isFalse();
+        assertThat(ApiEndpoint.CHECK_ACTIVATION.isIdempotent("POST")).isTrue();
+    }
+}
@@ -0,0 +1,85 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.utils.AsyncRestUtils;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Test
+public class AsyncRestUtilsTest {
+
+    @Test
+    public void testJoinReturnsResponse() throws IOException {
+        // Given
+        CompletableFuture<String> future = CompletableFuture.completedFuture("response");
+
+        // When
+        String result = AsyncRestUtils.join(future);
+
+        // Then
+        assertThat(result).isEqualTo("response");
+    }
+
+    @Test
+    public void testJoinRethrowsIOException() {
+        // Given
+        IOException failure = new IOException("connection reset");
+        CompletableFuture<String> future = CompletableFuture.failedFuture(failure);
+
+        // Then
+        assertThatThrownBy(() -> AsyncRestUtils.join(future)).isSameAs(failure);
+    }
+
+    @Test
+    public void testJoinUnwrapsIOExceptionOfDependentStage() {
+        // Given
+        IOException failure = new IOException("connection reset");
+        CompletableFuture<String> future = CompletableFuture.<String>failedFuture(failure).thenApply(String::trim);
+
+        // Then
+        assertThatThrownBy(() -> AsyncRestUtils.join(future)).isSameAs(failure);
+    }
+
+    @Test
+    public void testJoinWrapsOtherFailureInIOException() {
+        // Given
+        IllegalStateException failure = new IllegalStateException("HTTP client has been closed");
+        CompletableFuture<String> future = CompletableFuture.failedFuture(failure);
+
+        // Then
+        assertThatThrownBy(() -> AsyncRestUtils.join(future))
+                .isInstanceOf(IOException.class)
+                .hasMessage("HTTP client has been closed")
+                .hasCause(failure);
+    }
+
+    @Test
+    public void testJoinWrapsCauseOfCompletionException() {
+        // Given
+        IllegalArgumentException failure = new IllegalArgumentException("invalid response");
+        CompletableFuture<String> future = CompletableFuture.failedFuture(new CompletionException(failure));
+
+        // Then
+        assertThatThrownBy(() -> AsyncRestUtils.join(future))
+                .isInstanceOf(IOException.class)
+                .hasCause(failure);
+    }
+
+    @Test
+    public void testJoinTurnsInterruptIntoIOException() {
+        // Given
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Thread.currentThread().interrupt();
+
+        // Then
+        assertThatThrownBy(() -> AsyncRestUtils.join(future))
+                .isInstanceOf(IOException.class)
+                .hasCauseInstanceOf(InterruptedException.class);
+        assertThat(Thread.interrupted()).isTrue();
+    }
+}
@@ -0,0 +1,112 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.utils.CDDCUtils;
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Test
+public class CDDCUtilsTest {
+
+    @Test
+    public void testPackRoundTrip() {
+        // Given
+        String cddcJson = TestData.TEST_CDDC_JSON;
+
+        // When
+        String stored = CDDCUtils.pack(cddcJson);
+
+        // Then
+        assertThat(stored).startsWith(Constants.OSTID_CDDC_PACKED_PREFIX);
+        assertThat(stored.length()).isLessThanOrEqualTo(cddcJson.length());
+        assertThat(CDDCUtils.getEscapedJson(stored)).isEqualTo(JsonWriter.escape(cddcJson));
+    }
+
+    @Test
+    public void testSmallValueIsStoredAsIs() {
+        // Given
+        String cddcJson = "{\"a\":1}";
+
+        // When
+        String stored = CDDCUtils.pack(cddcJson);
+
+        // Then
+        assertThat(stored).isEqualTo(cddcJson);
+        assertThat(CDDCUtils.getEscapedJsonString(stored)).isEqualTo("{\\\"a\\\":1}");
+    }
+
+    @Test
+    public void testLegacyPlainJson() {
+        // stored as plain JSON by an older version of the CDDC node
+        assertThat(CDDCUtils.getEscapedJson(TestData.TEST_CDDC_JSON)).isEqualTo(JsonWriter.escape(TestData.TEST_CDDC_JSON));
+    }
+
+    @Test
+    public void testValueStartingWithPrefixIsPacked() {
+        // Given
+        String cddcJson = Constants.OSTID_CDDC_PACKED_PREFIX + "abc";
+
+        // When
+        String stored = CDDCUtils.pack(cddcJson);
+
+        // Then
+        assertThat(stored).isNotEqualTo(cddcJson);
+        assertThat(stored).startsWith(Constants.OSTID_CDDC_PACKED_PREFIX);
+        assertThat(CDDCUtils.getEscapedJsonString(stored)).isEqualTo(cddcJson);
+    }
+
+    @Test
+    public void testNull() {
+        assertThat(CDDCUtils.pack(null)).isNull();
+        assertThat(CDDCUtils.getEscapedJson(null)).isNull();
+    }
+
+    @Test
+    public void testCorruptData() {
+        assertThatThrownBy(() -> CDDCUtils.getEscapedJson(Constants.OSTID_CDDC_PACKED_PREFIX + "AAAA"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CDDCUtils.getEscapedJson(Constants.OSTID_CDDC_PACKED_PREFIX + "!!!"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testTruncatedData() {
+        // Given
+        String stored = CDDCUtils.pack(TestData.TEST_CDDC_JSON);
+
+        // Then
+        assertThatThrownBy(() -> CDDCUtils.getEscapedJson(stored.substring(0, stored.length() / 2)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testInflateLimit() {
+        // Given
+        byte[] atLimit = new byte[Constants.OSTID_DEFAULT_CDDC_MAX_SIZE];
+        Arrays.fill(atLimit, (byte) 'a');
+        byte[] overLimit = new byte[Constants.OSTID_DEFAULT_CDDC_MAX_SIZE + 1];
+        Arrays.fill(overLimit, (byte) 'a');
+
+        // Then
+        assertThat(CDDCUtils.getEscapedJson(packed(atLimit))).hasSize(Constants.OSTID_DEFAULT_CDDC_MAX_SIZE);
+        assertThatThrownBy(() -> CDDCUtils.getEscapedJson(packed(overLimit)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String packed(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buffer = new byte[data.length];
+        int length = deflater.deflate(buffer);
+        deflater.end();
+        return Constants.OSTID_CDDC_PACKED_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(buffer, length));
+    }
+}
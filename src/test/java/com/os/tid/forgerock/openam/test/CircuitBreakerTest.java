@@ -0,0 +1,192 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+import com.os.tid.forgerock.openam.utils.CircuitBreaker;
+import com.os.tid.forgerock.openam.utils.CircuitBreakerUtils;
+import com.os.tid.forgerock.openam.utils.RestUtils;
+import org.mockito.Mock;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+@Test
+public class CircuitBreakerTest {
+    private static final String ENDPOINT = "https://circuit-breaker.sdb.tid.onespan.cloud";
+
+    @Mock
+    private OSConfigurationsService configurationsService;
+
+    @BeforeMethod
+    public void before() {
+        initMocks(this);
+    }
+
+    @Test
+    public void testStaysClosedBelowMinimumCalls() {
+        // Given
+        CircuitBreaker circuitBreaker = new CircuitBreaker(ENDPOINT, 10, 4, 50, 60000, 2);
+
+        // When
+        failures(circuitBreaker, 3);
+
+        // Then
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    public void testOpensAtFailureRate() {
+        // Given
+        CircuitBreaker circuitBreaker = new CircuitBreaker(ENDPOINT, 4, 4, 50, 60000, 2);
+
+        // When
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        circuitBreaker.onFailure();
+
+        // Then
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.isAvailable()).isFalse();
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    public void testSlidingWindowForgetsOldFailures() {
+        // Given
+        CircuitBreaker circuitBreaker = new CircuitBreaker(ENDPOINT, 4, 4, 60, 60000, 2);
+        failures(circuitBreaker, 2);
+        successes(circuitBreaker, 2);
+
+        // When
+        failures(circuitBreaker, 1);
+
+        // Then
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testHalfOpensAfterOpenDuration() throws InterruptedException {
+        // Given
+        CircuitBreaker circuitBreaker = opened(2);
+
+        // When
+        Thread.sleep(5);
+
+        // Then
+        assertThat(circuitBreaker.isAvailable()).isTrue();
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    public void testHalfOpenLimitsTrialCalls() throws InterruptedException {
+        // Given
+        CircuitBreaker circuitBreaker = opened(2);
+        Thread.sleep(5);
+
+        // When
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+
+        // Then
+        assertThat(circuitBreaker.isAvailable()).isFalse();
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    public void testClosesAfterTrialCallsSucceed() throws InterruptedException {
+        // Given
+        CircuitBreaker circuitBreaker = opened(2);
+        Thread.sleep(5);
+
+        // When
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onSuccess();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        circuitBreaker.onSuccess();
+
+        // Then
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        // the window starts over once closed
+        failures(circuitBreaker, 1);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testReopensWhenTrialCallFails() throws InterruptedException {
+        // Given
+        CircuitBreaker circuitBreaker = new CircuitBreaker(ENDPOINT, 2, 2, 50, 50, 2);
+        failures(circuitBreaker, 2);
+        Thread.sleep(60);
+
+        // When
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onSuccess();
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onFailure();
+
+        // Then
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    public void testRuntimeExceptionReleasesHalfOpenPermit() throws InterruptedException {
+        // Given
+        given(configurationsService.environment()).willReturn(TestData.ENVIRONMENT);
+        given(configurationsService.tenantName()).willReturn("circuit-breaker-permit");
+        given(configurationsService.customUrl()).willReturn("");
+        given(configurationsService.circuitBreakerEnabled()).willReturn(true);
+        given(configurationsService.circuitBreakerWindowSize()).willReturn(2);
+        given(configurationsService.circuitBreakerFailureRate()).willReturn(50);
+        given(configurationsService.circuitBreakerOpenDuration()).willReturn(1);
+        CircuitBreaker circuitBreaker = CircuitBreakerUtils.getCircuitBreaker(configurationsService);
+        failures(circuitBreaker, 2);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        Thread.sleep(5);
+        // fails the call once it holds its half-open permit
+        given(configurationsService.endpointTimeouts()).willAnswer(invocation -> {
+            if (circuitBreaker.getState() == CircuitBreaker.State.HALF_OPEN) {
+                throw new IllegalStateException("unexpected");
+            }
+            return Collections.emptyMap();
+        });
+
+        // When
+        assertThatThrownBy(() -> RestUtils.doGet("https://circuit-breaker-permit.sdb.tid.onespan.cloud/v1/users", configurationsService))
+                .isInstanceOf(IllegalStateException.class);
+
+        // Then
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private static CircuitBreaker opened(int halfOpenCalls) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(ENDPOINT, 2, 2, 50, 1, halfOpenCalls);
+        failures(circuitBreaker, 2);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        return circuitBreaker;
+    }
+
+    private static void failures(CircuitBreaker circuitBreaker, int count) {
+        for (int i = 0; i < count; i++) {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    private static void successes(CircuitBreaker circuitBreaker, int count) {
+        for (int i = 0; i < count; i++) {
+            circuitBreaker.onSuccess();
+        }
+    }
+}
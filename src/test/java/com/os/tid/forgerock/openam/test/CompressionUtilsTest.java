@@ -0,0 +1,219 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.models.SessionStatusOutput;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+import com.os.tid.forgerock.openam.utils.CompressionUtils;
+import com.os.tid.forgerock.openam.utils.RestUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the request compression of both transports against a local server: the Apache client serves the realms on
+ * HTTP/1.1, the JDK client the realms on HTTP/2.
+ */
+@Test
+public class CompressionUtilsTest {
+    private static final String PAYLOAD = "{\"cddcJson\":\"" + "a".repeat(Constants.OSTID_DEFAULT_COMPRESSION_MIN_SIZE) + "\"}";
+
+    // the payloads received by the server, the compressed ones decompressed
+    private final Queue<String> gzippedPayloads = new ConcurrentLinkedQueue<>();
+    private final Queue<String> plainPayloads = new ConcurrentLinkedQueue<>();
+    private volatile boolean acceptGzip;
+    private volatile boolean gzipResponse;
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeMethod
+    public void before() throws IOException {
+        acceptGzip = true;
+        gzipResponse = false;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterMethod
+    public void after() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testGzipRoundTrip() {
+        // Given
+        byte[] payload = PAYLOAD.getBytes(StandardCharsets.UTF_8);
+
+        // When
+        byte[] compressed = CompressionUtils.gzip(payload);
+
+        // Then
+        assertThat(compressed.length).isLessThanOrEqualTo(payload.length / 2);
+        assertThat(CompressionUtils.gunzip(compressed)).isEqualTo(payload);
+    }
+
+    @Test
+    public void testCompressesOnlyLargePayloadsOfEnabledRealms() {
+        // Given
+        String url = loginUrl();
+        byte[] large = PAYLOAD.getBytes(StandardCharsets.UTF_8);
+        byte[] small = "{}".getBytes(StandardCharsets.UTF_8);
+
+        // Then
+        assertThat(CompressionUtils.shouldCompress(config(OSConfigurationsService.TransportOptions.HTTP_1_1, true), url, large)).isTrue();
+        assertThat(CompressionUtils.shouldCompress(config(OSConfigurationsService.TransportOptions.HTTP_1_1, true), url, small)).isFalse();
+        assertThat(CompressionUtils.shouldCompress(config(OSConfigurationsService.TransportOptions.HTTP_1_1, true), url, null)).isFalse();
+        assertThat(CompressionUtils.shouldCompress(config(OSConfigurationsService.TransportOptions.HTTP_1_1, false), url, large)).isFalse();
+    }
+
+    @Test
+    public void testApacheClientSendsCompressedPayload() throws IOException {
+        // Given
+        OSConfigurationsService serviceConfig = config(OSConfigurationsService.TransportOptions.HTTP_1_1, true);
+
+        // When
+        HttpEntity result = RestUtils.doPostJSON(loginUrl(), PAYLOAD, serviceConfig);
+
+        // Then
+        assertThat(result.getHttpStatus()).isEqualTo(200);
+        assertThat(gzippedPayloads).containsExactly(PAYLOAD);
+        assertThat(plainPayloads).hasSize(0);
+    }
+
+    @Test
+    public void testJdkClientSendsCompressedPayload() throws IOException {
+        // Given
+        OSConfigurationsService serviceConfig = config(OSConfigurationsService.TransportOptions.HTTP_2, true);
+
+        // When
+        HttpEntity result = RestUtils.doPostJSON(loginUrl(), PAYLOAD, serviceConfig);
+
+        // Then
+        assertThat(result.getHttpStatus()).isEqualTo(200);
+        assertThat(gzippedPayloads).containsExactly(PAYLOAD);
+        assertThat(plainPayloads).hasSize(0);
+    }
+
+    @Test
+    public void testApacheClientFallsBackToUncompressedPayloadOn415() throws IOException {
+        // Given
+        acceptGzip = false;
+        OSConfigurationsService serviceConfig = config(OSConfigurationsService.TransportOptions.HTTP_1_1, true);
+
+        // When
+        HttpEntity first = RestUtils.doPostJSON(loginUrl(), PAYLOAD, serviceConfig);
+        HttpEntity second = RestUtils.doPostJSON(loginUrl(), PAYLOAD, serviceConfig);
+
+        // Then
+        assertThat(first.getHttpStatus()).isEqualTo(200);
+        assertThat(second.getHttpStatus()).isEqualTo(200);
+        assertThat(gzippedPayloads).containsExactly(PAYLOAD);
+        assertThat(plainPayloads).containsExactly(PAYLOAD, PAYLOAD);
+        assertThat(CompressionUtils.shouldCompress(serviceConfig, loginUrl(), PAYLOAD.getBytes(StandardCharsets.UTF_8))).isFalse();
+    }
+
+    @Test
+    public void testJdkClientFallsBackToUncompressedPayloadOn415() throws IOException {
+        // Given
+        acceptGzip = false;
+        OSConfigurationsService serviceConfig = config(OSConfigurationsService.TransportOptions.HTTP_2, true);
+
+        // When
+        HttpEntity first = RestUtils.doPostJSON(loginUrl(), PAYLOAD, serviceConfig);
+        HttpEntity second = RestUtils.doPostJSON(loginUrl(), PAYLOAD, serviceConfig);
+
+        // Then
+        assertThat(first.getHttpStatus()).isEqualTo(200);
+        assertThat(second.getHttpStatus()).isEqualTo(200);
+        assertThat(gzippedPayloads).containsExactly(PAYLOAD);
+        assertThat(plainPayloads).containsExactly(PAYLOAD, PAYLOAD);
+        assertThat(CompressionUtils.shouldCompress(serviceConfig, loginUrl(), PAYLOAD.getBytes(StandardCharsets.UTF_8))).isFalse();
+    }
+
+    @Test
+    public void testJdkClientDecompressesResponse() throws IOException {
+        // Given
+        gzipResponse = true;
+        OSConfigurationsService serviceConfig = config(OSConfigurationsService.TransportOptions.HTTP_2, false);
+
+        // When
+        HttpEntity result = RestUtils.doGet(sessionUrl(), serviceConfig, SessionStatusOutput.class);
+
+        // Then
+        assertThat(result.getHttpStatus()).isEqualTo(200);
+        assertThat(result.getResponseObject(SessionStatusOutput.class).getSessionStatus()).isEqualTo("accepted");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] requestBody = exchange.getRequestBody().readAllBytes();
+        boolean gzipped = CompressionUtils.GZIP.equals(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+        int status = 200;
+        if (gzipped) {
+            gzippedPayloads.add(new String(CompressionUtils.gunzip(requestBody), StandardCharsets.UTF_8));
+            status = acceptGzip ? 200 : CompressionUtils.UNSUPPORTED_MEDIA_TYPE;
+        } else if (requestBody.length > 0) {
+            plainPayloads.add(new String(requestBody, StandardCharsets.UTF_8));
+        }
+        byte[] body = "{\"sessionStatus\":\"accepted\"}".getBytes(StandardCharsets.UTF_8);
+        if (gzipResponse) {
+            body = CompressionUtils.gzip(body);
+            exchange.getResponseHeaders().add("Content-Encoding", CompressionUtils.GZIP);
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private String sessionUrl() {
+        return Constants.OSTID_API_CHECK_SESSION_STATUS_TEMPLATE.resolve(baseUrl, "session-id");
+    }
+
+    private String loginUrl() {
+        return Constants.OSTID_API_ADAPTIVE_USER_LOGIN_TEMPLATE.resolve(baseUrl, "john.doe", "tenant-domain");
+    }
+
+    /**
+     * Every realm gets its own tenant, as the endpoints not accepting compressed requests are remembered per tenant.
+     */
+    private static OSConfigurationsService config(OSConfigurationsService.TransportOptions transport, boolean requestCompression) {
+        String tenantName = "tenant-" + UUID.randomUUID();
+        return new OSConfigurationsService() {
+            @Override
+            public String tenantName() {
+                return tenantName;
+            }
+
+            @Override
+            public EnvOptions environment() {
+                return EnvOptions.sdb;
+            }
+
+            @Override
+            public TransportOptions transport() {
+                return transport;
+            }
+
+            @Override
+            public boolean requestCompression() {
+                return requestCompression;
+            }
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.utils.ErrorUtils;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class ErrorUtilsTest {
+
+    @Test
+    public void testRecordIsBounded() {
+        // Given
+        String correlationId = "abcdefghijklmnopqrstuvwxyzabcdefghijklmnopqrstuvwxyzabcdefghijklmnopqrstuvwxyz";
+        String message = "x".repeat(100000) + ";<br />Log Correction ID: " + correlationId + ";";
+        Exception ex = new IllegalStateException(message);
+
+        // When
+        Map<String, Object> record = ErrorUtils.toRecord("n".repeat(1000), ex);
+
+        // Then
+        int size = 0;
+        for (Map.Entry<String, Object> entry : record.entrySet()) {
+            size += entry.getKey().length() + String.valueOf(entry.getValue()).length();
+        }
+        assertThat(size).isLessThanOrEqualTo(Constants.OSTID_DEFAULT_ERROR_RECORD_MAX_SIZE);
+        assertThat(record.keySet()).containsExactly("code", "message", "correlationId", "node", "timestamp");
+        assertThat(record.get("code")).isEqualTo("IllegalStateException");
+        assertThat((String) record.get("message")).endsWith("...");
+        assertThat((String) record.get("correlationId")).startsWith("abcdefghij").hasSizeLessThanOrEqualTo(64);
+    }
+
+    @Test
+    public void testShortMessageIsKept() {
+        // When
+        Map<String, Object> record = ErrorUtils.toRecord("OS_Auth_UserLoginNode", new IllegalArgumentException("Request ID is missing!"));
+
+        // Then
+        assertThat(record.get("message")).isEqualTo("Request ID is missing!");
+        assertThat(record.get("correlationId")).isNull();
+        assertThat(record.get("node")).isEqualTo("OS_Auth_UserLoginNode");
+    }
+}
@@ -0,0 +1,194 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+import com.os.tid.forgerock.openam.utils.HedgingUtils;
+import com.os.tid.forgerock.openam.utils.HedgingUtils.LatencyTracker;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class HedgingUtilsTest {
+    private static final String BASE_URL = "https://tenant.sdb.tid.onespan.cloud";
+    // enough samples for the tracker to compute its first hedge delay
+    private static final int WARM_UP_REQUESTS = 32;
+    private static final long SLOW_RESPONSE_MS = 1000;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int slowRequest;
+    private volatile boolean slow;
+    private ExecutorService executor;
+    private HttpServer server;
+    private HttpClient httpClient;
+    private String sessionUrl;
+
+    @BeforeMethod
+    public void before() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        sessionUrl = Constants.OSTID_API_CHECK_SESSION_STATUS_TEMPLATE.resolve("http://127.0.0.1:" + server.getAddress().getPort(), "session-id");
+    }
+
+    @AfterMethod
+    public void after() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOnlyStatusAndLookupCallsAreHedged() {
+        // Given
+        OSConfigurationsService config = config(true, 10);
+
+        // Then
+        assertThat(HedgingUtils.isHedged(config, "GET", Constants.OSTID_API_CHECK_SESSION_STATUS_TEMPLATE.resolve(BASE_URL, "session-id"))).isTrue();
+        assertThat(HedgingUtils.isHedged(config, "GET", Constants.OSTID_API_VDP_GET_USER_TEMPLATE.resolve(BASE_URL, "john.doe", "tenant-domain"))).isTrue();
+        assertThat(HedgingUtils.isHedged(config, "GET", BASE_URL + Constants.OSTID_API_VDP_GET_VIR10_AUTHENTICATORS)).isTrue();
+        assertThat(HedgingUtils.isHedged(config, "GET", Constants.OSTID_API_ADAPTIVE_CRTONTO_RENDER_TEMPLATE.resolve(BASE_URL, "PNG", "request-id"))).isFalse();
+        assertThat(HedgingUtils.isHedged(config, "PUT", Constants.OSTID_API_VDP_GET_USER_TEMPLATE.resolve(BASE_URL, "john.doe", "tenant-domain"))).isFalse();
+        assertThat(HedgingUtils.isHedged(config, "POST", Constants.OSTID_API_ADAPTIVE_USER_LOGIN_TEMPLATE.resolve(BASE_URL, "john.doe", "tenant-domain"))).isFalse();
+        assertThat(HedgingUtils.isHedged(config(false, 10), "GET", Constants.OSTID_API_CHECK_SESSION_STATUS_TEMPLATE.resolve(BASE_URL, "session-id"))).isFalse();
+    }
+
+    @Test
+    public void testLatencyTrackerIsSharedPerEndpoint() {
+        // Given
+        OSConfigurationsService config = config(true, 10);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(sessionUrl)).GET().build();
+
+        // Then
+        assertThat(HedgingUtils.getLatencyTracker(config, request)).isNotNull();
+        assertThat(HedgingUtils.getLatencyTracker(config, request)).isSameAs(HedgingUtils.getLatencyTracker(config, request));
+        assertThat(HedgingUtils.getLatencyTracker(config(false, 10), request)).isNull();
+    }
+
+    @Test
+    public void testNoHedgeBeforeEnoughLatenciesAreRecorded() throws Exception {
+        // Given
+        LatencyTracker latencyTracker = latencyTracker(config(true, 100));
+        slowRequest = 1;
+
+        // When
+        HttpResponse<String> response = send(latencyTracker);
+
+        // Then
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSlowRequestIsHedged() throws Exception {
+        // Given
+        LatencyTracker latencyTracker = latencyTracker(config(true, 100));
+        warmUp(latencyTracker);
+        slowRequest = WARM_UP_REQUESTS + 1;
+
+        // When
+        long start = System.nanoTime();
+        HttpResponse<String> response = send(latencyTracker);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Then
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(requests.get()).isEqualTo(WARM_UP_REQUESTS + 2);
+        assertThat(elapsedMs).isLessThanOrEqualTo(SLOW_RESPONSE_MS / 2);
+    }
+
+    @Test
+    public void testHedgeRateIsCapped() throws Exception {
+        // Given
+        // at 10% a hedge costs ten requests, and the warm-up has earned three
+        LatencyTracker latencyTracker = latencyTracker(config(true, 10));
+        warmUp(latencyTracker);
+        slow = true;
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            send(latencyTracker);
+        }
+
+        // Then
+        assertThat(requests.get()).isEqualTo(WARM_UP_REQUESTS + 5 + 3);
+    }
+
+    private void warmUp(LatencyTracker latencyTracker) throws Exception {
+        for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+            send(latencyTracker);
+        }
+        assertThat(requests.get()).isEqualTo(WARM_UP_REQUESTS);
+    }
+
+    private HttpResponse<String> send(LatencyTracker latencyTracker) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(sessionUrl)).GET().build();
+        return HedgingUtils.sendHedged(httpClient, request, HttpResponse.BodyHandlers.ofString(), latencyTracker).get();
+    }
+
+    private LatencyTracker latencyTracker(OSConfigurationsService config) {
+        return HedgingUtils.getLatencyTracker(config, HttpRequest.newBuilder(URI.create(sessionUrl)).GET().build());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int request = requests.incrementAndGet();
+        if (slow || request == slowRequest) {
+            try {
+                Thread.sleep(slow ? SLOW_RESPONSE_MS / 5 : SLOW_RESPONSE_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] body = "{\"status\":\"pending\"}".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static OSConfigurationsService config(boolean hedgingEnabled, int hedgingMaxRate) {
+        // a tenant of its own, so that every test starts with an empty latency tracker
+        String tenantName = "tenant-" + UUID.randomUUID();
+        return new OSConfigurationsService() {
+            @Override
+            public String tenantName() {
+                return tenantName;
+            }
+
+            @Override
+            public EnvOptions environment() {
+                return EnvOptions.sdb;
+            }
+
+            @Override
+            public boolean hedgingEnabled() {
+                return hedgingEnabled;
+            }
+
+            @Override
+            public int hedgingMaxRate() {
+                return hedgingMaxRate;
+            }
+        };
+    }
+}
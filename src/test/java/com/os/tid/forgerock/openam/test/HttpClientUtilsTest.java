@@ -0,0 +1,230 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+import com.os.tid.forgerock.openam.utils.HttpClientUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.forgerock.openam.core.realms.Realm;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Covers the sharing of the pooled clients between realms, and the draining of a client once the configuration of
+ * its realms changed.
+ */
+@Test
+public class HttpClientUtilsTest {
+    private final CountDownLatch respond = new CountDownLatch(1);
+    private final CountDownLatch received = new CountDownLatch(1);
+    private volatile boolean slow;
+    private HttpServer server;
+    private String baseUrl;
+    private String tenantName;
+
+    @BeforeMethod
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        // the clients are shared statically, every test has a tenant of its own
+        tenantName = "tenant-" + UUID.randomUUID();
+    }
+
+    @AfterMethod
+    public void after() {
+        respond.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testRealmsOfSameIdentityShareClient() {
+        // Given
+        OneSpanRealmContext first = OneSpanRealmContext.of(realm(), config(tenantName, "private-key"));
+        OneSpanRealmContext second = OneSpanRealmContext.of(realm(), config(tenantName, "private-key"));
+        OneSpanRealmContext rotated = OneSpanRealmContext.of(realm(), config(tenantName, "rotated-private-key"));
+
+        // When
+        HttpClientUtils.PooledHttpClient pooledClient = HttpClientUtils.getPooledHttpClient(first, null);
+
+        // Then
+        assertThat(second).isNotSameAs(first);
+        assertThat(HttpClientUtils.getPooledHttpClient(second, null)).isSameAs(pooledClient);
+        assertThat(second.getHttpClient()).isSameAs(pooledClient.getHttpClient());
+        assertThat(HttpClientUtils.getPooledHttpClient(rotated, null)).isNotSameAs(pooledClient);
+        assertThat(pooledClient.getKey()).isEqualTo(first.getClientKey());
+    }
+
+    @Test
+    public void testReplacedClientIsRetiredOnceNoRealmUsesIt() throws Exception {
+        // Given
+        Realm firstRealm = realm();
+        Realm secondRealm = realm();
+        OneSpanRealmContext first = OneSpanRealmContext.of(firstRealm, config(tenantName, "private-key"));
+        OneSpanRealmContext second = OneSpanRealmContext.of(secondRealm, config(tenantName, "private-key"));
+        HttpClientUtils.PooledHttpClient pooledClient = HttpClientUtils.getPooledHttpClient(first, null);
+
+        // When
+        configurationChanged(firstRealm.asPath());
+        HttpClientUtils.release(first);
+
+        // Then
+        assertThat(pooledClient.isRetired()).isFalse();
+        assertThat(HttpClientUtils.getPooledHttpClient(second, null)).isSameAs(pooledClient);
+
+        // When
+        configurationChanged(secondRealm.asPath());
+        HttpClientUtils.release(second);
+
+        // Then
+        assertThat(pooledClient.isRetired()).isTrue();
+        OneSpanRealmContext resolved = OneSpanRealmContext.of(secondRealm, config(tenantName, "private-key"));
+        assertThat(HttpClientUtils.getPooledHttpClient(resolved, null)).isNotSameAs(pooledClient);
+    }
+
+    @Test
+    public void testRetiredClientClosesIdleConnections() throws Exception {
+        // Given
+        Realm realm = realm();
+        OneSpanRealmContext context = OneSpanRealmContext.of(realm, config(tenantName, "private-key"));
+        HttpClientUtils.PooledHttpClient pooledClient = HttpClientUtils.getPooledHttpClient(context, null);
+        assertThat(get(pooledClient)).isEqualTo(200);
+        assertThat(connectionManager(pooledClient).getTotalStats().getAvailable()).isEqualTo(1);
+
+        // When
+        configurationChanged(realm.asPath());
+        HttpClientUtils.release(context);
+
+        // Then
+        assertThat(pooledClient.isRetired()).isTrue();
+        assertThat(connectionManager(pooledClient).getTotalStats().getAvailable()).isEqualTo(0);
+    }
+
+    @Test
+    public void testRetiredClientCompletesRequestsInFlight() throws Exception {
+        // Given
+        Realm realm = realm();
+        OneSpanRealmContext context = OneSpanRealmContext.of(realm, config(tenantName, "private-key"));
+        HttpClientUtils.PooledHttpClient pooledClient = HttpClientUtils.getPooledHttpClient(context, null);
+        slow = true;
+        CompletableFuture<Integer> inFlight = CompletableFuture.supplyAsync(() -> {
+            try {
+                return get(pooledClient);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        configurationChanged(realm.asPath());
+        HttpClientUtils.release(context);
+        respond.countDown();
+
+        // Then
+        assertThat(pooledClient.isRetired()).isTrue();
+        assertThat(inFlight.get(5, TimeUnit.SECONDS)).isEqualTo(200);
+    }
+
+    @Test
+    public void testClosedClientReleasesAsyncClient() throws Exception {
+        // Given
+        OneSpanRealmContext context = OneSpanRealmContext.of(realm(), config(tenantName, "private-key"));
+        HttpClientUtils.PooledHttpClient pooledClient = HttpClientUtils.getPooledHttpClient(context, null);
+        assertThat(pooledClient.getAsyncHttpClient()).isSameAs(pooledClient.getAsyncHttpClient());
+
+        // When
+        Method close = HttpClientUtils.class.getDeclaredMethod("close", HttpClientUtils.PooledHttpClient.class);
+        close.setAccessible(true);
+        close.invoke(null, pooledClient);
+
+        // Then
+        Field asyncHttpClient = HttpClientUtils.PooledHttpClient.class.getDeclaredField("asyncHttpClient");
+        asyncHttpClient.setAccessible(true);
+        assertThat(asyncHttpClient.get(pooledClient)).isNull();
+        assertThatThrownBy(pooledClient::getAsyncHttpClient).isInstanceOf(IllegalStateException.class);
+    }
+
+    private int get(HttpClientUtils.PooledHttpClient pooledClient) throws IOException {
+        try (CloseableHttpResponse response = pooledClient.getHttpClient().execute(new HttpGet(baseUrl + "/v1/sessions/session-id"))) {
+            EntityUtils.consume(response.getEntity());
+            return response.getStatusLine().getStatusCode();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        if (slow) {
+            received.countDown();
+            try {
+                respond.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Notifies the contexts that the configuration of a realm changed, as the service listener does.
+     */
+    private static void configurationChanged(String realm) throws Exception {
+        Method invalidate = OneSpanRealmContext.class.getDeclaredMethod("invalidate", String.class);
+        invalidate.setAccessible(true);
+        invalidate.invoke(null, realm);
+    }
+
+    private static PoolingHttpClientConnectionManager connectionManager(HttpClientUtils.PooledHttpClient pooledClient) throws Exception {
+        Field connectionManager = HttpClientUtils.PooledHttpClient.class.getDeclaredField("connectionManager");
+        connectionManager.setAccessible(true);
+        return (PoolingHttpClientConnectionManager) connectionManager.get(pooledClient);
+    }
+
+    private static Realm realm() {
+        Realm realm = mock(Realm.class);
+        given(realm.asPath()).willReturn("/realm-" + UUID.randomUUID());
+        return realm;
+    }
+
+    private static OSConfigurationsService config(String tenantName, String privateKey) {
+        OSConfigurationsService serviceConfig = mock(OSConfigurationsService.class);
+        given(serviceConfig.tenantName()).willReturn(tenantName);
+        given(serviceConfig.environment()).willReturn(OSConfigurationsService.EnvOptions.sdb);
+        given(serviceConfig.customUrl()).willReturn("");
+        given(serviceConfig.privateKey()).willReturn(privateKey);
+        given(serviceConfig.publicKey()).willReturn("public-key");
+        given(serviceConfig.pinnedPublicKeys()).willReturn(Collections.emptySet());
+        return serviceConfig;
+    }
+}
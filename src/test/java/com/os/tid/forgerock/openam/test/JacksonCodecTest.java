@@ -0,0 +1,123 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.utils.JacksonCodec;
+import com.os.tid.forgerock.openam.utils.ResponseDecodeException;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Test
+public class JacksonCodecTest {
+    private final JacksonCodec codec = new JacksonCodec();
+
+    @Test
+    public void testMembersAreBoundIgnoringCase() throws Exception {
+        // When
+        Model model = decode("{\"NAME\":\"accepted\",\"Count\":3,\"total\":12345678901,\"enabled\":true}");
+
+        // Then
+        assertThat(model.name).isEqualTo("accepted");
+        assertThat(model.count).isEqualTo(3);
+        assertThat(model.total).isEqualTo(12345678901L);
+        assertThat(model.enabled).isTrue();
+    }
+
+    @Test
+    public void testUnknownMembersAreSkipped() throws Exception {
+        // When
+        Model model = decode("{\"unknown\":{\"name\":\"nested\",\"list\":[1,{\"count\":2}]},\"other\":[\"a\"],\"name\":\"accepted\"}");
+
+        // Then
+        assertThat(model.name).isEqualTo("accepted");
+        assertThat(model.count).isEqualTo(0);
+    }
+
+    @Test
+    public void testScalarsAreCoerced() throws Exception {
+        // When
+        Model model = decode("{\"name\":42,\"count\":\" 7 \",\"total\":\"9\",\"enabled\":\"true\"}");
+
+        // Then
+        assertThat(model.name).isEqualTo("42");
+        assertThat(model.count).isEqualTo(7);
+        assertThat(model.total).isEqualTo(9L);
+        assertThat(model.enabled).isTrue();
+    }
+
+    @Test
+    public void testStructuresBindToStringAsJson() throws Exception {
+        // When
+        Model model = decode("{\"details\":{\"code\":\"4001\",\"values\":[1,2]},\"count\":{\"ignored\":true}}");
+
+        // Then
+        assertThat(model.details).isEqualTo("{\"code\":\"4001\",\"values\":[1,2]}");
+        assertThat(model.count).isEqualTo(0);
+    }
+
+    @Test
+    public void testNullsKeepDefaults() throws Exception {
+        // When
+        Model model = decode("{\"name\":null,\"count\":null}");
+
+        // Then
+        assertThat(model.name).isNull();
+        assertThat(model.count).isEqualTo(0);
+        assertThat(decode("null")).isNull();
+        assertThat(decode("")).isNull();
+    }
+
+    @Test
+    public void testMalformedInputFails() {
+        assertThatThrownBy(() -> decode("{\"name\":\"accepted\"")).isInstanceOf(ResponseDecodeException.class);
+        assertThatThrownBy(() -> decode("[1,2]")).isInstanceOf(ResponseDecodeException.class);
+        assertThatThrownBy(() -> decode("{\"count\":\"seven\"}")).isInstanceOf(ResponseDecodeException.class);
+        assertThatThrownBy(() -> decode("{} {}")).isInstanceOf(ResponseDecodeException.class);
+    }
+
+    @Test
+    public void testStreamIsDecoded() throws Exception {
+        // When
+        Model model = codec.decode(new ByteArrayInputStream("{\"name\":\"accepted\"}".getBytes(StandardCharsets.UTF_8)), Model.class);
+
+        // Then
+        assertThat(model.name).isEqualTo("accepted");
+    }
+
+    @Test
+    public void testSerialization() {
+        // Given
+        Model model = new Model();
+        model.name = "accepted";
+        model.count = 3;
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("model", model);
+        value.put("list", Arrays.asList(1, "two", null));
+
+        // When
+        String json = codec.toJSONString(value);
+
+        // Then
+        assertThat(json).isEqualTo("{\"model\":{\"name\":\"accepted\",\"count\":3,\"total\":0,\"enabled\":false,\"details\":null},"
+                + "\"list\":[1,\"two\",null]}");
+        assertThat(codec.toJSONBytes(value)).isEqualTo(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Model decode(String json) throws Exception {
+        return codec.decode(json.getBytes(StandardCharsets.UTF_8), Model.class);
+    }
+
+    public static class Model {
+        public String name;
+        public int count;
+        public long total;
+        public boolean enabled;
+        public String details;
+    }
+}
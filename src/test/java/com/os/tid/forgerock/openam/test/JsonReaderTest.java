@@ -0,0 +1,210 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.alibaba.fastjson.JSONException;
+import com.os.tid.forgerock.openam.utils.JsonReader;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Test
+public class JsonReaderTest {
+    private static final String[] NAMES = {"requestID", "riskResponseCode"};
+
+    @Test
+    public void testNamesMatchIgnoringCase() throws IOException {
+        // Given
+        JsonReader reader = reader("{\"REQUESTID\":\"id\",\"RiskResponseCode\":0,\"request\":1}");
+
+        // When
+        reader.beginObject();
+
+        // Then
+        assertThat(reader.hasNext()).isTrue();
+        assertThat(reader.nextName(NAMES)).isEqualTo(0);
+        reader.skipValue();
+        assertThat(reader.hasNext()).isTrue();
+        assertThat(reader.nextName(NAMES)).isEqualTo(1);
+        reader.skipValue();
+        assertThat(reader.hasNext()).isTrue();
+        assertThat(reader.nextName(NAMES)).isEqualTo(-1);
+        reader.skipValue();
+        assertThat(reader.hasNext()).isFalse();
+        reader.endDocument();
+    }
+
+    @Test
+    public void testEscapedNameIsMatched() throws IOException {
+        // Given
+        JsonReader reader = reader("{\"request\\u0049D\":\"id\"}");
+
+        // When
+        reader.beginObject();
+        reader.hasNext();
+
+        // Then
+        assertThat(reader.nextName(NAMES)).isEqualTo(0);
+        assertThat(reader.nextString()).isEqualTo("id");
+    }
+
+    @Test
+    public void testUnknownMembersAreSkipped() throws IOException {
+        // Given
+        JsonReader reader = reader("{\"nested\":{\"a\":[1,{\"b\":\"}]\\\"\"}],\"c\":null},\"list\":[true,false,-1.5e3],\"requestID\":\"id\"}");
+
+        // When
+        reader.beginObject();
+        String requestID = null;
+        while (reader.hasNext()) {
+            if (reader.nextName(NAMES) == 0) {
+                requestID = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+
+        // Then
+        assertThat(requestID).isEqualTo("id");
+        reader.endDocument();
+    }
+
+    @Test
+    public void testStringCoercion() throws IOException {
+        // Given
+        JsonReader reader = reader("[\"caf\\u00e9 \\\"x\\\"\",\"naïve\",12.5,true,null,{\"a\": [1, 2]},[]]");
+
+        // When
+        reader.beginArray();
+
+        // Then
+        assertThat(next(reader)).isEqualTo("café \"x\"");
+        assertThat(next(reader)).isEqualTo("naïve");
+        assertThat(next(reader)).isEqualTo("12.5");
+        assertThat(next(reader)).isEqualTo("true");
+        assertThat(next(reader)).isNull();
+        assertThat(next(reader)).isEqualTo("{\"a\": [1, 2]}");
+        assertThat(next(reader)).isEqualTo("[]");
+        assertThat(reader.hasNext()).isFalse();
+    }
+
+    @Test
+    public void testNumberCoercion() throws IOException {
+        // Given
+        JsonReader reader = reader("[42,-7,\" 15 \",2.9,\"3.5\",null]");
+
+        // When
+        reader.beginArray();
+
+        // Then
+        assertThat(nextInt(reader)).isEqualTo(42);
+        assertThat(nextInt(reader)).isEqualTo(-7);
+        assertThat(nextInt(reader)).isEqualTo(15);
+        assertThat(nextInt(reader)).isEqualTo(2);
+        assertThat(nextInt(reader)).isEqualTo(3);
+        assertThat(nextInt(reader)).isEqualTo(-1);
+        assertThat(reader.hasNext()).isFalse();
+    }
+
+    @Test
+    public void testStringWhichIsNotNumberFails() throws IOException {
+        // Given
+        JsonReader reader = reader("[\"seven\"]");
+
+        // When
+        reader.beginArray();
+        reader.hasNext();
+
+        // Then
+        assertThatThrownBy(() -> reader.nextInt(0)).isInstanceOf(JSONException.class);
+    }
+
+    @Test
+    public void testNullInput() throws IOException {
+        assertThat(reader("").isNull()).isTrue();
+        assertThat(reader(" \n").isNull()).isTrue();
+        assertThat(reader(" null ").isNull()).isTrue();
+        assertThat(reader("{}").isNull()).isFalse();
+        assertThatThrownBy(() -> reader("nul").isNull()).isInstanceOf(JSONException.class);
+    }
+
+    @Test
+    public void testMalformedInputFails() {
+        assertThatThrownBy(() -> readObject("{\"requestID\" \"id\"}")).isInstanceOf(JSONException.class);
+        assertThatThrownBy(() -> readObject("{\"requestID\":\"id\" \"riskResponseCode\":0}")).isInstanceOf(JSONException.class);
+        assertThatThrownBy(() -> readObject("{\"requestID\":\"id")).isInstanceOf(JSONException.class);
+        assertThatThrownBy(() -> readObject("{\"requestID\":\"\\x\"}")).isInstanceOf(JSONException.class);
+        assertThatThrownBy(() -> readObject("{\"requestID\":}")).isInstanceOf(JSONException.class);
+        assertThatThrownBy(() -> readObject("{\"requestID\":\"id\"} {}")).isInstanceOf(JSONException.class);
+        assertThatThrownBy(() -> readObject("[]")).isInstanceOf(JSONException.class);
+    }
+
+    @Test
+    public void testStreamIsReadAcrossBufferBoundaries() throws IOException {
+        // Given
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            padding.append((char) ('a' + i % 26));
+        }
+        String json = "{\"skipped\":\"" + padding + "\",\"requestID\":\"" + padding + "é\",\"riskResponseCode\":\"12\"}";
+        // a stream handing out a few bytes per read, so that every token spans reads
+        InputStream in = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+        JsonReader reader = new JsonReader(in);
+
+        // When
+        reader.beginObject();
+        String requestID = null;
+        int riskResponseCode = -1;
+        while (reader.hasNext()) {
+            switch (reader.nextName(NAMES)) {
+            case 0:
+                requestID = reader.nextString();
+                break;
+            case 1:
+                riskResponseCode = reader.nextInt(-1);
+                break;
+            default:
+                reader.skipValue();
+                break;
+            }
+        }
+        reader.endDocument();
+
+        // Then
+        assertThat(requestID).isEqualTo(padding + "é");
+        assertThat(riskResponseCode).isEqualTo(12);
+    }
+
+    private static void readObject(String json) throws IOException {
+        JsonReader reader = reader(json);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.nextName(NAMES);
+            reader.nextString();
+        }
+        reader.endDocument();
+    }
+
+    private static String next(JsonReader reader) throws IOException {
+        assertThat(reader.hasNext()).isTrue();
+        return reader.nextString();
+    }
+
+    private static int nextInt(JsonReader reader) throws IOException {
+        assertThat(reader.hasNext()).isTrue();
+        return reader.nextInt(-1);
+    }
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,77 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.utils.JacksonCodec;
+import com.os.tid.forgerock.openam.utils.JsonCodec;
+import com.os.tid.forgerock.openam.utils.JsonUtils;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class JsonUtilsTest {
+
+    @Test
+    public void testFastjsonIsDefault() {
+        assertThat(JsonUtils.getCodec().getName()).isEqualTo("fastjson");
+    }
+
+    @Test
+    public void testCodecIsSelectedByName() throws Exception {
+        assertThat(codec("jackson")).isInstanceOf(JacksonCodec.class);
+        assertThat(codec(" Jackson ")).isInstanceOf(JacksonCodec.class);
+        assertThat(codec("fastjson").getName()).isEqualTo("fastjson");
+    }
+
+    @Test
+    public void testUnknownCodecFallsBackToFastjson() throws Exception {
+        assertThat(codec("gson").getName()).isEqualTo("fastjson");
+    }
+
+    @Test
+    public void testMissingJacksonFallsBackToFastjson() throws Exception {
+        // Given
+        URL classes = JsonUtils.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader withoutJackson = new URLClassLoader(new URL[] {classes}, new WithoutJackson(JsonUtilsTest.class.getClassLoader()))) {
+            Class<?> jsonUtils = withoutJackson.loadClass(JsonUtils.class.getName());
+            assertThat(jsonUtils).isNotSameAs(JsonUtils.class);
+
+            // When
+            Object codec = createCodec(jsonUtils, "jackson");
+
+            // Then
+            assertThat(codec.getClass().getSimpleName()).isEqualTo("FastjsonCodec");
+        }
+    }
+
+    private static Object createCodec(Class<?> jsonUtils, String name) throws Exception {
+        Method createCodec = jsonUtils.getDeclaredMethod("createCodec", String.class);
+        createCodec.setAccessible(true);
+        return createCodec.invoke(null, name);
+    }
+
+    private static JsonCodec codec(String name) throws Exception {
+        return (JsonCodec) createCodec(JsonUtils.class, name);
+    }
+
+    /**
+     * Hides Jackson, and leaves the classes of the plugin to the child loader, so that they link against the hidden
+     * Jackson.
+     */
+    private static class WithoutJackson extends ClassLoader {
+        private WithoutJackson(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.startsWith("com.fasterxml.jackson.") || name.startsWith("com.os.tid.forgerock.openam.")) {
+                throw new ClassNotFoundException(name);
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+}
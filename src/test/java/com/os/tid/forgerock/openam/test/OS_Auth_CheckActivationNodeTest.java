@@ -10,6 +10,7 @@ import org.forgerock.openam.auth.node.api.Action;
 import org.forgerock.openam.auth.node.api.ExternalRequestContext.Builder;
 import org.forgerock.openam.auth.node.api.NodeProcessException;
 import org.forgerock.openam.auth.node.api.TreeContext;
+import org.mockito.Mock;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -23,6 +24,9 @@ import static org.forgerock.json.JsonValue.object;
 
 @Test
 public class OS_Auth_CheckActivationNodeTest extends OS_Auth_UserRegisterNodeTest {
+    @Mock
+    private OS_Auth_CheckActivationNode.Config config;
+
     @BeforeMethod
     public void before() throws SMSException, SSOException {
         super.before();
@@ -31,7 +35,7 @@ public class OS_Auth_CheckActivationNodeTest extends OS_Auth_UserRegisterNodeTes
 //    @Test
 //    public void testCheckActivateProcessMissingData() throws NodeProcessException{
 //        // Given
-//        OS_Auth_CheckActivationNode node = new OS_Auth_CheckActivationNode(realm, annotatedServiceRegistry);
+//        OS_Auth_CheckActivationNode node = new OS_Auth_CheckActivationNode(config, realm, annotatedServiceRegistry);
 //
 //        //tree context
 //        JsonValue sharedState = json(object(1));
@@ -52,7 +56,7 @@ public class OS_Auth_CheckActivationNodeTest extends OS_Auth_UserRegisterNodeTes
     @Test
     public void testCheckActivateProcessEventExpired() throws NodeProcessException{
         // Given
-        OS_Auth_CheckActivationNode node = new OS_Auth_CheckActivationNode(realm, annotatedServiceRegistry);
+        OS_Auth_CheckActivationNode node = new OS_Auth_CheckActivationNode(config, realm, annotatedServiceRegistry);
 
         //tree context
         JsonValue sharedState = json(object(1));
@@ -74,7 +78,7 @@ public class OS_Auth_CheckActivationNodeTest extends OS_Auth_UserRegisterNodeTes
     @Test
     public void testCheckActivateProcessUnknownStatus() throws NodeProcessException{
         // Given
-        OS_Auth_CheckActivationNode node = new OS_Auth_CheckActivationNode(realm, annotatedServiceRegistry);
+        OS_Auth_CheckActivationNode node = new OS_Auth_CheckActivationNode(config, realm, annotatedServiceRegistry);
 
         //tree context
         JsonValue sharedState = json(object(1));
@@ -99,7 +103,7 @@ public class OS_Auth_CheckActivationNodeTest extends OS_Auth_UserRegisterNodeTes
 //        testProcessSuccess();
 //
 //        // Given
-//        OS_Auth_CheckActivationNode node = new OS_Auth_CheckActivationNode(realm, annotatedServiceRegistry);
+//        OS_Auth_CheckActivationNode node = new OS_Auth_CheckActivationNode(config, realm, annotatedServiceRegistry);
 //
 //        //tree context
 //        JsonValue sharedState = json(object(1));
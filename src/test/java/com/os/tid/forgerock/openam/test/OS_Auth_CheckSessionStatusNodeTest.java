@@ -3,6 +3,8 @@ package com.os.tid.forgerock.openam.test;
 import com.iplanet.sso.SSOException;
 import com.os.tid.forgerock.openam.config.Constants;
 import com.os.tid.forgerock.openam.nodes.OS_Auth_CheckSessionStatusNode;
+import com.os.tid.forgerock.openam.utils.CircuitBreaker;
+import com.os.tid.forgerock.openam.utils.CircuitBreakerUtils;
 import com.os.tid.forgerock.openam.utils.DateUtils;
 import com.sun.identity.sm.SMSException;
 import org.forgerock.json.JsonValue;
@@ -10,6 +12,7 @@ import org.forgerock.openam.auth.node.api.Action;
 import org.forgerock.openam.auth.node.api.ExternalRequestContext.Builder;
 import org.forgerock.openam.auth.node.api.NodeProcessException;
 import org.forgerock.openam.auth.node.api.TreeContext;
+import org.mockito.Mock;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -20,9 +23,13 @@ import java.util.List;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.forgerock.json.JsonValue.json;
 import static org.forgerock.json.JsonValue.object;
+import static org.mockito.BDDMockito.given;
 
 @Test
 public class OS_Auth_CheckSessionStatusNodeTest extends OS_Auth_UserLoginNodeTest {
+    @Mock
+    private OS_Auth_CheckSessionStatusNode.Config config;
+
     @BeforeMethod
     public void before() throws SMSException, SSOException {
         super.before();
@@ -31,7 +38,7 @@ public class OS_Auth_CheckSessionStatusNodeTest extends OS_Auth_UserLoginNodeTes
 //    @Test
 //    public void testCheckSessionProcessMissingData() throws NodeProcessException{
 //        // Given
-//        OS_Auth_CheckSessionStatusNode node = new OS_Auth_CheckSessionStatusNode(realm, annotatedServiceRegistry);
+//        OS_Auth_CheckSessionStatusNode node = new OS_Auth_CheckSessionStatusNode(config, realm, annotatedServiceRegistry);
 //
 //        //tree context
 //        JsonValue sharedState = json(object(1));
@@ -51,7 +58,7 @@ public class OS_Auth_CheckSessionStatusNodeTest extends OS_Auth_UserLoginNodeTes
     @Test
     public void testCheckSessionProcessEventExpired() throws NodeProcessException{
         // Given
-        OS_Auth_CheckSessionStatusNode node = new OS_Auth_CheckSessionStatusNode(realm, annotatedServiceRegistry);
+        OS_Auth_CheckSessionStatusNode node = new OS_Auth_CheckSessionStatusNode(config, realm, annotatedServiceRegistry);
 
         //tree context
         JsonValue sharedState = json(object(1));
@@ -69,13 +76,41 @@ public class OS_Auth_CheckSessionStatusNodeTest extends OS_Auth_UserLoginNodeTes
         assertThat(result.sharedState.keys()).contains(Constants.OSTID_ERROR_MESSAGE);
     }
 
+    @Test
+    public void testCheckSessionProcessUnavailable() throws NodeProcessException{
+        // Given
+        given(config.unavailableOutcomeEnabled()).willReturn(true);
+        given(configurationsService.tenantName()).willReturn("check-session-unavailable");
+        given(configurationsService.circuitBreakerEnabled()).willReturn(true);
+        CircuitBreaker circuitBreaker = CircuitBreakerUtils.getCircuitBreaker(configurationsService);
+        for (int i = 0; i < Constants.OSTID_DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE; i++) {
+            circuitBreaker.onFailure();
+        }
+        OS_Auth_CheckSessionStatusNode node = new OS_Auth_CheckSessionStatusNode(config, realm, annotatedServiceRegistry);
+
+        //tree context
+        JsonValue sharedState = json(object(1));
+        sharedState.put(Constants.OSTID_REQUEST_ID, "dummy_request_id");
+        sharedState.put(Constants.OSTID_EVENT_EXPIRY_DATE, DateUtils.getMilliStringAfterCertainSecs(Constants.OSTID_DEFAULT_EVENT_EXPIRY * 1000));
+
+        JsonValue transientState = json(object(1));
+        TreeContext context = getContext(sharedState,transientState,Collections.emptyList());
+
+        // When
+        Action result = node.process(context);
+        // Then
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(result.outcome).isEqualTo("unavailable");
+        assertThat(result.callbacks.isEmpty());
+    }
+
 //    @Test
 //    public void testCheckSessionProcessPending() throws NodeProcessException{
 //        //step1: try login in
 //        Action result1 = testProcessSuccess();
 //
 //        // Given
-//        OS_Auth_CheckSessionStatusNode node = new OS_Auth_CheckSessionStatusNode(realm, annotatedServiceRegistry);
+//        OS_Auth_CheckSessionStatusNode node = new OS_Auth_CheckSessionStatusNode(config, realm, annotatedServiceRegistry);
 //
 //        //tree context
 //        JsonValue sharedState = result1.sharedState;
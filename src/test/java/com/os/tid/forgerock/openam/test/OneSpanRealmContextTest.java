@@ -0,0 +1,186 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.google.common.collect.ImmutableSet;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+import com.os.tid.forgerock.openam.utils.HttpClientUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.forgerock.openam.core.realms.Realm;
+import org.mockito.Mock;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+@Test
+public class OneSpanRealmContextTest {
+    @Mock
+    private Realm realm;
+    private String realmPath;
+    private String tenantName;
+
+    @BeforeMethod
+    public void before() {
+        initMocks(this);
+        // every test has a realm and tenant of its own, as the contexts and clients are cached statically
+        realmPath = "/realm-" + UUID.randomUUID();
+        tenantName = "tenant-" + UUID.randomUUID();
+        given(realm.asPath()).willReturn(realmPath);
+    }
+
+    @Test
+    public void testContextIsCachedPerRealm() {
+        // Given
+        OSConfigurationsService serviceConfig = config(tenantName, "private-key");
+
+        // When
+        OneSpanRealmContext context = OneSpanRealmContext.of(realm, serviceConfig);
+
+        // Then
+        assertThat(context.getRealm()).isEqualTo(realmPath);
+        assertThat(OneSpanRealmContext.of(realm, serviceConfig)).isSameAs(context);
+        // the configuration instance AM hands out again until the realm changes
+        assertThat(OneSpanRealmContext.of(realm, config(tenantName, "private-key"))).isSameAs(context);
+        assertThat(OneSpanRealmContext.of(serviceConfig)).isSameAs(context);
+    }
+
+    @Test
+    public void testContextIsCachedPerConfiguration() {
+        // Given
+        OSConfigurationsService serviceConfig = config(tenantName, "private-key");
+
+        // When
+        OneSpanRealmContext context = OneSpanRealmContext.of(serviceConfig);
+
+        // Then
+        assertThat(context.getRealm()).isNull();
+        assertThat(OneSpanRealmContext.of(serviceConfig)).isSameAs(context);
+        assertThat(OneSpanRealmContext.of(config(tenantName, "private-key"))).isNotSameAs(context);
+    }
+
+    @Test
+    public void testConfigurationChangeResolvesNewContext() throws Exception {
+        // Given
+        OneSpanRealmContext context = OneSpanRealmContext.of(realm, config(tenantName, "private-key"));
+        OneSpanRealmContext unbound = OneSpanRealmContext.of(config(tenantName, "private-key"));
+        OSConfigurationsService changed = config("changed-" + tenantName, "private-key");
+
+        // When
+        configurationChanged(realmPath);
+
+        // Then
+        OneSpanRealmContext resolved = OneSpanRealmContext.of(realm, changed);
+        assertThat(resolved).isNotSameAs(context);
+        assertThat(resolved.getTenantName()).isEqualTo("changed-" + tenantName);
+        assertThat(OneSpanRealmContext.of(realm, changed)).isSameAs(resolved);
+        // there is no telling which realm a configuration without realm belongs to
+        assertThat(OneSpanRealmContext.isInUse(current -> current == unbound)).isFalse();
+        assertThat(OneSpanRealmContext.isInUse(current -> current == context)).isFalse();
+        assertThat(OneSpanRealmContext.isInUse(current -> current == resolved)).isTrue();
+    }
+
+    @Test
+    public void testChangeOfAnotherRealmKeepsContext() throws Exception {
+        // Given
+        OneSpanRealmContext context = OneSpanRealmContext.of(realm, config(tenantName, "private-key"));
+
+        // When
+        configurationChanged("/other-" + realmPath);
+
+        // Then
+        assertThat(OneSpanRealmContext.of(realm, config(tenantName, "private-key"))).isSameAs(context);
+    }
+
+    @Test
+    public void testPreviousClientServesRealmDuringCredentialRotation() throws Exception {
+        // Given
+        OneSpanRealmContext context = OneSpanRealmContext.of(realm, config(tenantName, "private-key"));
+        CloseableHttpClient httpClient = context.getHttpClient();
+        HttpClientUtils.PooledHttpClient pooledClient = HttpClientUtils.getPooledHttpClient(context, null);
+        assertThat(pooledClient.getHttpClient()).isSameAs(httpClient);
+
+        // When
+        configurationChanged(realmPath);
+        OneSpanRealmContext rotated = OneSpanRealmContext.of(realm, config(tenantName, "rotated-private-key"));
+
+        // Then
+        assertThat(rotated.getClientKey()).isNotEqualTo(context.getClientKey());
+        // the new client is built in the background, meanwhile the previous one serves the realm
+        assertThat(rotated.getHttpClient()).isSameAs(httpClient);
+        HttpClientUtils.PooledHttpClient rotatedClient = HttpClientUtils.getPooledHttpClient(rotated, null);
+        assertThat(rotated.getHttpClient()).isSameAs(rotatedClient.getHttpClient());
+        assertThat(pooledClient.isRetired()).isTrue();
+        assertThat(rotatedClient.isRetired()).isFalse();
+    }
+
+    @Test
+    public void testFingerprint() {
+        // Given
+        OneSpanRealmContext context = OneSpanRealmContext.of(config(tenantName, "private-key"));
+
+        // Then
+        // the tenant and the transport settings do not identify the credentials
+        OSConfigurationsService otherTenant = config("other-" + tenantName, "private-key");
+        assertThat(OneSpanRealmContext.of(otherTenant).getFingerprint()).isEqualTo(context.getFingerprint());
+        OSConfigurationsService otherTimeout = config(tenantName, "private-key");
+        given(otherTimeout.tlsSessionTimeout()).willReturn(60);
+        assertThat(OneSpanRealmContext.of(otherTimeout).getFingerprint()).isEqualTo(context.getFingerprint());
+        assertThat(OneSpanRealmContext.of(otherTimeout).getIdentity()).isNotEqualTo(context.getIdentity());
+        // the revocation setting only matters with pinned keys
+        OSConfigurationsService revocationCheck = config(tenantName, "private-key");
+        given(revocationCheck.revocationCheck()).willReturn(true);
+        assertThat(OneSpanRealmContext.of(revocationCheck).getFingerprint()).isEqualTo(context.getFingerprint());
+
+        assertThat(OneSpanRealmContext.of(config(tenantName, "rotated-private-key")).getFingerprint()).isNotEqualTo(context.getFingerprint());
+        OSConfigurationsService otherEnvironment = config(tenantName, "private-key");
+        given(otherEnvironment.environment()).willReturn(OSConfigurationsService.EnvOptions.Production_EU1);
+        assertThat(OneSpanRealmContext.of(otherEnvironment).getFingerprint()).isNotEqualTo(context.getFingerprint());
+    }
+
+    @Test
+    public void testFingerprintOfPinnedKeys() {
+        // Given
+        OSConfigurationsService pinned = config(tenantName, "private-key");
+        given(pinned.pinnedPublicKeys()).willReturn(ImmutableSet.of("pin-b", "pin-a"));
+        OSConfigurationsService reordered = config(tenantName, "private-key");
+        given(reordered.pinnedPublicKeys()).willReturn(ImmutableSet.of("pin-a", "pin-b"));
+        OSConfigurationsService revocationCheck = config(tenantName, "private-key");
+        given(revocationCheck.pinnedPublicKeys()).willReturn(ImmutableSet.of("pin-a", "pin-b"));
+        given(revocationCheck.revocationCheck()).willReturn(true);
+
+        // When
+        OneSpanRealmContext context = OneSpanRealmContext.of(pinned);
+
+        // Then
+        assertThat(OneSpanRealmContext.of(reordered).getFingerprint()).isEqualTo(context.getFingerprint());
+        assertThat(OneSpanRealmContext.of(revocationCheck).getFingerprint()).isNotEqualTo(context.getFingerprint());
+        assertThat(OneSpanRealmContext.of(config(tenantName, "private-key")).getFingerprint()).isNotEqualTo(context.getFingerprint());
+    }
+
+    /**
+     * Notifies the contexts that the configuration of a realm changed, as the service listener does.
+     */
+    private static void configurationChanged(String realm) throws Exception {
+        Method invalidate = OneSpanRealmContext.class.getDeclaredMethod("invalidate", String.class);
+        invalidate.setAccessible(true);
+        invalidate.invoke(null, realm);
+    }
+
+    private static OSConfigurationsService config(String tenantName, String privateKey) {
+        OSConfigurationsService serviceConfig = mock(OSConfigurationsService.class);
+        given(serviceConfig.tenantName()).willReturn(tenantName);
+        given(serviceConfig.environment()).willReturn(OSConfigurationsService.EnvOptions.sdb);
+        given(serviceConfig.customUrl()).willReturn("");
+        given(serviceConfig.privateKey()).willReturn(privateKey);
+        given(serviceConfig.publicKey()).willReturn("public-key");
+        given(serviceConfig.pinnedPublicKeys()).willReturn(Collections.emptySet());
+        return serviceConfig;
+    }
+}
@@ -0,0 +1,113 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.google.common.collect.ImmutableList;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.utils.CircuitBreakerOpenException;
+import com.os.tid.forgerock.openam.utils.OutcomeUtils;
+import org.forgerock.json.JsonValue;
+import org.forgerock.openam.auth.node.api.Action;
+import org.forgerock.openam.auth.node.api.NodeState;
+import org.forgerock.openam.auth.node.api.OutcomeProvider.Outcome;
+import org.mockito.Mock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.ListResourceBundle;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+@Test
+public class OutcomeUtilsTest {
+    private static final Logger logger = LoggerFactory.getLogger(OutcomeUtilsTest.class);
+    private static final String PREFIX = "[OneSpan Test]";
+    private static final ResourceBundle BUNDLE = new ListResourceBundle() {
+        @Override
+        protected Object[][] getContents() {
+            return new Object[][] {{"errorOutcome", "Error"}, {"unavailableOutcome", "Unavailable"}};
+        }
+    };
+
+    @Mock
+    private NodeState nodeState;
+
+    @BeforeMethod
+    public void before() {
+        initMocks(this);
+        given(nodeState.putShared(anyString(), any())).willReturn(nodeState);
+    }
+
+    @Test
+    public void testOpenCircuitBreakerTakesUnavailableOutcome() {
+        // When
+        Action result = OutcomeUtils.onException(nodeState, logger, PREFIX, "OS_Test_Node", "OneSpan Test: ",
+                new CircuitBreakerOpenException("https://tenant.sdb.tid.onespan.cloud"), true, "Error", "Unavailable");
+
+        // Then
+        assertThat(result.outcome).isEqualTo("Unavailable");
+        verify(nodeState).putShared(eq(PREFIX + Constants.OSTID_ERROR_MESSAGE), any());
+        verify(nodeState, never()).putShared(eq(PREFIX + Constants.OSTID_ERROR_RECORD), any());
+    }
+
+    @Test
+    public void testOpenCircuitBreakerTakesErrorOutcomeWhenDisabled() {
+        // When
+        Action result = OutcomeUtils.onException(nodeState, logger, PREFIX, "OS_Test_Node", "OneSpan Test: ",
+                new CircuitBreakerOpenException("https://tenant.sdb.tid.onespan.cloud"), false, "Error", "Unavailable");
+
+        // Then
+        assertThat(result.outcome).isEqualTo("Error");
+        verify(nodeState).putShared(eq(PREFIX + Constants.OSTID_ERROR_RECORD), any(Map.class));
+    }
+
+    @Test
+    public void testOtherFailureTakesErrorOutcome() {
+        // When
+        Action result = OutcomeUtils.onException(nodeState, logger, PREFIX, "OS_Test_Node", "OneSpan Test: ",
+                new IllegalStateException("Request ID is missing!"), true, "Error", "Unavailable");
+
+        // Then
+        assertThat(result.outcome).isEqualTo("Error");
+        verify(nodeState).putShared(eq(PREFIX + Constants.OSTID_ERROR_RECORD), any(Map.class));
+        verify(nodeState).putShared(PREFIX + Constants.OSTID_ERROR_MESSAGE, "OneSpan Test: Request ID is missing!");
+    }
+
+    @Test
+    public void testUnavailableOutcomeIsListedWhenEnabled() {
+        // Given
+        JsonValue enabled = json(object(field(OutcomeUtils.UNAVAILABLE_OUTCOME_ATTRIBUTE, true)));
+        JsonValue disabled = json(object(field(OutcomeUtils.UNAVAILABLE_OUTCOME_ATTRIBUTE, false)));
+        JsonValue undefined = json(object());
+
+        // Then
+        assertThat(ids(OutcomeUtils.addUnavailableOutcome(errorOutcome(), enabled, BUNDLE, "Unavailable").build()))
+                .containsExactly("Error", "Unavailable");
+        assertThat(ids(OutcomeUtils.addUnavailableOutcome(errorOutcome(), disabled, BUNDLE, "Unavailable").build()))
+                .containsExactly("Error");
+        assertThat(ids(OutcomeUtils.addUnavailableOutcome(errorOutcome(), undefined, BUNDLE, "Unavailable").build()))
+                .containsExactly("Error");
+    }
+
+    private static ImmutableList.Builder<Outcome> errorOutcome() {
+        return ImmutableList.<Outcome>builder().add(new Outcome("Error", BUNDLE.getString("errorOutcome")));
+    }
+
+    private static List<String> ids(List<Outcome> outcomes) {
+        return outcomes.stream().map(outcome -> outcome.id).collect(Collectors.toList());
+    }
+}
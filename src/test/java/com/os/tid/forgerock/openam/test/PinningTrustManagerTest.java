@@ -0,0 +1,163 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.utils.PinningTrustManager;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Validates the test chain of {@link PemUtilsTest} against a trust store holding its CA, set as the default trust
+ * store of the JVM for the duration of each test.
+ */
+@Test
+public class PinningTrustManagerTest {
+    private static final String AUTH_TYPE = "ECDHE_ECDSA";
+    private static final long TTL_MS = 60_000;
+    private static final String[] TRUST_STORE_PROPERTIES = {
+            "javax.net.ssl.trustStore", "javax.net.ssl.trustStorePassword", "javax.net.ssl.trustStoreType"};
+
+    private final Map<String, String> previousProperties = new HashMap<>();
+    private X509Certificate[] chain;
+    private X509Certificate leaf;
+    private X509Certificate ca;
+    private Path trustStore;
+
+    @BeforeMethod
+    public void before() throws Exception {
+        chain = CertificateFactory.getInstance("X.509")
+                .generateCertificates(new ByteArrayInputStream(PemUtilsTest.CERTIFICATE_CHAIN.getBytes(StandardCharsets.US_ASCII)))
+                .toArray(new X509Certificate[0]);
+        leaf = chain[0];
+        ca = chain[1];
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setCertificateEntry("ca", ca);
+        trustStore = Files.createTempFile("truststore", ".p12");
+        try (OutputStream out = Files.newOutputStream(trustStore)) {
+            keyStore.store(out, "changeit".toCharArray());
+        }
+        for (String property : TRUST_STORE_PROPERTIES) {
+            previousProperties.put(property, System.getProperty(property));
+        }
+        System.setProperty("javax.net.ssl.trustStore", trustStore.toString());
+        System.setProperty("javax.net.ssl.trustStorePassword", "changeit");
+        System.setProperty("javax.net.ssl.trustStoreType", "PKCS12");
+    }
+
+    @AfterMethod
+    public void after() throws IOException {
+        restoreDefaultTrustStore();
+        Files.deleteIfExists(trustStore);
+    }
+
+    private void restoreDefaultTrustStore() {
+        previousProperties.forEach((property, value) -> {
+            if (value == null) {
+                System.clearProperty(property);
+            } else {
+                System.setProperty(property, value);
+            }
+        });
+    }
+
+    @Test
+    public void testTrustsChainPinnedOnLeafKey() throws Exception {
+        // Given
+        PinningTrustManager trustManager = new PinningTrustManager(Collections.singleton(pin(leaf)), false, TTL_MS);
+
+        // When
+        trustManager.checkServerTrusted(chain, AUTH_TYPE);
+    }
+
+    @Test
+    public void testTrustsChainPinnedOnIssuerKeyWithPrefix() throws Exception {
+        // Given
+        PinningTrustManager trustManager = new PinningTrustManager(Collections.singleton(" sha256/" + pin(ca) + " "), false, TTL_MS);
+
+        // When
+        trustManager.checkServerTrusted(chain, AUTH_TYPE);
+    }
+
+    @Test
+    public void testRejectsChainMatchingNoPin() throws Exception {
+        // Given
+        String otherPin = Base64.getEncoder().encodeToString(new byte[32]);
+        PinningTrustManager trustManager = new PinningTrustManager(Collections.singleton(otherPin), false, TTL_MS);
+
+        // Then
+        assertThatThrownBy(() -> trustManager.checkServerTrusted(chain, AUTH_TYPE))
+                .isInstanceOf(CertificateException.class)
+                .hasMessageContaining("does not match any pinned public key");
+    }
+
+    @Test
+    public void testRejectsPinnedChainNotTrustedByTrustStore() throws Exception {
+        // Given
+        restoreDefaultTrustStore();
+        PinningTrustManager trustManager = new PinningTrustManager(Collections.singleton(pin(leaf)), false, TTL_MS);
+
+        // Then
+        assertThatThrownBy(() -> trustManager.checkServerTrusted(chain, AUTH_TYPE))
+                .isInstanceOf(CertificateException.class);
+    }
+
+    @Test
+    public void testRejectsEmptyChain() throws Exception {
+        // Given
+        PinningTrustManager trustManager = new PinningTrustManager(Collections.singleton(pin(leaf)), false, TTL_MS);
+
+        // Then
+        assertThatThrownBy(() -> trustManager.checkServerTrusted(new X509Certificate[0], AUTH_TYPE))
+                .isInstanceOf(CertificateException.class);
+    }
+
+    @Test
+    public void testRemembersValidatedCertificateUntilTtlElapses() throws Exception {
+        // Given
+        // the leaf alone does not carry the pinned key, so it is only trusted while the validated chain is remembered
+        Set<String> pins = Collections.singleton(pin(ca));
+        X509Certificate[] leafOnly = {leaf};
+        PinningTrustManager trustManager = new PinningTrustManager(pins, false, 200);
+        assertThatThrownBy(() -> new PinningTrustManager(pins, false, 200).checkServerTrusted(leafOnly, AUTH_TYPE))
+                .isInstanceOf(CertificateException.class);
+
+        // When
+        trustManager.checkServerTrusted(chain, AUTH_TYPE);
+
+        // Then
+        trustManager.checkServerTrusted(leafOnly, AUTH_TYPE);
+
+        // When
+        Thread.sleep(300);
+
+        // Then
+        assertThatThrownBy(() -> trustManager.checkServerTrusted(leafOnly, AUTH_TYPE))
+                .isInstanceOf(CertificateException.class)
+                .hasMessageContaining("does not match any pinned public key");
+    }
+
+    private static String pin(X509Certificate certificate) throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(certificate.getPublicKey().getEncoded()));
+    }
+}
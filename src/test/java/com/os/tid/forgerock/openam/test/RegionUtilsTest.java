@@ -0,0 +1,153 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.google.common.collect.ImmutableMap;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+import com.os.tid.forgerock.openam.utils.CircuitBreaker;
+import com.os.tid.forgerock.openam.utils.CircuitBreakerUtils;
+import com.os.tid.forgerock.openam.utils.HttpClientUtils;
+import com.os.tid.forgerock.openam.utils.RegionUtils;
+import org.forgerock.openam.core.realms.Realm;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+@Test
+public class RegionUtilsTest {
+    private static final Map<String, String> FAILOVER = ImmutableMap.of("Production_EU1", "1", "Production_NA1", "2");
+
+    private String tenantName;
+    private String primary;
+    private String failover;
+
+    @BeforeMethod
+    public void before() {
+        // the contexts, clients and circuit breakers are shared statically, every test has a tenant of its own
+        tenantName = "tenant-" + UUID.randomUUID();
+        primary = "https://" + tenantName + ".sdb.tid.onespan.cloud";
+        failover = "https://" + tenantName + ".prod.eu1.tid.onespan.cloud";
+    }
+
+    @Test
+    public void testRealmWithoutFailoverIsNotRouted() {
+        // Given
+        OSConfigurationsService serviceConfig = config(null);
+        String url = Constants.OSTID_API_CHECK_SESSION_STATUS_TEMPLATE.resolve(primary, "session-id");
+
+        // Then
+        assertThat(OneSpanRealmContext.of(serviceConfig).getRegionEndpoints()).containsExactly(primary);
+        assertThat(RegionUtils.route(serviceConfig, url)).isSameAs(url);
+    }
+
+    @Test
+    public void testCallsGoToPrimaryWhileItsBreakerIsClosed() {
+        // Given
+        OSConfigurationsService serviceConfig = config(FAILOVER);
+        String url = Constants.OSTID_API_CHECK_SESSION_STATUS_TEMPLATE.resolve(primary, "session-id");
+
+        // Then
+        assertThat(OneSpanRealmContext.of(serviceConfig).getRegionEndpoints())
+                .containsExactly(primary, failover, "https://" + tenantName + ".prod.na1.tid.onespan.cloud");
+        assertThat(RegionUtils.route(serviceConfig, url)).isEqualTo(url);
+    }
+
+    @Test
+    public void testOpenBreakerRoutesToFailover() {
+        // Given
+        OSConfigurationsService serviceConfig = config(FAILOVER);
+        open(CircuitBreakerUtils.getCircuitBreaker(serviceConfig));
+
+        // When
+        String routed = RegionUtils.route(serviceConfig, Constants.OSTID_API_CHECK_SESSION_STATUS_TEMPLATE.resolve(primary, "session-id"));
+
+        // Then
+        assertThat(routed).isEqualTo(Constants.OSTID_API_CHECK_SESSION_STATUS_TEMPLATE.resolve(failover, "session-id"));
+    }
+
+    @Test
+    public void testFailoverHasTlsSettingsOfItsEnvironment() {
+        // Given
+        OSConfigurationsService serviceConfig = config(FAILOVER);
+        OneSpanRealmContext context = OneSpanRealmContext.of(serviceConfig);
+
+        // When
+        OneSpanRealmContext regionContext = context.getRegionContext(failover);
+
+        // Then
+        assertThat(context.getRegionContext(primary)).isSameAs(context);
+        assertThat(context.getRegionContext(failover)).isSameAs(regionContext);
+        assertThat(regionContext.getApiEndpoint()).isEqualTo(failover);
+        assertThat(regionContext.getEnvironment()).isEqualTo("prod.eu1");
+        assertThat(regionContext.getEnvironmentOption()).isEqualTo(OSConfigurationsService.EnvOptions.Production_EU1);
+        assertThat(regionContext.getFingerprint()).isNotEqualTo(context.getFingerprint());
+        assertThat(regionContext.getClientKey()).isNotEqualTo(context.getClientKey());
+        assertThat(regionContext.getTenantName()).isEqualTo(context.getTenantName());
+        assertThat(regionContext.getMaxConnectionsPerRoute()).isEqualTo(context.getMaxConnectionsPerRoute());
+    }
+
+    @Test
+    public void testRoutedCallUsesClientOfFailover() {
+        // Given
+        OSConfigurationsService serviceConfig = config(FAILOVER);
+        OneSpanRealmContext context = OneSpanRealmContext.of(serviceConfig);
+
+        // When
+        URI routed = URI.create(Constants.OSTID_API_CHECK_SESSION_STATUS_TEMPLATE.resolve(failover, "session-id"));
+
+        // Then
+        assertThat(HttpClientUtils.getHttpClient(serviceConfig, routed)).isSameAs(context.getRegionContext(failover).getHttpClient());
+        assertThat(HttpClientUtils.getHttpClient(serviceConfig, routed)).isNotSameAs(context.getHttpClient());
+        assertThat(HttpClientUtils.getHttpClient(serviceConfig, URI.create(primary + "/v1/sessions/session-id"))).isSameAs(context.getHttpClient());
+    }
+
+    @Test
+    public void testReplacedRealmReleasesFailoverClient() throws Exception {
+        // Given
+        Realm realm = mock(Realm.class);
+        given(realm.asPath()).willReturn("/realm-" + UUID.randomUUID());
+        OneSpanRealmContext context = OneSpanRealmContext.of(realm, config(FAILOVER));
+        HttpClientUtils.PooledHttpClient failoverClient = HttpClientUtils.getPooledHttpClient(context.getRegionContext(failover), null);
+
+        // When
+        Method invalidate = OneSpanRealmContext.class.getDeclaredMethod("invalidate", String.class);
+        invalidate.setAccessible(true);
+        invalidate.invoke(null, realm.asPath());
+        OneSpanRealmContext resolved = OneSpanRealmContext.of(realm, config(FAILOVER));
+        HttpClientUtils.release(context);
+
+        // Then
+        assertThat(resolved).isNotSameAs(context);
+        assertThat(OneSpanRealmContext.isInUse(current -> current.getClientKey().equals(failoverClient.getKey()))).isFalse();
+        assertThat(failoverClient.isRetired()).isTrue();
+    }
+
+    private static void open(CircuitBreaker circuitBreaker) {
+        for (int i = 0; i < Constants.OSTID_DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE; i++) {
+            circuitBreaker.onFailure();
+        }
+        assertThat(circuitBreaker.isAvailable()).isFalse();
+    }
+
+    private OSConfigurationsService config(Map<String, String> failoverEnvironments) {
+        OSConfigurationsService serviceConfig = mock(OSConfigurationsService.class);
+        given(serviceConfig.tenantName()).willReturn(tenantName);
+        given(serviceConfig.environment()).willReturn(OSConfigurationsService.EnvOptions.sdb);
+        given(serviceConfig.customUrl()).willReturn("");
+        given(serviceConfig.privateKey()).willReturn("private-key");
+        given(serviceConfig.publicKey()).willReturn("public-key");
+        given(serviceConfig.pinnedPublicKeys()).willReturn(Collections.emptySet());
+        given(serviceConfig.circuitBreakerEnabled()).willReturn(true);
+        given(serviceConfig.failoverEnvironments()).willReturn(failoverEnvironments);
+        return serviceConfig;
+    }
+}
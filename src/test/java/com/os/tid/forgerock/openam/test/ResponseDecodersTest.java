@@ -0,0 +1,135 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.alibaba.fastjson.JSONException;
+import com.os.tid.forgerock.openam.models.ActivationStatusOutput;
+import com.os.tid.forgerock.openam.models.GeneralResponseOutput;
+import com.os.tid.forgerock.openam.models.SessionStatusOutput;
+import com.os.tid.forgerock.openam.models.UserRegisterOutputEx;
+import com.os.tid.forgerock.openam.utils.JsonReader;
+import com.os.tid.forgerock.openam.utils.ResponseDecoders;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Test
+public class ResponseDecodersTest {
+
+    @Test
+    public void testGeneralResponse() throws Exception {
+        // When
+        GeneralResponseOutput output = decode("{\"requestid\":\"id\",\"unknown\":{\"challenge\":\"nested\"},\"CHALLENGE\":\"abc\","
+                + "\"riskResponseCode\":\"0\",\"eventId\":3,\"sessionStatus\":\"pending\",\"fidoAuthenticationRequest\":{\"a\":1}}",
+                GeneralResponseOutput.class);
+
+        // Then
+        assertThat(output.requestID).isEqualTo("id");
+        assertThat(output.challenge).isEqualTo("abc");
+        assertThat(output.riskResponseCode).isEqualTo(0);
+        assertThat(output.eventId).isEqualTo(3);
+        assertThat(output.sessionStatus).isEqualTo("pending");
+        assertThat(output.fidoAuthenticationRequest).isEqualTo("{\"a\":1}");
+        assertThat(output.requestMessage).isNull();
+    }
+
+    @Test
+    public void testMissingNumberKeepsDefault() throws Exception {
+        // When
+        GeneralResponseOutput output = decode("{\"riskResponseCode\":null}", GeneralResponseOutput.class);
+
+        // Then
+        assertThat(output.riskResponseCode).isEqualTo(new GeneralResponseOutput().riskResponseCode);
+    }
+
+    @Test
+    public void testNumberIsReadAsString() throws Exception {
+        // When
+        UserRegisterOutputEx output = decode("{\"riskResponseCode\":1,\"serialNumber\":\"VDP123\"}", UserRegisterOutputEx.class);
+
+        // Then
+        assertThat(output.riskResponseCode).isEqualTo("1");
+        assertThat(output.serialNumber).isEqualTo("VDP123");
+    }
+
+    @Test
+    public void testEmptyBodyDecodesToNull() throws Exception {
+        assertThat(decode("", GeneralResponseOutput.class)).isNull();
+        assertThat(decode("null", SessionStatusOutput.class)).isNull();
+    }
+
+    @Test
+    public void testMalformedResponseFails() {
+        assertThatThrownBy(() -> decode("{\"requestID\":\"id\"", GeneralResponseOutput.class)).isInstanceOf(JSONException.class);
+        assertThatThrownBy(() -> decode("{\"requestID\":\"id\"}}", GeneralResponseOutput.class)).isInstanceOf(JSONException.class);
+        assertThatThrownBy(() -> decode("{\"eventId\":\"three\"}", GeneralResponseOutput.class)).isInstanceOf(JSONException.class);
+        assertThatThrownBy(() -> decode("[\"pending\"]", SessionStatusOutput.class)).isInstanceOf(JSONException.class);
+    }
+
+    @Test
+    public void testSessionStatusStopsAtItsMember() throws Exception {
+        // Given
+        InputStream in = failingAfter("{\"sessionId\":\"abc\",\"details\":{\"sessionStatus\":\"nested\"},\"SessionStatus\":\"accepted\",");
+
+        // When
+        SessionStatusOutput output = decode(new JsonReader(in), SessionStatusOutput.class);
+
+        // Then
+        assertThat(output.sessionStatus).isEqualTo("accepted");
+    }
+
+    @Test
+    public void testActivationStatusStopsAtItsMember() throws Exception {
+        // Given
+        InputStream in = failingAfter("{\"activationStatus\":\"activated\",");
+
+        // When
+        ActivationStatusOutput output = decode(new JsonReader(in), ActivationStatusOutput.class);
+
+        // Then
+        assertThat(output.activationStatus).isEqualTo("activated");
+    }
+
+    @Test
+    public void testMissingStatusIsNull() throws Exception {
+        // When
+        SessionStatusOutput output = decode("{\"sessionId\":\"abc\"}", SessionStatusOutput.class);
+
+        // Then
+        assertThat(output.sessionStatus).isNull();
+    }
+
+    /**
+     * A response of which only the given prefix can be read, so that decoding fails if it reads any further.
+     */
+    private static InputStream failingAfter(String prefix) {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("read past the status");
+            }
+        };
+        return new SequenceInputStream(new ByteArrayInputStream(prefix.getBytes(StandardCharsets.UTF_8)), failing);
+    }
+
+    private static <T> T decode(String json, Class<T> responseType) throws Exception {
+        return decode(new JsonReader(json.getBytes(StandardCharsets.UTF_8)), responseType);
+    }
+
+    private static <T> T decode(JsonReader reader, Class<T> responseType) throws Exception {
+        Method decode = ResponseDecoders.class.getDeclaredMethod("decode", JsonReader.class, Class.class);
+        decode.setAccessible(true);
+        try {
+            return responseType.cast(decode.invoke(null, reader, responseType));
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+}
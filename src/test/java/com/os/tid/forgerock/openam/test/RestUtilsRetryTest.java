@@ -0,0 +1,189 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+import com.os.tid.forgerock.openam.utils.RestUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the retry policy of both transports against a local server: the Apache client serves the realms on HTTP/1.1,
+ * the JDK client the realms on HTTP/2.
+ */
+@Test
+public class RestUtilsRetryTest {
+    private static final String CLOSE = "close";
+
+    private final Queue<String> responses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeMethod
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterMethod
+    public void after() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testApacheClientRetriesUnavailableIdempotentCall() throws IOException {
+        // Given
+        respond("503", "200");
+
+        // When
+        HttpEntity result = RestUtils.doGet(sessionUrl(), config(OSConfigurationsService.TransportOptions.HTTP_1_1, 2));
+
+        // Then
+        assertThat(result.getHttpStatus()).isEqualTo(200);
+        assertThat(requests.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testApacheClientRetriesClosedConnectionOfIdempotentCall() throws IOException {
+        // Given
+        respond(CLOSE, "200");
+
+        // When
+        HttpEntity result = RestUtils.doGet(sessionUrl(), config(OSConfigurationsService.TransportOptions.HTTP_1_1, 2));
+
+        // Then
+        assertThat(result.getHttpStatus()).isEqualTo(200);
+        assertThat(requests.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testApacheClientDoesNotRetryLogin() throws IOException {
+        // Given
+        respond("503", "200");
+
+        // When
+        HttpEntity result = RestUtils.doPostJSON(loginUrl(), "{}", config(OSConfigurationsService.TransportOptions.HTTP_1_1, 2));
+
+        // Then
+        assertThat(result.getHttpStatus()).isEqualTo(503);
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testApacheClientGivesUpAfterMaxRetries() throws IOException {
+        // Given
+        respond("503", "503", "503", "200");
+
+        // When
+        HttpEntity result = RestUtils.doGet(sessionUrl(), config(OSConfigurationsService.TransportOptions.HTTP_1_1, 1));
+
+        // Then
+        assertThat(result.getHttpStatus()).isEqualTo(503);
+        assertThat(requests.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testJdkClientRetriesUnavailableIdempotentCall() throws IOException {
+        // Given
+        respond("503", "200");
+
+        // When
+        HttpEntity result = RestUtils.doGet(sessionUrl(), config(OSConfigurationsService.TransportOptions.HTTP_2, 2));
+
+        // Then
+        assertThat(result.getHttpStatus()).isEqualTo(200);
+        assertThat(requests.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testJdkClientRetriesClosedConnectionOfIdempotentCall() throws IOException {
+        // Given
+        // the JDK client itself resends a GET once on a closed connection before it gives up
+        respond(CLOSE, CLOSE, "200");
+
+        // When
+        HttpEntity result = RestUtils.doGet(sessionUrl(), config(OSConfigurationsService.TransportOptions.HTTP_2, 2));
+
+        // Then
+        assertThat(result.getHttpStatus()).isEqualTo(200);
+        assertThat(requests.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testJdkClientDoesNotRetryClosedConnectionOfLogin() {
+        // Given
+        respond(CLOSE, "200");
+
+        // Then
+        assertThatThrownBy(() -> RestUtils.doPostJSON(loginUrl(), "{}", config(OSConfigurationsService.TransportOptions.HTTP_2, 2)))
+                .isInstanceOf(IOException.class);
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    private void respond(String... statuses) {
+        responses.addAll(Arrays.asList(statuses));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+        String response = responses.poll();
+        if (response == null || CLOSE.equals(response)) {
+            // no response at all, the connection is closed under the client
+            exchange.close();
+            return;
+        }
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(Integer.parseInt(response), body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private String sessionUrl() {
+        return Constants.OSTID_API_CHECK_SESSION_STATUS_TEMPLATE.resolve(baseUrl, "session-id");
+    }
+
+    private String loginUrl() {
+        return Constants.OSTID_API_ADAPTIVE_USER_LOGIN_TEMPLATE.resolve(baseUrl, "john.doe", "tenant-domain");
+    }
+
+    private static OSConfigurationsService config(OSConfigurationsService.TransportOptions transport, int maxRetries) {
+        return new OSConfigurationsService() {
+            @Override
+            public EnvOptions environment() {
+                return EnvOptions.sdb;
+            }
+
+            @Override
+            public TransportOptions transport() {
+                return transport;
+            }
+
+            @Override
+            public int maxRetries() {
+                return maxRetries;
+            }
+        };
+    }
+}
@@ -0,0 +1,128 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+import com.os.tid.forgerock.openam.utils.RetryUtils;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.testng.annotations.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test
+public class RetryUtilsTest {
+
+    @Test
+    public void testConnectFailuresAreAlwaysRetried() {
+        assertThat(RetryUtils.isRetryable(new ConnectException("Connection refused"), false)).isTrue();
+        assertThat(RetryUtils.isRetryable(new ConnectTimeoutException("Connect timed out"), false)).isTrue();
+        assertThat(RetryUtils.isRetryable(new HttpConnectTimeoutException("HTTP connect timed out"), false)).isTrue();
+    }
+
+    @Test
+    public void testApacheClientFailuresOfIdempotentCalls() {
+        assertThat(RetryUtils.isRetryable(new NoHttpResponseException("The target server failed to respond"), true)).isTrue();
+        assertThat(RetryUtils.isRetryable(new SocketTimeoutException("Read timed out"), true)).isTrue();
+        assertThat(RetryUtils.isRetryable(new SocketException("Connection reset"), true)).isTrue();
+        assertThat(RetryUtils.isRetryable(new EOFException(), true)).isTrue();
+    }
+
+    @Test
+    public void testJdkClientFailuresOfIdempotentCalls() {
+        assertThat(RetryUtils.isRetryable(new HttpTimeoutException("request timed out"), true)).isTrue();
+        assertThat(RetryUtils.isRetryable(new IOException("HTTP/1.1 header parser received no bytes"), true)).isTrue();
+        assertThat(RetryUtils.isRetryable(new ClosedChannelException(), true)).isTrue();
+    }
+
+    @Test
+    public void testFailuresAfterTheRequestIsWrittenAreNotRetriedForOtherCalls() {
+        assertThat(RetryUtils.isRetryable(new NoHttpResponseException("The target server failed to respond"), false)).isFalse();
+        assertThat(RetryUtils.isRetryable(new SocketTimeoutException("Read timed out"), false)).isFalse();
+        assertThat(RetryUtils.isRetryable(new HttpTimeoutException("request timed out"), false)).isFalse();
+        assertThat(RetryUtils.isRetryable(new IOException("connection closed locally"), false)).isFalse();
+    }
+
+    @Test
+    public void testOtherFailuresAreNeverRetried() {
+        assertThat(RetryUtils.isRetryable(new InterruptedIOException(), true)).isFalse();
+        assertThat(RetryUtils.isRetryable(new IllegalStateException(), true)).isFalse();
+    }
+
+    @Test
+    public void testRetryableStatus() {
+        assertThat(RetryUtils.isRetryableStatus(502)).isTrue();
+        assertThat(RetryUtils.isRetryableStatus(503)).isTrue();
+        assertThat(RetryUtils.isRetryableStatus(504)).isTrue();
+        assertThat(RetryUtils.isRetryableStatus(500)).isFalse();
+        assertThat(RetryUtils.isRetryableStatus(429)).isFalse();
+    }
+
+    @Test
+    public void testBackoffDelayIsBounded() {
+        for (int attempt = 1; attempt <= 40; attempt++) {
+            long ceiling = Math.min(Constants.OSTID_DEFAULT_RETRY_MAX_DELAY_MS, (long) Constants.OSTID_DEFAULT_RETRY_BASE_DELAY_MS << Math.min(attempt - 1, 20));
+            for (int i = 0; i < 100; i++) {
+                long delay = RetryUtils.getBackoffDelay(attempt);
+                assertThat(delay).isBetween(0L, ceiling);
+            }
+        }
+    }
+
+    @Test
+    public void testMaxAttempts() {
+        // Given
+        OSConfigurationsService defaults = () -> OSConfigurationsService.EnvOptions.sdb;
+        OSConfigurationsService noRetries = new OSConfigurationsService() {
+            @Override
+            public EnvOptions environment() {
+                return EnvOptions.sdb;
+            }
+
+            @Override
+            public int maxRetries() {
+                return 0;
+            }
+        };
+
+        // Then
+        assertThat(RetryUtils.getMaxAttempts(null)).isEqualTo(1);
+        assertThat(RetryUtils.getMaxAttempts(defaults)).isEqualTo(1 + Constants.OSTID_DEFAULT_MAX_RETRIES);
+        assertThat(RetryUtils.getMaxAttempts(noRetries)).isEqualTo(1);
+    }
+
+    @Test
+    public void testRetryBudget() {
+        // Given
+        OSConfigurationsService config = new OSConfigurationsService() {
+            @Override
+            public EnvOptions environment() {
+                return EnvOptions.sdb;
+            }
+
+            @Override
+            public int retryBudget() {
+                return 500;
+            }
+        };
+
+        // When
+        long deadline = RetryUtils.getDeadline(config);
+
+        // Then
+        assertThat(deadline - System.nanoTime()).isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+        assertThat(RetryUtils.canRetry(1, 3, deadline, 100)).isTrue();
+        assertThat(RetryUtils.canRetry(3, 3, deadline, 100)).isFalse();
+        assertThat(RetryUtils.canRetry(1, 3, deadline, 1000)).isFalse();
+    }
+}
@@ -0,0 +1,124 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.config.OneSpanRealmContext;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+import com.os.tid.forgerock.openam.utils.SslUtils;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+@Test
+public class SslUtilsTest {
+    private static final long CREATED = 1700000000000L;
+
+    private SSLConnectionSocketFactory socketFactory;
+    private Method isResumed;
+
+    @BeforeMethod
+    public void before() throws Exception {
+        socketFactory = SslUtils.getSSLConnectionSocketFactory(SSLContext.getDefault());
+        isResumed = socketFactory.getClass().getDeclaredMethod("isResumed", SSLSession.class);
+        isResumed.setAccessible(true);
+    }
+
+    @Test
+    public void testFirstSessionIsFullHandshake() throws Exception {
+        assertThat(isResumed(session(new byte[] {1}, "tenant.prod.eu1.tid.onespan.cloud", CREATED))).isFalse();
+    }
+
+    @Test
+    public void testSessionWithSeenIdIsResumed() throws Exception {
+        // Given
+        isResumed(session(new byte[] {1}, "tenant.prod.eu1.tid.onespan.cloud", CREATED));
+
+        // Then
+        // TLS 1.2 resumes the session itself
+        assertThat(isResumed(session(new byte[] {1}, "tenant.prod.eu1.tid.onespan.cloud", CREATED))).isTrue();
+    }
+
+    @Test
+    public void testSessionWithSeenOriginIsResumed() throws Exception {
+        // Given
+        isResumed(session(new byte[] {1}, "tenant.prod.eu1.tid.onespan.cloud", CREATED));
+
+        // Then
+        // TLS 1.3 resumes into a session with a new ID and the creation time of the resumed one
+        assertThat(isResumed(session(new byte[] {2}, "tenant.prod.eu1.tid.onespan.cloud", CREATED))).isTrue();
+    }
+
+    @Test
+    public void testNewSessionIsFullHandshake() throws Exception {
+        // Given
+        isResumed(session(new byte[] {1}, "tenant.prod.eu1.tid.onespan.cloud", CREATED));
+
+        // Then
+        assertThat(isResumed(session(new byte[] {2}, "tenant.prod.eu1.tid.onespan.cloud", CREATED + 1))).isFalse();
+        assertThat(isResumed(session(new byte[] {3}, "tenant.prod.na1.tid.onespan.cloud", CREATED))).isFalse();
+        // a session without ID is only known by its origin
+        assertThat(isResumed(session(new byte[0], "tenant.prod.eu1.tid.onespan.cloud", CREATED + 2))).isFalse();
+        assertThat(isResumed(session(new byte[0], "tenant.prod.eu1.tid.onespan.cloud", CREATED + 3))).isFalse();
+    }
+
+    @Test
+    public void testSessionCacheIsConfiguredPerContext() {
+        // Given
+        String tenantName = "tenant-" + UUID.randomUUID();
+        OneSpanRealmContext small = OneSpanRealmContext.of(config(tenantName, 10));
+        OneSpanRealmContext large = OneSpanRealmContext.of(config(tenantName, 20));
+
+        // When
+        SSLContext smallContext = small.getSSLContext();
+        SSLContext largeContext = large.getSSLContext();
+
+        // Then
+        assertThat(smallContext).isNotNull();
+        assertThat(largeContext).isNotSameAs(smallContext);
+        assertThat(OneSpanRealmContext.of(config(tenantName, 10)).getSSLContext()).isSameAs(smallContext);
+        assertThat(smallContext.getClientSessionContext().getSessionCacheSize()).isEqualTo(10);
+        assertThat(largeContext.getClientSessionContext().getSessionCacheSize()).isEqualTo(20);
+    }
+
+    private boolean isResumed(SSLSession session) throws Exception {
+        return (Boolean) isResumed.invoke(socketFactory, session);
+    }
+
+    private static SSLSession session(byte[] id, String peerHost, long creationTime) {
+        return (SSLSession) Proxy.newProxyInstance(SslUtilsTest.class.getClassLoader(), new Class<?>[] {SSLSession.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getPeerHost":
+                    return peerHost;
+                case "getPeerPort":
+                    return 443;
+                case "getCreationTime":
+                    return creationTime;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static OSConfigurationsService config(String tenantName, int tlsSessionCacheSize) {
+        OSConfigurationsService serviceConfig = mock(OSConfigurationsService.class);
+        given(serviceConfig.tenantName()).willReturn(tenantName);
+        given(serviceConfig.environment()).willReturn(OSConfigurationsService.EnvOptions.Production_EU1);
+        given(serviceConfig.customUrl()).willReturn("");
+        given(serviceConfig.privateKey()).willReturn(PemUtilsTest.RSA_PKCS8);
+        given(serviceConfig.publicKey()).willReturn(PemUtilsTest.CERTIFICATE_CHAIN);
+        given(serviceConfig.pinnedPublicKeys()).willReturn(Collections.emptySet());
+        given(serviceConfig.tlsSessionCacheSize()).willReturn(tlsSessionCacheSize);
+        return serviceConfig;
+    }
+}
@@ -0,0 +1,176 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.models.TransactionRequest;
+import com.os.tid.forgerock.openam.utils.CDDCUtils;
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the bodies written by {@link TransactionRequest} against the format strings the transaction validation node
+ * used to build them with.
+ */
+@Test
+public class TransactionRequestTest {
+    //the removed JSON payloads
+    private static final String OSTID_JSON_ADAPTIVE_SEND_TRANSACTION = "{%2$s%3$s%4$s%5$s\"objectType\":\"%1$s\"}";
+    private static final String OSTID_JSON_ADAPTIVE_DATATOSIGN_FIDO = "\"data\":{\"fido\":{%3$s\"fidoProtocol\":\"%1$s\",\"authenticationResponse\":\"%2$s\"}},";
+    private static final String OSTID_JSON_ADAPTIVE_DATATOSIGN_STANDARD = "\"data\":{\"standard\":{\"dataFields\":[%1$s],\"signature\":\"%2$s\"}},";
+    private static final String OSTID_JSON_ADAPTIVE_DATATOSIGN_SECURECHANNEL = "\"data\":{\"secureChannel\":{\"requestID\":\"%1$s\",\"signature\":\"%2$s\"}},";
+    private static final String OSTID_JSON_ADAPTIVE_DATATOSIGN_TRANSACTIONMESSAGE = "\"data\":{\"transactionMessage\":{\"dataFields\":[%1$s]}},";
+    private static final String OSTID_JSON_ADAPTIVE_DATATOSIGN_TRANSACTIONMESSAGE_DATAFIELDS = "{\"key\":{\"text\":\"%1$s\"},\"value\":{\"text\":\"%2$s\"}}";
+
+    private static final String CDDC_JSON = "{\"browser\":{\"userAgent\":\"Mozilla 5.0\"},\"additional\":{}}";
+    private static final String ESCAPED_CDDC_JSON = "{\\\"browser\\\":{\\\"userAgent\\\":\\\"Mozilla 5.0\\\"},\\\"additional\\\":{}}";
+    private static final String SESSION_ID = "38663233383530352d62396638";
+    private static final String REQUEST_ID = "dummy_request_id";
+    private static final String SIGNATURE = "dummy_signature";
+
+    @Test
+    public void testFido2() {
+        // Given
+        TransactionRequest request = new TransactionRequest();
+        request.setObjectType("TransactionValidationInput");
+        request.setFidoData("FIDO2", "authentication-response", REQUEST_ID);
+        request.setOrchestrationDelivery(ImmutableList.of("pushNotification"));
+        request.setTimeout(0);
+
+        // Then
+        String expected = String.format(OSTID_JSON_ADAPTIVE_SEND_TRANSACTION,
+                "TransactionValidationInput",
+                String.format(OSTID_JSON_ADAPTIVE_DATATOSIGN_FIDO, "FIDO2", "authentication-response",
+                        String.format(Constants.OSTID_JSON_ADAPTIVE_REQUESTID, REQUEST_ID)),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"pushNotification\""),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0),
+                "");
+        assertThat(toJson(request)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testFidoWithoutRequestID() {
+        // Given
+        TransactionRequest request = new TransactionRequest();
+        request.setObjectType("TransactionValidationInput");
+        request.setFidoData("UAF", "authentication-response", null);
+        request.setTimeout(0);
+
+        // Then
+        String expected = String.format(OSTID_JSON_ADAPTIVE_SEND_TRANSACTION,
+                "TransactionValidationInput",
+                String.format(OSTID_JSON_ADAPTIVE_DATATOSIGN_FIDO, "UAF", "authentication-response", ""),
+                "",
+                String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0),
+                "");
+        assertThat(toJson(request)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testStandard() {
+        // Given
+        TransactionRequest request = new TransactionRequest();
+        request.setObjectType("TransactionValidationInput");
+        request.setStandardData(ImmutableList.of("100", "EUR"), SIGNATURE);
+        request.setOrchestrationDelivery(ImmutableList.of("pushNotification", "requestMessage"));
+        request.setTimeout(0);
+
+        // Then
+        String expected = String.format(OSTID_JSON_ADAPTIVE_SEND_TRANSACTION,
+                "TransactionValidationInput",
+                String.format(OSTID_JSON_ADAPTIVE_DATATOSIGN_STANDARD, "\"100\",\"EUR\"", SIGNATURE),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"pushNotification\",\"requestMessage\""),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0),
+                "");
+        assertThat(toJson(request)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testSecureChannel() {
+        // Given
+        TransactionRequest request = new TransactionRequest();
+        request.setObjectType("TransactionValidationInput");
+        request.setSecureChannelData(REQUEST_ID, SIGNATURE);
+        request.setTimeout(0);
+
+        // Then
+        String expected = String.format(OSTID_JSON_ADAPTIVE_SEND_TRANSACTION,
+                "TransactionValidationInput",
+                String.format(OSTID_JSON_ADAPTIVE_DATATOSIGN_SECURECHANNEL, REQUEST_ID, SIGNATURE),
+                "",
+                String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0),
+                "");
+        assertThat(toJson(request)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testTransactionMessage() {
+        // Given
+        TransactionRequest request = new TransactionRequest();
+        request.putAttribute("creditorName", "John Doe");
+        request.putAttribute("amount", "100");
+        request.setObjectType("AdaptiveTransactionValidationInput");
+        request.setTransactionMessageData(ImmutableMap.of("login", TestData.TEST_USERNAME, "amount", "100"));
+        request.setOrchestrationDelivery(ImmutableList.of("requestMessage"));
+        request.setTimeout(0);
+        request.setCddc(TestData.TEST_CDDC_IP, TestData.TEST_CDDC_HASH, CDDCUtils.getEscapedJson(CDDCUtils.pack(CDDC_JSON)));
+        request.setRelationshipRef(TestData.TEST_USERNAME);
+        request.setSessionID(SESSION_ID);
+        request.setApplicationRef(TestData.APPLICATION_REF);
+
+        // Then
+        String expected = String.format(OSTID_JSON_ADAPTIVE_SEND_TRANSACTION,
+                "AdaptiveTransactionValidationInput",
+                String.format(OSTID_JSON_ADAPTIVE_DATATOSIGN_TRANSACTIONMESSAGE, String.join(",",
+                        String.format(OSTID_JSON_ADAPTIVE_DATATOSIGN_TRANSACTIONMESSAGE_DATAFIELDS, "login", TestData.TEST_USERNAME),
+                        String.format(OSTID_JSON_ADAPTIVE_DATATOSIGN_TRANSACTIONMESSAGE_DATAFIELDS, "amount", "100"))),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_ORCHESTRATIONDELIVERY, "\"requestMessage\""),
+                String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0),
+                "\"creditorName\":\"John Doe\",\"amount\":\"100\"," + String.format(Constants.OSTID_JSON_ADAPTIVE_USER_LOGIN_IAA,
+                        TestData.TEST_CDDC_IP, TestData.TEST_CDDC_HASH, ESCAPED_CDDC_JSON, TestData.TEST_USERNAME, SESSION_ID, TestData.APPLICATION_REF));
+        assertThat(toJson(request)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testTransactionMessageWithoutAdaptiveAttributes() {
+        // Given
+        TransactionRequest request = new TransactionRequest();
+        request.setObjectType("TransactionValidationInput");
+        request.setTransactionMessageData(ImmutableMap.of("login", TestData.TEST_USERNAME));
+        request.setTimeout(0);
+        request.setRelationshipRef(TestData.TEST_USERNAME);
+        request.setSessionID(SESSION_ID);
+        request.setApplicationRef(TestData.APPLICATION_REF);
+
+        // Then
+        String formatted = String.format(OSTID_JSON_ADAPTIVE_SEND_TRANSACTION,
+                "TransactionValidationInput",
+                String.format(OSTID_JSON_ADAPTIVE_DATATOSIGN_TRANSACTIONMESSAGE,
+                        String.format(OSTID_JSON_ADAPTIVE_DATATOSIGN_TRANSACTIONMESSAGE_DATAFIELDS, "login", TestData.TEST_USERNAME)),
+                "",
+                String.format(Constants.OSTID_JSON_ADAPTIVE_TIMEOUT, 0),
+                "," + "\"relationshipRef\":\"" + TestData.TEST_USERNAME + "\",\"sessionID\":\"" + SESSION_ID + "\",\"applicationRef\":\""
+                        + TestData.APPLICATION_REF + "\",");
+        // the empty list of adaptive attributes left a stray comma, which made the body invalid
+        assertThat(formatted).contains("\"timeout\":0,,");
+        assertThat(toJson(request)).isEqualTo(formatted.replace(",,", ","));
+    }
+
+    @Test
+    public void testEscapesDataToSign() {
+        // Given
+        TransactionRequest request = new TransactionRequest();
+        request.setStandardData(ImmutableList.of("say \"hi\""), SIGNATURE);
+
+        // Then
+        assertThat(toJson(request)).isEqualTo("{\"data\":{\"standard\":{\"dataFields\":[\"say \\\"hi\\\"\"],\"signature\":\"" + SIGNATURE + "\"}}}");
+    }
+
+    private static String toJson(TransactionRequest request) {
+        return new String(JsonWriter.toJSONBytes(request), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,69 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.utils.UriTemplate;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Test
+public class UriTemplateTest {
+    private static final String DELIMITERS = "a/b?c&d+e@f";
+    private static final String NON_ASCII = "\u00e9\u20ac\ud83d\ude00 x";
+
+    @Test
+    public void testPathSegmentEncoding() {
+        UriTemplate template = UriTemplate.compile("/v1/sessions/%1$s");
+
+        assertThat(template.expand(DELIMITERS)).isEqualTo("/v1/sessions/a%2Fb%3Fc&d+e@f");
+        assertThat(template.expand(NON_ASCII)).isEqualTo("/v1/sessions/%C3%A9%E2%82%AC%F0%9F%98%80%20x");
+        assertThat(template.expand((String) null)).isEqualTo("/v1/sessions/null");
+    }
+
+    @Test
+    public void testQueryValueEncoding() {
+        UriTemplate template = UriTemplate.compile("/v1/visualcodes/render?message=%1$s");
+
+        assertThat(template.expand(DELIMITERS)).isEqualTo("/v1/visualcodes/render?message=a/b?c%26d%2Be@f");
+        assertThat(template.expand(NON_ASCII)).isEqualTo("/v1/visualcodes/render?message=%C3%A9%E2%82%AC%F0%9F%98%80%20x");
+        assertThat(template.expand((String) null)).isEqualTo("/v1/visualcodes/render?message=null");
+    }
+
+    @Test
+    public void testSequentialPlaceholders() {
+        assertThat(UriTemplate.compile("/%s/%s").expand("a", "b")).isEqualTo("/a/b");
+    }
+
+    @Test
+    public void testIndexedPlaceholders() {
+        assertThat(UriTemplate.compile("/%2$s/%1$s/%2$s").expand("a", "b")).isEqualTo("/b/a/b");
+    }
+
+    @Test
+    public void testMatchesFormatForPlainValues() {
+        assertThat(Constants.OSTID_API_ADAPTIVE_USER_LOGIN_TEMPLATE.expand("john.doe", "tenant-domain"))
+                .isEqualTo(String.format(Constants.OSTID_API_ADAPTIVE_USER_LOGIN, "john.doe", "tenant-domain"));
+        assertThat(Constants.OSTID_API_ADAPTIVE_CRTONTO_RENDER_TEMPLATE.expand("PNG", "02;user;111"))
+                .isEqualTo(String.format(Constants.OSTID_API_ADAPTIVE_CRTONTO_RENDER, "PNG", "02;user;111"));
+    }
+
+    @Test
+    public void testResolveWithBaseUrl() {
+        assertThat(Constants.OSTID_API_ADAPTIVE_USER_LOGIN_TEMPLATE.resolve("https://tenant.sdb.tid.onespan.cloud", "john.doe", "tenant-domain"))
+                .isEqualTo("https://tenant.sdb.tid.onespan.cloud/v1/users/john.doe@tenant-domain/login");
+        assertThat(UriTemplate.compile("/v1/users").expand()).isEqualTo("/v1/users");
+    }
+
+    @Test
+    public void testMissingValue() {
+        assertThatThrownBy(() -> UriTemplate.compile("/%1$s/%2$s").expand("a"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testUnsupportedPlaceholder() {
+        assertThatThrownBy(() -> UriTemplate.compile("/%d")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> UriTemplate.compile("/100%")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,95 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.models.UserRegisterRequest;
+import com.os.tid.forgerock.openam.utils.CDDCUtils;
+import com.os.tid.forgerock.openam.utils.JsonWriter;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the bodies written by {@link UserRegisterRequest} against the format strings the user register node used to
+ * build them with.
+ */
+@Test
+public class UserRegisterRequestTest {
+    //the removed JSON payloads
+    private static final String OSTID_JSON_ADAPTIVE_USER_REGISTER = "{%6$s%7$s%8$s%9$s%10$s\"objectType\":\"%1$s\",\"userID\":\"%2$s\",\"clientIP\":\"%3$s\",\"cddc\":{\"browserCDDC\":{\"fingerprintHash\":\"%4$s\",\"fingerprintRaw\":\"%5$s\"}}}";
+    private static final String OSTID_JSON_ADAPTIVE_APPLICATIONREF = "\"applicationRef\":\"%1$s\",";
+    private static final String OSTID_JSON_ADAPTIVE_SESSIONID = "\"sessionID\":\"%1$s\",";
+    private static final String OSTID_JSON_ADAPTIVE_USER_REGISTER_RELATIONSHIPREF = "\"relationshipRef\":\"%1$s\",";
+    private static final String OSTID_JSON_ADAPTIVE_USER_REGISTER_ACTIVATIONTYPE = "\"activationType\":\"%1$s\",";
+
+    private static final String CDDC_JSON = "{\"browser\":{\"userAgent\":\"Mozilla 5.0\"},\"additional\":{}}";
+    private static final String ESCAPED_CDDC_JSON = "{\\\"browser\\\":{\\\"userAgent\\\":\\\"Mozilla 5.0\\\"},\\\"additional\\\":{}}";
+    private static final String SESSION_ID = "38663233383530352d62396638";
+
+    @Test
+    public void testAdaptiveUserRegister() {
+        // Given
+        UserRegisterRequest request = new UserRegisterRequest();
+        request.putAttribute("emailAddress", TestData.TEST_EMAIL_ADDRESS);
+        request.putAttribute("mobilePhoneNumber", TestData.TEST_MOBILE_PHONE);
+        request.setObjectType("AdaptiveRegisterUserInput");
+        request.setUserID(TestData.TEST_USERNAME);
+        request.setActivationType("onlineMDL");
+        request.setCddc(TestData.TEST_CDDC_IP, TestData.TEST_CDDC_HASH, CDDCUtils.getEscapedJson(CDDC_JSON));
+        request.setApplicationRef(TestData.APPLICATION_REF);
+        request.setSessionID(SESSION_ID);
+        request.setRelationshipRef(TestData.TEST_USERNAME);
+
+        // Then
+        String expected = String.format(OSTID_JSON_ADAPTIVE_USER_REGISTER,
+                "AdaptiveRegisterUserInput",
+                TestData.TEST_USERNAME,
+                TestData.TEST_CDDC_IP,
+                TestData.TEST_CDDC_HASH,
+                ESCAPED_CDDC_JSON,
+                String.format(OSTID_JSON_ADAPTIVE_APPLICATIONREF, TestData.APPLICATION_REF),
+                String.format(OSTID_JSON_ADAPTIVE_SESSIONID, SESSION_ID),
+                String.format(OSTID_JSON_ADAPTIVE_USER_REGISTER_RELATIONSHIPREF, TestData.TEST_USERNAME),
+                String.format(OSTID_JSON_ADAPTIVE_USER_REGISTER_ACTIVATIONTYPE, "onlineMDL"),
+                "\"emailAddress\":\"" + TestData.TEST_EMAIL_ADDRESS + "\",\"mobilePhoneNumber\":\"" + TestData.TEST_MOBILE_PHONE + "\",");
+        assertThat(toJson(request)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testUserUnregister() {
+        // Given
+        UserRegisterRequest request = new UserRegisterRequest();
+        request.setObjectType("UnregisterUserInputEx");
+        request.setUserID(TestData.TEST_USERNAME);
+        request.setActivationType("offlineMDL");
+        request.setCddc(TestData.TEST_CDDC_IP, TestData.TEST_CDDC_HASH, CDDCUtils.getEscapedJson(CDDCUtils.pack(CDDC_JSON)));
+
+        // Then
+        String expected = String.format(OSTID_JSON_ADAPTIVE_USER_REGISTER,
+                "UnregisterUserInputEx",
+                TestData.TEST_USERNAME,
+                TestData.TEST_CDDC_IP,
+                TestData.TEST_CDDC_HASH,
+                ESCAPED_CDDC_JSON,
+                "",
+                "",
+                "",
+                String.format(OSTID_JSON_ADAPTIVE_USER_REGISTER_ACTIVATIONTYPE, "offlineMDL"),
+                "");
+        assertThat(toJson(request)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testEscapesOptionalAttributes() {
+        // Given
+        UserRegisterRequest request = new UserRegisterRequest();
+        request.putAttribute("staticPassword", "pa\"ss\\word");
+
+        // Then
+        assertThat(toJson(request)).isEqualTo("{\"staticPassword\":\"pa\\\"ss\\\\word\"}");
+    }
+
+    private static String toJson(UserRegisterRequest request) {
+        return new String(JsonWriter.toJSONBytes(request), StandardCharsets.UTF_8);
+    }
+}
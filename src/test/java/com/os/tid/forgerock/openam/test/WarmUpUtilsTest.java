@@ -0,0 +1,144 @@
+package com.os.tid.forgerock.openam.test;
+
+import com.os.tid.forgerock.openam.config.Constants;
+import com.os.tid.forgerock.openam.models.HttpEntity;
+import com.os.tid.forgerock.openam.nodes.OSConfigurationsService;
+import com.os.tid.forgerock.openam.utils.RestUtils;
+import com.os.tid.forgerock.openam.utils.WarmUpUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Warms up the realms of both transports against a local server: the Apache client serves the realms on HTTP/1.1,
+ * the JDK client the realms on HTTP/2.
+ */
+@Test
+public class WarmUpUtilsTest {
+    private final List<String> methods = new CopyOnWriteArrayList<>();
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeMethod
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterMethod
+    public void after() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testApacheClientWarmUpLeavesConnectionForFirstCall() throws Exception {
+        // Given
+        OSConfigurationsService serviceConfig = config(OSConfigurationsService.TransportOptions.HTTP_1_1);
+
+        // When
+        warmUpConnection(serviceConfig);
+        HttpEntity result = RestUtils.doGet(sessionUrl(), serviceConfig);
+
+        // Then
+        assertThat(result.getHttpStatus()).isEqualTo(200);
+        assertThat(methods).containsExactly("HEAD", "GET");
+        assertThat(clientPorts.get(1)).isEqualTo(clientPorts.get(0));
+    }
+
+    @Test
+    public void testJdkClientWarmUpLeavesConnectionForFirstCall() throws Exception {
+        // Given
+        OSConfigurationsService serviceConfig = config(OSConfigurationsService.TransportOptions.HTTP_2);
+
+        // When
+        warmUpConnection(serviceConfig);
+        HttpEntity result = RestUtils.doGet(sessionUrl(), serviceConfig);
+
+        // Then
+        assertThat(result.getHttpStatus()).isEqualTo(200);
+        assertThat(methods).containsExactly("HEAD", "GET");
+        assertThat(clientPorts.get(1)).isEqualTo(clientPorts.get(0));
+    }
+
+    @Test
+    public void testWarmUpFailsOnUnreachableEndpoint() throws Exception {
+        // Given
+        OSConfigurationsService serviceConfig = config(OSConfigurationsService.TransportOptions.HTTP_1_1);
+        server.stop(0);
+
+        // Then
+        assertThatThrownBy(() -> warmUpConnection(serviceConfig)).isInstanceOf(IOException.class);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        methods.add(exchange.getRequestMethod());
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        exchange.getRequestBody().readAllBytes();
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private String sessionUrl() {
+        return Constants.OSTID_API_CHECK_SESSION_STATUS_TEMPLATE.resolve(baseUrl, "session-id");
+    }
+
+    /**
+     * Warms up the connection of a realm, as the warm-up does for every realm enabling it at startup.
+     */
+    private static void warmUpConnection(OSConfigurationsService serviceConfig) throws Exception {
+        Method warmUpConnection = WarmUpUtils.class.getDeclaredMethod("warmUpConnection", OSConfigurationsService.class);
+        warmUpConnection.setAccessible(true);
+        try {
+            warmUpConnection.invoke(null, serviceConfig);
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private OSConfigurationsService config(OSConfigurationsService.TransportOptions transport) {
+        String customUrl = baseUrl;
+        return new OSConfigurationsService() {
+            @Override
+            public EnvOptions environment() {
+                return EnvOptions.CUSTOMIZED;
+            }
+
+            @Override
+            public String customUrl() {
+                return customUrl;
+            }
+
+            @Override
+            public TransportOptions transport() {
+                return transport;
+            }
+        };
+    }
+}